@@ -150,6 +150,9 @@ public class EventFiringTests {
             @Override
             public void eventOccurred(RequestCompletedEvent eventArg) {
                 assertEquals(eventArg.getRequestResult(), eventArg.getOpContext().getLastResult());
+                assertTrue(eventArg.getConnectTimeInNanos() >= 0);
+                assertTrue(eventArg.getTimeToFirstByteInNanos() >= 0);
+                assertTrue(eventArg.getElapsedTimeInNanos() >= eventArg.getTimeToFirstByteInNanos());
                 callList.add(true);
             }
         });
@@ -190,6 +193,41 @@ public class EventFiringTests {
         assertEquals(2, globalCallList.size());
     }
 
+    @Test
+    public void testRequestCompletedEventTimings() {
+        RequestResult result = new RequestResult();
+        result.setStartNanoTime(1000);
+        result.setConnectStartNanoTime(1500);
+        result.setConnectEndNanoTime(2500);
+        result.setRequestSentNanoTime(6000);
+
+        RequestCompletedEvent event = new RequestCompletedEvent(new OperationContext(), null, result);
+        assertEquals(500, event.getSetupTimeInNanos());
+        assertEquals(1000, event.getConnectTimeInNanos());
+        assertEquals(3500, event.getUploadTimeInNanos());
+
+        // phases which were not reached have no duration
+        assertEquals(-1, event.getTimeToFirstByteInNanos());
+        assertEquals(-1, event.getResponseProcessingTimeInNanos());
+        assertEquals(-1, event.getElapsedTimeInNanos());
+
+        result.setResponseReceivedNanoTime(16000);
+        result.setResponseProcessedNanoTime(16700);
+        result.setStopNanoTime(17000);
+        assertEquals(10000, event.getTimeToFirstByteInNanos());
+        assertEquals(700, event.getResponseProcessingTimeInNanos());
+        assertEquals(16000, event.getElapsedTimeInNanos());
+
+        // System.nanoTime() may be 0 or negative, so only Long.MIN_VALUE means a phase was not reached
+        result = new RequestResult();
+        assertEquals(Long.MIN_VALUE, result.getStartNanoTime());
+        result.setStartNanoTime(-500);
+        result.setConnectStartNanoTime(0);
+        event = new RequestCompletedEvent(new OperationContext(), null, result);
+        assertEquals(500, event.getSetupTimeInNanos());
+        assertEquals(-1, event.getConnectTimeInNanos());
+    }
+
     @Test
     @Category(SecondaryTests.class)
     public void testRetryingEvents() throws URISyntaxException, StorageException {
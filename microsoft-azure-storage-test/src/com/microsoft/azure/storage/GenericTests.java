@@ -18,11 +18,31 @@ import static org.junit.Assert.*;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.net.ssl.SSLSocketFactory;
 
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
@@ -235,6 +255,544 @@ public class GenericTests {
         container.exists(null, null, context);
     }
 
+    @Test
+    public void testPooledHttpTransport() throws URISyntaxException, StorageException, IOException {
+        CloudBlobClient blobClient = TestHelper.createCloudBlobClient();
+        PooledHttpTransport transport = new PooledHttpTransport(2);
+        blobClient.setHttpTransport(transport);
+        assertSame(transport, blobClient.getHttpTransport());
+
+        CloudBlobContainer container = blobClient.getContainerReference(generateRandomContainerName());
+        try {
+            container.create();
+            for (int i = 0; i < 5; i++) {
+                CloudBlockBlob blob = container.getBlockBlobReference("blob" + i);
+                blob.uploadText("hello");
+                assertEquals("hello", blob.downloadText());
+
+                // a 404 leaves an error body on the connection which must be drained and released
+                assertFalse(container.getBlockBlobReference("missing" + i).exists());
+            }
+
+            assertEquals(0, transport.getInUseConnectionCount(blobClient.getEndpoint()));
+        }
+        finally {
+            container.deleteIfExists();
+            assertEquals(0, transport.getInUseConnectionCount(blobClient.getEndpoint()));
+        }
+
+        blobClient.setHttpTransport(null);
+        assertSame(DefaultHttpTransport.INSTANCE, blobClient.getHttpTransport());
+    }
+
+    @Test
+    public void testAdaptiveConcurrencyLimiter() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 5);
+        assertEquals(4, limiter.getLimit());
+
+        AdaptiveConcurrencyLimiter.Permit[] permits = new AdaptiveConcurrencyLimiter.Permit[4];
+        for (int i = 0; i < permits.length; i++) {
+            permits[i] = limiter.acquire(0);
+            assertNotNull(permits[i]);
+        }
+
+        assertEquals(4, limiter.getInFlightCount());
+        assertNull(limiter.acquire(10));
+        assertEquals(0, limiter.getQueueLength());
+
+        // the first throttled response halves the limit, responses to requests sent before that do not
+        permits[0].release(createRequestResult(HttpURLConnection.HTTP_UNAVAILABLE, null));
+        assertEquals(2, limiter.getLimit());
+
+        RequestResult timedOut = createRequestResult(HttpURLConnection.HTTP_INTERNAL_ERROR,
+                StorageErrorCodeStrings.OPERATION_TIMED_OUT);
+        permits[1].release(timedOut);
+        assertEquals(2, limiter.getLimit());
+
+        // releasing a permit twice has no effect
+        permits[1].release(timedOut);
+        assertEquals(2, limiter.getInFlightCount());
+
+        // a request sent after the decrease is throttled again
+        permits[2].release(createRequestResult(HttpURLConnection.HTTP_OK, null));
+        permits[1] = limiter.acquire(0);
+        assertNotNull(permits[1]);
+        permits[1].release(timedOut);
+        assertEquals(1, limiter.getLimit());
+        assertEquals(1, limiter.getInFlightCount());
+
+        // successes grow the limit by about one per round of responses, up to the maximum
+        permits[3].release(createRequestResult(HttpURLConnection.HTTP_NOT_FOUND, null));
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire(0).release(createRequestResult(HttpURLConnection.HTTP_CREATED, null));
+        }
+
+        assertEquals(5, limiter.getLimit());
+        assertEquals(0, limiter.getInFlightCount());
+
+        // a waiting request is admitted as soon as a permit is released
+        permits = new AdaptiveConcurrencyLimiter.Permit[5];
+        for (int i = 0; i < permits.length; i++) {
+            permits[i] = limiter.acquire(0);
+        }
+
+        final AdaptiveConcurrencyLimiter sharedLimiter = limiter;
+        final AdaptiveConcurrencyLimiter.Permit[] waited = new AdaptiveConcurrencyLimiter.Permit[1];
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    waited[0] = sharedLimiter.acquire(30000);
+                }
+                catch (InterruptedException e) {
+                    // leave the permit null
+                }
+            }
+        };
+        waiter.start();
+        while (limiter.getQueueLength() == 0) {
+            Thread.sleep(10);
+        }
+
+        permits[0].release(createRequestResult(HttpURLConnection.HTTP_OK, null));
+        waiter.join();
+        assertNotNull(waited[0]);
+        assertEquals(0, limiter.getQueueLength());
+        assertEquals(5, limiter.getInFlightCount());
+    }
+
+    @Test
+    public void testConcurrencyLimiterOnClient() throws URISyntaxException, StorageException {
+        CloudBlobClient blobClient = TestHelper.createCloudBlobClient();
+        assertNull(blobClient.getConcurrencyLimiter());
+
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+        blobClient.setConcurrencyLimiter(limiter);
+        assertSame(limiter, blobClient.getConcurrencyLimiter());
+
+        CloudBlobContainer container = blobClient.getContainerReference(generateRandomContainerName());
+        assertFalse(container.exists());
+        assertEquals(0, limiter.getInFlightCount());
+        assertEquals(AdaptiveConcurrencyLimiter.DEFAULT_INITIAL_LIMIT, limiter.getLimit());
+
+        blobClient.setConcurrencyLimiter(null);
+        assertNull(blobClient.getConcurrencyLimiter());
+    }
+
+    @Test
+    public void testAsyncOperationWaitsForPermitOffExecutor() throws URISyntaxException, StorageException,
+            InterruptedException, ExecutionException, TimeoutException {
+        CloudBlobClient blobClient = TestHelper.createCloudBlobClient();
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1);
+        blobClient.setConcurrencyLimiter(limiter);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        blobClient.setAsyncExecutor(executor);
+
+        try {
+            AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire(0);
+            CloudBlockBlob blob = blobClient.getContainerReference(generateRandomContainerName())
+                    .getBlockBlobReference("blob");
+            Future<Integer> download = blob.downloadToByteArrayAsync(new byte[1], 0, null, null, null);
+
+            // the operation waits for the permit without holding the only thread of the executor
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get(1, TimeUnit.SECONDS);
+            assertFalse(download.isDone());
+
+            permit.release(null);
+            try {
+                download.get(30, TimeUnit.SECONDS);
+                fail();
+            }
+            catch (ExecutionException e) {
+                assertEquals(HttpURLConnection.HTTP_NOT_FOUND, ((StorageException) e.getCause()).getHttpStatusCode());
+            }
+
+            assertEquals(0, limiter.getInFlightCount());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private static RequestResult createRequestResult(int statusCode, String errorCode) {
+        RequestResult result = new RequestResult();
+        result.setStatusCode(statusCode);
+        if (errorCode != null) {
+            result.setException(new StorageException(errorCode, "", statusCode, null, null));
+        }
+
+        return result;
+    }
+
+    @Test
+    public void testClientMetrics() throws URISyntaxException, IOException {
+        CloudBlobClient blobClient = new CloudBlobClient(new URI("http://myaccount.blob.core.windows.net"));
+        CloudQueueClient queueClient = new CloudQueueClient(new URI("http://myaccount.queue.core.windows.net"),
+                StorageCredentialsAnonymous.ANONYMOUS);
+        ClientMetrics metrics = new ClientMetrics();
+        assertEquals(0, metrics.getSnapshot().size());
+
+        HttpURLConnection list = (HttpURLConnection) new URL(
+                "http://myaccount.blob.core.windows.net/c?restype=container&comp=list&timeout=30").openConnection();
+        HttpURLConnection putBlock = (HttpURLConnection) new URL(
+                "http://myaccount.blob.core.windows.net/c/b?timeout=30&comp=block&blockid=AAAA").openConnection();
+        putBlock.setRequestMethod("PUT");
+        HttpURLConnection getMessages = (HttpURLConnection) new URL(
+                "http://myaccount.queue.core.windows.net/q/messages").openConnection();
+
+        for (int i = 1; i <= 100; i++) {
+            metrics.record(blobClient, list, createTimedRequestResult(HttpURLConnection.HTTP_OK, i * 1000), false, 0,
+                    10);
+        }
+        metrics.record(blobClient, putBlock, createTimedRequestResult(HttpURLConnection.HTTP_CREATED, 5000), false,
+                4 * Constants.MB, 0);
+        RequestResult throttled = createRequestResult(HttpURLConnection.HTTP_UNAVAILABLE, null);
+        throttled.setStartNanoTime(1);
+        throttled.setStopNanoTime(1 + 2000000);
+        metrics.record(blobClient, putBlock, throttled, true, 4 * Constants.MB, 0);
+        metrics.record(queueClient, getMessages, createTimedRequestResult(-1, 1000), false, 0, 0);
+
+        List<OperationMetrics> snapshot = metrics.getSnapshot();
+        assertEquals(4, snapshot.size());
+
+        OperationMetrics listMetrics = snapshot.get(0);
+        assertEquals("blob", listMetrics.getService());
+        assertEquals("GET?restype=container&comp=list", listMetrics.getOperation());
+        assertEquals(200, listMetrics.getStatusClass());
+        assertEquals(100, listMetrics.getRequestCount());
+        assertEquals(0, listMetrics.getRetryCount());
+        assertEquals(1000, listMetrics.getBytesReceived());
+        assertEquals(50.5, listMetrics.getMeanLatencyInMs(), 0.001);
+        assertEquals(100, listMetrics.getMaxLatencyInMs(), 0.001);
+        assertEquals(50, listMetrics.getLatencyPercentileInMs(0.5), 50 / 16.0);
+        assertEquals(99, listMetrics.getLatencyPercentileInMs(0.99), 99 / 16.0);
+        assertEquals(100, listMetrics.getLatencyPercentileInMs(1), 0.001);
+
+        OperationMetrics putBlockMetrics = snapshot.get(1);
+        assertEquals("PUT?comp=block", putBlockMetrics.getOperation());
+        assertEquals(200, putBlockMetrics.getStatusClass());
+        assertEquals(4 * Constants.MB, putBlockMetrics.getBytesSent());
+
+        OperationMetrics throttledMetrics = snapshot.get(2);
+        assertEquals("PUT?comp=block", throttledMetrics.getOperation());
+        assertEquals(500, throttledMetrics.getStatusClass());
+        assertEquals(1, throttledMetrics.getRetryCount());
+        assertEquals(1, throttledMetrics.getThrottledCount());
+
+        OperationMetrics queueMetrics = snapshot.get(3);
+        assertEquals("queue", queueMetrics.getService());
+        assertEquals("GET", queueMetrics.getOperation());
+        assertEquals(0, queueMetrics.getStatusClass());
+
+        assertNull(blobClient.getClientMetrics());
+        blobClient.setClientMetrics(metrics);
+        assertSame(metrics, blobClient.getClientMetrics());
+    }
+
+    @Test
+    public void testLatencyHistogramBuckets() {
+        // every latency lies within its bucket, and buckets are contiguous
+        long previousUpperBound = -1;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i++) {
+            long upperBound = LatencyHistogram.getBucketUpperBound(i);
+            assertEquals(i, LatencyHistogram.getBucketIndex(previousUpperBound + 1));
+            assertEquals(i, LatencyHistogram.getBucketIndex(upperBound));
+            assertTrue(upperBound - previousUpperBound <= Math.max(1, (previousUpperBound + 1) / 16));
+            previousUpperBound = upperBound;
+        }
+    }
+
+    private static RequestResult createTimedRequestResult(int statusCode, long latencyInMicros) {
+        RequestResult result = createRequestResult(statusCode, null);
+        result.setStartNanoTime(1);
+        result.setStopNanoTime(1 + latencyInMicros * 1000);
+        return result;
+    }
+
+    @Test
+    public void testTransferScheduler() throws InterruptedException, ExecutionException, URISyntaxException {
+        TransferScheduler scheduler = new TransferScheduler(2);
+        TransferScheduler.Session first = scheduler.openSession(2);
+        TransferScheduler.Session second = scheduler.openSession(2);
+        final List<String> started = Collections.synchronizedList(new ArrayList<String>());
+        final Semaphore finish = new Semaphore(0);
+
+        ExecutorCompletionService<Void> firstTasks = new ExecutorCompletionService<Void>(first);
+        for (int i = 0; i < 4; i++) {
+            firstTasks.submit(createTransferTask("first", started, finish));
+        }
+        ExecutorCompletionService<Void> secondTasks = new ExecutorCompletionService<Void>(second);
+        for (int i = 0; i < 2; i++) {
+            secondTasks.submit(createTransferTask("second", started, finish));
+        }
+
+        // the scheduler runs no more than its limit, and takes the waiting tasks from the sessions in turn
+        waitForStartedCount(started, 2);
+        assertEquals(2, scheduler.getActiveCount());
+        assertEquals(4, scheduler.getQueuedCount());
+        for (int i = 3; i <= 6; i++) {
+            finish.release();
+            waitForStartedCount(started, i);
+            assertTrue(scheduler.getActiveCount() <= 2);
+        }
+        finish.release(2);
+        assertEquals(Arrays.asList("first", "first", "second", "first", "second", "first"), started);
+
+        for (int i = 0; i < 4; i++) {
+            firstTasks.take().get();
+        }
+        for (int i = 0; i < 2; i++) {
+            secondTasks.take().get();
+        }
+        assertEquals(0, scheduler.getQueuedCount());
+
+        // closing a session drops its tasks which have not started
+        first.execute(new Runnable() {
+            @Override
+            public void run() {
+                finish.acquireUninterruptibly();
+            }
+        });
+        first.execute(new Runnable() {
+            @Override
+            public void run() {
+                finish.acquireUninterruptibly();
+            }
+        });
+        firstTasks.submit(createTransferTask("first", started, finish));
+        assertEquals(1, scheduler.getQueuedCount());
+        first.close();
+        assertEquals(0, scheduler.getQueuedCount());
+        finish.release(2);
+        for (int i = 0; i < 500 && scheduler.getActiveCount() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, scheduler.getActiveCount());
+        assertEquals(6, started.size());
+
+        try {
+            first.execute(new FutureTask<Void>(createTransferTask("first", started, finish)));
+            fail();
+        }
+        catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        CloudBlobClient blobClient = new CloudBlobClient(new URI("http://myaccount.blob.core.windows.net"));
+        assertSame(TransferScheduler.getDefault(), blobClient.getTransferScheduler());
+        blobClient.setTransferScheduler(scheduler);
+        assertSame(scheduler, blobClient.getTransferScheduler());
+    }
+
+    private static Callable<Void> createTransferTask(final String name, final List<String> started,
+            final Semaphore finish) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() {
+                started.add(name);
+                finish.acquireUninterruptibly();
+                return null;
+            }
+        };
+    }
+
+    private static void waitForStartedCount(List<String> started, int count) throws InterruptedException {
+        for (int i = 0; i < 500 && started.size() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, started.size());
+    }
+
+    @Test
+    public void testPooledHttpTransportSlots() throws IOException {
+        final PooledHttpTransport transport = new PooledHttpTransport(2);
+        transport.setAcquireTimeoutInMs(0);
+        final URI endpoint = URI.create("http://127.0.0.1:10000/account");
+        final FakeConnection first = new FakeConnection(new URL("http://127.0.0.1:10000/account/a"),
+                HttpURLConnection.HTTP_OK, null);
+        final FakeConnection second = new FakeConnection(new URL("http://127.0.0.1:10000/account/b"),
+                HttpURLConnection.HTTP_OK, new byte[100]);
+
+        transport.beforeSend(first, null);
+        transport.beforeSend(second, null);
+        assertEquals(2, transport.getInUseConnectionCount(endpoint));
+
+        // the slots are per endpoint, so another port has its own
+        final FakeConnection other = new FakeConnection(new URL("http://127.0.0.1:10001/account/a"),
+                HttpURLConnection.HTTP_OK, null);
+        transport.beforeSend(other, null);
+        transport.afterResponse(other, true /* responseReceived */, true /* responseConsumed */);
+
+        try {
+            transport.beforeSend(new FakeConnection(new URL("http://127.0.0.1:10000/account/c"),
+                    HttpURLConnection.HTTP_OK, null), null);
+            fail();
+        }
+        catch (IOException ex) {
+            assertEquals(String.format(SR.CONNECTION_POOL_EXHAUSTED, "http://127.0.0.1:10000", 0, 2), ex.getMessage());
+        }
+
+        transport.afterResponse(first, true /* responseReceived */, true /* responseConsumed */);
+        assertEquals(1, transport.getInUseConnectionCount(endpoint));
+        assertFalse(first.disconnected);
+
+        // a request which failed before its response arrived is disconnected rather than drained
+        transport.afterResponse(second, false /* responseReceived */, false /* responseConsumed */);
+        assertEquals(0, transport.getInUseConnectionCount(endpoint));
+        assertTrue(second.disconnected);
+        assertEquals(100, second.body.available());
+        assertFalse(second.body.closed);
+    }
+
+    @Test
+    public void testPooledHttpTransportReleaseResponse() throws IOException {
+        final URL url = new URL("http://127.0.0.1:10000/account/a");
+
+        // an error body is drained and closed, and the socket left to the keep-alive cache
+        FakeConnection connection = new FakeConnection(url, HttpURLConnection.HTTP_NOT_FOUND, new byte[100]);
+        assertTrue(PooledHttpTransport.releaseResponse(connection));
+        assertEquals(0, connection.body.available());
+        assertTrue(connection.body.closed);
+        assertFalse(connection.disconnected);
+
+        // an error without a body, such as the response to a HEAD request, needs nothing
+        connection = new FakeConnection(url, HttpURLConnection.HTTP_PRECON_FAILED, null);
+        assertTrue(PooledHttpTransport.releaseResponse(connection));
+        assertFalse(connection.disconnected);
+
+        // the unread body of a successful response is closed
+        connection = new FakeConnection(url, HttpURLConnection.HTTP_OK, new byte[100]);
+        assertTrue(PooledHttpTransport.releaseResponse(connection));
+        assertTrue(connection.body.closed);
+        assertFalse(connection.disconnected);
+
+        // a large body is closed unread, and the JDK decides whether to keep the socket
+        connection = new FakeConnection(url, HttpURLConnection.HTTP_OK, new byte[1024 * 1024]);
+        assertTrue(PooledHttpTransport.releaseResponse(connection));
+        assertTrue(connection.body.available() > 0);
+        assertTrue(connection.body.closed);
+        assertFalse(connection.disconnected);
+
+        // a response which cannot be read is disconnected
+        connection = new FakeConnection(url, HttpURLConnection.HTTP_OK, new byte[100]);
+        connection.failReads = true;
+        assertFalse(PooledHttpTransport.releaseResponse(connection));
+        assertTrue(connection.disconnected);
+    }
+
+    @Test
+    public void testPooledHttpTransportSocketOptions() throws IOException {
+        final PooledHttpTransport transport = new PooledHttpTransport();
+        transport.setTcpNoDelay(true);
+        transport.setReceiveBufferSize(256 * 1024);
+
+        final SSLSocketFactory baseFactory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+        final SSLSocketFactory factory = transport.getSocketFactory(baseFactory);
+
+        // the same factory is used until the options change, so that kept-alive connections are reused
+        assertSame(factory, transport.getSocketFactory(baseFactory));
+        assertSame(factory, transport.getSocketFactory(factory));
+
+        final Socket socket = factory.createSocket();
+        try {
+            assertTrue(socket.getTcpNoDelay());
+            assertTrue(socket.getReceiveBufferSize() > 0);
+        }
+        finally {
+            socket.close();
+        }
+
+        transport.setTcpNoDelay(false);
+        assertNotSame(factory, transport.getSocketFactory(baseFactory));
+    }
+
+    /**
+     * A connection which returns a canned response, and records whether it was disconnected.
+     */
+    private static class FakeConnection extends HttpURLConnection {
+        private final int statusCode;
+        private final FakeBody body;
+        private boolean failReads;
+        private boolean disconnected;
+
+        FakeConnection(final URL url, final int statusCode, final byte[] body) {
+            super(url);
+            this.statusCode = statusCode;
+            this.body = body == null ? null : new FakeBody(body);
+        }
+
+        @Override
+        public int getResponseCode() {
+            return this.statusCode;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (this.statusCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                throw new IOException();
+            }
+
+            return this.body;
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return this.statusCode >= HttpURLConnection.HTTP_BAD_REQUEST ? this.body : null;
+        }
+
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public void disconnect() {
+            this.disconnected = true;
+        }
+
+        @Override
+        public boolean usingProxy() {
+            return false;
+        }
+
+        private class FakeBody extends InputStream {
+            private final ByteArrayInputStream data;
+            private boolean closed;
+
+            FakeBody(final byte[] body) {
+                this.data = new ByteArrayInputStream(body);
+            }
+
+            @Override
+            public int read() throws IOException {
+                final byte[] b = new byte[1];
+                return this.read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                if (FakeConnection.this.failReads) {
+                    throw new IOException();
+                }
+
+                return this.data.read(b, off, len);
+            }
+
+            @Override
+            public int available() {
+                return this.data.available();
+            }
+
+            @Override
+            public void close() {
+                this.closed = true;
+            }
+        }
+    }
+
     @Test
     public void testNullRetryPolicy() throws URISyntaxException, StorageException {
         CloudBlobClient blobClient = TestHelper.createCloudBlobClient();
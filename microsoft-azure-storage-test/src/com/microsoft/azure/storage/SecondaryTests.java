@@ -17,9 +17,11 @@ package com.microsoft.azure.storage;
 import static org.junit.Assert.*;
 
 import java.net.HttpURLConnection;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
@@ -35,6 +37,7 @@ import com.microsoft.azure.storage.blob.CloudBlobContainer;
 import com.microsoft.azure.storage.blob.CloudBlockBlob;
 import com.microsoft.azure.storage.blob.CloudPageBlob;
 import com.microsoft.azure.storage.blob.DeleteSnapshotsOption;
+import com.microsoft.azure.storage.core.SR;
 import com.microsoft.azure.storage.queue.CloudQueue;
 import com.microsoft.azure.storage.queue.CloudQueueClient;
 import com.microsoft.azure.storage.queue.QueueRequestOptions;
@@ -86,6 +89,155 @@ public class SecondaryTests {
         }
     }
 
+    @Test
+    public void testHedgedReadPolicyDelay() {
+        HedgedReadPolicy policy = new HedgedReadPolicy(0.9, 10, 500);
+        assertEquals(500, policy.getHedgeDelayInMs());
+
+        // the maximum delay is used until enough latencies have been observed
+        for (int i = 1; i < 32; i++) {
+            policy.recordPrimaryLatency(i);
+        }
+        assertEquals(500, policy.getHedgeDelayInMs());
+
+        policy.recordPrimaryLatency(32);
+        assertEquals(29, policy.getHedgeDelayInMs());
+
+        // the delay is bounded by the minimum and maximum delays
+        for (int i = 0; i < 1024; i++) {
+            policy.recordPrimaryLatency(1);
+        }
+        assertEquals(10, policy.getHedgeDelayInMs());
+
+        for (int i = 0; i < 1024; i++) {
+            policy.recordPrimaryLatency(10000);
+        }
+        assertEquals(500, policy.getHedgeDelayInMs());
+
+        try {
+            new HedgedReadPolicy(1, 10, 500);
+            fail();
+        }
+        catch (IllegalArgumentException ex) {
+            assertEquals(String.format(SR.ARGUMENT_OUT_OF_RANGE_ERROR, "percentile", 1.0), ex.getMessage());
+        }
+    }
+
+    @Test
+    public void testLocationRouter() throws URISyntaxException, InterruptedException {
+        final LocationMode primaryFirst = LocationMode.PRIMARY_THEN_SECONDARY;
+        final LocationMode secondaryFirst = LocationMode.SECONDARY_THEN_PRIMARY;
+        LocationRouter router = new LocationRouter(3, 60000);
+        assertEquals(StorageLocation.PRIMARY, router.selectLocation(primaryFirst, StorageLocation.PRIMARY, false));
+        assertEquals(StorageLocation.SECONDARY,
+                router.selectLocation(secondaryFirst, StorageLocation.SECONDARY, false));
+
+        // reads go to the primary location once it has been noticeably faster, but retries follow the retry policy
+        for (int i = 0; i < 5; i++) {
+            router.recordResponse(StorageLocation.PRIMARY, HttpURLConnection.HTTP_NOT_FOUND, 10);
+            router.recordResponse(StorageLocation.SECONDARY, HttpURLConnection.HTTP_OK, 100);
+        }
+        assertEquals(10, router.getLatencyInMs(StorageLocation.PRIMARY), 0.001);
+        assertEquals(100, router.getLatencyInMs(StorageLocation.SECONDARY), 0.001);
+        assertEquals(StorageLocation.PRIMARY, router.selectLocation(secondaryFirst, StorageLocation.SECONDARY, false));
+        assertEquals(StorageLocation.SECONDARY, router.selectLocation(secondaryFirst, StorageLocation.SECONDARY, true));
+
+        // the first attempt of a read which only accepts the secondary location for retries stays on the primary
+        for (int i = 0; i < 5; i++) {
+            router.recordResponse(StorageLocation.PRIMARY, HttpURLConnection.HTTP_OK, 1000);
+        }
+        assertEquals(StorageLocation.PRIMARY, router.selectLocation(primaryFirst, StorageLocation.PRIMARY, false));
+        assertEquals(StorageLocation.SECONDARY,
+                router.selectLocation(secondaryFirst, StorageLocation.SECONDARY, false));
+
+        // consecutive failures open the circuit, which routes reads and retries to the other location
+        router.recordFailure(StorageLocation.SECONDARY);
+        router.recordResponse(StorageLocation.SECONDARY, HttpURLConnection.HTTP_INTERNAL_ERROR, 10);
+        assertFalse(router.isCircuitOpen(StorageLocation.SECONDARY));
+
+        // server busy throttles the account and is not counted against the location
+        router.recordResponse(StorageLocation.SECONDARY, HttpURLConnection.HTTP_UNAVAILABLE, 10);
+        assertFalse(router.isCircuitOpen(StorageLocation.SECONDARY));
+        router.recordFailure(StorageLocation.SECONDARY);
+        assertTrue(router.isCircuitOpen(StorageLocation.SECONDARY));
+        assertTrue(router.getFailureRate(StorageLocation.SECONDARY) > 0);
+        assertEquals(StorageLocation.PRIMARY, router.selectLocation(secondaryFirst, StorageLocation.SECONDARY, false));
+        assertEquals(StorageLocation.PRIMARY, router.selectLocation(primaryFirst, StorageLocation.SECONDARY, true));
+
+        // with both circuits open the location mode is followed
+        for (int i = 0; i < 3; i++) {
+            router.recordFailure(StorageLocation.PRIMARY);
+        }
+        assertEquals(StorageLocation.SECONDARY,
+                router.selectLocation(secondaryFirst, StorageLocation.SECONDARY, false));
+
+        // a success closes the circuit
+        router.recordResponse(StorageLocation.SECONDARY, HttpURLConnection.HTTP_OK, 10);
+        assertFalse(router.isCircuitOpen(StorageLocation.SECONDARY));
+        assertEquals(StorageLocation.SECONDARY,
+                router.selectLocation(secondaryFirst, StorageLocation.SECONDARY, false));
+
+        // an open circuit only moves the first attempt of a read if its location mode accepts either location
+        router = new LocationRouter(1, 60000);
+        router.recordFailure(StorageLocation.PRIMARY);
+        assertEquals(StorageLocation.PRIMARY, router.selectLocation(primaryFirst, StorageLocation.PRIMARY, false));
+        assertEquals(StorageLocation.SECONDARY, router.selectLocation(primaryFirst, StorageLocation.PRIMARY, true));
+
+        // once the open duration has elapsed a single trial read is let through
+        router = new LocationRouter(1, 200);
+        router.recordFailure(StorageLocation.SECONDARY);
+        assertEquals(StorageLocation.PRIMARY, router.selectLocation(secondaryFirst, StorageLocation.SECONDARY, false));
+        Thread.sleep(300);
+        assertEquals(StorageLocation.SECONDARY,
+                router.selectLocation(secondaryFirst, StorageLocation.SECONDARY, false));
+        assertEquals(StorageLocation.PRIMARY, router.selectLocation(secondaryFirst, StorageLocation.SECONDARY, false));
+        router.recordResponse(StorageLocation.SECONDARY, HttpURLConnection.HTTP_OK, 10);
+        assertEquals(StorageLocation.SECONDARY,
+                router.selectLocation(secondaryFirst, StorageLocation.SECONDARY, false));
+
+        CloudBlobClient client = new CloudBlobClient(new URI("http://myaccount.blob.core.windows.net"));
+        assertNull(client.getLocationRouter());
+        client.setLocationRouter(router);
+        assertSame(router, client.getLocationRouter());
+    }
+
+    @Test
+    public void testHedgedReads() throws URISyntaxException, StorageException {
+        CloudBlobClient client = TestHelper.createCloudBlobClient();
+        HedgedReadPolicy policy = new HedgedReadPolicy(0.5, 0, 0);
+        client.setHedgedReadPolicy(policy);
+        assertSame(policy, client.getHedgedReadPolicy());
+
+        CloudBlobContainer container = client.getContainerReference("hedgedreads"
+                + UUID.randomUUID().toString().replace("-", ""));
+        BlobRequestOptions options = new BlobRequestOptions();
+
+        // reads are not hedged unless the location mode allows the secondary location to be used
+        options.setLocationMode(LocationMode.PRIMARY_ONLY);
+        assertFalse(container.exists(null, options, null));
+        assertEquals(0, policy.getHedgedCount());
+
+        // with no hedge delay every read is hedged, and either location may serve it
+        OperationContext context = new OperationContext();
+        options.setLocationMode(LocationMode.PRIMARY_THEN_SECONDARY);
+        assertFalse(container.exists(null, options, context));
+        assertEquals(1, policy.getHedgedCount());
+
+        StorageLocation expectedLocation = policy.getSecondaryWinCount() == 1 ? StorageLocation.SECONDARY
+                : StorageLocation.PRIMARY;
+        assertEquals(1, context.getRequestResults().size());
+        assertEquals(expectedLocation, context.getRequestResults().get(0).getTargetLocation());
+
+        // writes are never hedged
+        try {
+            container.create(options, null);
+            assertEquals(1, policy.getHedgedCount());
+        }
+        finally {
+            container.deleteIfExists();
+        }
+    }
+
     @Test
     public void testBlobIfExistsShouldNotHitSecondary() throws StorageException, URISyntaxException {
         CloudBlobContainer container = BlobTestHelper.getRandomContainerReference();
@@ -21,6 +21,7 @@ import java.net.URISyntaxException;
 import java.security.InvalidKeyException;
 import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
@@ -92,6 +93,45 @@ public class StorageAccountTests {
         assertEquals(expectedUri, cred.transformUri(testUri).toString());
     }
 
+    @Test
+    public void testStorageKeyConcurrentSigning() throws InvalidKeyException, InterruptedException {
+        final StorageKey key = new StorageKey(Base64.decode(accountKey));
+        final String expected = StorageKey.computeMacSha256(key, "string to sign");
+        final AtomicInteger mismatches = new AtomicInteger();
+
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 1000; j++) {
+                            if (!expected.equals(StorageKey.computeMacSha256(key, "string to sign"))) {
+                                mismatches.incrementAndGet();
+                            }
+                        }
+                    }
+                    catch (InvalidKeyException e) {
+                        mismatches.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, mismatches.get());
+
+        // rotating the key must change the signature, whichever overload is used
+        key.setKey(Base64.encode(UUID.randomUUID().toString().getBytes()));
+        assertFalse(expected.equals(StorageKey.computeMacSha256(key, "string to sign")));
+        key.setKey(Base64.decode(accountKey));
+        assertEquals(expected, StorageKey.computeMacSha256(key, "string to sign"));
+    }
+
     @Test
     public void testStorageCredentialsEmptyKeyValue() throws URISyntaxException, InvalidKeyException {
         String emptyKeyValueAsString = "";
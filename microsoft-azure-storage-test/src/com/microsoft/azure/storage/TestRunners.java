@@ -15,6 +15,7 @@ import com.microsoft.azure.storage.blob.CloudBlockBlobTests;
 import com.microsoft.azure.storage.blob.CloudPageBlobTests;
 import com.microsoft.azure.storage.blob.LeaseTests;
 import com.microsoft.azure.storage.blob.SasTests;
+import com.microsoft.azure.storage.core.CanonicalizerTests;
 import com.microsoft.azure.storage.file.CloudFileClientTests;
 import com.microsoft.azure.storage.file.CloudFileDirectoryTests;
 import com.microsoft.azure.storage.file.CloudFileShareTests;
@@ -85,8 +86,8 @@ public class TestRunners {
 
     // Test suites
     @RunWith(Suite.class)
-    @SuiteClasses({ EventFiringTests.class, GenericTests.class, LoggerTests.class, SecondaryTests.class,
-            ServicePropertiesTests.class, StorageAccountTests.class, StorageUriTests.class })
+    @SuiteClasses({ CanonicalizerTests.class, EventFiringTests.class, GenericTests.class, LoggerTests.class,
+            SecondaryTests.class, ServicePropertiesTests.class, StorageAccountTests.class, StorageUriTests.class })
     public static class CoreTestSuite {
     }
 
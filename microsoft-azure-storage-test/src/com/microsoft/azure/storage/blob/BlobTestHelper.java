@@ -16,6 +16,7 @@ package com.microsoft.azure.storage.blob;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
@@ -28,6 +29,8 @@ import java.util.UUID;
 import junit.framework.Assert;
 
 import com.microsoft.azure.storage.OperationContext;
+import com.microsoft.azure.storage.SendingRequestEvent;
+import com.microsoft.azure.storage.StorageEvent;
 import com.microsoft.azure.storage.StorageException;
 import com.microsoft.azure.storage.TestHelper;
 
@@ -276,6 +279,25 @@ public class BlobTestHelper extends TestHelper {
         return blocks;
     }
 
+    /**
+     * Records the query of each Put Block request sent with the operation context.
+     */
+    public static List<String> recordBlockRequests(OperationContext opContext) {
+        final List<String> blockRequests = new ArrayList<String>();
+        opContext.getSendingRequestEventHandler().addListener(new StorageEvent<SendingRequestEvent>() {
+            @Override
+            public void eventOccurred(SendingRequestEvent eventArg) {
+                final String query = ((HttpURLConnection) eventArg.getConnectionObject()).getURL().getQuery();
+                if (query.contains("blockid=")) {
+                    synchronized (blockRequests) {
+                        blockRequests.add(query);
+                    }
+                }
+            }
+        });
+        return blockRequests;
+    }
+
     public static void setBlobProperties(CloudBlob blob) {
         blob.getProperties().setCacheControl("no-transform");
         blob.getProperties().setContentDisposition("attachment");
@@ -22,10 +22,15 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
@@ -35,6 +40,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.Assert;
 
@@ -53,10 +62,13 @@ import com.microsoft.azure.storage.StorageCredentialsAnonymous;
 import com.microsoft.azure.storage.StorageCredentialsSharedAccessSignature;
 import com.microsoft.azure.storage.StorageEvent;
 import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.TestHelper;
 import com.microsoft.azure.storage.TestRunners.CloudTests;
 import com.microsoft.azure.storage.TestRunners.DevFabricTests;
 import com.microsoft.azure.storage.TestRunners.DevStoreTests;
 import com.microsoft.azure.storage.TestRunners.SlowTests;
+import com.microsoft.azure.storage.core.Base64;
+import com.microsoft.azure.storage.core.SR;
 import com.microsoft.azure.storage.core.Utility;
 
 /**
@@ -446,6 +458,70 @@ public class CloudBlockBlobTests {
         assertEquals(length, blockBlobRef.getProperties().getLength());
     }
 
+    @Test
+    @Category({ DevFabricTests.class, DevStoreTests.class })
+    public void testBlobAsyncOperations() throws URISyntaxException, StorageException, IOException,
+            InterruptedException, ExecutionException {
+        int length = 1024;
+        byte[] buffer = BlobTestHelper.getRandomBuffer(length);
+        String blobName = BlobTestHelper.generateRandomBlobNameWithPrefix("blob1");
+
+        CloudBlockBlob blob = this.container.getBlockBlobReference(blobName);
+        assertFalse(blob.existsAsync().get());
+
+        blob.upload(new ByteArrayInputStream(buffer), length);
+        assertTrue(blob.existsAsync().get());
+
+        CloudBlockBlob blob2 = this.container.getBlockBlobReference(blobName);
+        blob2.downloadAttributesAsync().get();
+        assertEquals(length, blob2.getProperties().getLength());
+
+        byte[] downloaded = new byte[length];
+        assertEquals(length, blob2.downloadToByteArrayAsync(downloaded, 0).get().intValue());
+        assertArrayEquals(buffer, downloaded);
+
+        blob2.deleteAsync().get();
+        assertFalse(blob.exists());
+
+        // errors surface as the cause of the ExecutionException
+        try {
+            blob2.deleteAsync().get();
+            fail("Deleting a missing blob should fail.");
+        }
+        catch (ExecutionException e) {
+            assertEquals(HttpURLConnection.HTTP_NOT_FOUND, ((StorageException) e.getCause()).getHttpStatusCode());
+        }
+
+        // attempts run on the executor of the client, and a rejection fails the operation
+        final AtomicInteger executed = new AtomicInteger();
+        blob2.getServiceClient().setAsyncExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                executed.incrementAndGet();
+                command.run();
+            }
+        });
+        assertFalse(blob2.existsAsync().get());
+        assertEquals(1, executed.get());
+
+        blob2.getServiceClient().setAsyncExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+        try {
+            blob2.existsAsync().get();
+            fail("An operation rejected by the executor should fail.");
+        }
+        catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        finally {
+            blob2.getServiceClient().setAsyncExecutor(null);
+        }
+    }
+
     @Test
     @Category({ DevFabricTests.class, DevStoreTests.class })
     public void testDownloadBlockList() throws URISyntaxException, StorageException, IOException {
@@ -919,6 +995,192 @@ public class CloudBlockBlobTests {
         blobRef.delete();
     }
 
+    @Test
+    @Category({ DevFabricTests.class, DevStoreTests.class })
+    public void testBlobInputStreamReadAhead() throws URISyntaxException, StorageException, IOException {
+        String blobName = BlobTestHelper.generateRandomBlobNameWithPrefix("testblob");
+        final CloudBlockBlob blobRef = this.container.getBlockBlobReference(blobName);
+        blobRef.setStreamMinimumReadSizeInBytes(1024 * 1024);
+
+        final byte[] buffer = BlobTestHelper.getRandomBuffer(5 * 1024 * 1024 + 100);
+        blobRef.upload(new ByteArrayInputStream(buffer), buffer.length);
+
+        final BlobRequestOptions options = new BlobRequestOptions();
+        options.setConcurrentRequestCount(3);
+
+        // Ranges are only read ahead of a sequential reader up to the end of the blob
+        OperationContext opContext = new OperationContext();
+        BlobInputStream blobStream = blobRef.openInputStream(null, options, opContext);
+        final ByteArrayOutputStream readStream = new ByteArrayOutputStream();
+        final byte[] readBuffer = new byte[100 * 1024];
+        int count;
+        while ((count = blobStream.read(readBuffer)) >= 0) {
+            readStream.write(readBuffer, 0, count);
+        }
+
+        blobStream.close();
+        assertArrayEquals(buffer, readStream.toByteArray());
+        assertEquals(7, opContext.getRequestResults().size());
+
+        // A seek abandons the ranges read ahead
+        blobStream = blobRef.openInputStream(null, options, null);
+        assertEquals(readBuffer.length, blobStream.read(readBuffer));
+        assertEquals(3 * 1024 * 1024, blobStream.skip(3 * 1024 * 1024));
+        assertEquals(readBuffer.length, blobStream.read(readBuffer));
+        blobStream.close();
+
+        final byte[] expected = new byte[readBuffer.length];
+        System.arraycopy(buffer, 3 * 1024 * 1024 + readBuffer.length, expected, 0, expected.length);
+        assertArrayEquals(expected, readBuffer);
+    }
+
+    @Test
+    @Category({ DevFabricTests.class, DevStoreTests.class })
+    public void testBlobReadChannel() throws URISyntaxException, StorageException, IOException, InterruptedException {
+        String blobName = BlobTestHelper.generateRandomBlobNameWithPrefix("testblob");
+        final CloudBlockBlob blobRef = this.container.getBlockBlobReference(blobName);
+        blobRef.setStreamMinimumReadSizeInBytes(64 * 1024);
+
+        final byte[] buffer = BlobTestHelper.getRandomBuffer(8 * 64 * 1024 + 100);
+        blobRef.upload(new ByteArrayInputStream(buffer), buffer.length);
+
+        final OperationContext opContext = new OperationContext();
+        final BlobReadChannel channel = blobRef.openReadChannel(null, null, opContext);
+
+        // Threads reading the same blocks at once share their downloads
+        final ArrayList<Thread> readers = new ArrayList<Thread>();
+        final byte[][] results = new byte[4][];
+        for (int i = 0; i < results.length; i++) {
+            final int reader = i;
+            readers.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        final ByteBuffer data = ByteBuffer.allocate(2 * 64 * 1024);
+                        channel.read(data, 64 * 1024 + 10);
+                        results[reader] = data.array();
+                    }
+                    catch (IOException e) {
+                        // the result stays null
+                    }
+                }
+            });
+            readers.get(i).start();
+        }
+
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        final byte[] expected = new byte[2 * 64 * 1024];
+        System.arraycopy(buffer, 64 * 1024 + 10, expected, 0, expected.length);
+        for (byte[] result : results) {
+            assertArrayEquals(expected, result);
+        }
+
+        // Attributes, then blocks 1 to 3
+        assertEquals(4, opContext.getRequestResults().size());
+
+        // The channel is pinned to the version of the blob it was opened on
+        blobRef.uploadMetadata();
+        try {
+            channel.read(ByteBuffer.allocate(10), 0);
+            fail();
+        }
+        catch (IOException ex) {
+            assertEquals(HttpURLConnection.HTTP_PRECON_FAILED, ((StorageException) ex.getCause()).getHttpStatusCode());
+        }
+
+        channel.close();
+
+        // A channel which caches a single block downloads a block again once another one was read
+        final OperationContext smallCacheContext = new OperationContext();
+        final BlobReadChannel smallCacheChannel = blobRef.openReadChannel(1, null, null, smallCacheContext);
+        smallCacheChannel.read(ByteBuffer.allocate(10), 0);
+        smallCacheChannel.read(ByteBuffer.allocate(10), 64 * 1024);
+        smallCacheChannel.read(ByteBuffer.allocate(10), 10);
+        assertEquals(4, smallCacheContext.getRequestResults().size());
+        smallCacheChannel.close();
+    }
+
+    @Test
+    @Category({ DevFabricTests.class, DevStoreTests.class })
+    public void testBlobContentCache() throws URISyntaxException, StorageException, IOException {
+        String blobName = BlobTestHelper.generateRandomBlobNameWithPrefix("testblob");
+        final CloudBlockBlob blobRef = this.container.getBlockBlobReference(blobName);
+        final byte[] buffer = BlobTestHelper.getRandomBuffer(3 * 1024 + 100);
+        blobRef.upload(new ByteArrayInputStream(buffer), buffer.length);
+
+        final File cacheDirectory = File.createTempFile("cache", "");
+        cacheDirectory.delete();
+        final CloudBlobClient client = TestHelper.createCloudBlobClient();
+        client.setContentCache(new BlobContentCache(cacheDirectory.getPath(), 8 * 1024));
+        final CloudBlockBlob cachedBlob = client.getContainerReference(this.container.getName()).getBlockBlobReference(
+                blobName);
+
+        try {
+            ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+            cachedBlob.download(outStream);
+            assertArrayEquals(buffer, outStream.toByteArray());
+            assertEquals(buffer.length, client.getContentCache().getSizeInBytes());
+
+            // The blob has not changed, so its content is read from the cache
+            OperationContext opContext = new OperationContext();
+            outStream = new ByteArrayOutputStream();
+            cachedBlob.download(outStream, null, null, opContext);
+            assertArrayEquals(buffer, outStream.toByteArray());
+            assertEquals(1, opContext.getRequestResults().size());
+            assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, opContext.getRequestResults().get(0).getStatusCode());
+
+            // A cache on the same directory holds the blobs cached before
+            client.setContentCache(new BlobContentCache(cacheDirectory.getPath(), 8 * 1024));
+            assertEquals(buffer.length, client.getContentCache().getSizeInBytes());
+
+            final BlobInputStream inStream = cachedBlob.openInputStream();
+            final byte[] streamed = new byte[buffer.length];
+            assertEquals(buffer.length, inStream.read(streamed));
+            inStream.close();
+            assertArrayEquals(buffer, streamed);
+
+            // A changed blob is downloaded again, and the version replaced stays readable by those who opened it
+            final RandomAccessFile replacedContent = client.getContentCache().open(
+                    BlobContentCache.getKey(cachedBlob), cachedBlob.getProperties().getEtag());
+            final byte[] newBuffer = BlobTestHelper.getRandomBuffer(2 * 1024);
+            blobRef.upload(new ByteArrayInputStream(newBuffer), newBuffer.length);
+            outStream = new ByteArrayOutputStream();
+            cachedBlob.download(outStream);
+            assertArrayEquals(newBuffer, outStream.toByteArray());
+            assertEquals(newBuffer.length, client.getContentCache().getSizeInBytes());
+
+            final byte[] replaced = new byte[buffer.length];
+            replacedContent.readFully(replaced);
+            replacedContent.close();
+            assertArrayEquals(buffer, replaced);
+
+            // The least recently used blob is removed once the cache is full
+            final CloudBlockBlob otherBlob = client.getContainerReference(this.container.getName())
+                    .getBlockBlobReference(BlobTestHelper.generateRandomBlobNameWithPrefix("testblob"));
+            final byte[] otherBuffer = BlobTestHelper.getRandomBuffer(7 * 1024);
+            otherBlob.upload(new ByteArrayInputStream(otherBuffer), otherBuffer.length);
+            otherBlob.download(new ByteArrayOutputStream());
+            assertEquals(otherBuffer.length, client.getContentCache().getSizeInBytes());
+
+            // A blob larger than the cache is streamed to the caller without being cached
+            final CloudBlockBlob largeBlob = client.getContainerReference(this.container.getName())
+                    .getBlockBlobReference(BlobTestHelper.generateRandomBlobNameWithPrefix("testblob"));
+            final byte[] largeBuffer = BlobTestHelper.getRandomBuffer(9 * 1024);
+            largeBlob.upload(new ByteArrayInputStream(largeBuffer), largeBuffer.length);
+            outStream = new ByteArrayOutputStream();
+            largeBlob.download(outStream);
+            assertArrayEquals(largeBuffer, outStream.toByteArray());
+            assertEquals(otherBuffer.length, client.getContentCache().getSizeInBytes());
+        }
+        finally {
+            client.getContentCache().clear();
+            cacheDirectory.delete();
+        }
+    }
+
     @Test
     public void testBlobOutputStream() throws URISyntaxException, StorageException, IOException {
         int blobLengthToUse = 8 * 512;
@@ -1000,6 +1262,303 @@ public class CloudBlockBlobTests {
         //this.doUploadDownloadFileTest(blob, 11 * 1024 * 1024);
     }
 
+    @Test
+    @Category({ DevFabricTests.class, DevStoreTests.class })
+    public void testUploadFromFileInParallel() throws IOException, StorageException, URISyntaxException {
+        String blobName = BlobTestHelper.generateRandomBlobNameWithPrefix("testblob");
+        final CloudBlockBlob blob = this.container.getBlockBlobReference(blobName);
+        blob.setStreamWriteSizeInBytes(512 * 1024);
+        blob.getServiceClient().getDefaultRequestOptions().setSingleBlobPutThresholdInBytes(1024 * 1024);
+        blob.getServiceClient().getDefaultRequestOptions().setConcurrentRequestCount(4);
+        blob.getServiceClient().getDefaultRequestOptions().setStoreBlobContentMD5(true);
+
+        // 5 MB and a partial block of 100 bytes, uploaded as 11 blocks
+        final int fileSize = 5 * 1024 * 1024 + 100;
+        this.doUploadDownloadFileTest(blob, fileSize);
+
+        assertEquals(11, blob.downloadBlockList().size());
+        blob.downloadAttributes();
+        assertNotNull(blob.getProperties().getContentMD5());
+    }
+
+    @Test
+    @Category({ DevFabricTests.class, DevStoreTests.class })
+    public void testResumableUpload() throws IOException, StorageException, URISyntaxException {
+        String blobName = BlobTestHelper.generateRandomBlobNameWithPrefix("testblob");
+        final CloudBlockBlob blob = this.container.getBlockBlobReference(blobName);
+        blob.setStreamWriteSizeInBytes(512 * 1024);
+
+        final byte[] buffer = BlobTestHelper.getRandomBuffer(5 * 512 * 1024 + 100);
+        final File journalFile = File.createTempFile("journal", ".tmp");
+        final BlockUploadJournal journal = new BlockUploadJournal(journalFile.getAbsolutePath());
+
+        try {
+            // The source fails after three blocks, so the upload stops before committing
+            final ByteArrayInputStream failingStream = new ByteArrayInputStream(buffer, 0, 3 * 512 * 1024) {
+                @Override
+                public synchronized int read(byte[] b, int off, int len) {
+                    final int count = super.read(b, off, len);
+                    if (count == -1) {
+                        throw new IllegalStateException();
+                    }
+                    return count;
+                }
+            };
+
+            try {
+                blob.upload(failingStream, buffer.length, journal, null, null, null);
+                fail();
+            }
+            catch (IllegalStateException e) {
+            }
+
+            assertTrue(journalFile.exists());
+            assertFalse(blob.exists());
+
+            // Resuming the upload only sends the blocks which were not uploaded
+            final OperationContext opContext = new OperationContext();
+            final List<String> blockRequests = BlobTestHelper.recordBlockRequests(opContext);
+
+            blob.upload(new ByteArrayInputStream(buffer), buffer.length, journal, null, null, opContext);
+            assertEquals(3, blockRequests.size());
+            assertFalse(journalFile.exists());
+
+            final ByteArrayOutputStream downloaded = new ByteArrayOutputStream();
+            blob.download(downloaded);
+            TestHelper.assertStreamsAreEqual(new ByteArrayInputStream(buffer),
+                    new ByteArrayInputStream(downloaded.toByteArray()));
+        }
+        finally {
+            journalFile.delete();
+        }
+    }
+
+    @Test
+    @Category({ DevFabricTests.class, DevStoreTests.class })
+    public void testSyncFromFile() throws IOException, StorageException, URISyntaxException {
+        String blobName = BlobTestHelper.generateRandomBlobNameWithPrefix("testblob");
+        final CloudBlockBlob blob = this.container.getBlockBlobReference(blobName);
+        blob.setStreamWriteSizeInBytes(512 * 1024);
+
+        final byte[] buffer = BlobTestHelper.getRandomBuffer(5 * 512 * 1024 + 100);
+        final File sourceFile = File.createTempFile("sourceFile", ".tmp");
+
+        try {
+            FileOutputStream fos = new FileOutputStream(sourceFile);
+            fos.write(buffer);
+            fos.close();
+
+            assertEquals(buffer.length, blob.syncFromFile(sourceFile.getAbsolutePath()));
+            assertEquals(0, blob.syncFromFile(sourceFile.getAbsolutePath()));
+
+            // Changing one block only uploads that block again
+            buffer[2 * 512 * 1024 + 1]++;
+            fos = new FileOutputStream(sourceFile);
+            fos.write(buffer);
+            fos.close();
+
+            final OperationContext opContext = new OperationContext();
+            final List<String> blockRequests = BlobTestHelper.recordBlockRequests(opContext);
+
+            assertEquals(512 * 1024, blob.syncFromFile(sourceFile.getAbsolutePath(), null, null, opContext));
+            assertEquals(1, blockRequests.size());
+            assertEquals(6, blob.downloadBlockList().size());
+
+            final ByteArrayOutputStream downloaded = new ByteArrayOutputStream();
+            blob.download(downloaded);
+            TestHelper.assertStreamsAreEqual(new ByteArrayInputStream(buffer),
+                    new ByteArrayInputStream(downloaded.toByteArray()));
+
+            // A blob holding uncommitted blocks with IDs of another length cannot be synchronized
+            final CloudBlockBlob otherBlob = this.container.getBlockBlobReference(BlobTestHelper
+                    .generateRandomBlobNameWithPrefix("testblob"));
+            otherBlob.uploadBlock(Base64.encode(new byte[] { 1, 2, 3 }), new ByteArrayInputStream(buffer), 512);
+            try {
+                otherBlob.syncFromFile(sourceFile.getAbsolutePath());
+                fail();
+            }
+            catch (IllegalStateException e) {
+                assertEquals(String.format(SR.SYNC_BLOCK_ID_LENGTH_CONFLICT, 24), e.getMessage());
+            }
+        }
+        finally {
+            sourceFile.delete();
+        }
+    }
+
+    @Test
+    @Category({ DevFabricTests.class, DevStoreTests.class })
+    public void testUploadWithAdaptiveBlockSize() throws IOException, StorageException, URISyntaxException {
+        String blobName = BlobTestHelper.generateRandomBlobNameWithPrefix("testblob");
+        final CloudBlockBlob blob = this.container.getBlockBlobReference(blobName);
+        blob.setStreamWriteSizeInBytes(64 * 1024);
+
+        final BlobRequestOptions options = new BlobRequestOptions();
+        options.setUseAdaptiveBlockSize(true);
+        options.setConcurrentRequestCount(2);
+        options.setSingleBlobPutThresholdInBytes(1 * Constants.MB);
+
+        // The block size is chosen from the length rather than the stream write size, one block per request
+        final byte[] buffer = BlobTestHelper.getRandomBuffer(5 * 1024 * 1024 + 100);
+        blob.upload(new ByteArrayInputStream(buffer), buffer.length, null, options, null);
+        assertEquals(2, blob.downloadBlockList().size());
+
+        final ByteArrayOutputStream downloaded = new ByteArrayOutputStream();
+        blob.download(downloaded);
+        TestHelper.assertStreamsAreEqual(new ByteArrayInputStream(buffer),
+                new ByteArrayInputStream(downloaded.toByteArray()));
+    }
+
+    @Test
+    @Category({ DevFabricTests.class, DevStoreTests.class })
+    public void testUploadDownloadByteBuffer() throws IOException, StorageException, URISyntaxException {
+        String blobName = BlobTestHelper.generateRandomBlobNameWithPrefix("testblob");
+        final CloudBlockBlob blob = this.container.getBlockBlobReference(blobName);
+
+        final BlobRequestOptions options = new BlobRequestOptions();
+        options.setConcurrentRequestCount(2);
+        options.setSingleBlobPutThresholdInBytes(1 * Constants.MB);
+
+        // Only the bytes between the position and the limit are uploaded, in blocks read straight from the buffer
+        final byte[] buffer = BlobTestHelper.getRandomBuffer(5 * 1024 * 1024 + 100);
+        final ByteBuffer source = ByteBuffer.allocateDirect(buffer.length + 20);
+        source.position(10);
+        source.put(buffer);
+        source.flip();
+        source.position(10);
+        blob.upload(source, null, options, null);
+        assertEquals(source.limit(), source.position());
+        assertEquals(2, blob.downloadBlockList().size());
+
+        final ByteBuffer destination = ByteBuffer.allocateDirect(buffer.length);
+        assertEquals(buffer.length, blob.downloadToByteBuffer(destination));
+        assertFalse(destination.hasRemaining());
+
+        final byte[] downloaded = new byte[buffer.length];
+        destination.flip();
+        destination.get(downloaded);
+        TestHelper.assertStreamsAreEqual(new ByteArrayInputStream(buffer), new ByteArrayInputStream(downloaded));
+
+        final ByteArrayOutputStream channelOutput = new ByteArrayOutputStream();
+        blob.download(Channels.newChannel(channelOutput));
+        TestHelper.assertStreamsAreEqual(new ByteArrayInputStream(buffer),
+                new ByteArrayInputStream(channelOutput.toByteArray()));
+    }
+
+    @Test
+    @Category({ DevFabricTests.class, DevStoreTests.class })
+    public void testUploadFromFileStoresContentMD5() throws IOException, StorageException, URISyntaxException,
+            NoSuchAlgorithmException {
+        String blobName = BlobTestHelper.generateRandomBlobNameWithPrefix("testblob");
+        final CloudBlockBlob blob = this.container.getBlockBlobReference(blobName);
+        blob.setStreamWriteSizeInBytes(512 * 1024);
+
+        final BlobRequestOptions options = new BlobRequestOptions();
+        options.setConcurrentRequestCount(3);
+        options.setSingleBlobPutThresholdInBytes(1 * Constants.MB);
+        options.setStoreBlobContentMD5(true);
+
+        final File sourceFile = File.createTempFile("sourceFile", ".tmp");
+        try {
+            final byte[] buffer = BlobTestHelper.getRandomBuffer(5 * 1024 * 1024 + 100);
+            final FileOutputStream fos = new FileOutputStream(sourceFile);
+            fos.write(buffer);
+            fos.close();
+
+            // The blocks are hashed in order while they upload, so the hash is that of the whole file
+            blob.uploadFromFile(sourceFile.getAbsolutePath(), null, options, null);
+            assertEquals(11, blob.downloadBlockList().size());
+
+            final String expectedMD5 = Base64.encode(MessageDigest.getInstance("MD5").digest(buffer));
+            blob.downloadAttributes();
+            assertEquals(expectedMD5, blob.getProperties().getContentMD5());
+        }
+        finally {
+            sourceFile.delete();
+        }
+    }
+
+    @Test
+    @Category({ DevFabricTests.class, DevStoreTests.class })
+    public void testBlockStagingSession() throws IOException, StorageException, URISyntaxException {
+        String blobName = BlobTestHelper.generateRandomBlobNameWithPrefix("testblob");
+        final CloudBlockBlob blob = this.container.getBlockBlobReference(blobName);
+        blob.setStreamWriteSizeInBytes(512 * 1024);
+
+        final byte[][] parts = new byte[3][];
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = BlobTestHelper.getRandomBuffer(1024 * 1024 + i * 100);
+            expected.write(parts[i]);
+        }
+
+        final BlockStagingSession session = blob.openStagingSession(parts.length);
+
+        // Write the parts out of order, the last one through a session created from the token
+        final BlobOutputStream lastPart = this.container.getBlockBlobReference(blobName)
+                .getStagingSession(session.getToken()).openPart(2);
+        lastPart.write(parts[2]);
+        lastPart.close();
+
+        try {
+            session.commit();
+            fail();
+        }
+        catch (IllegalStateException ex) {
+            assertEquals(String.format(SR.BLOCK_STAGING_PART_INCOMPLETE, 0), ex.getMessage());
+        }
+
+        for (int i = 1; i >= 0; i--) {
+            final BlobOutputStream part = session.openPart(i);
+            part.write(parts[i]);
+            part.close();
+        }
+
+        session.commit();
+        assertEquals(8, blob.downloadBlockList().size());
+
+        final ByteArrayOutputStream downloaded = new ByteArrayOutputStream();
+        blob.download(downloaded);
+        BlobTestHelper.assertStreamsAreEqual(new ByteArrayInputStream(expected.toByteArray()),
+                new ByteArrayInputStream(downloaded.toByteArray()));
+    }
+
+    @Test
+    @Category({ DevFabricTests.class, DevStoreTests.class })
+    public void testDownloadToFileInParallel() throws IOException, StorageException, URISyntaxException {
+        String blobName = BlobTestHelper.generateRandomBlobNameWithPrefix("testblob");
+        final CloudBlockBlob blob = this.container.getBlockBlobReference(blobName);
+        blob.setStreamMinimumReadSizeInBytes(1024 * 1024);
+
+        final byte[] buffer = BlobTestHelper.getRandomBuffer(5 * 1024 * 1024 + 100);
+        blob.upload(new ByteArrayInputStream(buffer), buffer.length);
+
+        final BlobRequestOptions options = new BlobRequestOptions();
+        options.setConcurrentRequestCount(3);
+
+        final File destinationFile = File.createTempFile("destinationFile", ".tmp");
+        try {
+            // The file is longer than the blob, so it is truncated to the length of the blob
+            final FileOutputStream fos = new FileOutputStream(destinationFile);
+            fos.write(new byte[6 * 1024 * 1024]);
+            fos.close();
+
+            final OperationContext opContext = new OperationContext();
+            blob.downloadToFile(destinationFile.getAbsolutePath(), null, options, opContext);
+            assertEquals(7, opContext.getRequestResults().size());
+
+            final byte[] readBuffer = new byte[buffer.length];
+            final FileInputStream fis = new FileInputStream(destinationFile);
+            assertEquals(buffer.length, destinationFile.length());
+            assertEquals(buffer.length, fis.read(readBuffer));
+            fis.close();
+            assertArrayEquals(buffer, readBuffer);
+        }
+        finally {
+            destinationFile.delete();
+        }
+    }
+
     private void doUploadDownloadFileTest(CloudBlockBlob blob, int fileSize) throws IOException, StorageException {
         File sourceFile = File.createTempFile("sourceFile", ".tmp");
         File destinationFile = new File(sourceFile.getParentFile(), "destinationFile.tmp");
@@ -856,6 +856,113 @@ public class CloudPageBlobTests {
         }
     }
 
+    @Test
+    public void testUploadSkippingEmptyPages() throws StorageException, URISyntaxException, IOException {
+        String blobName = BlobTestHelper.generateRandomBlobNameWithPrefix("testblob");
+        final CloudPageBlob blobRef = this.container.getPageBlobReference(blobName);
+
+        // Only pages 0 and 4-5 hold data, and page 5 holds a single non-zero byte
+        final byte[] buffer = new byte[16 * 512];
+        System.arraycopy(BlobTestHelper.getRandomBuffer(512), 0, buffer, 0, 512);
+        System.arraycopy(BlobTestHelper.getRandomBuffer(512), 0, buffer, 4 * 512, 512);
+        buffer[6 * 512 - 1] = 1;
+
+        final BlobRequestOptions options = new BlobRequestOptions();
+        options.setSkipEmptyPages(true);
+        blobRef.upload(new ByteArrayInputStream(buffer), buffer.length, null, options, null);
+
+        ArrayList<PageRange> actualPageRanges = blobRef.downloadPageRanges();
+        assertEquals(2, actualPageRanges.size());
+        assertEquals(0, actualPageRanges.get(0).getStartOffset());
+        assertEquals(512 - 1, actualPageRanges.get(0).getEndOffset());
+        assertEquals(4 * 512, actualPageRanges.get(1).getStartOffset());
+        assertEquals(6 * 512 - 1, actualPageRanges.get(1).getEndOffset());
+
+        final ByteArrayOutputStream downloaded = new ByteArrayOutputStream();
+        blobRef.download(downloaded);
+        assertArrayEquals(buffer, downloaded.toByteArray());
+    }
+
+    @Test
+    public void testDownloadToFileSkippingEmptyPages() throws StorageException, URISyntaxException, IOException {
+        String blobName = BlobTestHelper.generateRandomBlobNameWithPrefix("testblob");
+        final CloudPageBlob blobRef = this.container.getPageBlobReference(blobName);
+
+        // Only pages 2 and 9-10 hold data
+        final byte[] buffer = new byte[16 * 512];
+        System.arraycopy(BlobTestHelper.getRandomBuffer(512), 0, buffer, 2 * 512, 512);
+        System.arraycopy(BlobTestHelper.getRandomBuffer(2 * 512), 0, buffer, 9 * 512, 2 * 512);
+        blobRef.create(buffer.length);
+        blobRef.uploadPages(new ByteArrayInputStream(buffer, 2 * 512, 512), 2 * 512, 512);
+        blobRef.uploadPages(new ByteArrayInputStream(buffer, 9 * 512, 2 * 512), 9 * 512, 2 * 512);
+
+        final File destinationFile = File.createTempFile("destinationFile", ".tmp");
+        try {
+            // The file holds data where the blob is empty, which must not be left in the holes
+            final byte[] oldContent = BlobTestHelper.getRandomBuffer(32 * 512);
+            final FileOutputStream fos = new FileOutputStream(destinationFile);
+            fos.write(oldContent);
+            fos.close();
+
+            final BlobRequestOptions options = new BlobRequestOptions();
+            options.setSkipEmptyPages(true);
+            final OperationContext opContext = new OperationContext();
+            blobRef.downloadToFile(destinationFile.getAbsolutePath(), null, options, opContext);
+
+            // Attributes, page ranges, and one request per page range
+            assertEquals(4, opContext.getRequestResults().size());
+
+            final byte[] readBuffer = new byte[buffer.length];
+            final FileInputStream fis = new FileInputStream(destinationFile);
+            assertEquals(buffer.length, destinationFile.length());
+            assertEquals(buffer.length, fis.read(readBuffer));
+            fis.close();
+            assertArrayEquals(buffer, readBuffer);
+        }
+        finally {
+            destinationFile.delete();
+        }
+    }
+
+    @Test
+    public void testPageBlobWriter() throws StorageException, URISyntaxException, IOException {
+        String blobName = BlobTestHelper.generateRandomBlobNameWithPrefix("testblob");
+        final CloudPageBlob blobRef = this.container.getPageBlobReference(blobName);
+        final byte[] expected = BlobTestHelper.getRandomBuffer(16 * 512);
+        blobRef.uploadFromByteArray(expected, 0, expected.length);
+
+        final OperationContext opContext = new OperationContext();
+        final ArrayList<String> pageRequests = new ArrayList<String>();
+        opContext.getSendingRequestEventHandler().addListener(new StorageEvent<SendingRequestEvent>() {
+            @Override
+            public void eventOccurred(SendingRequestEvent eventArg) {
+                if (((HttpURLConnection) eventArg.getConnectionObject()).getRequestMethod().equals("PUT")) {
+                    pageRequests.add(eventArg.getConnectionObject().toString());
+                }
+            }
+        });
+
+        final PageBlobWriter writer = blobRef.openWriter(null, null, opContext);
+        assertEquals(expected.length, writer.getLength());
+
+        // Pages 1-3 are written in parts which overlap, and the unaligned edges keep the data around them
+        final byte[] data = BlobTestHelper.getRandomBuffer(3 * 512);
+        writer.write(512, data, 0, 1024);
+        writer.write(1024, data, 512, 1024);
+        System.arraycopy(data, 0, expected, 512, data.length);
+        final byte[] edge = BlobTestHelper.getRandomBuffer(700);
+        writer.write(10 * 512 + 100, edge);
+        System.arraycopy(edge, 0, expected, 10 * 512 + 100, edge.length);
+        assertEquals(0, pageRequests.size());
+
+        writer.close();
+        assertEquals(2, pageRequests.size());
+
+        final ByteArrayOutputStream downloaded = new ByteArrayOutputStream();
+        blobRef.download(downloaded);
+        assertArrayEquals(expected, downloaded.toByteArray());
+    }
+
     @Test
     public void testUploadDownloadBlobProperties() throws URISyntaxException, StorageException, IOException {
         final int length = 512;
@@ -0,0 +1,168 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.core;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.InvalidKeyException;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.microsoft.azure.storage.Constants;
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.StorageKey;
+import com.microsoft.azure.storage.TestRunners.CloudTests;
+import com.microsoft.azure.storage.TestRunners.DevFabricTests;
+import com.microsoft.azure.storage.TestRunners.DevStoreTests;
+
+@Category({ DevFabricTests.class, DevStoreTests.class, CloudTests.class })
+public class CanonicalizerTests {
+
+    private static final String DATE = "Fri, 26 Jun 2015 23:39:12 GMT";
+
+    @Test
+    public void testCanonicalizeBlobRequestWithHeadersAndQuery() throws IOException, StorageException,
+            InvalidKeyException {
+        final HttpURLConnection conn = createConnection(
+                "http://myaccount.blob.core.windows.net/mycontainer/myblob?comp=block&blockid=YWJj%3D%3D&timeout=30",
+                "PUT", "x-ms-date", DATE, "x-ms-version", "2014-02-14", "X-MS-Meta-Foo", "  bar\r\n baz",
+                "x-ms-meta-empty", "", "Content-MD5", "Q2hlY2sgSW50ZWdyaXR5IQ==", "Content-Type",
+                "application/octet-stream", "If-Match", "\"0x8D27E7F0A3B3C3F\"", "x-ms-range", "bytes=0-511");
+
+        assertCanonicalized(conn, 100, new BlobQueueFullCanonicalizer(), "PUT\n\n\n100\nQ2hlY2sgSW50ZWdyaXR5IQ==\n"
+                + "application/octet-stream\n\n\n\"0x8D27E7F0A3B3C3F\"\n\n\n\nx-ms-date:" + DATE
+                + "\nx-ms-meta-foo:bar baz\nx-ms-range:bytes=0-511\nx-ms-version:2014-02-14\n"
+                + "/myaccount/mycontainer/myblob\nblockid:YWJj==\ncomp:block\ntimeout:30");
+        assertCanonicalized(conn, 100, new BlobQueueLiteCanonicalizer(),
+                "PUT\nQ2hlY2sgSW50ZWdyaXR5IQ==\napplication/octet-stream\n\nx-ms-date:" + DATE
+                        + "\nx-ms-meta-foo:bar baz\nx-ms-range:bytes=0-511\nx-ms-version:2014-02-14\n"
+                        + "/myaccount/mycontainer/myblob?comp=block");
+        assertCanonicalized(conn, 100, new TableFullCanonicalizer(), "PUT\nQ2hlY2sgSW50ZWdyaXR5IQ==\n"
+                + "application/octet-stream\n" + DATE + "\n/myaccount/mycontainer/myblob?comp=block");
+        assertCanonicalized(conn, 100, new TableLiteCanonicalizer(), DATE
+                + "\n/myaccount/mycontainer/myblob?comp=block");
+    }
+
+    @Test
+    public void testCanonicalizeNonAsciiRequest() throws IOException, StorageException, InvalidKeyException {
+        final HttpURLConnection conn = createConnection(
+                "http://myaccount.blob.core.windows.net/mycontainer/café/😀.txt", "GET", "x-ms-date",
+                DATE, "x-ms-version", "2014-02-14", "x-ms-meta-name", "über 😀", "Range", "bytes=0-99");
+
+        assertCanonicalized(conn, -1, new BlobQueueFullCanonicalizer(), "GET\n\n\n\n\n\n\n\n\n\n\nbytes=0-99\n"
+                + "x-ms-date:" + DATE + "\nx-ms-meta-name:über 😀\nx-ms-version:2014-02-14\n"
+                + "/myaccount/mycontainer/café/😀.txt");
+        assertCanonicalized(conn, -1, new BlobQueueLiteCanonicalizer(), "GET\n\n\n\nx-ms-date:" + DATE
+                + "\nx-ms-meta-name:über 😀\nx-ms-version:2014-02-14\n"
+                + "/myaccount/mycontainer/café/😀.txt");
+        assertCanonicalized(conn, -1, new TableFullCanonicalizer(), "GET\n\n\n" + DATE
+                + "\n/myaccount/mycontainer/café/😀.txt");
+        assertCanonicalized(conn, -1, new TableLiteCanonicalizer(), DATE
+                + "\n/myaccount/mycontainer/café/😀.txt");
+    }
+
+    @Test
+    public void testCanonicalizeMixedCaseQuery() throws IOException, StorageException, InvalidKeyException {
+        final HttpURLConnection conn = createConnection(
+                "http://myaccount.blob.core.windows.net/?Comp=list&Prefix=a%20b&include=metadata&maxresults=5", "GET",
+                "x-ms-date", DATE, "x-ms-version", "2014-02-14", "x-ms-client-request-id", "abc");
+
+        assertCanonicalized(conn, -1, new BlobQueueFullCanonicalizer(), "GET\n\n\n\n\n\n\n\n\n\n\n\n"
+                + "x-ms-client-request-id:abc\nx-ms-date:" + DATE + "\nx-ms-version:2014-02-14\n/myaccount/\n"
+                + "comp:list\ninclude:metadata\nmaxresults:5\nprefix:a b");
+
+        // The comp parameter of the lite schemes is matched case sensitively
+        assertCanonicalized(conn, -1, new BlobQueueLiteCanonicalizer(), "GET\n\n\n\nx-ms-client-request-id:abc\n"
+                + "x-ms-date:" + DATE + "\nx-ms-version:2014-02-14\n/myaccount/");
+        assertCanonicalized(conn, -1, new TableFullCanonicalizer(), "GET\n\n\n" + DATE + "\n/myaccount/");
+        assertCanonicalized(conn, -1, new TableLiteCanonicalizer(), DATE + "\n/myaccount/");
+    }
+
+    @Test
+    public void testCanonicalizeTableRequest() throws IOException, StorageException, InvalidKeyException {
+        final HttpURLConnection conn = createConnection("http://myaccount.table.core.windows.net/"
+                + "mytable(PartitionKey='p',RowKey='r')?comp=acl&$filter=a%20eq%20b", "PUT", "x-ms-date", DATE,
+                "Content-Type", "application/json", "Content-MD5", "abc=");
+
+        assertCanonicalized(conn, 42, new BlobQueueFullCanonicalizer(), "PUT\n\n\n42\nabc=\napplication/json\n\n\n\n"
+                + "\n\n\nx-ms-date:" + DATE + "\n/myaccount/mytable(PartitionKey='p',RowKey='r')\n$filter:a eq b\n"
+                + "comp:acl");
+        assertCanonicalized(conn, 42, new BlobQueueLiteCanonicalizer(), "PUT\nabc=\napplication/json\n\nx-ms-date:"
+                + DATE + "\n/myaccount/mytable(PartitionKey='p',RowKey='r')?comp=acl");
+        assertCanonicalized(conn, 42, new TableFullCanonicalizer(), "PUT\nabc=\napplication/json\n" + DATE
+                + "\n/myaccount/mytable(PartitionKey='p',RowKey='r')?comp=acl");
+        assertCanonicalized(conn, 42, new TableLiteCanonicalizer(), DATE
+                + "\n/myaccount/mytable(PartitionKey='p',RowKey='r')?comp=acl");
+    }
+
+    @Test
+    public void testCanonicalizeRepeatedQueryParameter() throws IOException, StorageException, InvalidKeyException {
+        final HttpURLConnection conn = createConnection(
+                "http://myaccount.blob.core.windows.net/mycontainer?restype=container&comp=list&include=snapshots"
+                        + "&include=metadata", "GET", "x-ms-date", DATE);
+
+        assertCanonicalized(conn, -1, new BlobQueueFullCanonicalizer(), "GET\n\n\n\n\n\n\n\n\n\n\n\nx-ms-date:" + DATE
+                + "\n/myaccount/mycontainer\ncomp:list\ninclude:metadata,snapshots\nrestype:container");
+    }
+
+    @Test
+    public void testCanonicalizedStringWriterReuse() throws IOException {
+        final CanonicalizedStringWriter writer = CanonicalizedStringWriter.getThreadInstance();
+        assertSame(writer, CanonicalizedStringWriter.getThreadInstance());
+
+        final char[] large = new char[64 * Constants.KB];
+        Arrays.fill(large, 'é');
+        writer.append(new String(large)).append("\ud83d").append('x');
+        assertEquals(2 * large.length + 2, writer.length());
+        assertEquals(new String(large) + "?x", writer.toString());
+
+        // A buffer which grew unusually large is released on reset
+        writer.reset();
+        assertEquals(0, writer.length());
+        assertTrue(writer.getBuffer().length < large.length);
+    }
+
+    private static HttpURLConnection createConnection(final String url, final String method, final String... headers)
+            throws IOException {
+        final HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setRequestMethod(method);
+        for (int i = 0; i < headers.length; i += 2) {
+            conn.setRequestProperty(headers[i], headers[i + 1]);
+        }
+
+        return conn;
+    }
+
+    private static void assertCanonicalized(final HttpURLConnection conn, final long contentLength,
+            final Canonicalizer canonicalizer, final String expected) throws IOException, StorageException,
+            InvalidKeyException {
+        assertEquals(expected, canonicalizer.canonicalize(conn, "myaccount", contentLength));
+
+        // The bytes signed must be the UTF-8 encoding of the canonicalized string
+        final CanonicalizedStringWriter writer = CanonicalizedStringWriter.getThreadInstance();
+        canonicalizer.canonicalize(conn, "myaccount", contentLength, writer);
+        assertArrayEquals(expected.getBytes(Constants.UTF8_CHARSET),
+                Arrays.copyOf(writer.getBuffer(), writer.length()));
+
+        final StorageKey key = new StorageKey(Base64.decode("Y2Fub25pY2FsaXplciB0ZXN0IGtleQ=="));
+        assertEquals(StorageKey.computeMacSha256(key, expected),
+                StorageKey.computeMacSha256(key, writer.getBuffer(), 0, writer.length()));
+    }
+}
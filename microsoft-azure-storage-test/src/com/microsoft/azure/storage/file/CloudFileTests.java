@@ -22,9 +22,11 @@ import java.io.File;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
@@ -687,6 +689,47 @@ public class CloudFileTests {
         fileRef.delete();
     }
 
+    /**
+     * Test reading a file through a read channel, at the end of the file and then before it.
+     * 
+     * @throws URISyntaxException
+     * @throws StorageException
+     * @throws IOException
+     */
+    @Test
+    public void testCloudFileReadChannel() throws URISyntaxException, StorageException, IOException {
+        String fileName = FileTestHelper.generateRandomFileName();
+        final CloudFile fileRef = this.share.getRootDirectoryReference().getFileReference(fileName);
+        fileRef.setStreamMinimumReadSizeInBytes(64 * 1024);
+
+        final byte[] buff = FileTestHelper.getRandomBuffer(4 * 64 * 1024 + 100);
+        fileRef.upload(new ByteArrayInputStream(buff), buff.length);
+
+        final OperationContext opContext = new OperationContext();
+        final FileReadChannel channel = fileRef.openReadChannel(null, null, opContext);
+        assertEquals(buff.length, channel.size());
+
+        // The footer and the data before it are in the last two blocks, which are only downloaded once
+        final ByteBuffer footer = ByteBuffer.allocate(50);
+        channel.position(buff.length - 50);
+        assertEquals(50, channel.read(footer));
+        assertEquals(buff.length, channel.position());
+        assertEquals(-1, channel.read(footer));
+
+        final ByteBuffer data = ByteBuffer.allocate(1000);
+        for (int i = 0; i < 3; i++) {
+            data.clear();
+            assertEquals(1000, channel.read(data, 3 * 64 * 1024 - 500));
+        }
+
+        assertEquals(3, opContext.getRequestResults().size());
+        assertArrayEquals(Arrays.copyOfRange(buff, buff.length - 50, buff.length), footer.array());
+        assertArrayEquals(Arrays.copyOfRange(buff, 3 * 64 * 1024 - 500, 3 * 64 * 1024 + 500), data.array());
+
+        channel.close();
+        fileRef.delete();
+    }
+
     /**
      * Test file uploading from byte arrays.
      * 
@@ -0,0 +1,322 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.microsoft.azure.storage.core.Utility;
+
+/**
+ * Represents a limit on the number of requests in flight which adapts to throttling by the service.
+ * <p>
+ * Every request sent by a service client which has a limiter must first take a permit, waiting while the number of
+ * requests in flight is at the limit. The limit follows an additive-increase, multiplicative-decrease (AIMD) scheme:
+ * each successful response raises it by about one request per round of <code>limit</code> responses, and a throttling
+ * response (503 Server Busy, or 500 Operation Timed Out) halves it. Only the first throttling response of requests
+ * sent under the same limit shrinks it, so a burst of throttled responses to requests that were already in flight is
+ * counted once.
+ * <p>
+ * Storage scalability targets apply to the account as a whole, so the same limiter should be shared by every service
+ * client of an account, including clients used by parallel uploads and downloads.
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+    /**
+     * Represents the default initial limit.
+     */
+    public static final int DEFAULT_INITIAL_LIMIT = 32;
+
+    /**
+     * Represents the default minimum limit.
+     */
+    public static final int DEFAULT_MIN_LIMIT = 1;
+
+    /**
+     * Represents the default maximum limit.
+     */
+    public static final int DEFAULT_MAX_LIMIT = 512;
+
+    /**
+     * The factor by which a throttling response shrinks the limit.
+     */
+    private static final double DECREASE_RATIO = 0.5;
+
+    /**
+     * Holds the minimum limit.
+     */
+    private final int minLimit;
+
+    /**
+     * Holds the maximum limit.
+     */
+    private final int maxLimit;
+
+    /**
+     * Guards the state of the limiter and queues waiting requests in arrival order.
+     */
+    private final ReentrantLock lock = new ReentrantLock(true /* fair */);
+
+    /**
+     * Signalled when a permit may have become available.
+     */
+    private final Condition permitAvailable = this.lock.newCondition();
+
+    /**
+     * Holds the current limit. Successful responses grow it by fractions of a request.
+     */
+    private double limit;
+
+    /**
+     * Holds the number of requests in flight.
+     */
+    private int inFlightCount;
+
+    /**
+     * Holds the number of requests waiting for a permit.
+     */
+    private int queueLength;
+
+    /**
+     * Holds the number of times the limit was decreased, identifying the permits taken since the last decrease.
+     */
+    private long epoch;
+
+    /**
+     * Creates an instance of the <code>AdaptiveConcurrencyLimiter</code> class using the default limits.
+     */
+    public AdaptiveConcurrencyLimiter() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT);
+    }
+
+    /**
+     * Creates an instance of the <code>AdaptiveConcurrencyLimiter</code> class using the specified limits.
+     *
+     * @param initialLimit
+     *            An <code>int</code> which specifies the number of requests allowed in flight initially.
+     * @param minLimit
+     *            An <code>int</code> which specifies the lowest the limit can be decreased to.
+     * @param maxLimit
+     *            An <code>int</code> which specifies the highest the limit can be increased to.
+     */
+    public AdaptiveConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit) {
+        Utility.assertGreaterThanOrEqual("minLimit", minLimit, 1);
+        Utility.assertGreaterThanOrEqual("maxLimit", maxLimit, minLimit);
+        Utility.assertInBounds("initialLimit", initialLimit, minLimit, maxLimit);
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * RESERVED FOR INTERNAL USE. Takes a permit to send a request, waiting while the number of requests in flight is
+     * at the limit.
+     *
+     * @param timeoutInMs
+     *            A <code>long</code> which represents the maximum time to wait, in milliseconds.
+     *
+     * @return A {@link Permit} which must be released once the request completes, or <code>null</code> if no permit
+     *         became available in time.
+     *
+     * @throws InterruptedException
+     *             If the thread was interrupted while waiting.
+     */
+    public Permit acquire(final long timeoutInMs) throws InterruptedException {
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutInMs);
+
+        this.lock.lockInterruptibly();
+        try {
+            this.queueLength++;
+            try {
+                while (this.inFlightCount >= (int) this.limit) {
+                    if (remainingNanos <= 0) {
+                        return null;
+                    }
+
+                    remainingNanos = this.permitAvailable.awaitNanos(remainingNanos);
+                }
+            }
+            finally {
+                this.queueLength--;
+            }
+
+            this.inFlightCount++;
+            return new Permit(this, this.epoch);
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of requests in flight.
+     *
+     * @return An <code>int</code> which represents the number of requests holding a permit.
+     */
+    public int getInFlightCount() {
+        this.lock.lock();
+        try {
+            return this.inFlightCount;
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the current limit.
+     *
+     * @return An <code>int</code> which represents the number of requests currently allowed in flight.
+     */
+    public int getLimit() {
+        this.lock.lock();
+        try {
+            return (int) this.limit;
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the maximum limit.
+     *
+     * @return An <code>int</code> which represents the highest the limit can be increased to.
+     */
+    public int getMaxLimit() {
+        return this.maxLimit;
+    }
+
+    /**
+     * Gets the minimum limit.
+     *
+     * @return An <code>int</code> which represents the lowest the limit can be decreased to.
+     */
+    public int getMinLimit() {
+        return this.minLimit;
+    }
+
+    /**
+     * Gets the number of requests waiting for a permit.
+     *
+     * @return An <code>int</code> which represents the queue depth.
+     */
+    public int getQueueLength() {
+        this.lock.lock();
+        try {
+            return this.queueLength;
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a permit and adjusts the limit to the outcome of its request.
+     */
+    private void release(final long permitEpoch, final RequestResult result) {
+        this.lock.lock();
+        try {
+            this.inFlightCount--;
+
+            if (isThrottled(result)) {
+                // Requests sent before the last decrease were already accounted for by it
+                if (permitEpoch == this.epoch) {
+                    this.limit = Math.max(this.minLimit, this.limit * DECREASE_RATIO);
+                    this.epoch++;
+                }
+            }
+            else if (isCompleted(result)) {
+                this.limit = Math.min(this.maxLimit, this.limit + 1 / this.limit);
+            }
+
+            if (this.queueLength > 0 && this.inFlightCount < (int) this.limit) {
+                this.permitAvailable.signalAll();
+            }
+        }
+        finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Gets whether the service rejected the request because the account or partition is over its scalability target.
+     */
+    static boolean isThrottled(final RequestResult result) {
+        if (result == null) {
+            return false;
+        }
+
+        if (result.getStatusCode() == HttpURLConnection.HTTP_UNAVAILABLE) {
+            return true;
+        }
+
+        return result.getStatusCode() == HttpURLConnection.HTTP_INTERNAL_ERROR
+                && result.getException() instanceof StorageException
+                && StorageErrorCodeStrings.OPERATION_TIMED_OUT.equals(((StorageException) result.getException())
+                        .getErrorCode());
+    }
+
+    /**
+     * Gets whether the service processed the request, whatever the outcome of the operation.
+     */
+    private static boolean isCompleted(final RequestResult result) {
+        return result != null && result.getStatusCode() >= 100
+                && result.getStatusCode() < HttpURLConnection.HTTP_INTERNAL_ERROR;
+    }
+
+    /**
+     * RESERVED FOR INTERNAL USE. Represents the permission of a single request to be in flight.
+     */
+    public static final class Permit {
+
+        /**
+         * Holds the limiter the permit was taken from.
+         */
+        private final AdaptiveConcurrencyLimiter limiter;
+
+        /**
+         * Holds the epoch of the limiter when the permit was taken.
+         */
+        private final long epoch;
+
+        /**
+         * Holds whether the permit was returned.
+         */
+        private boolean released;
+
+        private Permit(final AdaptiveConcurrencyLimiter limiter, final long epoch) {
+            this.limiter = limiter;
+            this.epoch = epoch;
+        }
+
+        /**
+         * RESERVED FOR INTERNAL USE. Returns the permit to the limiter once its request has completed. Releasing a
+         * permit more than once has no effect.
+         *
+         * @param result
+         *            A {@link RequestResult} object which represents the outcome of the request.
+         */
+        public synchronized void release(final RequestResult result) {
+            if (!this.released) {
+                this.released = true;
+                this.limiter.release(this.epoch, result);
+            }
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.microsoft.azure.storage.blob.CloudBlobClient;
+import com.microsoft.azure.storage.file.CloudFileClient;
+import com.microsoft.azure.storage.queue.CloudQueueClient;
+import com.microsoft.azure.storage.table.CloudTableClient;
+
+/**
+ * Represents a registry of request metrics collected across every operation of the service clients it is set on.
+ * <p>
+ * Each request sent by a service client which has a metrics registry is counted under its service, its operation type
+ * and the status class of its response, together with its latency, the bytes it sent and received, and whether it was
+ * a retry or was throttled. Latencies are kept in lock-free histograms from which percentiles are read. Recording a
+ * request takes no lock and, once its operation type has been seen, allocates nothing.
+ * <p>
+ * Use {@link #getSnapshot()} to read or export the metrics. A registry may be shared by several service clients.
+ */
+public final class ClientMetrics {
+
+    /**
+     * The number of status classes: no response, then 1xx to 5xx.
+     */
+    private static final int STATUS_CLASS_COUNT = 6;
+
+    /**
+     * The query parameter which names the resource type of a request.
+     */
+    private static final String RESTYPE_PARAMETER = "restype=";
+
+    /**
+     * The query parameter which names the component of a request.
+     */
+    private static final String COMP_PARAMETER = "comp=";
+
+    /**
+     * Holds the operation types seen so far. The array is replaced, never modified, when an operation type is added,
+     * so that it can be read without a lock.
+     */
+    private volatile OperationEntry[] entries = new OperationEntry[0];
+
+    /**
+     * Gets a snapshot of the metrics collected so far, with one element for each service, operation type and status
+     * class which has been seen. The counters of an element are read one after another while requests may still be
+     * recorded, so they may differ slightly from one another.
+     *
+     * @return A <code>java.util.List</code> of {@link OperationMetrics} objects which represent the metrics.
+     */
+    public List<OperationMetrics> getSnapshot() {
+        final List<OperationMetrics> snapshot = new ArrayList<OperationMetrics>();
+        for (final OperationEntry entry : this.entries) {
+            for (int statusClass = 0; statusClass < STATUS_CLASS_COUNT; statusClass++) {
+                final StatusEntry status = entry.statuses.get(statusClass);
+                final long requestCount = status == null ? 0 : status.requestCount.get();
+                if (requestCount > 0) {
+                    snapshot.add(new OperationMetrics(entry.service, entry.operation, statusClass * 100,
+                            requestCount, status.retryCount.get(), status.throttledCount.get(), status.bytesSent
+                                    .get(), status.bytesReceived.get(), status.latency.getSum(), status.latency
+                                    .getMax(), status.latency.copyBuckets()));
+                }
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * RESERVED FOR INTERNAL USE. Records a completed request.
+     *
+     * @param client
+     *            A {@link ServiceClient} object which represents the client which sent the request.
+     * @param request
+     *            A <code>java.net.HttpURLConnection</code> object which represents the request.
+     * @param result
+     *            A {@link RequestResult} object which represents the outcome and timing of the request.
+     * @param isRetry
+     *            <code>true</code> if the request was a retry; otherwise, <code>false</code>.
+     * @param bytesSent
+     *            A <code>long</code> which represents the number of request body bytes sent.
+     * @param bytesReceived
+     *            A <code>long</code> which represents the number of response body bytes received.
+     */
+    public void record(final ServiceClient client, final HttpURLConnection request, final RequestResult result,
+            final boolean isRetry, final long bytesSent, final long bytesReceived) {
+        final String method = request.getRequestMethod();
+        final String query = request.getURL().getQuery();
+        final OperationEntry entry = this.getEntry(client, method, query);
+
+        final int statusCode = result.getStatusCode();
+        final StatusEntry status = entry.getStatus(statusCode >= 100 && statusCode < 600 ? statusCode / 100 : 0);
+        status.requestCount.incrementAndGet();
+        if (isRetry) {
+            status.retryCount.incrementAndGet();
+        }
+
+        if (AdaptiveConcurrencyLimiter.isThrottled(result)) {
+            status.throttledCount.incrementAndGet();
+        }
+
+        if (bytesSent > 0) {
+            status.bytesSent.addAndGet(bytesSent);
+        }
+
+        if (bytesReceived > 0) {
+            status.bytesReceived.addAndGet(bytesReceived);
+        }
+
+        if (result.getStartNanoTime() != Long.MIN_VALUE && result.getStopNanoTime() != Long.MIN_VALUE) {
+            status.latency.record(TimeUnit.NANOSECONDS.toMicros(result.getStopNanoTime() - result.getStartNanoTime()));
+        }
+    }
+
+    /**
+     * Gets the entry of an operation type, adding it if it has not been seen.
+     */
+    private OperationEntry getEntry(final ServiceClient client, final String method, final String query) {
+        final int restypeStart = getParameterValueStart(query, RESTYPE_PARAMETER);
+        final int restypeEnd = getParameterValueEnd(query, restypeStart);
+        final int compStart = getParameterValueStart(query, COMP_PARAMETER);
+        final int compEnd = getParameterValueEnd(query, compStart);
+
+        for (final OperationEntry entry : this.entries) {
+            if (entry.matches(client.getClass(), method, query, restypeStart, restypeEnd, compStart, compEnd)) {
+                return entry;
+            }
+        }
+
+        synchronized (this) {
+            // Another thread may have added the operation type while this one was waiting
+            for (final OperationEntry entry : this.entries) {
+                if (entry.matches(client.getClass(), method, query, restypeStart, restypeEnd, compStart, compEnd)) {
+                    return entry;
+                }
+            }
+
+            final OperationEntry entry = new OperationEntry(client.getClass(), getServiceName(client), method,
+                    restypeStart < 0 ? null : query.substring(restypeStart, restypeEnd), compStart < 0 ? null
+                            : query.substring(compStart, compEnd));
+            final OperationEntry[] newEntries = Arrays.copyOf(this.entries, this.entries.length + 1);
+            newEntries[newEntries.length - 1] = entry;
+            this.entries = newEntries;
+            return entry;
+        }
+    }
+
+    /**
+     * Gets the index of the value of a query parameter, or -1 if the query does not have the parameter.
+     */
+    private static int getParameterValueStart(final String query, final String parameter) {
+        if (query == null) {
+            return -1;
+        }
+
+        int index = query.indexOf(parameter);
+        while (index > 0 && query.charAt(index - 1) != '&') {
+            index = query.indexOf(parameter, index + 1);
+        }
+
+        return index < 0 ? -1 : index + parameter.length();
+    }
+
+    /**
+     * Gets the index after the value of a query parameter.
+     */
+    private static int getParameterValueEnd(final String query, final int valueStart) {
+        if (valueStart < 0) {
+            return -1;
+        }
+
+        final int end = query.indexOf('&', valueStart);
+        return end < 0 ? query.length() : end;
+    }
+
+    /**
+     * Gets the name of the service a client sends requests to.
+     */
+    private static String getServiceName(final ServiceClient client) {
+        if (client instanceof CloudBlobClient) {
+            return "blob";
+        }
+        else if (client instanceof CloudQueueClient) {
+            return "queue";
+        }
+        else if (client instanceof CloudTableClient) {
+            return "table";
+        }
+        else if (client instanceof CloudFileClient) {
+            return "file";
+        }
+
+        return client.getClass().getSimpleName();
+    }
+
+    /**
+     * Holds the metrics of one operation type of one service.
+     */
+    private static final class OperationEntry {
+        private final Class<?> clientType;
+        private final String service;
+        private final String method;
+        private final String restype;
+        private final String comp;
+        private final String operation;
+        private final AtomicReferenceArray<StatusEntry> statuses = new AtomicReferenceArray<StatusEntry>(
+                STATUS_CLASS_COUNT);
+
+        private OperationEntry(final Class<?> clientType, final String service, final String method,
+                final String restype, final String comp) {
+            this.clientType = clientType;
+            this.service = service;
+            this.method = method;
+            this.restype = restype;
+            this.comp = comp;
+
+            final StringBuilder operation = new StringBuilder(method);
+            if (restype != null) {
+                operation.append('?').append(RESTYPE_PARAMETER).append(restype);
+            }
+
+            if (comp != null) {
+                operation.append(restype != null ? '&' : '?').append(COMP_PARAMETER).append(comp);
+            }
+
+            this.operation = operation.toString();
+        }
+
+        private StatusEntry getStatus(final int statusClass) {
+            // Status classes are created on first use, as most operation types only ever see one or two
+            StatusEntry status = this.statuses.get(statusClass);
+            if (status == null) {
+                this.statuses.compareAndSet(statusClass, null, new StatusEntry());
+                status = this.statuses.get(statusClass);
+            }
+
+            return status;
+        }
+
+        private boolean matches(final Class<?> clientType, final String method, final String query,
+                final int restypeStart, final int restypeEnd, final int compStart, final int compEnd) {
+            return this.clientType == clientType && this.method.equals(method)
+                    && matchesValue(this.restype, query, restypeStart, restypeEnd)
+                    && matchesValue(this.comp, query, compStart, compEnd);
+        }
+
+        private static boolean matchesValue(final String value, final String query, final int start, final int end) {
+            if (value == null || start < 0) {
+                return value == null && start < 0;
+            }
+
+            return value.length() == end - start && query.regionMatches(start, value, 0, value.length());
+        }
+    }
+
+    /**
+     * Holds the metrics of the requests of one operation type which received responses of one status class.
+     */
+    private static final class StatusEntry {
+        private final AtomicLong requestCount = new AtomicLong();
+        private final AtomicLong retryCount = new AtomicLong();
+        private final AtomicLong throttledCount = new AtomicLong();
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong bytesReceived = new AtomicLong();
+        private final LatencyHistogram latency = new LatencyHistogram();
+    }
+}
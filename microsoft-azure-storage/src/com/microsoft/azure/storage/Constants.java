@@ -16,8 +16,10 @@ package com.microsoft.azure.storage;
 
 import com.microsoft.azure.storage.blob.BlobInputStream;
 import com.microsoft.azure.storage.blob.BlobOutputStream;
+import com.microsoft.azure.storage.blob.BlobReadChannel;
 import com.microsoft.azure.storage.file.FileInputStream;
 import com.microsoft.azure.storage.file.FileOutputStream;
+import com.microsoft.azure.storage.file.FileReadChannel;
 
 /**
  * RESERVED FOR INTERNAL USE. Contains storage constants.
@@ -914,6 +916,18 @@ public final class Constants {
      */
     public static final int DEFAULT_MINIMUM_READ_SIZE_IN_BYTES = Constants.MAX_BLOCK_SIZE;
 
+    /**
+     * The default maximum number of blocks, of the minimum read size, cached by a {@link BlobReadChannel} or
+     * {@link FileReadChannel}.
+     */
+    public static final int DEFAULT_READ_CHANNEL_CACHED_BLOCKS = 8;
+
+    /**
+     * The number of threads of the shared pool which runs the attempts of asynchronous operations. Attempts submitted
+     * while all threads are busy are queued.
+     */
+    public static final int DEFAULT_ASYNC_THREAD_COUNT = 64;
+
     /**
      * The maximum size, in bytes, of a given stream mark operation.
      */
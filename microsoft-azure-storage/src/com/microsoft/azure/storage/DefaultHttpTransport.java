@@ -0,0 +1,53 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage;
+
+import java.net.HttpURLConnection;
+
+/**
+ * Represents the default transport, which sends every request on a plain <code>java.net.HttpURLConnection</code> and
+ * leaves connection reuse entirely to the JDK keep-alive cache.
+ */
+public final class DefaultHttpTransport extends HttpTransport {
+
+    /**
+     * Stores the singleton instance of this class.
+     */
+    public static final HttpTransport INSTANCE = new DefaultHttpTransport();
+
+    /**
+     * Enforces the singleton pattern via a private constructor.
+     */
+    private DefaultHttpTransport() {
+        // No op
+    }
+
+    /**
+     * Does nothing; the request is sent as soon as the caller opens the connection.
+     */
+    @Override
+    public void beforeSend(final HttpURLConnection connection, final OperationContext opContext) {
+        // no-op
+    }
+
+    /**
+     * Does nothing; the JDK decides whether the connection is kept alive.
+     */
+    @Override
+    public void afterResponse(final HttpURLConnection connection, final boolean responseReceived,
+            final boolean responseConsumed) {
+        // no-op
+    }
+}
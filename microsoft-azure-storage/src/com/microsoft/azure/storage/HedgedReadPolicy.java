@@ -0,0 +1,230 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.microsoft.azure.storage.core.SR;
+import com.microsoft.azure.storage.core.Utility;
+
+/**
+ * Represents a policy for hedging reads against the secondary location of a read-access geo-redundant account.
+ * <p>
+ * When a service client has a hedged read policy, a read which may be served by either location and whose location
+ * mode is {@link LocationMode#PRIMARY_THEN_SECONDARY} is sent to the primary location as usual. If the primary has not
+ * responded once the hedge delay has elapsed, a duplicate request is sent to the secondary location. Whichever
+ * response arrives first is used and the other request is abandoned. Only the response headers are raced; the body is
+ * then read from the winning request alone.
+ * <p>
+ * The hedge delay tracks a percentile of the recent latencies of the primary location, bounded by a minimum and a
+ * maximum delay, so that only the slowest requests are duplicated. Until enough latencies have been observed, the
+ * maximum delay is used. Data read from the secondary location may be older than the data in the primary location.
+ */
+public final class HedgedReadPolicy {
+
+    /**
+     * Represents the default latency percentile after which a read is hedged.
+     */
+    public static final double DEFAULT_PERCENTILE = 0.99;
+
+    /**
+     * Represents the default minimum hedge delay, in milliseconds.
+     */
+    public static final int DEFAULT_MIN_DELAY_IN_MS = 20;
+
+    /**
+     * Represents the default maximum hedge delay, in milliseconds.
+     */
+    public static final int DEFAULT_MAX_DELAY_IN_MS = 2000;
+
+    /**
+     * The number of recent latencies the percentile is computed over.
+     */
+    private static final int SAMPLE_WINDOW = 1024;
+
+    /**
+     * The number of latencies which must be observed before the percentile is used.
+     */
+    private static final int MIN_SAMPLES = 32;
+
+    /**
+     * The number of latencies observed between two computations of the percentile.
+     */
+    private static final int RECOMPUTE_INTERVAL = 64;
+
+    /**
+     * Holds the latency percentile after which a read is hedged.
+     */
+    private final double percentile;
+
+    /**
+     * Holds the minimum hedge delay, in milliseconds.
+     */
+    private final int minDelayInMs;
+
+    /**
+     * Holds the maximum hedge delay, in milliseconds.
+     */
+    private final int maxDelayInMs;
+
+    /**
+     * Holds the most recent latencies of the primary location, in milliseconds, as a ring buffer.
+     */
+    private final long[] samples = new long[SAMPLE_WINDOW];
+
+    /**
+     * Holds the number of latencies observed.
+     */
+    private long sampleCount;
+
+    /**
+     * Holds the current hedge delay, in milliseconds.
+     */
+    private volatile long hedgeDelayInMs;
+
+    /**
+     * Holds the number of reads which were hedged.
+     */
+    private final AtomicLong hedgedCount = new AtomicLong();
+
+    /**
+     * Holds the number of hedged reads which were served by the secondary location.
+     */
+    private final AtomicLong secondaryWinCount = new AtomicLong();
+
+    /**
+     * Creates an instance of the <code>HedgedReadPolicy</code> class using the default percentile and delays.
+     */
+    public HedgedReadPolicy() {
+        this(DEFAULT_PERCENTILE, DEFAULT_MIN_DELAY_IN_MS, DEFAULT_MAX_DELAY_IN_MS);
+    }
+
+    /**
+     * Creates an instance of the <code>HedgedReadPolicy</code> class using the specified percentile and delays.
+     *
+     * @param percentile
+     *            A <code>double</code> greater than 0 and less than 1 which specifies the latency percentile of the
+     *            primary location after which a read is hedged.
+     * @param minDelayInMs
+     *            An <code>int</code> which specifies the minimum time, in milliseconds, to wait before hedging.
+     * @param maxDelayInMs
+     *            An <code>int</code> which specifies the maximum time, in milliseconds, to wait before hedging.
+     */
+    public HedgedReadPolicy(final double percentile, final int minDelayInMs, final int maxDelayInMs) {
+        if (!(percentile > 0 && percentile < 1)) {
+            throw new IllegalArgumentException(String.format(SR.ARGUMENT_OUT_OF_RANGE_ERROR, "percentile",
+                    percentile));
+        }
+
+        Utility.assertGreaterThanOrEqual("minDelayInMs", minDelayInMs, 0);
+        Utility.assertGreaterThanOrEqual("maxDelayInMs", maxDelayInMs, minDelayInMs);
+
+        this.percentile = percentile;
+        this.minDelayInMs = minDelayInMs;
+        this.maxDelayInMs = maxDelayInMs;
+        this.hedgeDelayInMs = maxDelayInMs;
+    }
+
+    /**
+     * Gets the number of reads which were hedged.
+     *
+     * @return A <code>long</code> which represents the number of duplicate requests sent to the secondary location.
+     */
+    public long getHedgedCount() {
+        return this.hedgedCount.get();
+    }
+
+    /**
+     * Gets the time to wait for the primary location before hedging a read.
+     *
+     * @return A <code>long</code> which represents the current hedge delay, in milliseconds.
+     */
+    public long getHedgeDelayInMs() {
+        return this.hedgeDelayInMs;
+    }
+
+    /**
+     * Gets the maximum hedge delay.
+     *
+     * @return An <code>int</code> which represents the maximum hedge delay, in milliseconds.
+     */
+    public int getMaxDelayInMs() {
+        return this.maxDelayInMs;
+    }
+
+    /**
+     * Gets the minimum hedge delay.
+     *
+     * @return An <code>int</code> which represents the minimum hedge delay, in milliseconds.
+     */
+    public int getMinDelayInMs() {
+        return this.minDelayInMs;
+    }
+
+    /**
+     * Gets the latency percentile of the primary location after which a read is hedged.
+     *
+     * @return A <code>double</code> which represents the percentile.
+     */
+    public double getPercentile() {
+        return this.percentile;
+    }
+
+    /**
+     * Gets the number of hedged reads which were served by the secondary location.
+     *
+     * @return A <code>long</code> which represents the number of hedged reads the secondary location won.
+     */
+    public long getSecondaryWinCount() {
+        return this.secondaryWinCount.get();
+    }
+
+    /**
+     * RESERVED FOR INTERNAL USE. Records the time the primary location took to respond to a read. A read which was
+     * served by the secondary location records the time elapsed when the secondary responded, as the primary took at
+     * least that long.
+     *
+     * @param latencyInMs
+     *            A <code>long</code> which represents the latency, in milliseconds.
+     */
+    public synchronized void recordPrimaryLatency(final long latencyInMs) {
+        this.samples[(int) (this.sampleCount % SAMPLE_WINDOW)] = latencyInMs;
+        this.sampleCount++;
+
+        if (this.sampleCount >= MIN_SAMPLES
+                && (this.sampleCount == MIN_SAMPLES || this.sampleCount % RECOMPUTE_INTERVAL == 0)) {
+            final int count = (int) Math.min(this.sampleCount, SAMPLE_WINDOW);
+            final long[] sorted = Arrays.copyOf(this.samples, count);
+            Arrays.sort(sorted);
+
+            final long latency = sorted[Math.min(count - 1, (int) Math.ceil(this.percentile * count) - 1)];
+            this.hedgeDelayInMs = Math.max(this.minDelayInMs, Math.min(this.maxDelayInMs, latency));
+        }
+    }
+
+    /**
+     * RESERVED FOR INTERNAL USE. Records that a read was hedged.
+     *
+     * @param servedBySecondary
+     *            <code>true</code> if the secondary location responded first; otherwise, <code>false</code>.
+     */
+    public void recordHedge(final boolean servedBySecondary) {
+        this.hedgedCount.incrementAndGet();
+        if (servedBySecondary) {
+            this.secondaryWinCount.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+/**
+ * Abstract class that represents the transport used to send requests to the storage service.
+ * <p>
+ * A transport controls the lifecycle of the connection used by each physical request. The request is built, its
+ * headers are set and it is signed before {@link #beforeSend(HttpURLConnection, OperationContext)} is called, so
+ * implementations must not modify any header that participates in the signature. Every call to
+ * <code>beforeSend</code> that returns normally is matched by exactly one call to
+ * {@link #afterResponse(HttpURLConnection, boolean, boolean)} once the request has completed, whether or not it
+ * succeeded.
+ * <p>
+ * A transport is configured on a {@link ServiceClient} via {@link ServiceClient#setHttpTransport(HttpTransport)} and
+ * may be shared by several service clients. Implementations must be thread-safe.
+ *
+ * @see DefaultHttpTransport
+ * @see PooledHttpTransport
+ */
+public abstract class HttpTransport {
+
+    /**
+     * Called after the request has been built and signed, immediately before any data is sent to the service.
+     * Implementations may block here until a connection is available.
+     *
+     * @param connection
+     *            The <code>java.net.HttpURLConnection</code> which represents the request that is about to be sent.
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation.
+     *
+     * @throws IOException
+     *             If the request cannot be sent, for example because no connection became available in time. The
+     *             exception is treated like any other I/O error and is subject to the retry policy.
+     */
+    public abstract void beforeSend(HttpURLConnection connection, OperationContext opContext) throws IOException;
+
+    /**
+     * Called once the request sent on the specified connection has completed.
+     *
+     * @param connection
+     *            The <code>java.net.HttpURLConnection</code> which represents the completed request.
+     * @param responseReceived
+     *            <code>true</code> if the response headers were received; <code>false</code> if the request failed
+     *            before a response arrived, for example while connecting or sending the request body.
+     * @param responseConsumed
+     *            <code>true</code> if the response body was read to the end, in which case the underlying socket can
+     *            be kept alive and reused; otherwise, <code>false</code>.
+     */
+    public abstract void afterResponse(HttpURLConnection connection, boolean responseReceived,
+            boolean responseConsumed);
+}
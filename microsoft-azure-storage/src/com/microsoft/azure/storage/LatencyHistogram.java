@@ -0,0 +1,151 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies in microseconds, with log-linear buckets.
+ * <p>
+ * Latencies below 32 microseconds each have their own bucket. Above that, every power of two is split into 16 buckets
+ * of equal width, so a bucket is never wider than 1/16 of its lower bound and a percentile read from the histogram is
+ * within about 6% of the true value. Latencies are capped at 2^40 microseconds, about 12 days.
+ */
+final class LatencyHistogram {
+
+    /**
+     * The number of bits of a latency, below its leading bit, which select its bucket within a power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /**
+     * The number of buckets each power of two is split into.
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The number of latencies which each have their own bucket.
+     */
+    private static final int LINEAR_BUCKET_COUNT = 2 * SUB_BUCKET_COUNT;
+
+    /**
+     * The largest latency which can be recorded, in microseconds. Larger latencies are recorded as this value.
+     */
+    private static final long MAX_VALUE = (1L << 40) - 1;
+
+    /**
+     * The number of buckets.
+     */
+    static final int BUCKET_COUNT = getBucketIndex(MAX_VALUE) + 1;
+
+    /**
+     * Holds the number of latencies recorded in each bucket.
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * Holds the sum of the latencies recorded, in microseconds.
+     */
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * Holds the largest latency recorded, in microseconds.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a latency.
+     *
+     * @param latencyInMicros
+     *            the latency, in microseconds.
+     */
+    void record(final long latencyInMicros) {
+        final long value = Math.max(0, Math.min(MAX_VALUE, latencyInMicros));
+        this.buckets.incrementAndGet(getBucketIndex(value));
+        this.sum.addAndGet(value);
+
+        long currentMax = this.max.get();
+        while (value > currentMax && !this.max.compareAndSet(currentMax, value)) {
+            currentMax = this.max.get();
+        }
+    }
+
+    /**
+     * Copies the number of latencies recorded in each bucket.
+     *
+     * @return an array holding the count of each bucket.
+     */
+    long[] copyBuckets() {
+        final long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = this.buckets.get(i);
+        }
+
+        return counts;
+    }
+
+    /**
+     * Gets the largest latency recorded.
+     *
+     * @return the latency, in microseconds.
+     */
+    long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Gets the sum of the latencies recorded.
+     *
+     * @return the sum, in microseconds.
+     */
+    long getSum() {
+        return this.sum.get();
+    }
+
+    /**
+     * Gets the bucket a latency is recorded in.
+     *
+     * @param value
+     *            the latency, in microseconds, between 0 and the maximum value.
+     * @return the index of the bucket.
+     */
+    static int getBucketIndex(final long value) {
+        if (value < LINEAR_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return LINEAR_BUCKET_COUNT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Gets the largest latency recorded in a bucket.
+     *
+     * @param index
+     *            the index of the bucket.
+     * @return the upper bound of the bucket, in microseconds.
+     */
+    static long getBucketUpperBound(final int index) {
+        if (index < LINEAR_BUCKET_COUNT) {
+            return index;
+        }
+
+        final int shift = (index - LINEAR_BUCKET_COUNT) / SUB_BUCKET_COUNT + 1;
+        final int subBucket = (index - LINEAR_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        return ((long) (SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+    }
+}
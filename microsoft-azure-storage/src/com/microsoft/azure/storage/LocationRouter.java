@@ -0,0 +1,342 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+
+import com.microsoft.azure.storage.core.Utility;
+
+/**
+ * Represents rolling latency and failure statistics for the primary and secondary locations of an account, used to
+ * route reads to the location which currently serves them best.
+ * <p>
+ * When a service client has a location router, a read which may be served by either location and whose location mode
+ * is {@link LocationMode#SECONDARY_THEN_PRIMARY} is first sent to the faster location rather than always to the
+ * secondary location. The location of the mode is kept unless the primary location has been noticeably faster, and is
+ * sent an occasional read while it is the slower location so that its latency stays current. The primary location is
+ * only sent such reads if probing is enabled. The first attempt of a read whose location mode is
+ * {@link LocationMode#PRIMARY_THEN_SECONDARY} always goes to the primary location, because on a read-access
+ * geo-redundant account the secondary location may return data which is older than the primary location, which that
+ * mode only accepts for retries. Retries follow the retry policy as usual.
+ * <p>
+ * Each location also has a circuit breaker. After a number of consecutive failures (no response, or a server error
+ * other than server busy) the circuit of that location opens and reads and their retries go to the other location, so
+ * that requests do not keep waiting on connect timeouts. Once the open duration has elapsed a single read is let
+ * through as a trial; a success closes the circuit and a failure opens it for a further open duration. Only reads count
+ * towards the statistics, and their latency is measured from the request being sent to the response headers being
+ * received. Writes, and reads that must be served by one location, are never rerouted.
+ * <p>
+ * Statistics are kept per router, so a router should be shared by the service clients of an account.
+ */
+public final class LocationRouter {
+
+    /**
+     * Represents the default number of consecutive failures which opens the circuit of a location.
+     */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+    /**
+     * Represents the default time, in milliseconds, for which the circuit of a location stays open.
+     */
+    public static final int DEFAULT_OPEN_DURATION_IN_MS = 30 * 1000;
+
+    /**
+     * The weight of a new latency or outcome in the moving averages.
+     */
+    private static final double SMOOTHING_FACTOR = 0.2;
+
+    /**
+     * The number of latencies a location must have before it can be preferred for being faster.
+     */
+    private static final int MIN_SAMPLES = 5;
+
+    /**
+     * How much faster than the location of the mode the other location must be for reads to be routed to it.
+     */
+    private static final double SWITCH_MARGIN = 0.25;
+
+    /**
+     * The time, in nanoseconds, after which the latency of a location without traffic is refreshed with a read.
+     */
+    private static final long PROBE_INTERVAL_IN_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * Holds the number of consecutive failures which opens the circuit of a location.
+     */
+    private final int failureThreshold;
+
+    /**
+     * Holds the time, in nanoseconds, for which the circuit of a location stays open.
+     */
+    private final long openDurationInNanos;
+
+    /**
+     * Holds whether the location other than that of the location mode is sent occasional reads while it is slower.
+     */
+    private final boolean probeOtherLocation;
+
+    /**
+     * Holds the statistics of the primary location.
+     */
+    private final LocationStatistics primary = new LocationStatistics();
+
+    /**
+     * Holds the statistics of the secondary location.
+     */
+    private final LocationStatistics secondary = new LocationStatistics();
+
+    /**
+     * Creates an instance of the <code>LocationRouter</code> class using the default failure threshold and open
+     * duration.
+     */
+    public LocationRouter() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION_IN_MS);
+    }
+
+    /**
+     * Creates an instance of the <code>LocationRouter</code> class using the specified failure threshold and open
+     * duration, which does not probe the location other than that of the location mode.
+     *
+     * @param failureThreshold
+     *            An <code>int</code> which specifies the number of consecutive failures which opens the circuit of a
+     *            location.
+     * @param openDurationInMs
+     *            An <code>int</code> which specifies the time, in milliseconds, for which an open circuit rejects
+     *            reads.
+     */
+    public LocationRouter(final int failureThreshold, final int openDurationInMs) {
+        this(failureThreshold, openDurationInMs, false /* probeOtherLocation */);
+    }
+
+    /**
+     * Creates an instance of the <code>LocationRouter</code> class using the specified failure threshold, open
+     * duration and probing.
+     *
+     * @param failureThreshold
+     *            An <code>int</code> which specifies the number of consecutive failures which opens the circuit of a
+     *            location.
+     * @param openDurationInMs
+     *            An <code>int</code> which specifies the time, in milliseconds, for which an open circuit rejects
+     *            reads.
+     * @param probeOtherLocation
+     *            <code>true</code> to send an occasional read to the primary location while it is slower than the
+     *            secondary location, for reads whose location mode is {@link LocationMode#SECONDARY_THEN_PRIMARY}, so
+     *            that reads can move to it once it becomes faster; otherwise, <code>false</code>.
+     */
+    public LocationRouter(final int failureThreshold, final int openDurationInMs, final boolean probeOtherLocation) {
+        Utility.assertGreaterThanOrEqual("failureThreshold", failureThreshold, 1);
+        Utility.assertGreaterThanOrEqual("openDurationInMs", openDurationInMs, 0);
+
+        this.failureThreshold = failureThreshold;
+        this.openDurationInNanos = TimeUnit.MILLISECONDS.toNanos(openDurationInMs);
+        this.probeOtherLocation = probeOtherLocation;
+    }
+
+    /**
+     * Gets the rate at which requests to a location fail, as a moving average.
+     *
+     * @param location
+     *            A {@link StorageLocation} value which specifies the location.
+     *
+     * @return A <code>double</code> between 0 and 1 which represents the recent failure rate.
+     */
+    public synchronized double getFailureRate(final StorageLocation location) {
+        return this.getStatistics(location).failureRate;
+    }
+
+    /**
+     * Gets the latency of a location, as a moving average of the time taken to receive response headers.
+     *
+     * @param location
+     *            A {@link StorageLocation} value which specifies the location.
+     *
+     * @return A <code>double</code> which represents the recent latency, in milliseconds, or 0 if no response has been
+     *         received from the location.
+     */
+    public synchronized double getLatencyInMs(final StorageLocation location) {
+        return this.getStatistics(location).latencyInMs;
+    }
+
+    /**
+     * Gets whether the circuit of a location is open, so that reads are routed to the other location.
+     *
+     * @param location
+     *            A {@link StorageLocation} value which specifies the location.
+     *
+     * @return <code>true</code> if the circuit is open; otherwise, <code>false</code>.
+     */
+    public synchronized boolean isCircuitOpen(final StorageLocation location) {
+        return !this.getStatistics(location).allowsRequests(System.nanoTime());
+    }
+
+    /**
+     * RESERVED FOR INTERNAL USE. Records that a request to a location failed without a response.
+     *
+     * @param location
+     *            A {@link StorageLocation} value which specifies the location the request was sent to.
+     */
+    public synchronized void recordFailure(final StorageLocation location) {
+        this.getStatistics(location).recordFailure(System.nanoTime(), this.failureThreshold,
+                this.openDurationInNanos);
+    }
+
+    /**
+     * RESERVED FOR INTERNAL USE. Records the response of a location to a request. A server error counts as a failure,
+     * except for server busy, which throttles the account rather than reporting on the health of the location and is
+     * not recorded.
+     *
+     * @param location
+     *            A {@link StorageLocation} value which specifies the location the request was sent to.
+     * @param statusCode
+     *            An <code>int</code> which represents the HTTP status code of the response.
+     * @param latencyInMs
+     *            A <code>long</code> which represents the time, in milliseconds, taken to receive the response
+     *            headers.
+     */
+    public synchronized void recordResponse(final StorageLocation location, final int statusCode,
+            final long latencyInMs) {
+        if (statusCode == HttpURLConnection.HTTP_UNAVAILABLE) {
+            return;
+        }
+
+        final LocationStatistics statistics = this.getStatistics(location);
+        final long now = System.nanoTime();
+        if (statusCode >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+            statistics.recordFailure(now, this.failureThreshold, this.openDurationInNanos);
+        }
+        else {
+            statistics.recordSuccess(now, latencyInMs);
+        }
+    }
+
+    /**
+     * RESERVED FOR INTERNAL USE. Selects the location of a read which may be served by either location. The first
+     * attempt of a read only leaves the location proposed by the location mode if the mode is
+     * {@link LocationMode#SECONDARY_THEN_PRIMARY}, since moving it to the primary location never returns older data.
+     *
+     * @param locationMode
+     *            A {@link LocationMode} value which specifies the location mode of the read.
+     * @param proposedLocation
+     *            A {@link StorageLocation} value which specifies the location given by the location mode or, for a
+     *            retry, by the retry policy.
+     * @param isRetry
+     *            <code>true</code> if the read is a retry, in which case only an open circuit changes its location;
+     *            otherwise, <code>false</code>.
+     *
+     * @return A {@link StorageLocation} value which represents the location to send the read to.
+     */
+    public synchronized StorageLocation selectLocation(final LocationMode locationMode,
+            final StorageLocation proposedLocation, final boolean isRetry) {
+        final long now = System.nanoTime();
+        if (!isRetry && locationMode != LocationMode.SECONDARY_THEN_PRIMARY) {
+            return this.select(proposedLocation, now);
+        }
+
+        final StorageLocation otherLocation = proposedLocation == StorageLocation.PRIMARY ? StorageLocation.SECONDARY
+                : StorageLocation.PRIMARY;
+        final LocationStatistics proposed = this.getStatistics(proposedLocation);
+        final LocationStatistics other = this.getStatistics(otherLocation);
+
+        final boolean proposedAllowed = proposed.allowsRequests(now);
+        final boolean otherAllowed = other.allowsRequests(now);
+        if (proposedAllowed != otherAllowed) {
+            return this.select(proposedAllowed ? proposedLocation : otherLocation, now);
+        }
+        else if (!proposedAllowed) {
+            // With both circuits open, fall back to the location mode rather than failing without a request
+            return proposedLocation;
+        }
+        else if (isRetry) {
+            return this.select(proposedLocation, now);
+        }
+
+        StorageLocation fasterLocation = proposedLocation;
+        if (proposed.sampleCount >= MIN_SAMPLES && other.sampleCount >= MIN_SAMPLES
+                && other.latencyInMs * (1 + SWITCH_MARGIN) < proposed.latencyInMs) {
+            fasterLocation = otherLocation;
+        }
+
+        // Send an occasional read to the slower location so that its latency does not go stale
+        final StorageLocation slowerLocation = fasterLocation == proposedLocation ? otherLocation : proposedLocation;
+        final LocationStatistics slower = this.getStatistics(slowerLocation);
+        if ((slowerLocation == proposedLocation || this.probeOtherLocation)
+                && now - slower.lastActivityTime > PROBE_INTERVAL_IN_NANOS) {
+            slower.lastActivityTime = now;
+            return this.select(slowerLocation, now);
+        }
+
+        return this.select(fasterLocation, now);
+    }
+
+    /**
+     * Notes that a read is sent to a location. If the circuit of the location is half open, the read is its trial and
+     * no other read is let through until the outcome is recorded or a further open duration has elapsed.
+     */
+    private StorageLocation select(final StorageLocation location, final long now) {
+        final LocationStatistics statistics = this.getStatistics(location);
+        if (statistics.circuitOpen) {
+            statistics.circuitOpenUntil = now + this.openDurationInNanos;
+        }
+
+        return location;
+    }
+
+    /**
+     * Gets the statistics of a location.
+     */
+    private LocationStatistics getStatistics(final StorageLocation location) {
+        return location == StorageLocation.SECONDARY ? this.secondary : this.primary;
+    }
+
+    /**
+     * Holds the statistics and circuit breaker state of one location. Guarded by the router.
+     */
+    private static final class LocationStatistics {
+        private double latencyInMs;
+        private double failureRate;
+        private int sampleCount;
+        private int consecutiveFailures;
+        private boolean circuitOpen;
+        private long circuitOpenUntil;
+        private long lastActivityTime = System.nanoTime();
+
+        private boolean allowsRequests(final long now) {
+            // Once the open duration has elapsed a trial request is let through, see LocationRouter#select
+            return !this.circuitOpen || now - this.circuitOpenUntil >= 0;
+        }
+
+        private void recordSuccess(final long now, final long latency) {
+            this.latencyInMs = this.sampleCount == 0 ? latency : this.latencyInMs + SMOOTHING_FACTOR
+                    * (latency - this.latencyInMs);
+            this.failureRate -= SMOOTHING_FACTOR * this.failureRate;
+            this.sampleCount++;
+            this.consecutiveFailures = 0;
+            this.circuitOpen = false;
+            this.lastActivityTime = now;
+        }
+
+        private void recordFailure(final long now, final int failureThreshold, final long openDuration) {
+            this.failureRate += SMOOTHING_FACTOR * (1 - this.failureRate);
+            this.consecutiveFailures++;
+            this.lastActivityTime = now;
+
+            if (this.consecutiveFailures >= failureThreshold) {
+                this.circuitOpen = true;
+                this.circuitOpenUntil = now + openDuration;
+            }
+        }
+    }
+}
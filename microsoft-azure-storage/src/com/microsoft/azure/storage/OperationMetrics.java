@@ -0,0 +1,246 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage;
+
+import com.microsoft.azure.storage.core.SR;
+import com.microsoft.azure.storage.core.Utility;
+
+/**
+ * Represents a snapshot of the metrics of the requests of one operation type which received responses of one status
+ * class, as collected by {@link ClientMetrics}.
+ * <p>
+ * The operation type of a request is its HTTP method followed by its <code>restype</code> and <code>comp</code> query
+ * parameters, if any; for example <code>PUT?comp=block</code> or <code>GET?restype=container&amp;comp=list</code>.
+ */
+public final class OperationMetrics {
+
+    /**
+     * Holds the service the requests were sent to.
+     */
+    private final String service;
+
+    /**
+     * Holds the operation type of the requests.
+     */
+    private final String operation;
+
+    /**
+     * Holds the status class of the responses.
+     */
+    private final int statusClass;
+
+    /**
+     * Holds the number of requests.
+     */
+    private final long requestCount;
+
+    /**
+     * Holds the number of requests which were retries.
+     */
+    private final long retryCount;
+
+    /**
+     * Holds the number of requests which were throttled.
+     */
+    private final long throttledCount;
+
+    /**
+     * Holds the number of request body bytes sent.
+     */
+    private final long bytesSent;
+
+    /**
+     * Holds the number of response body bytes received.
+     */
+    private final long bytesReceived;
+
+    /**
+     * Holds the sum of the latencies, in microseconds.
+     */
+    private final long totalLatencyInMicros;
+
+    /**
+     * Holds the largest latency, in microseconds.
+     */
+    private final long maxLatencyInMicros;
+
+    /**
+     * Holds the number of latencies in each bucket of the histogram.
+     */
+    private final long[] latencyBuckets;
+
+    /**
+     * Creates an instance of the <code>OperationMetrics</code> class.
+     */
+    OperationMetrics(final String service, final String operation, final int statusClass, final long requestCount,
+            final long retryCount, final long throttledCount, final long bytesSent, final long bytesReceived,
+            final long totalLatencyInMicros, final long maxLatencyInMicros, final long[] latencyBuckets) {
+        this.service = service;
+        this.operation = operation;
+        this.statusClass = statusClass;
+        this.requestCount = requestCount;
+        this.retryCount = retryCount;
+        this.throttledCount = throttledCount;
+        this.bytesSent = bytesSent;
+        this.bytesReceived = bytesReceived;
+        this.totalLatencyInMicros = totalLatencyInMicros;
+        this.maxLatencyInMicros = maxLatencyInMicros;
+        this.latencyBuckets = latencyBuckets;
+    }
+
+    /**
+     * Gets the number of response body bytes received, as declared by the <code>Content-Length</code> of the
+     * responses.
+     *
+     * @return A <code>long</code> which represents the number of bytes.
+     */
+    public long getBytesReceived() {
+        return this.bytesReceived;
+    }
+
+    /**
+     * Gets the number of request body bytes sent.
+     *
+     * @return A <code>long</code> which represents the number of bytes.
+     */
+    public long getBytesSent() {
+        return this.bytesSent;
+    }
+
+    /**
+     * Gets a percentile of the latencies of the requests, from the start of each request to its completion.
+     *
+     * @param percentile
+     *            A <code>double</code> between 0 and 1 which specifies the percentile, such as 0.99.
+     *
+     * @return A <code>double</code> which represents the latency, in milliseconds, or 0 if there were no requests.
+     */
+    public double getLatencyPercentileInMs(final double percentile) {
+        if (!(percentile >= 0 && percentile <= 1)) {
+            throw new IllegalArgumentException(String.format(SR.ARGUMENT_OUT_OF_RANGE_ERROR, "percentile",
+                    percentile));
+        }
+
+        long total = 0;
+        for (final long count : this.latencyBuckets) {
+            total += count;
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long cumulative = 0;
+        for (int i = 0; i < this.latencyBuckets.length; i++) {
+            cumulative += this.latencyBuckets[i];
+            if (cumulative >= rank) {
+                return Math.min(LatencyHistogram.getBucketUpperBound(i), this.maxLatencyInMicros) / 1000.0;
+            }
+        }
+
+        return this.maxLatencyInMicros / 1000.0;
+    }
+
+    /**
+     * Gets the largest latency of the requests.
+     *
+     * @return A <code>double</code> which represents the latency, in milliseconds.
+     */
+    public double getMaxLatencyInMs() {
+        return this.maxLatencyInMicros / 1000.0;
+    }
+
+    /**
+     * Gets the mean latency of the requests.
+     *
+     * @return A <code>double</code> which represents the latency, in milliseconds, or 0 if there were no requests.
+     */
+    public double getMeanLatencyInMs() {
+        return this.requestCount == 0 ? 0 : this.totalLatencyInMicros / 1000.0 / this.requestCount;
+    }
+
+    /**
+     * Gets the operation type of the requests.
+     *
+     * @return A <code>String</code> which represents the HTTP method and the <code>restype</code> and
+     *         <code>comp</code> query parameters of the requests.
+     */
+    public String getOperation() {
+        return this.operation;
+    }
+
+    /**
+     * Gets the number of requests.
+     *
+     * @return A <code>long</code> which represents the number of requests, including retries.
+     */
+    public long getRequestCount() {
+        return this.requestCount;
+    }
+
+    /**
+     * Gets the number of requests which were retries of an earlier request.
+     *
+     * @return A <code>long</code> which represents the number of retries.
+     */
+    public long getRetryCount() {
+        return this.retryCount;
+    }
+
+    /**
+     * Gets the service the requests were sent to.
+     *
+     * @return A <code>String</code> which represents the service, such as <code>blob</code> or <code>table</code>.
+     */
+    public String getService() {
+        return this.service;
+    }
+
+    /**
+     * Gets the status class of the responses to the requests.
+     *
+     * @return An <code>int</code> which represents the status class, such as 200 for 2xx responses, or 0 if the
+     *         requests received no response.
+     */
+    public int getStatusClass() {
+        return this.statusClass;
+    }
+
+    /**
+     * Gets the number of requests which the service throttled, with a 503 (Server Busy) or a 500 (Operation Timed
+     * Out) response.
+     *
+     * @return A <code>long</code> which represents the number of throttled requests.
+     */
+    public long getThrottledCount() {
+        return this.throttledCount;
+    }
+
+    /**
+     * Returns a single line summary of the metrics, suitable for logging.
+     *
+     * @return A <code>String</code> which represents the metrics.
+     */
+    @Override
+    public String toString() {
+        return String.format(Utility.LOCALE_US,
+                "%s %s %s requests=%d retries=%d throttled=%d sent=%d received=%d mean=%.3fms p50=%.3fms "
+                        + "p99=%.3fms max=%.3fms", this.service, this.operation,
+                this.statusClass == 0 ? "none" : (this.statusClass / 100) + "xx", this.requestCount, this.retryCount,
+                this.throttledCount, this.bytesSent, this.bytesReceived, this.getMeanLatencyInMs(),
+                this.getLatencyPercentileInMs(0.5), this.getLatencyPercentileInMs(0.99), this.getMaxLatencyInMs());
+    }
+}
@@ -0,0 +1,539 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URI;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+import com.microsoft.azure.storage.core.SR;
+import com.microsoft.azure.storage.core.Utility;
+
+/**
+ * Represents a transport that bounds the number of connections opened to each endpoint and keeps them alive for reuse.
+ * <p>
+ * Each endpoint (scheme, host and port) owns a fixed number of connection slots. A request must take a slot before it
+ * is sent and waits, up to the acquire timeout, when all slots are in use. Once the request completes, the unread
+ * remainder of a small response body is drained and the body is closed, so that the socket is returned to the JDK
+ * keep-alive cache; the JDK closes the socket of a larger body instead. A connection is only disconnected if its
+ * response could not be read. Bounding the slots keeps the number of concurrent sockets per endpoint at or below the
+ * size of the keep-alive cache, so connections are reused rather than closed and reopened under load.
+ * <p>
+ * The TCP_NODELAY option and the socket buffer sizes may be set for HTTPS endpoints, whose sockets are created by a
+ * socket factory the transport provides. The sockets of HTTP endpoints are created by the JDK and keep its defaults.
+ * <p>
+ * The JDK keep-alive cache retains at most <code>http.maxConnections</code> idle connections per destination (5 by
+ * default) and evicts them once they have been idle for the keep-alive timeout advertised by the service, which cannot
+ * be changed through <code>HttpURLConnection</code>. For the pool to be effective, the <code>http.maxConnections</code>
+ * system property should be set to at least {@link #getMaxConnectionsPerEndpoint()} before the first request is made.
+ */
+public final class PooledHttpTransport extends HttpTransport {
+
+    /**
+     * Represents the default maximum number of connections per endpoint.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT = 64;
+
+    /**
+     * Represents the default time, in milliseconds, a request waits for a connection slot.
+     */
+    public static final int DEFAULT_ACQUIRE_TIMEOUT_IN_MS = 60 * 1000;
+
+    /**
+     * The largest error body, in bytes, that is drained to keep a connection alive.
+     */
+    private static final int MAX_DRAIN_LENGTH = 64 * Constants.KB;
+
+    /**
+     * Holds the maximum number of connections per endpoint.
+     */
+    private final int maxConnectionsPerEndpoint;
+
+    /**
+     * Holds the time, in milliseconds, a request waits for a connection slot.
+     */
+    private volatile int acquireTimeoutInMs = DEFAULT_ACQUIRE_TIMEOUT_IN_MS;
+
+    /**
+     * Holds the connect timeout, in milliseconds, applied to every connection, or <code>null</code> to use the JDK
+     * default.
+     */
+    private volatile Integer connectTimeoutInMs;
+
+    /**
+     * Holds the connection slots for each endpoint.
+     */
+    private final ConcurrentHashMap<String, Semaphore> endpoints = new ConcurrentHashMap<String, Semaphore>();
+
+    /**
+     * Holds the TCP_NODELAY option set on the sockets of HTTPS endpoints, or <code>null</code> to use the JDK default.
+     */
+    private volatile Boolean tcpNoDelay;
+
+    /**
+     * Holds the send buffer size, in bytes, set on the sockets of HTTPS endpoints, or <code>null</code> to use the JDK
+     * default.
+     */
+    private volatile Integer sendBufferSize;
+
+    /**
+     * Holds the receive buffer size, in bytes, set on the sockets of HTTPS endpoints, or <code>null</code> to use the
+     * JDK default.
+     */
+    private volatile Integer receiveBufferSize;
+
+    /**
+     * Holds the socket factory which applies the socket options, or <code>null</code> if it must be created again.
+     * Guarded by <code>this</code>.
+     */
+    private SocketOptionsFactory socketFactory;
+
+    /**
+     * Creates an instance of the <code>PooledHttpTransport</code> class using the default maximum number of
+     * connections per endpoint.
+     */
+    public PooledHttpTransport() {
+        this(DEFAULT_MAX_CONNECTIONS_PER_ENDPOINT);
+    }
+
+    /**
+     * Creates an instance of the <code>PooledHttpTransport</code> class using the specified maximum number of
+     * connections per endpoint.
+     *
+     * @param maxConnectionsPerEndpoint
+     *            An <code>int</code> which specifies the maximum number of concurrent connections to each endpoint.
+     */
+    public PooledHttpTransport(final int maxConnectionsPerEndpoint) {
+        Utility.assertGreaterThanOrEqual("maxConnectionsPerEndpoint", maxConnectionsPerEndpoint, 1);
+        this.maxConnectionsPerEndpoint = maxConnectionsPerEndpoint;
+    }
+
+    /**
+     * Takes a connection slot for the endpoint of the request, waiting up to the acquire timeout for one to become
+     * available, and applies the configured connect timeout and socket options.
+     *
+     * @param connection
+     *            The <code>java.net.HttpURLConnection</code> which represents the request that is about to be sent.
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation.
+     *
+     * @throws IOException
+     *             If no connection slot became available in time or the thread was interrupted while waiting.
+     */
+    @Override
+    public void beforeSend(final HttpURLConnection connection, final OperationContext opContext) throws IOException {
+        final Integer connectTimeout = this.connectTimeoutInMs;
+        if (connectTimeout != null) {
+            connection.setConnectTimeout(connectTimeout);
+        }
+
+        if (connection instanceof HttpsURLConnection
+                && (this.tcpNoDelay != null || this.sendBufferSize != null || this.receiveBufferSize != null)) {
+            final HttpsURLConnection secureConnection = (HttpsURLConnection) connection;
+            secureConnection.setSSLSocketFactory(this.getSocketFactory(secureConnection.getSSLSocketFactory()));
+        }
+
+        final String endpoint = getEndpointKey(connection.getURL());
+        final int timeout = this.acquireTimeoutInMs;
+        try {
+            if (!this.getSlots(endpoint).tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                throw new IOException(String.format(Utility.LOCALE_US, SR.CONNECTION_POOL_EXHAUSTED, endpoint,
+                        timeout, this.maxConnectionsPerEndpoint));
+            }
+        }
+        catch (final InterruptedException e) {
+            // Restore the interrupted status
+            Thread.currentThread().interrupt();
+            throw Utility.initIOException(e);
+        }
+    }
+
+    /**
+     * Returns the connection slot taken for the request and makes sure the socket is either reusable or closed. A
+     * request which failed before its response arrived is disconnected, since reading its response would send it
+     * again while the slot is still held.
+     *
+     * @param connection
+     *            The <code>java.net.HttpURLConnection</code> which represents the completed request.
+     * @param responseReceived
+     *            <code>true</code> if the response headers were received; otherwise, <code>false</code>.
+     * @param responseConsumed
+     *            <code>true</code> if the response body was read to the end; otherwise, <code>false</code>.
+     */
+    @Override
+    public void afterResponse(final HttpURLConnection connection, final boolean responseReceived,
+            final boolean responseConsumed) {
+        try {
+            if (!responseReceived) {
+                connection.disconnect();
+            }
+            else if (!responseConsumed) {
+                releaseResponse(connection);
+            }
+        }
+        finally {
+            this.getSlots(getEndpointKey(connection.getURL())).release();
+        }
+    }
+
+    /**
+     * Gets the time a request waits for a connection slot before failing.
+     *
+     * @return An <code>int</code> which represents the acquire timeout, in milliseconds.
+     */
+    public int getAcquireTimeoutInMs() {
+        return this.acquireTimeoutInMs;
+    }
+
+    /**
+     * Gets the connect timeout applied to every connection.
+     *
+     * @return An <code>Integer</code> which represents the connect timeout, in milliseconds, or <code>null</code> if
+     *         the JDK default is used.
+     */
+    public Integer getConnectTimeoutInMs() {
+        return this.connectTimeoutInMs;
+    }
+
+    /**
+     * Gets the TCP_NODELAY option set on the sockets of HTTPS endpoints.
+     *
+     * @return A <code>Boolean</code> which represents the option, or <code>null</code> if the JDK default is used.
+     */
+    public Boolean getTcpNoDelay() {
+        return this.tcpNoDelay;
+    }
+
+    /**
+     * Gets the send buffer size set on the sockets of HTTPS endpoints.
+     *
+     * @return An <code>Integer</code> which represents the send buffer size, in bytes, or <code>null</code> if the JDK
+     *         default is used.
+     */
+    public Integer getSendBufferSize() {
+        return this.sendBufferSize;
+    }
+
+    /**
+     * Gets the receive buffer size set on the sockets of HTTPS endpoints.
+     *
+     * @return An <code>Integer</code> which represents the receive buffer size, in bytes, or <code>null</code> if the
+     *         JDK default is used.
+     */
+    public Integer getReceiveBufferSize() {
+        return this.receiveBufferSize;
+    }
+
+    /**
+     * Gets the number of connections currently in use for the specified endpoint.
+     *
+     * @param endpoint
+     *            A <code>java.net.URI</code> object which represents the endpoint, such as the primary URI of a service
+     *            client.
+     *
+     * @return An <code>int</code> which represents the number of connections in use.
+     *
+     * @throws IOException
+     *             If the URI cannot be converted to a URL.
+     */
+    public int getInUseConnectionCount(final URI endpoint) throws IOException {
+        final Semaphore slots = this.endpoints.get(getEndpointKey(endpoint.toURL()));
+        return slots == null ? 0 : this.maxConnectionsPerEndpoint - slots.availablePermits();
+    }
+
+    /**
+     * Gets the maximum number of concurrent connections to each endpoint.
+     *
+     * @return An <code>int</code> which represents the maximum number of connections per endpoint.
+     */
+    public int getMaxConnectionsPerEndpoint() {
+        return this.maxConnectionsPerEndpoint;
+    }
+
+    /**
+     * Sets the time a request waits for a connection slot before failing.
+     *
+     * @param acquireTimeoutInMs
+     *            An <code>int</code> which represents the acquire timeout, in milliseconds.
+     */
+    public void setAcquireTimeoutInMs(final int acquireTimeoutInMs) {
+        Utility.assertGreaterThanOrEqual("acquireTimeoutInMs", acquireTimeoutInMs, 0);
+        this.acquireTimeoutInMs = acquireTimeoutInMs;
+    }
+
+    /**
+     * Sets the connect timeout applied to every connection.
+     *
+     * @param connectTimeoutInMs
+     *            An <code>Integer</code> which represents the connect timeout, in milliseconds, or <code>null</code>
+     *            to use the JDK default.
+     */
+    public void setConnectTimeoutInMs(final Integer connectTimeoutInMs) {
+        if (connectTimeoutInMs != null) {
+            Utility.assertGreaterThanOrEqual("connectTimeoutInMs", connectTimeoutInMs, 0);
+        }
+
+        this.connectTimeoutInMs = connectTimeoutInMs;
+    }
+
+    /**
+     * Sets the TCP_NODELAY option on the sockets of HTTPS endpoints, which disables Nagle's algorithm so that small
+     * requests are sent without delay. It applies to the connections opened after it is set.
+     *
+     * @param tcpNoDelay
+     *            A <code>Boolean</code> which represents the option, or <code>null</code> to use the JDK default.
+     */
+    public synchronized void setTcpNoDelay(final Boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+        this.socketFactory = null;
+    }
+
+    /**
+     * Sets the send buffer size of the sockets of HTTPS endpoints. It applies to the connections opened after it is
+     * set.
+     *
+     * @param sendBufferSize
+     *            An <code>Integer</code> which represents the send buffer size, in bytes, or <code>null</code> to use
+     *            the JDK default.
+     */
+    public synchronized void setSendBufferSize(final Integer sendBufferSize) {
+        if (sendBufferSize != null) {
+            Utility.assertGreaterThanOrEqual("sendBufferSize", sendBufferSize, 1);
+        }
+
+        this.sendBufferSize = sendBufferSize;
+        this.socketFactory = null;
+    }
+
+    /**
+     * Sets the receive buffer size of the sockets of HTTPS endpoints. It applies to the connections opened after it is
+     * set.
+     *
+     * @param receiveBufferSize
+     *            An <code>Integer</code> which represents the receive buffer size, in bytes, or <code>null</code> to
+     *            use the JDK default.
+     */
+    public synchronized void setReceiveBufferSize(final Integer receiveBufferSize) {
+        if (receiveBufferSize != null) {
+            Utility.assertGreaterThanOrEqual("receiveBufferSize", receiveBufferSize, 1);
+        }
+
+        this.receiveBufferSize = receiveBufferSize;
+        this.socketFactory = null;
+    }
+
+    /**
+     * Gets the socket factory which applies the socket options to the sockets created by the specified factory.
+     * <p>
+     * The JDK only reuses a kept-alive HTTPS connection for a request with the same socket factory, so the same
+     * factory is returned until the options or the wrapped factory change.
+     *
+     * @param baseFactory
+     *            A <code>javax.net.ssl.SSLSocketFactory</code> object which creates the sockets.
+     *
+     * @return A <code>javax.net.ssl.SSLSocketFactory</code> object which applies the socket options.
+     */
+    synchronized SSLSocketFactory getSocketFactory(final SSLSocketFactory baseFactory) {
+        if (baseFactory instanceof SocketOptionsFactory) {
+            return baseFactory;
+        }
+
+        if (this.socketFactory == null || this.socketFactory.baseFactory != baseFactory) {
+            this.socketFactory = new SocketOptionsFactory(baseFactory, this.tcpNoDelay, this.sendBufferSize,
+                    this.receiveBufferSize);
+        }
+
+        return this.socketFactory;
+    }
+
+    /**
+     * Gets the connection slots for the specified endpoint, creating them on first use.
+     */
+    private Semaphore getSlots(final String endpoint) {
+        Semaphore slots = this.endpoints.get(endpoint);
+        if (slots == null) {
+            final Semaphore newSlots = new Semaphore(this.maxConnectionsPerEndpoint, true /* fair */);
+            slots = this.endpoints.putIfAbsent(endpoint, newSlots);
+            if (slots == null) {
+                slots = newSlots;
+            }
+        }
+
+        return slots;
+    }
+
+    /**
+     * Reads the remainder of a small response body and closes it, so that the JDK can return the socket to the
+     * keep-alive cache. A body longer than the drain limit is closed unread, and the JDK then either reads its
+     * remainder or closes the socket. The connection is only disconnected if the response could not be read.
+     *
+     * @param connection
+     *            The <code>java.net.HttpURLConnection</code> which represents the completed request.
+     *
+     * @return <code>true</code> if the socket was left to the JDK; <code>false</code> if the connection was
+     *         disconnected.
+     */
+    static boolean releaseResponse(final HttpURLConnection connection) {
+        try {
+            // the body of an error response is only available from the error stream, which is null if there is none
+            final InputStream body = connection.getResponseCode() >= HttpURLConnection.HTTP_BAD_REQUEST ? connection
+                    .getErrorStream() : connection.getInputStream();
+            if (body != null) {
+                try {
+                    final byte[] buffer = new byte[Constants.BUFFER_COPY_LENGTH];
+                    int drained = 0;
+                    int count;
+                    while (drained <= MAX_DRAIN_LENGTH && (count = body.read(buffer)) != -1) {
+                        drained += count;
+                    }
+                }
+                finally {
+                    body.close();
+                }
+            }
+
+            return true;
+        }
+        catch (final IOException e) {
+            connection.disconnect();
+            return false;
+        }
+    }
+
+    /**
+     * Gets the key identifying the endpoint of the specified URL.
+     */
+    private static String getEndpointKey(final URL url) {
+        final int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+        return String.format(Utility.LOCALE_US, "%s://%s:%d", url.getProtocol(), url.getHost(), port);
+    }
+
+    /**
+     * Represents a socket factory which sets the socket options of the transport on the sockets created by another
+     * factory.
+     */
+    private static final class SocketOptionsFactory extends SSLSocketFactory {
+        /**
+         * Holds the factory which creates the sockets.
+         */
+        private final SSLSocketFactory baseFactory;
+
+        /**
+         * Holds the TCP_NODELAY option, or <code>null</code>.
+         */
+        private final Boolean tcpNoDelay;
+
+        /**
+         * Holds the send buffer size, or <code>null</code>.
+         */
+        private final Integer sendBufferSize;
+
+        /**
+         * Holds the receive buffer size, or <code>null</code>.
+         */
+        private final Integer receiveBufferSize;
+
+        private SocketOptionsFactory(final SSLSocketFactory baseFactory, final Boolean tcpNoDelay,
+                final Integer sendBufferSize, final Integer receiveBufferSize) {
+            this.baseFactory = baseFactory;
+            this.tcpNoDelay = tcpNoDelay;
+            this.sendBufferSize = sendBufferSize;
+            this.receiveBufferSize = receiveBufferSize;
+        }
+
+        @Override
+        public String[] getDefaultCipherSuites() {
+            return this.baseFactory.getDefaultCipherSuites();
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites() {
+            return this.baseFactory.getSupportedCipherSuites();
+        }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            // the JDK connects this socket itself, so the buffer sizes are set before the connection is opened
+            return this.applyOptions(this.baseFactory.createSocket());
+        }
+
+        @Override
+        public Socket createSocket(final Socket socket, final String host, final int port, final boolean autoClose)
+                throws IOException {
+            this.applyOptions(socket);
+            return this.applyOptions(this.baseFactory.createSocket(socket, host, port, autoClose));
+        }
+
+        @Override
+        public Socket createSocket(final String host, final int port) throws IOException {
+            return this.applyOptions(this.baseFactory.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(final String host, final int port, final InetAddress localHost, final int localPort)
+                throws IOException {
+            return this.applyOptions(this.baseFactory.createSocket(host, port, localHost, localPort));
+        }
+
+        @Override
+        public Socket createSocket(final InetAddress host, final int port) throws IOException {
+            return this.applyOptions(this.baseFactory.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(final InetAddress address, final int port, final InetAddress localAddress,
+                final int localPort) throws IOException {
+            return this.applyOptions(this.baseFactory.createSocket(address, port, localAddress, localPort));
+        }
+
+        /**
+         * Sets the socket options on a socket.
+         *
+         * @param socket
+         *            A <code>java.net.Socket</code> object which represents the socket.
+         *
+         * @return The socket.
+         *
+         * @throws SocketException
+         *             If an option could not be set.
+         */
+        private Socket applyOptions(final Socket socket) throws SocketException {
+            if (this.tcpNoDelay != null) {
+                socket.setTcpNoDelay(this.tcpNoDelay);
+            }
+
+            if (this.sendBufferSize != null) {
+                socket.setSendBufferSize(this.sendBufferSize);
+            }
+
+            if (this.receiveBufferSize != null) {
+                socket.setReceiveBufferSize(this.receiveBufferSize);
+            }
+
+            return socket;
+        }
+    }
+}
@@ -16,6 +16,11 @@ package com.microsoft.azure.storage;
 
 /**
  * Represents an event that is fired when a request is completed.
+ * <p>
+ * The event breaks the time taken by the request down into phases, measured with a monotonic clock: setting up the
+ * request, connecting, sending the request body, waiting for the first byte of the response, and reading and parsing
+ * the response body. The body of a listing or table response is parsed as it is read, so transfer and parse time are
+ * reported together. A phase the request did not reach has a duration of -1.
  */
 public final class RequestCompletedEvent extends BaseEvent {
 
@@ -36,4 +41,74 @@ public final class RequestCompletedEvent extends BaseEvent {
         super(opContext, connectionObject, requestResult);
     }
 
+    /**
+     * Gets the time taken to connect to the service, including any TLS handshake. A connection reused from a previous
+     * request takes almost no time.
+     * 
+     * @return A <code>long</code> which represents the duration in nanoseconds, or -1 if the request did not connect.
+     */
+    public long getConnectTimeInNanos() {
+        final RequestResult result = this.getRequestResult();
+        return elapsed(result.getConnectStartNanoTime(), result.getConnectEndNanoTime());
+    }
+
+    /**
+     * Gets the total time taken by the request, from its start to its completion.
+     * 
+     * @return A <code>long</code> which represents the duration in nanoseconds.
+     */
+    public long getElapsedTimeInNanos() {
+        final RequestResult result = this.getRequestResult();
+        return elapsed(result.getStartNanoTime(), result.getStopNanoTime());
+    }
+
+    /**
+     * Gets the time taken to read and parse the body of the response.
+     * 
+     * @return A <code>long</code> which represents the duration in nanoseconds, or -1 if the response body was not
+     *         processed.
+     */
+    public long getResponseProcessingTimeInNanos() {
+        final RequestResult result = this.getRequestResult();
+        return elapsed(result.getResponseReceivedNanoTime(), result.getResponseProcessedNanoTime());
+    }
+
+    /**
+     * Gets the time taken to set up the request before connecting: waiting for a concurrency limit, building the
+     * request and signing it.
+     * 
+     * @return A <code>long</code> which represents the duration in nanoseconds, or -1 if the request did not connect.
+     */
+    public long getSetupTimeInNanos() {
+        final RequestResult result = this.getRequestResult();
+        return elapsed(result.getStartNanoTime(), result.getConnectStartNanoTime());
+    }
+
+    /**
+     * Gets the time between sending the request and receiving the status line and headers of the response.
+     * 
+     * @return A <code>long</code> which represents the duration in nanoseconds, or -1 if no response was received.
+     */
+    public long getTimeToFirstByteInNanos() {
+        final RequestResult result = this.getRequestResult();
+        return elapsed(result.getRequestSentNanoTime(), result.getResponseReceivedNanoTime());
+    }
+
+    /**
+     * Gets the time taken to send the body of the request once connected.
+     * 
+     * @return A <code>long</code> which represents the duration in nanoseconds, or -1 if the request was not sent.
+     */
+    public long getUploadTimeInNanos() {
+        final RequestResult result = this.getRequestResult();
+        return elapsed(result.getConnectEndNanoTime(), result.getRequestSentNanoTime());
+    }
+
+    /**
+     * Gets the time elapsed between two phases, or -1 if either was not reached.
+     */
+    private static long elapsed(final long startNanoTime, final long endNanoTime) {
+        return startNanoTime == Long.MIN_VALUE || endNanoTime == Long.MIN_VALUE ? -1 : endNanoTime - startNanoTime;
+    }
+
 }
@@ -19,6 +19,12 @@ import java.util.Date;
 
 /**
  * Represents the result of a physical request.
+ * <p>
+ * Besides the wall-clock start and stop dates, a request result records when each phase of the request began or
+ * ended as values of <code>System.nanoTime()</code>. These values are only meaningful relative to one another; since
+ * <code>System.nanoTime()</code> may be any value, including 0 or a negative value, a value of
+ * <code>Long.MIN_VALUE</code> means the request did not reach that point. The durations of the phases are available
+ * from the {@link RequestCompletedEvent} fired for the request.
  */
 public final class RequestResult {
 
@@ -72,6 +78,42 @@ public final class RequestResult {
      */
     private StorageLocation targetLocation;
 
+    /**
+     * Represents the time at which the request was started, before waiting for a concurrency limit and building and
+     * signing the request.
+     */
+    private long startNanoTime = Long.MIN_VALUE;
+
+    /**
+     * Represents the time at which the request began connecting to the service.
+     */
+    private long connectStartNanoTime = Long.MIN_VALUE;
+
+    /**
+     * Represents the time at which the connection to the service was established.
+     */
+    private long connectEndNanoTime = Long.MIN_VALUE;
+
+    /**
+     * Represents the time at which the request, including any body, was sent.
+     */
+    private long requestSentNanoTime = Long.MIN_VALUE;
+
+    /**
+     * Represents the time at which the status line and headers of the response were received.
+     */
+    private long responseReceivedNanoTime = Long.MIN_VALUE;
+
+    /**
+     * Represents the time at which the body of the response was read and parsed.
+     */
+    private long responseProcessedNanoTime = Long.MIN_VALUE;
+
+    /**
+     * Represents the time at which the request was completed.
+     */
+    private long stopNanoTime = Long.MIN_VALUE;
+
     /**
      * Gets the location that the request was sent to.
      * 
@@ -81,6 +123,27 @@ public final class RequestResult {
         return this.targetLocation;
     }
 
+    /**
+     * Gets the time at which the request began connecting to the service.
+     * 
+     * @return A <code>long</code> which contains the value of <code>System.nanoTime()</code>, or
+     *         <code>Long.MIN_VALUE</code> if the request did not connect.
+     */
+    public long getConnectStartNanoTime() {
+        return this.connectStartNanoTime;
+    }
+
+    /**
+     * Gets the time at which the connection to the service was established. A connection reused from a previous
+     * request is established almost immediately.
+     * 
+     * @return A <code>long</code> which contains the value of <code>System.nanoTime()</code>, or
+     *         <code>Long.MIN_VALUE</code> if the request did not connect.
+     */
+    public long getConnectEndNanoTime() {
+        return this.connectEndNanoTime;
+    }
+
     /**
      * Gets the MD5 hash for the request.
      * 
@@ -117,6 +180,36 @@ public final class RequestResult {
         return this.requestDate;
     }
 
+    /**
+     * Gets the time at which the request, including any body, was sent.
+     * 
+     * @return A <code>long</code> which contains the value of <code>System.nanoTime()</code>, or
+     *         <code>Long.MIN_VALUE</code> if the request was not sent.
+     */
+    public long getRequestSentNanoTime() {
+        return this.requestSentNanoTime;
+    }
+
+    /**
+     * Gets the time at which the body of the response was read and parsed.
+     * 
+     * @return A <code>long</code> which contains the value of <code>System.nanoTime()</code>, or
+     *         <code>Long.MIN_VALUE</code> if the response body was not processed.
+     */
+    public long getResponseProcessedNanoTime() {
+        return this.responseProcessedNanoTime;
+    }
+
+    /**
+     * Gets the time at which the status line and headers of the response were received.
+     * 
+     * @return A <code>long</code> which contains the value of <code>System.nanoTime()</code>, or
+     *         <code>Long.MIN_VALUE</code> if no response was received.
+     */
+    public long getResponseReceivedNanoTime() {
+        return this.responseReceivedNanoTime;
+    }
+
     /**
      * Gets the service request ID.
      * 
@@ -135,6 +228,17 @@ public final class RequestResult {
         return this.startDate;
     }
 
+    /**
+     * Gets the time at which the request was started, before waiting for a concurrency limit and building and signing
+     * the request.
+     * 
+     * @return A <code>long</code> which contains the value of <code>System.nanoTime()</code>, or
+     *         <code>Long.MIN_VALUE</code> if the request was not started.
+     */
+    public long getStartNanoTime() {
+        return this.startNanoTime;
+    }
+
     /**
      * Gets the HTTP status code for the request.
      * 
@@ -162,6 +266,36 @@ public final class RequestResult {
         return this.stopDate;
     }
 
+    /**
+     * Gets the time at which the request was completed.
+     * 
+     * @return A <code>long</code> which contains the value of <code>System.nanoTime()</code>, or
+     *         <code>Long.MIN_VALUE</code> if the request has not completed.
+     */
+    public long getStopNanoTime() {
+        return this.stopNanoTime;
+    }
+
+    /**
+     * Sets the time at which the request began connecting to the service.
+     * 
+     * @param connectStartNanoTime
+     *            A <code>long</code> which contains the value of <code>System.nanoTime()</code> to set.
+     */
+    public void setConnectStartNanoTime(final long connectStartNanoTime) {
+        this.connectStartNanoTime = connectStartNanoTime;
+    }
+
+    /**
+     * Sets the time at which the connection to the service was established.
+     * 
+     * @param connectEndNanoTime
+     *            A <code>long</code> which contains the value of <code>System.nanoTime()</code> to set.
+     */
+    public void setConnectEndNanoTime(final long connectEndNanoTime) {
+        this.connectEndNanoTime = connectEndNanoTime;
+    }
+
     /**
      * Sets the MD5 hash for the request.
      * 
@@ -202,6 +336,36 @@ public final class RequestResult {
         this.requestDate = requestDate;
     }
 
+    /**
+     * Sets the time at which the request, including any body, was sent.
+     * 
+     * @param requestSentNanoTime
+     *            A <code>long</code> which contains the value of <code>System.nanoTime()</code> to set.
+     */
+    public void setRequestSentNanoTime(final long requestSentNanoTime) {
+        this.requestSentNanoTime = requestSentNanoTime;
+    }
+
+    /**
+     * Sets the time at which the body of the response was read and parsed.
+     * 
+     * @param responseProcessedNanoTime
+     *            A <code>long</code> which contains the value of <code>System.nanoTime()</code> to set.
+     */
+    public void setResponseProcessedNanoTime(final long responseProcessedNanoTime) {
+        this.responseProcessedNanoTime = responseProcessedNanoTime;
+    }
+
+    /**
+     * Sets the time at which the status line and headers of the response were received.
+     * 
+     * @param responseReceivedNanoTime
+     *            A <code>long</code> which contains the value of <code>System.nanoTime()</code> to set.
+     */
+    public void setResponseReceivedNanoTime(final long responseReceivedNanoTime) {
+        this.responseReceivedNanoTime = responseReceivedNanoTime;
+    }
+
     /**
      * Sets the service request ID.
      * 
@@ -222,6 +386,16 @@ public final class RequestResult {
         this.startDate = startDate;
     }
 
+    /**
+     * Sets the time at which the request was started.
+     * 
+     * @param startNanoTime
+     *            A <code>long</code> which contains the value of <code>System.nanoTime()</code> to set.
+     */
+    public void setStartNanoTime(final long startNanoTime) {
+        this.startNanoTime = startNanoTime;
+    }
+
     /**
      * Sets the HTTP status code for the request.
      * 
@@ -252,6 +426,16 @@ public final class RequestResult {
         this.stopDate = stopDate;
     }
 
+    /**
+     * Sets the time at which the request was completed.
+     * 
+     * @param stopNanoTime
+     *            A <code>long</code> which contains the value of <code>System.nanoTime()</code> to set.
+     */
+    public void setStopNanoTime(final long stopNanoTime) {
+        this.stopNanoTime = stopNanoTime;
+    }
+
     /**
      * Sets the location that the request was sent to.
      * 
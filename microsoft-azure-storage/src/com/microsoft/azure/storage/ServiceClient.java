@@ -18,6 +18,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.util.concurrent.Executor;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -53,6 +54,36 @@ public abstract class ServiceClient {
      */
     protected AuthenticationScheme authenticationScheme = AuthenticationScheme.SHAREDKEYFULL;
 
+    /**
+     * Holds the HttpTransport used to send requests made via this Service Client.
+     */
+    private HttpTransport httpTransport = DefaultHttpTransport.INSTANCE;
+
+    /**
+     * Holds the Executor which runs the asynchronous operations made via this Service Client.
+     */
+    private Executor asyncExecutor;
+
+    /**
+     * Holds the ClientMetrics which collects metrics of the requests made via this Service Client.
+     */
+    private ClientMetrics clientMetrics;
+
+    /**
+     * Holds the AdaptiveConcurrencyLimiter which bounds the requests in flight via this Service Client.
+     */
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    /**
+     * Holds the HedgedReadPolicy applied to reads made via this Service Client.
+     */
+    private HedgedReadPolicy hedgedReadPolicy;
+
+    /**
+     * Holds the LocationRouter which routes reads made via this Service Client.
+     */
+    private LocationRouter locationRouter;
+
     /**
      * Creates an instance of the <code>ServiceClient</code> class using the specified service endpoint and account
      * credentials.
@@ -184,6 +215,66 @@ public abstract class ServiceClient {
         return this.authenticationScheme;
     }
 
+    /**
+     * Returns the registry which collects metrics of the requests made via this service client.
+     * 
+     * @return A {@link ClientMetrics} object which represents the metrics registry used by this client, or
+     *         <code>null</code> if metrics are not collected.
+     */
+    public final ClientMetrics getClientMetrics() {
+        return this.clientMetrics;
+    }
+
+    /**
+     * Returns the limiter which bounds the number of requests in flight via this service client.
+     * 
+     * @return An {@link AdaptiveConcurrencyLimiter} object which represents the limiter used by this client, or
+     *         <code>null</code> if the number of requests in flight is not limited.
+     */
+    public final AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return this.concurrencyLimiter;
+    }
+
+    /**
+     * Returns the policy for hedging reads made via this service client against the secondary location.
+     * 
+     * @return A {@link HedgedReadPolicy} object which represents the hedged read policy used by this client, or
+     *         <code>null</code> if reads are not hedged.
+     */
+    public final HedgedReadPolicy getHedgedReadPolicy() {
+        return this.hedgedReadPolicy;
+    }
+
+    /**
+     * Returns the router which sends reads made via this service client to the location which currently serves them
+     * best.
+     * 
+     * @return A {@link LocationRouter} object which represents the router used by this client, or <code>null</code> if
+     *         reads follow the location mode only.
+     */
+    public final LocationRouter getLocationRouter() {
+        return this.locationRouter;
+    }
+
+    /**
+     * Returns the executor which runs the asynchronous operations made via this service client.
+     * 
+     * @return An <code>Executor</code> object which represents the executor used by this client, or <code>null</code>
+     *         if the client uses the shared pool of the library.
+     */
+    public final Executor getAsyncExecutor() {
+        return this.asyncExecutor;
+    }
+
+    /**
+     * Returns the transport used to send requests made via this service client.
+     * 
+     * @return An {@link HttpTransport} object which represents the transport used by this client.
+     */
+    public final HttpTransport getHttpTransport() {
+        return this.httpTransport;
+    }
+
     /**
      * Returns the base URI for this service client.
      * 
@@ -242,6 +333,99 @@ public abstract class ServiceClient {
         this.authenticationScheme = scheme;
     }
 
+    /**
+     * Sets the registry which collects metrics of the requests made via this service client.
+     * <p>
+     * By default no metrics are collected. With a metrics registry, every request, including each retry, is recorded
+     * once it completes. A registry may be shared among service clients to aggregate their metrics.
+     * 
+     * @param clientMetrics
+     *            A {@link ClientMetrics} object which represents the metrics registry to use, or <code>null</code> to
+     *            stop collecting metrics.
+     */
+    public final void setClientMetrics(final ClientMetrics clientMetrics) {
+        this.clientMetrics = clientMetrics;
+    }
+
+    /**
+     * Sets the limiter which bounds the number of requests in flight via this service client.
+     * <p>
+     * By default the number of requests in flight is not limited. With a limiter, every request, including each retry,
+     * waits for a permit before it is sent, and the limit shrinks when the service throttles requests and grows again
+     * as they succeed. To respect the scalability targets of an account, share a single limiter among all service
+     * clients of that account.
+     * 
+     * @param concurrencyLimiter
+     *            An {@link AdaptiveConcurrencyLimiter} object which represents the limiter to use, or
+     *            <code>null</code> to stop limiting the number of requests in flight.
+     */
+    public final void setConcurrencyLimiter(final AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * Sets the policy for hedging reads made via this service client against the secondary location.
+     * <p>
+     * By default reads are not hedged. With a hedged read policy, a read whose location mode is
+     * {@link LocationMode#PRIMARY_THEN_SECONDARY} is duplicated to the secondary location when the primary location is
+     * slow to respond, and the first response is used. The client must have a secondary endpoint.
+     * 
+     * @param hedgedReadPolicy
+     *            A {@link HedgedReadPolicy} object which represents the policy to use, or <code>null</code> to stop
+     *            hedging reads.
+     */
+    public final void setHedgedReadPolicy(final HedgedReadPolicy hedgedReadPolicy) {
+        this.hedgedReadPolicy = hedgedReadPolicy;
+    }
+
+    /**
+     * Sets the router which sends reads made via this service client to the location which currently serves them best.
+     * <p>
+     * By default reads follow the location mode only. With a location router, a read whose location mode is
+     * {@link LocationMode#PRIMARY_THEN_SECONDARY} or {@link LocationMode#SECONDARY_THEN_PRIMARY} is sent to the faster
+     * location, and away from a location whose circuit breaker is open. A router should be shared by the service
+     * clients of an account.
+     * 
+     * @param locationRouter
+     *            A {@link LocationRouter} object which represents the router to use, or <code>null</code> to have reads
+     *            follow the location mode only.
+     */
+    public final void setLocationRouter(final LocationRouter locationRouter) {
+        this.locationRouter = locationRouter;
+    }
+
+    /**
+     * Sets the executor which runs the asynchronous operations made via this service client.
+     * <p>
+     * Each attempt of an asynchronous operation holds a thread of the executor for the whole request and response;
+     * waiting out the interval between retries holds none. By default the client uses a shared pool of
+     * {@link Constants#DEFAULT_ASYNC_THREAD_COUNT} daemon threads which queues attempts while all of its threads are
+     * busy. Use a bounded executor to limit the requests the client runs at once; if it rejects an attempt, the
+     * operation fails with the <code>RejectedExecutionException</code>.
+     * 
+     * @param asyncExecutor
+     *            An <code>Executor</code> object which represents the executor to use, or <code>null</code> to use
+     *            the shared pool.
+     */
+    public final void setAsyncExecutor(final Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Sets the transport used to send requests made via this service client.
+     * <p>
+     * The default transport is {@link DefaultHttpTransport}, which leaves connection management to the JDK. Use a
+     * {@link PooledHttpTransport} to bound the number of connections opened to each endpoint. A single transport may be
+     * shared by several service clients.
+     * 
+     * @param httpTransport
+     *            An {@link HttpTransport} object which represents the transport to use, or <code>null</code> to
+     *            restore the default transport.
+     */
+    public final void setHttpTransport(final HttpTransport httpTransport) {
+        this.httpTransport = httpTransport == null ? DefaultHttpTransport.INSTANCE : httpTransport;
+    }
+
     protected StorageRequest<ServiceClient, Void, Void> uploadServicePropertiesImpl(final ServiceProperties properties,
             final RequestOptions options, final OperationContext opContext, final boolean signAsTable)
             throws StorageException {
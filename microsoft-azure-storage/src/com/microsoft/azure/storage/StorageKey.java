@@ -26,6 +26,10 @@ import com.microsoft.azure.storage.core.Base64;
 
 /**
  * Represents a container for a storage key.
+ * <p>
+ * Signatures may be computed concurrently from any number of threads. Each thread signs with its own
+ * <code>Mac</code> instance, cloned from an initialized prototype the first time the thread uses the key, so signing
+ * does not contend on a shared lock.
  */
 public final class StorageKey {
     /**
@@ -43,21 +47,33 @@ public final class StorageKey {
      * @throws InvalidKeyException
      *             If the key is not a valid storage key.
      */
-    public static synchronized String computeMacSha256(final StorageKey storageKey, final String stringToSign)
+    public static String computeMacSha256(final StorageKey storageKey, final String stringToSign)
             throws InvalidKeyException {
-        if (storageKey.hmacSha256 == null) {
-            storageKey.initHmacSha256();
-        }
-
-        byte[] utf8Bytes = null;
-        try {
-            utf8Bytes = stringToSign.getBytes(Constants.UTF8_CHARSET);
-        }
-        catch (final UnsupportedEncodingException e) {
-            throw new IllegalArgumentException(e);
-        }
+        return computeMac(storageKey.hmacSha256, stringToSign);
+    }
 
-        return Base64.encode(storageKey.hmacSha256.doFinal(utf8Bytes));
+    /**
+     * Computes a signature for the specified UTF-8 bytes using the HMAC-SHA256 algorithm.
+     * 
+     * @param storageKey
+     *            A <code>StorageKey</code> object that represents the storage key to use.
+     * @param utf8Bytes
+     *            A <code>byte</code> array which holds the UTF-8 encoded string to sign.
+     * @param offset
+     *            An <code>int</code> which represents the offset of the first byte to sign.
+     * @param length
+     *            An <code>int</code> which represents the number of bytes to sign.
+     * 
+     * @return A <code>String</code> that contains the HMAC-SHA256-encoded signature.
+     * 
+     * @throws InvalidKeyException
+     *             If the key is not a valid storage key.
+     */
+    public static String computeMacSha256(final StorageKey storageKey, final byte[] utf8Bytes, final int offset,
+            final int length) throws InvalidKeyException {
+        final Mac mac = storageKey.hmacSha256.getMac();
+        mac.update(utf8Bytes, offset, length);
+        return Base64.encode(mac.doFinal());
     }
 
     /**
@@ -75,12 +91,16 @@ public final class StorageKey {
      * @throws InvalidKeyException
      *             If the key is not a valid storage key.
      */
-    public static synchronized String computeMacSha512(final StorageKey storageKey, final String stringToSign)
+    public static String computeMacSha512(final StorageKey storageKey, final String stringToSign)
             throws InvalidKeyException {
-        if (storageKey.hmacSha512 == null) {
-            storageKey.initHmacSha512();
-        }
+        return computeMac(storageKey.hmacSha512, stringToSign);
+    }
 
+    /**
+     * Computes a signature for the specified string using the calling thread's <code>Mac</code>.
+     */
+    private static String computeMac(final ThreadLocalMac threadLocalMac, final String stringToSign)
+            throws InvalidKeyException {
         byte[] utf8Bytes = null;
         try {
             utf8Bytes = stringToSign.getBytes(Constants.UTF8_CHARSET);
@@ -89,33 +109,23 @@ public final class StorageKey {
             throw new IllegalArgumentException(e);
         }
 
-        return Base64.encode(storageKey.hmacSha512.doFinal(utf8Bytes));
+        return Base64.encode(threadLocalMac.getMac().doFinal(utf8Bytes));
     }
 
     /**
-     * Stores a reference to the hmacsha256 Mac.
+     * Stores the per-thread hmacsha256 Macs.
      */
-    private Mac hmacSha256;
+    private volatile ThreadLocalMac hmacSha256;
 
     /**
-     * Stores a reference to the hmacsha512 Mac.
+     * Stores the per-thread hmacsha512 Macs.
      */
-    private Mac hmacSha512;
-
-    /**
-     * Stores a reference to the hmacsha256 SecretKey.
-     */
-    private SecretKey key256;
-
-    /**
-     * Stores a reference to the hmacsha512 SecretKey.
-     */
-    private SecretKey key512;
+    private volatile ThreadLocalMac hmacSha512;
 
     /**
      * Stores the key.
      */
-    private byte[] key;
+    private volatile byte[] key;
 
     /**
      * Creates an instance of the <code>StorageKey</code> class.
@@ -146,65 +156,113 @@ public final class StorageKey {
         return copy;
     }
 
-    /**
-     * Initializes the HMAC-SHA256 Mac and SecretKey.
-     * 
-     * @throws InvalidKeyException
-     *             If the key is not a valid SecretKey according to specification.
-     */
-    private void initHmacSha256() throws InvalidKeyException {
-        this.key256 = new SecretKeySpec(this.key, "HmacSHA256");
-        try {
-            this.hmacSha256 = Mac.getInstance("HmacSHA256");
-        }
-        catch (final NoSuchAlgorithmException e) {
-            throw new IllegalArgumentException();
-        }
-        this.hmacSha256.init(this.key256);
-    }
-
-    /**
-     * Initializes the HMAC-SHA256 Mac and SecretKey.
-     * 
-     * @throws InvalidKeyException
-     *             If the key is not a valid SecretKey according to specification.
-     */
-    private void initHmacSha512() throws InvalidKeyException {
-        this.key512 = new SecretKeySpec(this.key, "HmacSHA512");
-        try {
-            this.hmacSha512 = Mac.getInstance("HmacSHA512");
-        }
-        catch (final NoSuchAlgorithmException e) {
-            throw new IllegalArgumentException();
-        }
-        this.hmacSha512.init(this.key512);
-    }
-
     /**
      * Sets the key to be used, using the specified byte array as the key.
      * <p/>
-     * This method is provided to support key rotation. This method is not thread-safe.
+     * This method is provided to support key rotation. This method is not thread-safe; requests signed while the key
+     * is being replaced may use either the old or the new key.
      * 
      * @param key
      *            A <code>byte</code> array that represents the key being assigned.
      */
     public void setKey(final byte[] key) {
         this.key = key;
-        this.hmacSha256 = null;
-        this.hmacSha512 = null;
-        this.key256 = null;
-        this.key512 = null;
+        this.hmacSha256 = new ThreadLocalMac(key, "HmacSHA256");
+        this.hmacSha512 = new ThreadLocalMac(key, "HmacSHA512");
     }
 
     /**
      * Sets the key to be used, using the specified <code>String</code> as the key.
      * <p/>
-     * This method is provided to support key rotation. This method is not thread-safe.
+     * This method is provided to support key rotation. This method is not thread-safe; requests signed while the key
+     * is being replaced may use either the old or the new key.
      * 
      * @param key
      *            A <code>String</code> that represents the key being assigned.
      */
     public void setKey(final String key) {
-        this.key = Base64.decode(key);
+        this.setKey(Base64.decode(key));
+    }
+
+    /**
+     * Holds one <code>Mac</code> per thread for a key and algorithm. Each thread's <code>Mac</code> is cloned from a
+     * prototype that is initialized once, so the key schedule is only computed once per key.
+     */
+    private static final class ThreadLocalMac {
+        /**
+         * Stores the key.
+         */
+        private final byte[] key;
+
+        /**
+         * Stores the name of the Mac algorithm.
+         */
+        private final String algorithm;
+
+        /**
+         * Stores the calling thread's Mac.
+         */
+        private final ThreadLocal<Mac> macs = new ThreadLocal<Mac>();
+
+        /**
+         * Stores the initialized Mac from which per-thread Macs are cloned. Guarded by <code>this</code>.
+         */
+        private Mac prototype;
+
+        private ThreadLocalMac(final byte[] key, final String algorithm) {
+            this.key = key;
+            this.algorithm = algorithm;
+        }
+
+        /**
+         * Gets the calling thread's Mac, creating it on first use.
+         * 
+         * @throws InvalidKeyException
+         *             If the key is not a valid SecretKey according to specification.
+         */
+        private Mac getMac() throws InvalidKeyException {
+            Mac mac = this.macs.get();
+            if (mac == null) {
+                mac = this.createMac();
+                this.macs.set(mac);
+            }
+
+            return mac;
+        }
+
+        /**
+         * Creates a Mac for a new thread. This only happens once per thread and key, so the lock taken here is not
+         * on the signing path.
+         */
+        private synchronized Mac createMac() throws InvalidKeyException {
+            if (this.prototype == null) {
+                this.prototype = newMac();
+            }
+
+            try {
+                return (Mac) this.prototype.clone();
+            }
+            catch (final CloneNotSupportedException e) {
+                // The provider does not support cloning, so initialize a new instance instead
+                return newMac();
+            }
+        }
+
+        /**
+         * Creates and initializes a new Mac for the key.
+         */
+        private Mac newMac() throws InvalidKeyException {
+            final SecretKey secretKey = new SecretKeySpec(this.key, this.algorithm);
+            final Mac mac;
+            try {
+                mac = Mac.getInstance(this.algorithm);
+            }
+            catch (final NoSuchAlgorithmException e) {
+                throw new IllegalArgumentException();
+            }
+
+            mac.init(secretKey);
+            return mac;
+        }
     }
 }
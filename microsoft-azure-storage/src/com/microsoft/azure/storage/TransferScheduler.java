@@ -0,0 +1,397 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.microsoft.azure.storage.core.Utility;
+
+/**
+ * Represents a scheduler which runs the parallel requests of uploads and downloads, such as the blocks written by a
+ * blob output stream, on a shared set of threads.
+ * <p>
+ * Each stream or bulk operation opens a {@link Session} and submits its requests to it. At most
+ * <code>maxConcurrency</code> requests run at a time across all sessions, and each session runs at most its own number
+ * of concurrent requests. When requests are waiting, the scheduler takes them from the sessions in turn, so a session
+ * with many queued requests does not delay the others.
+ * <p>
+ * By default the requests run on daemon threads which the scheduler creates as needed and which exit once idle.
+ * Alternatively the requests can be run on an <code>ExecutorService</code> supplied by the application; the scheduler
+ * never submits more than <code>maxConcurrency</code> requests to it at once.
+ */
+public final class TransferScheduler {
+
+    /**
+     * Represents the default maximum number of requests run at a time.
+     */
+    public static final int DEFAULT_MAX_CONCURRENCY = 64;
+
+    /**
+     * The time, in seconds, after which an idle thread created by the scheduler exits.
+     */
+    private static final int IDLE_THREAD_TIMEOUT_IN_SECONDS = 60;
+
+    /**
+     * Holds the scheduler used by clients which are not given one.
+     */
+    private static volatile TransferScheduler defaultScheduler;
+
+    /**
+     * Holds the maximum number of requests run at a time.
+     */
+    private final int maxConcurrency;
+
+    /**
+     * Holds the executor the requests run on.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Holds the sessions which have waiting requests and may run another one, in the order they are served.
+     */
+    private final ArrayDeque<Session> readySessions = new ArrayDeque<Session>();
+
+    /**
+     * Holds the number of requests running. Guarded by <code>this</code>.
+     */
+    private int activeCount;
+
+    /**
+     * Holds the number of requests waiting to run. Guarded by <code>this</code>.
+     */
+    private int queuedCount;
+
+    /**
+     * Creates an instance of the <code>TransferScheduler</code> class which runs at most the default number of
+     * requests at a time on threads it creates.
+     */
+    public TransferScheduler() {
+        this(DEFAULT_MAX_CONCURRENCY);
+    }
+
+    /**
+     * Creates an instance of the <code>TransferScheduler</code> class which runs at most the specified number of
+     * requests at a time on threads it creates.
+     *
+     * @param maxConcurrency
+     *            An <code>int</code> which specifies the maximum number of requests run at a time.
+     */
+    public TransferScheduler(final int maxConcurrency) {
+        this(maxConcurrency, createExecutor(maxConcurrency));
+    }
+
+    /**
+     * Creates an instance of the <code>TransferScheduler</code> class which runs at most the specified number of
+     * requests at a time on the specified executor. The executor is not shut down by the scheduler.
+     *
+     * @param maxConcurrency
+     *            An <code>int</code> which specifies the maximum number of requests run at a time.
+     * @param executor
+     *            An <code>ExecutorService</code> which runs the requests. It should be able to run
+     *            <code>maxConcurrency</code> tasks at once.
+     */
+    public TransferScheduler(final int maxConcurrency, final ExecutorService executor) {
+        Utility.assertGreaterThanOrEqual("maxConcurrency", maxConcurrency, 1);
+        Utility.assertNotNull("executor", executor);
+
+        this.maxConcurrency = maxConcurrency;
+        this.executor = executor;
+    }
+
+    /**
+     * Gets the scheduler used by service clients which have not been given one. It is created on first use and
+     * shared by every client in the process.
+     *
+     * @return The default {@link TransferScheduler}.
+     */
+    public static TransferScheduler getDefault() {
+        TransferScheduler scheduler = defaultScheduler;
+        if (scheduler == null) {
+            synchronized (TransferScheduler.class) {
+                scheduler = defaultScheduler;
+                if (scheduler == null) {
+                    scheduler = new TransferScheduler();
+                    defaultScheduler = scheduler;
+                }
+            }
+        }
+
+        return scheduler;
+    }
+
+    /**
+     * Gets the number of requests running.
+     *
+     * @return An <code>int</code> which represents the number of requests running.
+     */
+    public synchronized int getActiveCount() {
+        return this.activeCount;
+    }
+
+    /**
+     * Gets the maximum number of requests run at a time.
+     *
+     * @return An <code>int</code> which represents the maximum number of requests run at a time.
+     */
+    public int getMaxConcurrency() {
+        return this.maxConcurrency;
+    }
+
+    /**
+     * Gets the number of requests waiting to run.
+     *
+     * @return An <code>int</code> which represents the number of queued requests.
+     */
+    public synchronized int getQueuedCount() {
+        return this.queuedCount;
+    }
+
+    /**
+     * RESERVED FOR INTERNAL USE. Opens a session for the requests of one stream or operation.
+     *
+     * @param maxConcurrency
+     *            An <code>int</code> which specifies the maximum number of requests of the session run at a time.
+     *
+     * @return A {@link Session} to which the requests are submitted.
+     */
+    public Session openSession(final int maxConcurrency) {
+        Utility.assertGreaterThanOrEqual("maxConcurrency", maxConcurrency, 1);
+        return new Session(maxConcurrency);
+    }
+
+    /**
+     * Starts as many waiting requests as the limits allow. The requests are handed to the executor once the lock is
+     * released, so that an executor which runs tasks on the calling thread cannot deadlock the scheduler.
+     */
+    private void dispatch() {
+        List<Runnable> tasks = null;
+        synchronized (this) {
+            while (this.activeCount < this.maxConcurrency && !this.readySessions.isEmpty()) {
+                final Session session = this.readySessions.poll();
+                session.ready = false;
+
+                final Runnable task = session.pendingTasks.poll();
+                session.activeCount++;
+                this.activeCount++;
+                this.queuedCount--;
+                session.markReadyIfRunnable();
+
+                if (tasks == null) {
+                    tasks = new ArrayList<Runnable>();
+                }
+
+                tasks.add(new ScheduledTask(session, task));
+            }
+        }
+
+        if (tasks != null) {
+            for (final Runnable task : tasks) {
+                try {
+                    this.executor.execute(task);
+                }
+                catch (final RejectedExecutionException e) {
+                    // The executor is shut down or saturated, so the request runs on the calling thread instead
+                    task.run();
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the executor used when the application does not supply one: at most <code>maxConcurrency</code> daemon
+     * threads, each of which exits after being idle for a while.
+     */
+    private static ExecutorService createExecutor(final int maxConcurrency) {
+        Utility.assertGreaterThanOrEqual("maxConcurrency", maxConcurrency, 1);
+
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency,
+                IDLE_THREAD_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger threadCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "azure-storage-transfer-"
+                                + this.threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * RESERVED FOR INTERNAL USE. Represents the requests of one stream or operation. A session is an
+     * <code>Executor</code>, so it can back an <code>ExecutorCompletionService</code>.
+     */
+    public final class Session implements Executor {
+
+        /**
+         * Holds the maximum number of requests of the session run at a time. Guarded by the scheduler.
+         */
+        private int maxConcurrency;
+
+        /**
+         * Holds the requests of the session waiting to run. Guarded by the scheduler.
+         */
+        private final ArrayDeque<Runnable> pendingTasks = new ArrayDeque<Runnable>();
+
+        /**
+         * Holds the number of requests of the session running. Guarded by the scheduler.
+         */
+        private int activeCount;
+
+        /**
+         * Holds whether the session is in the ready queue of the scheduler. Guarded by the scheduler.
+         */
+        private boolean ready;
+
+        /**
+         * Holds whether the session was closed. Guarded by the scheduler.
+         */
+        private boolean closed;
+
+        private Session(final int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        /**
+         * RESERVED FOR INTERNAL USE. Queues a request to run once the limits of the scheduler and of the session
+         * allow.
+         *
+         * @param task
+         *            A <code>Runnable</code> which represents the request.
+         *
+         * @throws RejectedExecutionException
+         *             If the session was closed.
+         */
+        @Override
+        public void execute(final Runnable task) {
+            Utility.assertNotNull("task", task);
+
+            synchronized (TransferScheduler.this) {
+                if (this.closed) {
+                    throw new RejectedExecutionException();
+                }
+
+                this.pendingTasks.add(task);
+                TransferScheduler.this.queuedCount++;
+                this.markReadyIfRunnable();
+            }
+
+            dispatch();
+        }
+
+        /**
+         * RESERVED FOR INTERNAL USE. Changes the maximum number of requests of the session run at a time. When it is
+         * decreased, running requests complete, and no other request starts until fewer requests than the new maximum
+         * are running.
+         *
+         * @param maxConcurrency
+         *            An <code>int</code> which specifies the maximum number of requests of the session run at a time.
+         */
+        public void setMaxConcurrency(final int maxConcurrency) {
+            Utility.assertGreaterThanOrEqual("maxConcurrency", maxConcurrency, 1);
+
+            synchronized (TransferScheduler.this) {
+                this.maxConcurrency = maxConcurrency;
+                if (this.ready && this.activeCount >= maxConcurrency) {
+                    TransferScheduler.this.readySessions.remove(this);
+                    this.ready = false;
+                }
+
+                this.markReadyIfRunnable();
+            }
+
+            dispatch();
+        }
+
+        /**
+         * RESERVED FOR INTERNAL USE. Closes the session. Requests which have not started are not run, and are
+         * cancelled if they are futures; running requests complete.
+         */
+        public void close() {
+            final List<Runnable> cancelledTasks = new ArrayList<Runnable>();
+            synchronized (TransferScheduler.this) {
+                this.closed = true;
+                TransferScheduler.this.queuedCount -= this.pendingTasks.size();
+                cancelledTasks.addAll(this.pendingTasks);
+                this.pendingTasks.clear();
+                if (this.ready) {
+                    TransferScheduler.this.readySessions.remove(this);
+                    this.ready = false;
+                }
+            }
+
+            for (final Runnable task : cancelledTasks) {
+                if (task instanceof Future<?>) {
+                    ((Future<?>) task).cancel(false);
+                }
+            }
+        }
+
+        /**
+         * Adds the session to the ready queue of the scheduler if it has a waiting request and may run another one.
+         * Must be called while holding the lock of the scheduler.
+         */
+        private void markReadyIfRunnable() {
+            if (!this.ready && !this.pendingTasks.isEmpty() && this.activeCount < this.maxConcurrency) {
+                this.ready = true;
+                TransferScheduler.this.readySessions.add(this);
+            }
+        }
+    }
+
+    /**
+     * Runs a request of a session and then lets the scheduler start the next waiting request.
+     */
+    private final class ScheduledTask implements Runnable {
+        private final Session session;
+        private final Runnable task;
+
+        private ScheduledTask(final Session session, final Runnable task) {
+            this.session = session;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.task.run();
+            }
+            finally {
+                synchronized (TransferScheduler.this) {
+                    this.session.activeCount--;
+                    TransferScheduler.this.activeCount--;
+                    this.session.markReadyIfRunnable();
+                }
+
+                dispatch();
+            }
+        }
+    }
+}
@@ -0,0 +1,788 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import com.microsoft.azure.storage.AccessCondition;
+import com.microsoft.azure.storage.Constants;
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.core.SR;
+import com.microsoft.azure.storage.core.Utility;
+
+/**
+ * Represents a local directory which keeps the content of the blobs downloaded via the clients it is set on, so that
+ * a blob which has not changed is not downloaded again, including after the process restarts. See
+ * {@link CloudBlobClient#setContentCache(BlobContentCache)}.
+ * <p>
+ * The cache holds the last version downloaded of each blob, keyed by the URI of the blob and recorded with its ETag. A
+ * download of a blob the cache holds is conditional on the blob having another ETag, and the content is read from the
+ * cache when the service replies that the blob has not been modified. Once the content held exceeds the maximum size
+ * of the cache, the blobs least recently used are removed from it.
+ * <p>
+ * Each version is kept under a name of its own, so that a new version replaces the previous one at once, and the content
+ * of a version which is replaced or removed stays readable by the downloads which already opened it.
+ * <p>
+ * A directory must be used by one cache at a time. The cache does not check the content of its files, which are
+ * expected to only be changed by the cache.
+ */
+public final class BlobContentCache {
+
+    /**
+     * The suffix of the files which hold the content of the blobs.
+     */
+    private static final String CONTENT_SUFFIX = ".content";
+
+    /**
+     * The suffix of the files which hold the ETags of the blobs.
+     */
+    private static final String ETAG_SUFFIX = ".etag";
+
+    /**
+     * The suffix of the files which receive the content of the blobs being downloaded.
+     */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * The separator between the key of a blob and the part of the name of its files which is unique to a version.
+     */
+    private static final char VERSION_SEPARATOR = '.';
+
+    /**
+     * Holds the directory the content is kept in.
+     */
+    private final File directory;
+
+    /**
+     * Holds the maximum size, in bytes, of the content kept.
+     */
+    private final long maxSizeInBytes;
+
+    /**
+     * Holds the blobs held by the cache, by key, from the least to the most recently used. Guarded by
+     * <code>this</code>.
+     */
+    private final LinkedHashMap<String, CachedBlob> cachedBlobs = new LinkedHashMap<String, CachedBlob>(16, 0.75f,
+            true /* accessOrder */);
+
+    /**
+     * Holds the size, in bytes, of the content kept. Guarded by <code>this</code>.
+     */
+    private long sizeInBytes;
+
+    /**
+     * Holds the content files of the versions removed from the cache which could not be deleted yet, because a
+     * download still had them open on a platform which does not delete open files. Guarded by <code>this</code>.
+     */
+    private final List<File> staleFiles = new ArrayList<File>();
+
+    /**
+     * Creates an instance of the <code>BlobContentCache</code> class which keeps the content in the specified
+     * directory. The directory is created if it does not exist, and the blobs a cache kept in it before are held by
+     * this cache, in the order they were last used.
+     *
+     * @param directory
+     *            A <code>String</code> which represents the path to the directory.
+     * @param maxSizeInBytes
+     *            A <code>long</code> which represents the maximum size, in bytes, of the content kept. A blob longer
+     *            than this is not cached.
+     *
+     * @throws IOException
+     *             If the directory could not be created or read.
+     */
+    public BlobContentCache(final String directory, final long maxSizeInBytes) throws IOException {
+        Utility.assertNotNullOrEmpty("directory", directory);
+        Utility.assertGreaterThanOrEqual("maxSizeInBytes", maxSizeInBytes, 1);
+
+        this.directory = new File(directory);
+        this.maxSizeInBytes = maxSizeInBytes;
+
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            throw new IOException(String.format(SR.CONTENT_CACHE_DIRECTORY_INVALID, directory));
+        }
+
+        this.load();
+    }
+
+    /**
+     * Gets the path to the directory the content is kept in.
+     *
+     * @return A <code>String</code> which represents the path to the directory.
+     */
+    public String getDirectory() {
+        return this.directory.getPath();
+    }
+
+    /**
+     * Gets the maximum size of the content kept.
+     *
+     * @return A <code>long</code> which represents the maximum size, in bytes, of the content kept.
+     */
+    public long getMaxSizeInBytes() {
+        return this.maxSizeInBytes;
+    }
+
+    /**
+     * Gets the size of the content kept.
+     *
+     * @return A <code>long</code> which represents the size, in bytes, of the content kept.
+     */
+    public synchronized long getSizeInBytes() {
+        return this.sizeInBytes;
+    }
+
+    /**
+     * Removes every blob from the cache.
+     */
+    public synchronized void clear() {
+        for (final CachedBlob cachedBlob : this.cachedBlobs.values()) {
+            this.deleteFiles(cachedBlob.name);
+        }
+
+        this.cachedBlobs.clear();
+        this.sizeInBytes = 0;
+    }
+
+    /**
+     * Gets whether a download with the specified access conditions may use the cache. Only a download without
+     * conditions, or conditional on a lease alone, may.
+     *
+     * @param accessCondition
+     *            An {@link AccessCondition} object which represents the access conditions of the download, or
+     *            <code>null</code>.
+     *
+     * @return <code>true</code> if the download may use the cache; otherwise, <code>false</code>.
+     */
+    static boolean isCacheable(final AccessCondition accessCondition) {
+        return accessCondition == null
+                || (accessCondition.getIfMatch() == null && accessCondition.getIfNoneMatch() == null
+                        && accessCondition.getIfModifiedSinceDate() == null && accessCondition
+                        .getIfUnmodifiedSinceDate() == null);
+    }
+
+    /**
+     * Gets the key a blob is held by in the cache, which is derived from the URI of the blob and its snapshot ID.
+     *
+     * @param blob
+     *            A {@link CloudBlob} object which represents the blob.
+     *
+     * @return A <code>String</code> which represents the key, which is also the name of the files of the blob.
+     *
+     * @throws StorageException
+     *             If the MD5 algorithm is not available.
+     */
+    static String getKey(final CloudBlob blob) throws StorageException {
+        String uri = blob.getStorageUri().getPrimaryUri().toString();
+        if (blob.isSnapshot()) {
+            uri = uri.concat("?snapshot=").concat(blob.getSnapshotID());
+        }
+
+        final byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("MD5").digest(uri.getBytes(Constants.UTF8_CHARSET));
+        }
+        catch (final NoSuchAlgorithmException e) {
+            // This wont happen, throw fatal.
+            throw Utility.generateNewUnexpectedStorageException(e);
+        }
+        catch (final IOException e) {
+            // UTF-8 is always supported.
+            throw Utility.generateNewUnexpectedStorageException(e);
+        }
+
+        final StringBuilder key = new StringBuilder(hash.length * 2);
+        for (final byte b : hash) {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * Gets the ETag of the version of a blob the cache holds.
+     *
+     * @param key
+     *            A <code>String</code> which represents the key of the blob.
+     *
+     * @return A <code>String</code> which represents the ETag, or <code>null</code> if the cache does not hold the
+     *         blob.
+     */
+    synchronized String getETag(final String key) {
+        final CachedBlob cachedBlob = this.cachedBlobs.get(key);
+        return cachedBlob == null ? null : cachedBlob.etag;
+    }
+
+    /**
+     * Writes the content of a version of a blob the cache holds to a stream, and marks the blob as the most recently
+     * used.
+     *
+     * @param key
+     *            A <code>String</code> which represents the key of the blob.
+     * @param etag
+     *            A <code>String</code> which represents the ETag of the version of the blob.
+     * @param outStream
+     *            An <code>OutputStream</code> object which receives the content.
+     *
+     * @return <code>true</code> if the content was written; <code>false</code> if the cache no longer holds this
+     *         version of the blob, in which case nothing was written.
+     *
+     * @throws IOException
+     *             If the content could not be read or written.
+     */
+    boolean copyTo(final String key, final String etag, final OutputStream outStream) throws IOException {
+        final InputStream content;
+        synchronized (this) {
+            final CachedBlob cachedBlob = this.touch(key, etag);
+            if (cachedBlob == null) {
+                return false;
+            }
+
+            // the file stays readable once open, even if the blob is removed from the cache meanwhile
+            content = new FileInputStream(this.getContentFile(cachedBlob.name));
+        }
+
+        try {
+            final byte[] buffer = new byte[Constants.BUFFER_COPY_LENGTH];
+            int count;
+            while ((count = content.read(buffer)) != -1) {
+                outStream.write(buffer, 0, count);
+            }
+        }
+        finally {
+            content.close();
+        }
+
+        return true;
+    }
+
+    /**
+     * Opens the content of a version of a blob the cache holds for reading, and marks the blob as the most recently
+     * used.
+     *
+     * @param key
+     *            A <code>String</code> which represents the key of the blob.
+     * @param etag
+     *            A <code>String</code> which represents the ETag of the version of the blob.
+     *
+     * @return A <code>RandomAccessFile</code> object which reads the content, or <code>null</code> if the cache does not
+     *         hold this version of the blob.
+     *
+     * @throws IOException
+     *             If the content could not be opened.
+     */
+    synchronized RandomAccessFile open(final String key, final String etag) throws IOException {
+        final CachedBlob cachedBlob = this.touch(key, etag);
+        if (cachedBlob == null) {
+            return null;
+        }
+
+        return new RandomAccessFile(this.getContentFile(cachedBlob.name), "r");
+    }
+
+    /**
+     * Starts to add a blob to the cache, whose content is written to a stream while it is downloaded.
+     *
+     * @param key
+     *            A <code>String</code> which represents the key of the blob.
+     * @param outStream
+     *            An <code>OutputStream</code> object which receives the content, besides the cache, or
+     *            <code>null</code> if the content is only written to the cache, such as by ranges.
+     *
+     * @return A {@link PendingBlob} object to write the content to, which must then be committed or aborted.
+     */
+    PendingBlob startAdding(final String key, final OutputStream outStream) {
+        return new PendingBlob(key, outStream);
+    }
+
+    /**
+     * Marks a version of a blob as the most recently used, if the cache holds it.
+     *
+     * @param key
+     *            A <code>String</code> which represents the key of the blob.
+     * @param etag
+     *            A <code>String</code> which represents the ETag of the version of the blob.
+     *
+     * @return A {@link CachedBlob} object which represents the version, or <code>null</code> if the cache does not
+     *         hold this version of the blob.
+     */
+    private synchronized CachedBlob touch(final String key, final String etag) {
+        final CachedBlob cachedBlob = this.cachedBlobs.get(key);
+        if (cachedBlob == null || !cachedBlob.etag.equals(etag)) {
+            return null;
+        }
+
+        // the modification times record the order the blobs were used in, for the next cache on the directory
+        this.getContentFile(cachedBlob.name).setLastModified(System.currentTimeMillis());
+        return cachedBlob;
+    }
+
+    /**
+     * Makes the file which received the content of a blob the content the cache holds for it, replacing the version
+     * the cache held, and removes the least recently used blobs if the cache is full.
+     * <p>
+     * The content is renamed to a name of its own rather than over the content of the version replaced, which stays
+     * readable by the downloads which opened it, and the cache only switches to the new version once its files are in
+     * place.
+     *
+     * @param key
+     *            A <code>String</code> which represents the key of the blob.
+     * @param etag
+     *            A <code>String</code> which represents the ETag of the version of the blob.
+     * @param tempFile
+     *            A <code>File</code> object which represents the file holding the content.
+     */
+    private synchronized void install(final String key, final String etag, final File tempFile) {
+        final long length = tempFile.length();
+        final String tempName = tempFile.getName();
+        final String name = tempName.substring(0, tempName.length() - TEMP_SUFFIX.length());
+
+        // the ETag file is written before the content is in place, so that a blob without one is never held
+        boolean installed = false;
+        if (length <= this.maxSizeInBytes) {
+            try {
+                final FileOutputStream etagStream = new FileOutputStream(this.getETagFile(name));
+                try {
+                    etagStream.write(etag.getBytes(Constants.UTF8_CHARSET));
+                }
+                finally {
+                    etagStream.close();
+                }
+
+                installed = tempFile.renameTo(this.getContentFile(name));
+            }
+            catch (final IOException e) {
+                // the blob is not cached
+            }
+        }
+
+        final CachedBlob replaced = installed ? this.cachedBlobs.put(key, new CachedBlob(name, etag, length))
+                : this.cachedBlobs.remove(key);
+        if (replaced != null) {
+            this.deleteFiles(replaced.name);
+            this.sizeInBytes -= replaced.length;
+        }
+
+        if (!installed) {
+            this.getETagFile(name).delete();
+            tempFile.delete();
+            return;
+        }
+
+        this.sizeInBytes += length;
+        this.evict();
+    }
+
+    /**
+     * Reads the blobs held in the directory, and deletes the files which do not belong to one, such as those of
+     * downloads which did not complete.
+     *
+     * @throws IOException
+     *             If the directory could not be read.
+     */
+    private synchronized void load() throws IOException {
+        final File[] files = this.directory.listFiles();
+        if (files == null) {
+            throw new IOException(String.format(SR.CONTENT_CACHE_DIRECTORY_INVALID, this.directory.getPath()));
+        }
+
+        final ArrayList<File> contentFiles = new ArrayList<File>();
+        for (final File file : files) {
+            final String name = file.getName();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                file.delete();
+            }
+            else if (name.endsWith(CONTENT_SUFFIX)) {
+                contentFiles.add(file);
+            }
+        }
+
+        Collections.sort(contentFiles, new Comparator<File>() {
+            @Override
+            public int compare(final File left, final File right) {
+                final long leftModified = left.lastModified();
+                final long rightModified = right.lastModified();
+                return leftModified < rightModified ? -1 : (leftModified == rightModified ? 0 : 1);
+            }
+        });
+
+        for (final File contentFile : contentFiles) {
+            final String fileName = contentFile.getName();
+            final String name = fileName.substring(0, fileName.length() - CONTENT_SUFFIX.length());
+            final int separator = name.indexOf(VERSION_SEPARATOR);
+            final String etag = separator > 0 ? this.readETag(name) : null;
+            if (etag == null) {
+                contentFile.delete();
+                continue;
+            }
+
+            // a process which stopped while replacing a version may have left the previous one, which is older
+            final String key = name.substring(0, separator);
+            final CachedBlob replaced = this.cachedBlobs.put(key, new CachedBlob(name, etag, contentFile.length()));
+            if (replaced != null) {
+                this.deleteFiles(replaced.name);
+                this.sizeInBytes -= replaced.length;
+            }
+
+            this.sizeInBytes += contentFile.length();
+        }
+
+        final HashSet<String> names = new HashSet<String>();
+        for (final CachedBlob cachedBlob : this.cachedBlobs.values()) {
+            names.add(cachedBlob.name);
+        }
+
+        for (final File file : files) {
+            final String name = file.getName();
+            if (name.endsWith(ETAG_SUFFIX) && !names.contains(name.substring(0, name.length() - ETAG_SUFFIX.length()))) {
+                file.delete();
+            }
+        }
+
+        // the maximum size may be smaller than that of the cache which kept the blobs
+        this.evict();
+    }
+
+    /**
+     * Removes the least recently used blobs from the cache, until the content kept fits in its maximum size.
+     */
+    private synchronized void evict() {
+        final Iterator<CachedBlob> leastRecentlyUsed = this.cachedBlobs.values().iterator();
+        while (this.sizeInBytes > this.maxSizeInBytes) {
+            final CachedBlob evicted = leastRecentlyUsed.next();
+            this.deleteFiles(evicted.name);
+            this.sizeInBytes -= evicted.length;
+            leastRecentlyUsed.remove();
+        }
+    }
+
+    /**
+     * Reads the ETag file of a version of a blob.
+     *
+     * @param name
+     *            A <code>String</code> which represents the name of the files of the version.
+     *
+     * @return A <code>String</code> which represents the ETag, or <code>null</code> if it could not be read.
+     */
+    private String readETag(final String name) {
+        final File etagFile = this.getETagFile(name);
+        try {
+            final FileInputStream etagStream = new FileInputStream(etagFile);
+            try {
+                final byte[] etag = new byte[(int) etagFile.length()];
+                int offset = 0;
+                int count;
+                while (offset < etag.length && (count = etagStream.read(etag, offset, etag.length - offset)) != -1) {
+                    offset += count;
+                }
+
+                return offset == 0 ? null : new String(etag, 0, offset, Constants.UTF8_CHARSET);
+            }
+            finally {
+                etagStream.close();
+            }
+        }
+        catch (final IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Deletes the files of a version of a blob, and retries the content files which could not be deleted before. The
+     * ETag file is deleted first, so that a content file which cannot be deleted yet is not held by the next cache on
+     * the directory.
+     *
+     * @param name
+     *            A <code>String</code> which represents the name of the files of the version.
+     */
+    private synchronized void deleteFiles(final String name) {
+        final Iterator<File> staleFile = this.staleFiles.iterator();
+        while (staleFile.hasNext()) {
+            if (staleFile.next().delete()) {
+                staleFile.remove();
+            }
+        }
+
+        this.getETagFile(name).delete();
+        final File contentFile = this.getContentFile(name);
+        if (!contentFile.delete() && contentFile.exists()) {
+            this.staleFiles.add(contentFile);
+        }
+    }
+
+    /**
+     * Gets the file which holds the content of a version of a blob.
+     *
+     * @param name
+     *            A <code>String</code> which represents the name of the files of the version.
+     *
+     * @return A <code>File</code> object which represents the file.
+     */
+    private File getContentFile(final String name) {
+        return new File(this.directory, name.concat(CONTENT_SUFFIX));
+    }
+
+    /**
+     * Gets the file which holds the ETag of a version of a blob.
+     *
+     * @param name
+     *            A <code>String</code> which represents the name of the files of the version.
+     *
+     * @return A <code>File</code> object which represents the file.
+     */
+    private File getETagFile(final String name) {
+        return new File(this.directory, name.concat(ETAG_SUFFIX));
+    }
+
+    /**
+     * Represents a version of a blob held by the cache.
+     */
+    private static final class CachedBlob {
+        /**
+         * Holds the name of the files of the version, which starts with the key of the blob.
+         */
+        private final String name;
+
+        /**
+         * Holds the ETag of the version.
+         */
+        private final String etag;
+
+        /**
+         * Holds the length, in bytes, of the content.
+         */
+        private final long length;
+
+        private CachedBlob(final String name, final String etag, final long length) {
+            this.name = name;
+            this.etag = etag;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Represents a stream which writes the content of a blob being downloaded to the stream
+     * of the download, and to a file of the cache which becomes the content the cache holds for the blob once the
+     * download completes. The ranges of a blob downloaded in parallel are written to the file at their offsets instead.
+     * A failure to write the file only stops the blob from being cached, and does not fail the download.
+     */
+    final class PendingBlob extends OutputStream {
+        /**
+         * Holds the key of the blob.
+         */
+        private final String key;
+
+        /**
+         * Holds the stream of the download, or <code>null</code>.
+         */
+        private final OutputStream outStream;
+
+        /**
+         * Holds the file which receives the content, or <code>null</code> if it could not be written.
+         */
+        private File tempFile;
+
+        /**
+         * Holds the object which writes the file, or <code>null</code> if it could not be written.
+         */
+        private RandomAccessFile tempAccess;
+
+        /**
+         * Holds whether a range could not be written to the file, in which case the blob is not cached.
+         */
+        private volatile boolean rangeFailed;
+
+        /**
+         * Holds the number of bytes written to the file by the stream.
+         */
+        private long bytesWritten;
+
+        private PendingBlob(final String key, final OutputStream outStream) {
+            this.key = key;
+            this.outStream = outStream;
+
+            try {
+                // the name of the file is unique, and becomes the name of the files of the version once committed
+                this.tempFile = File.createTempFile(key + VERSION_SEPARATOR, TEMP_SUFFIX,
+                        BlobContentCache.this.directory);
+                this.tempAccess = new RandomAccessFile(this.tempFile, "rw");
+            }
+            catch (final IOException e) {
+                this.discard();
+            }
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            this.write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            if (this.outStream != null) {
+                this.outStream.write(b, off, len);
+            }
+
+            if (this.tempAccess != null) {
+                // content larger than the cache keeps streaming to the caller without being spooled to disk
+                this.bytesWritten += len;
+                if (this.bytesWritten > BlobContentCache.this.maxSizeInBytes) {
+                    this.discard();
+                    return;
+                }
+
+                try {
+                    this.tempAccess.write(b, off, len);
+                }
+                catch (final IOException e) {
+                    this.discard();
+                }
+            }
+        }
+
+        /**
+         * Stops writing the content to the file once the length of the content is known to exceed the size of the
+         * cache, before any of it is written.
+         *
+         * @param length
+         *            A <code>long</code> which represents the length, in bytes, of the content left to write.
+         */
+        void checkLength(final long length) {
+            if (this.bytesWritten + length > BlobContentCache.this.maxSizeInBytes) {
+                this.discard();
+            }
+        }
+
+        /**
+         * Sets the length of the content, before its ranges are written. The regions which no range is written to read
+         * as zeros, and are not allocated on file systems which support sparse files.
+         *
+         * @param length
+         *            A <code>long</code> which represents the length, in bytes, of the content.
+         */
+        void setLength(final long length) {
+            if (this.tempAccess != null) {
+                try {
+                    this.tempAccess.setLength(length);
+                }
+                catch (final IOException e) {
+                    this.rangeFailed = true;
+                }
+            }
+        }
+
+        /**
+         * Writes a range of the content at its offset. Ranges may be written concurrently, once the length of the
+         * content is set.
+         *
+         * @param buffer
+         *            A <code>byte</code> array which holds the range, from its start.
+         * @param length
+         *            An <code>int</code> which represents the length, in bytes, of the range.
+         * @param offset
+         *            A <code>long</code> which represents the offset of the range in the content.
+         */
+        void writeRange(final byte[] buffer, final int length, final long offset) {
+            if (this.tempAccess == null || this.rangeFailed) {
+                return;
+            }
+
+            try {
+                final FileChannel channel = this.tempAccess.getChannel();
+                final ByteBuffer data = ByteBuffer.wrap(buffer, 0, length);
+                while (data.hasRemaining()) {
+                    channel.write(data, offset + data.position());
+                }
+            }
+            catch (final IOException e) {
+                this.rangeFailed = true;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (this.outStream != null) {
+                this.outStream.flush();
+            }
+        }
+
+        /**
+         * Adds the blob to the cache, once its content was downloaded.
+         *
+         * @param etag
+         *            A <code>String</code> which represents the ETag of the version of the blob downloaded.
+         */
+        void commit(final String etag) {
+            if (this.tempAccess == null || this.rangeFailed || Utility.isNullOrEmpty(etag)) {
+                this.discard();
+                return;
+            }
+
+            try {
+                this.tempAccess.close();
+            }
+            catch (final IOException e) {
+                this.discard();
+                return;
+            }
+
+            BlobContentCache.this.install(this.key, etag, this.tempFile);
+        }
+
+        /**
+         * Deletes the content received, once the download failed or was not needed.
+         */
+        void abort() {
+            this.discard();
+        }
+
+        /**
+         * Closes and deletes the file which receives the content.
+         */
+        private void discard() {
+            if (this.tempAccess != null) {
+                try {
+                    this.tempAccess.close();
+                }
+                catch (final IOException e) {
+                    // the file is deleted anyway
+                }
+
+                this.tempAccess = null;
+            }
+
+            if (this.tempFile != null) {
+                this.tempFile.delete();
+                this.tempFile = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.microsoft.azure.storage.Constants;
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.TransferScheduler;
+import com.microsoft.azure.storage.core.Base64;
+import com.microsoft.azure.storage.core.Utility;
+
+/**
+ * RESERVED FOR INTERNAL USE. A class used to compute the MD5 hash of the content of a blob uploaded in blocks or pages
+ * off the thread which reads the data, while the blocks or pages are uploaded, or of a blob downloaded as ranges while
+ * the ranges are downloaded.
+ * <p>
+ * The buffers are hashed one at a time, in the order they are submitted, in a session of the transfer scheduler of the
+ * client which runs a single request at a time, so that hashing overlaps with the uploads without reading the data
+ * again. Ranges which complete out of order are submitted with their position in the content, and held until the ranges
+ * before them have been submitted.
+ */
+final class BlobContentDigest {
+
+    /**
+     * Holds the digest of the content. Only used by the request of the session which is running.
+     */
+    private final MessageDigest digest;
+
+    /**
+     * Holds the session in which the buffers are hashed.
+     */
+    private final TransferScheduler.Session session;
+
+    /**
+     * Holds the request which hashes the last buffer submitted, or <code>null</code>. Guarded by <code>this</code>.
+     */
+    private Future<Void> lastUpdate;
+
+    /**
+     * Holds the position of the next buffer to submit, for the buffers submitted with their position. Guarded by
+     * <code>this</code>.
+     */
+    private long nextSequence;
+
+    /**
+     * Holds the buffers submitted with their position before the buffers which precede them, by position. Guarded by
+     * <code>this</code>.
+     */
+    private final Map<Long, Runnable> heldUpdates = new HashMap<Long, Runnable>();
+
+    /**
+     * Creates an instance of the <code>BlobContentDigest</code> class.
+     *
+     * @param client
+     *            A {@link CloudBlobClient} object whose transfer scheduler runs the requests which hash the buffers.
+     *
+     * @throws StorageException
+     *             If the MD5 algorithm is not available.
+     */
+    BlobContentDigest(final CloudBlobClient client) throws StorageException {
+        try {
+            this.digest = MessageDigest.getInstance("MD5");
+        }
+        catch (final NoSuchAlgorithmException e) {
+            // This wont happen, throw fatal.
+            throw Utility.generateNewUnexpectedStorageException(e);
+        }
+
+        this.session = client.getTransferScheduler().openSession(1);
+    }
+
+    /**
+     * Queues a buffer to be hashed after the buffers submitted before it. The buffer is released to its pool once it
+     * is hashed and every other holder has released it.
+     *
+     * @param buffer
+     *            A <code>byte</code> array which holds the data.
+     * @param length
+     *            An <code>int</code> which represents the number of bytes of the buffer to hash, from its start.
+     * @param bufferPool
+     *            A {@link BlockBufferPool} object which represents the pool the buffer was taken from.
+     * @param holders
+     *            An <code>AtomicInteger</code> which holds the number of holders of the buffer, including this one.
+     */
+    synchronized void update(final byte[] buffer, final int length, final BlockBufferPool bufferPool,
+            final AtomicInteger holders) {
+        this.submit(this.createUpdate(buffer, length, bufferPool, holders));
+    }
+
+    /**
+     * Queues a buffer to be hashed once the buffers at every position before its own have been submitted, for content
+     * whose parts complete out of order. The positions start at 0, and each must be submitted once. The buffer is
+     * released to its pool once it is hashed and every other holder has released it.
+     *
+     * @param sequence
+     *            A <code>long</code> which represents the position of the buffer in the content.
+     * @param buffer
+     *            A <code>byte</code> array which holds the data.
+     * @param length
+     *            An <code>int</code> which represents the number of bytes of the buffer to hash, from its start.
+     * @param bufferPool
+     *            A {@link BlockBufferPool} object which represents the pool the buffer was taken from.
+     * @param holders
+     *            An <code>AtomicInteger</code> which holds the number of holders of the buffer, including this one.
+     */
+    synchronized void update(final long sequence, final byte[] buffer, final int length,
+            final BlockBufferPool bufferPool, final AtomicInteger holders) {
+        this.heldUpdates.put(sequence, this.createUpdate(buffer, length, bufferPool, holders));
+        this.submitHeldUpdates();
+    }
+
+    /**
+     * Queues zeros to be hashed once the buffers at every position before its own have been submitted, for the empty
+     * regions of a page blob which are not downloaded.
+     *
+     * @param sequence
+     *            A <code>long</code> which represents the position of the zeros in the content.
+     * @param length
+     *            A <code>long</code> which represents the number of zeros to hash.
+     */
+    synchronized void updateZeros(final long sequence, final long length) {
+        this.heldUpdates.put(sequence, new Runnable() {
+            @Override
+            public void run() {
+                final byte[] zeros = new byte[(int) Math.min(length, 4 * Constants.MB)];
+                for (long remaining = length; remaining > 0; remaining -= zeros.length) {
+                    BlobContentDigest.this.digest.update(zeros, 0, (int) Math.min(remaining, zeros.length));
+                }
+            }
+        });
+
+        this.submitHeldUpdates();
+    }
+
+    private void submitHeldUpdates() {
+        Runnable nextUpdate;
+        while ((nextUpdate = this.heldUpdates.remove(this.nextSequence)) != null) {
+            this.submit(nextUpdate);
+            this.nextSequence++;
+        }
+    }
+
+    private Runnable createUpdate(final byte[] buffer, final int length, final BlockBufferPool bufferPool,
+            final AtomicInteger holders) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    BlobContentDigest.this.digest.update(buffer, 0, length);
+                }
+                finally {
+                    bufferPool.release(buffer, holders);
+                }
+            }
+        };
+    }
+
+    private void submit(final Runnable update) {
+        final FutureTask<Void> task = new FutureTask<Void>(update, null);
+        this.session.execute(task);
+        this.lastUpdate = task;
+    }
+
+    /**
+     * Waits for the buffers submitted to be hashed, and gets the MD5 hash of the content.
+     *
+     * @return A <code>String</code> which represents the Base64-encoded MD5 hash of the content.
+     *
+     * @throws IOException
+     *             If the thread was interrupted while waiting.
+     */
+    synchronized String getMd5() throws IOException {
+        if (this.lastUpdate != null) {
+            // the session runs the requests in order, so the last one completes after all the others
+            try {
+                this.lastUpdate.get();
+            }
+            catch (final InterruptedException e) {
+                throw Utility.initIOException(e);
+            }
+            catch (final ExecutionException e) {
+                throw Utility.initIOException(e);
+            }
+        }
+
+        this.session.close();
+        return Base64.encode(this.digest.digest());
+    }
+
+    /**
+     * Cancels the buffers which have not been hashed yet, once the upload or the download failed.
+     */
+    void close() {
+        this.session.close();
+    }
+}
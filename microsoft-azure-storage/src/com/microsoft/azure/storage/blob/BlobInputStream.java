@@ -17,9 +17,18 @@ package com.microsoft.azure.storage.blob;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.microsoft.azure.storage.AccessCondition;
 import com.microsoft.azure.storage.Constants;
@@ -28,12 +37,21 @@ import com.microsoft.azure.storage.OperationContext;
 import com.microsoft.azure.storage.StorageErrorCode;
 import com.microsoft.azure.storage.StorageErrorCodeStrings;
 import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.TransferScheduler;
 import com.microsoft.azure.storage.core.Base64;
 import com.microsoft.azure.storage.core.SR;
 import com.microsoft.azure.storage.core.Utility;
 
 /**
  * Provides an input stream to read a given blob resource.
+ * <p>
+ * The blob is read in ranges of the minimum read size of the blob. While the stream is read sequentially, the ranges
+ * which follow the one being read are downloaded ahead of the read position, in parallel, up to the concurrent request
+ * count of the request options. The number of ranges read ahead doubles with each range read in sequence, and drops
+ * to none when the stream is repositioned.
+ * <p>
+ * If a content cache is set on the client and holds the version of the blob the stream reads, the ranges are read from
+ * the cache instead of being downloaded.
  */
 public final class BlobInputStream extends InputStream {
     /**
@@ -121,6 +139,43 @@ public final class BlobInputStream extends InputStream {
      */
     private AccessCondition accessCondition = null;
 
+    /**
+     * Holds the buffers of the range being read and of the ranges read ahead, which bounds the memory used by the
+     * stream.
+     */
+    private final BlockBufferPool bufferPool;
+
+    /**
+     * Holds the session in which the ranges are read ahead.
+     */
+    private final TransferScheduler.Session transferSession;
+
+    /**
+     * Holds the ranges being read ahead, in the order of their offsets.
+     */
+    private final ArrayDeque<ReadAheadRange> readAheadRanges = new ArrayDeque<ReadAheadRange>();
+
+    /**
+     * Holds the maximum number of ranges read ahead.
+     */
+    private final int maxReadAhead;
+
+    /**
+     * Holds the number of ranges currently read ahead, which grows while the stream is read sequentially.
+     */
+    private int readAheadWindow;
+
+    /**
+     * Holds the range whose buffer is being read, or <code>null</code>.
+     */
+    private ReadAheadRange currentRange;
+
+    /**
+     * Holds the channel which reads the version of the blob held by the content cache of the client, or
+     * <code>null</code> if the ranges are downloaded.
+     */
+    private FileChannel cachedContent;
+
     /**
      * Initializes a new instance of the BlobInputStream class.
      * 
@@ -181,6 +236,18 @@ public final class BlobInputStream extends InputStream {
 
         this.streamLength = parentBlob.getProperties().getLength();
 
+        final BlobContentCache contentCache = parentBlob.getServiceClient().getContentCache();
+        if (contentCache != null) {
+            try {
+                final RandomAccessFile cachedFile = contentCache.open(BlobContentCache.getKey(parentBlob),
+                        parentBlob.getProperties().getEtag());
+                this.cachedContent = cachedFile == null ? null : cachedFile.getChannel();
+            }
+            catch (final IOException e) {
+                // the ranges are downloaded instead
+            }
+        }
+
         if (this.validateBlobMd5) {
             try {
                 this.md5Digest = MessageDigest.getInstance("MD5");
@@ -191,6 +258,11 @@ public final class BlobInputStream extends InputStream {
             }
         }
 
+        this.maxReadAhead = this.options.getConcurrentRequestCount();
+        this.bufferPool = new BlockBufferPool(this.readSize, this.maxReadAhead + 1);
+        this.transferSession = this.parentBlobRef.getServiceClient().getTransferScheduler()
+                .openSession(this.maxReadAhead);
+
         this.reposition(0);
     }
 
@@ -235,11 +307,21 @@ public final class BlobInputStream extends InputStream {
         this.currentBuffer = null;
         this.streamFaulted = true;
         this.lastError = new IOException(SR.STREAM_CLOSED);
+
+        this.abandonReadAhead();
+        this.transferSession.close();
+
+        if (this.cachedContent != null) {
+            this.cachedContent.close();
+        }
     }
 
     /**
      * Dispatches a read operation of N bytes. When using sparspe page blobs the page ranges are evaluated and zero
      * bytes may be generated on the client side for some ranges that do not exist.
+     * <p>
+     * The range is taken from the ranges read ahead if the first of them starts at the read position, and is
+     * downloaded otherwise. The ranges which follow it are then read ahead, as many as the read-ahead window allows.
      * 
      * @param readLength
      *            An <code>int</code> which represents the number of bytes to read.
@@ -250,20 +332,155 @@ public final class BlobInputStream extends InputStream {
     @DoesServiceRequest
     private synchronized void dispatchRead(final int readLength) throws IOException {
         try {
-            final byte[] byteBuffer = new byte[readLength];
+            // a read which continues where the previous range ended is sequential, anything else is a seek
+            if (this.currentAbsoluteReadPosition == this.bufferStartOffset + this.bufferSize) {
+                this.readAheadWindow = Math.min(Math.max(this.readAheadWindow * 2, 1), this.maxReadAhead);
+            }
+            else {
+                this.readAheadWindow = 0;
+            }
+
+            this.releaseCurrentRange();
 
-            this.parentBlobRef.downloadRangeInternal(this.currentAbsoluteReadPosition, (long) readLength, byteBuffer,
-                    0, this.accessCondition, this.options, this.opContext);
+            final ReadAheadRange nextRange = this.readAheadRanges.peek();
+            if (nextRange != null && nextRange.offset == this.currentAbsoluteReadPosition) {
+                this.currentRange = this.readAheadRanges.poll();
+            }
+            else {
+                this.abandonReadAhead();
+                this.currentRange = this.startRange(this.currentAbsoluteReadPosition, readLength);
+            }
+
+            // read ahead before waiting for the range, so that the ranges download while it is read
+            long readAheadOffset = this.readAheadRanges.isEmpty() ? this.currentRange.offset
+                    + this.currentRange.length : this.readAheadRanges.peekLast().offset
+                    + this.readAheadRanges.peekLast().length;
+            while (this.readAheadRanges.size() < this.readAheadWindow && readAheadOffset < this.streamLength) {
+                final ReadAheadRange range = this.startRange(readAheadOffset,
+                        (int) Math.min(this.readSize, this.streamLength - readAheadOffset));
+                this.readAheadRanges.add(range);
+                readAheadOffset += range.length;
+            }
+
+            this.currentRange.download.get();
 
-            this.currentBuffer = new ByteArrayInputStream(byteBuffer);
-            this.bufferSize = readLength;
-            this.bufferStartOffset = this.currentAbsoluteReadPosition;
+            this.currentBuffer = new ByteArrayInputStream(this.currentRange.buffer, 0, this.currentRange.length);
+            this.bufferSize = this.currentRange.length;
+            this.bufferStartOffset = this.currentRange.offset;
         }
-        catch (final StorageException e) {
+        catch (final InterruptedException e) {
             this.streamFaulted = true;
             this.lastError = Utility.initIOException(e);
             throw this.lastError;
         }
+        catch (final ExecutionException e) {
+            this.streamFaulted = true;
+            this.lastError = Utility.initIOException(e.getCause() instanceof StorageException ? (StorageException) e
+                    .getCause() : e);
+            throw this.lastError;
+        }
+    }
+
+    /**
+     * Starts to download a range into a buffer of the pool, in the session of the stream.
+     * 
+     * @param offset
+     *            A <code>long</code> which represents the offset of the range in the blob.
+     * @param length
+     *            An <code>int</code> which represents the length of the range.
+     * 
+     * @return A {@link ReadAheadRange} object which represents the range.
+     * 
+     * @throws InterruptedException
+     *             If the thread was interrupted while waiting for a buffer.
+     */
+    private ReadAheadRange startRange(final long offset, final int length) throws InterruptedException {
+        final ReadAheadRange range = new ReadAheadRange(offset, length, this.bufferPool.take());
+        range.download = new FutureTask<Void>(new Callable<Void>() {
+            @Override
+            public Void call() throws StorageException, IOException {
+                if (!range.claimed.compareAndSet(false, true)) {
+                    // the range was abandoned before it started
+                    return null;
+                }
+
+                try {
+                    if (BlobInputStream.this.cachedContent != null) {
+                        BlobInputStream.this.readCachedRange(range);
+                        return null;
+                    }
+
+                    // the ranges are downloaded concurrently, so they leave the attributes of the blob as they were
+                    BlobInputStream.this.parentBlobRef.downloadRangeDetached(range.offset, range.length,
+                            range.buffer, BlobInputStream.this.accessCondition, BlobInputStream.this.options,
+                            BlobInputStream.this.opContext);
+                    return null;
+                }
+                finally {
+                    BlobInputStream.this.bufferPool.release(range.buffer, range.holders);
+                }
+            }
+        });
+
+        this.transferSession.execute(range.download);
+        return range;
+    }
+
+    /**
+     * Reads a range from the version of the blob held by the content cache of the client.
+     * 
+     * @param range
+     *            A {@link ReadAheadRange} object which represents the range.
+     * 
+     * @throws StorageException
+     *             If the cached content is shorter than the blob.
+     * @throws IOException
+     *             If the cached content could not be read.
+     */
+    private void readCachedRange(final ReadAheadRange range) throws StorageException, IOException {
+        final ByteBuffer data = ByteBuffer.wrap(range.buffer, 0, range.length);
+        while (data.hasRemaining()) {
+            // positional reads do not share a position, so the ranges may be read at once
+            if (this.cachedContent.read(data, range.offset + data.position()) == -1) {
+                throw new StorageException(StorageErrorCodeStrings.OUT_OF_RANGE_INPUT, SR.CONTENT_LENGTH_MISMATCH,
+                        Constants.HeaderConstants.HTTP_UNUSED_306, null, null);
+            }
+        }
+    }
+
+    /**
+     * Releases the buffer of the range which was being read.
+     */
+    private void releaseCurrentRange() {
+        if (this.currentRange != null) {
+            this.abandonRange(this.currentRange);
+            this.currentRange = null;
+        }
+    }
+
+    /**
+     * Abandons the ranges read ahead, once the stream is repositioned or closed.
+     */
+    private void abandonReadAhead() {
+        while (!this.readAheadRanges.isEmpty()) {
+            this.abandonRange(this.readAheadRanges.poll());
+        }
+    }
+
+    /**
+     * Releases the hold of the stream on the buffer of a range. A range which has not started yet will not start, and
+     * a range which is downloading releases its buffer once it completes.
+     * 
+     * @param range
+     *            A {@link ReadAheadRange} object which represents the range.
+     */
+    private void abandonRange(final ReadAheadRange range) {
+        if (range.claimed.compareAndSet(false, true)) {
+            // release the hold of the download, which will not run
+            range.holders.decrementAndGet();
+        }
+
+        this.bufferPool.release(range.buffer, range.holders);
     }
 
     /**
@@ -497,6 +714,47 @@ public final class BlobInputStream extends InputStream {
         this.currentBuffer = new ByteArrayInputStream(new byte[0]);
     }
 
+    /**
+     * Represents a range of the blob which is downloaded into a buffer of the pool.
+     */
+    private static final class ReadAheadRange {
+        /**
+         * Holds the offset of the range in the blob.
+         */
+        private final long offset;
+
+        /**
+         * Holds the length of the range.
+         */
+        private final int length;
+
+        /**
+         * Holds the buffer the range is downloaded into.
+         */
+        private final byte[] buffer;
+
+        /**
+         * Holds the number of holders of the buffer: the download and the stream.
+         */
+        private final AtomicInteger holders = new AtomicInteger(2);
+
+        /**
+         * Holds whether the download has started, or will not start since the range was abandoned.
+         */
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        /**
+         * Holds the download of the range.
+         */
+        private FutureTask<Void> download;
+
+        private ReadAheadRange(final long offset, final int length, final byte[] buffer) {
+            this.offset = offset;
+            this.length = length;
+            this.buffer = buffer;
+        }
+    }
+
     /**
      * Repositions this stream to the position at the time the mark method was last called on this input stream. Note
      * repositioning the blob read stream will disable blob MD5 checking.
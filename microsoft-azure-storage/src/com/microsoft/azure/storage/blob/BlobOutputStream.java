@@ -15,7 +15,6 @@
 package com.microsoft.azure.storage.blob;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -26,15 +25,15 @@ import java.util.Random;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.microsoft.azure.storage.AccessCondition;
 import com.microsoft.azure.storage.Constants;
 import com.microsoft.azure.storage.DoesServiceRequest;
 import com.microsoft.azure.storage.OperationContext;
 import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.TransferScheduler;
 import com.microsoft.azure.storage.core.Base64;
 import com.microsoft.azure.storage.core.SR;
 import com.microsoft.azure.storage.core.Utility;
@@ -84,9 +83,9 @@ public final class BlobOutputStream extends OutputStream {
     BlobRequestOptions options;
 
     /**
-     * Holds the reference to the MD5 digest for the blob.
+     * Holds the digest which hashes the content of the blob off the writing thread, or <code>null</code>.
      */
-    private MessageDigest md5Digest;
+    private BlobContentDigest contentDigest;
 
     /**
      * Used for block blobs, holds the current BlockID Sequence number.
@@ -104,9 +103,45 @@ public final class BlobOutputStream extends OutputStream {
     private long currentPageOffset;
 
     /**
-     * A private buffer to store data prior to committing to the cloud.
+     * Used for page blobs, holds whether the pages which hold only zeros are skipped rather than written.
      */
-    private ByteArrayOutputStream outBuffer;
+    private boolean skipEmptyPages;
+
+    /**
+     * Used for resumable block blob uploads, holds the journal of the upload, or <code>null</code>.
+     */
+    private BlockUploadJournal journal;
+
+    /**
+     * Used for parts of block staging sessions, holds the session the part belongs to, or <code>null</code>.
+     */
+    private BlockStagingSession stagingSession;
+
+    /**
+     * Used for parts of block staging sessions, holds the number of the part written by the stream.
+     */
+    private int stagingPartNumber;
+
+    /**
+     * Used for resumable block blob uploads, holds the offset of the next block in the data written to the stream.
+     */
+    private long currentBlockOffset;
+
+    /**
+     * Used for block blob uploads with an adaptive block size, holds the tuner which chooses the block size and the
+     * concurrency, or <code>null</code>.
+     */
+    private BlockUploadTuner tuner;
+
+    /**
+     * Holds the buffers of the blocks or pages being filled or written, which bounds the memory used by the stream.
+     */
+    private BlockBufferPool bufferPool;
+
+    /**
+     * A private buffer to store data prior to committing to the cloud, or <code>null</code> until data is written.
+     */
+    private byte[] currentBuffer;
 
     /**
      * Holds the number of currently buffered bytes.
@@ -125,9 +160,9 @@ public final class BlobOutputStream extends OutputStream {
     private volatile int outstandingRequests;
 
     /**
-     * The ExecutorService used to schedule tasks for this stream.
+     * The session of the client's transfer scheduler used to schedule tasks for this stream.
      */
-    private final ExecutorService threadExecutor;
+    private final TransferScheduler.Session transferSession;
 
     /**
      * The CompletionService used to await task completion for this stream.
@@ -160,7 +195,6 @@ public final class BlobOutputStream extends OutputStream {
         this.parentBlobRef = parentBlob;
         this.parentBlobRef.assertCorrectBlobType();
         this.options = new BlobRequestOptions(options);
-        this.outBuffer = new ByteArrayOutputStream();
         this.opContext = opContext;
         this.streamFaulted = false;
 
@@ -169,18 +203,13 @@ public final class BlobOutputStream extends OutputStream {
         }
 
         if (this.options.getStoreBlobContentMD5()) {
-            try {
-                this.md5Digest = MessageDigest.getInstance("MD5");
-            }
-            catch (final NoSuchAlgorithmException e) {
-                // This wont happen, throw fatal.
-                throw Utility.generateNewUnexpectedStorageException(e);
-            }
+            this.contentDigest = new BlobContentDigest(this.parentBlobRef.getServiceClient());
         }
 
-        // V2 cachedThreadPool for perf.
-        this.threadExecutor = Executors.newFixedThreadPool(this.options.getConcurrentRequestCount());
-        this.completionService = new ExecutorCompletionService<Void>(this.threadExecutor);
+        // Run the writes on the threads shared by all transfers of the client rather than on threads of our own
+        this.transferSession = this.parentBlobRef.getServiceClient().getTransferScheduler().openSession(
+                this.options.getConcurrentRequestCount());
+        this.completionService = new ExecutorCompletionService<Void>(this.transferSession);
     }
 
     /**
@@ -200,13 +229,109 @@ public final class BlobOutputStream extends OutputStream {
      */
     protected BlobOutputStream(final CloudBlockBlob parentBlob, final AccessCondition accessCondition,
             final BlobRequestOptions options, final OperationContext opContext) throws StorageException {
+        this(parentBlob, -1L /* length */, accessCondition, options, opContext);
+    }
+
+    /**
+     * Initializes a new instance of the BlobOutputStream class for a CloudBlockBlob, for data of the specified length.
+     * The length is used to choose the block size when the block size is adaptive.
+     * 
+     * @param parentBlob
+     *            A {@link CloudBlockBlob} object which represents the blob that this stream is associated with.
+     * @param length
+     *            A <code>long</code> which represents the length, in bytes, of the data to be written, or -1 if
+     *            unknown.
+     * @param accessCondition
+     *            An {@link AccessCondition} object which represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object which specifies any additional options for the request.
+     * @param opContext
+     *            An {@link OperationContext} object which is used to track the execution of the operation.
+     * 
+     * @throws StorageException
+     *             An exception representing any error which occurred during the operation.
+     */
+    BlobOutputStream(final CloudBlockBlob parentBlob, final long length, final AccessCondition accessCondition,
+            final BlobRequestOptions options, final OperationContext opContext) throws StorageException {
         this((CloudBlob) parentBlob, accessCondition, options, opContext);
         this.blockIdSequenceNumber = (long) (blockSequenceGenerator.nextInt(Integer.MAX_VALUE))
                 + blockSequenceGenerator.nextInt(Integer.MAX_VALUE - 100000);
         this.blockList = new ArrayList<BlockEntry>();
 
+        this.streamType = BlobType.BLOCK_BLOB;
+        if (this.options.getUseAdaptiveBlockSize()) {
+            this.tuner = new BlockUploadTuner(length, this.options.getConcurrentRequestCount());
+            this.internalWriteThreshold = this.tuner.getBlockSize(0, 0);
+        }
+        else {
+            this.internalWriteThreshold = this.parentBlobRef.getStreamWriteSizeInBytes();
+        }
+
+        this.bufferPool = this.createBufferPool();
+    }
+
+    /**
+     * Initializes a new instance of the BlobOutputStream class for a resumable upload of a CloudBlockBlob. The block
+     * IDs are taken from the journal, and blocks the journal holds as staged are not uploaded again.
+     * 
+     * @param parentBlob
+     *            A {@link CloudBlockBlob} object which represents the blob that this stream is associated with.
+     * @param journal
+     *            A {@link BlockUploadJournal} object which has been opened for the upload.
+     * @param accessCondition
+     *            An {@link AccessCondition} object which represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object which specifies any additional options for the request.
+     * @param opContext
+     *            An {@link OperationContext} object which is used to track the execution of the operation.
+     * 
+     * @throws StorageException
+     *             An exception representing any error which occurred during the operation.
+     */
+    BlobOutputStream(final CloudBlockBlob parentBlob, final BlockUploadJournal journal,
+            final AccessCondition accessCondition, final BlobRequestOptions options, final OperationContext opContext)
+            throws StorageException {
+        this((CloudBlob) parentBlob, accessCondition, options, opContext);
+        this.blockList = new ArrayList<BlockEntry>();
+
+        // the block IDs of a journaled upload depend on the block index, so the block size cannot change
+        this.streamType = BlobType.BLOCK_BLOB;
+        this.internalWriteThreshold = this.parentBlobRef.getStreamWriteSizeInBytes();
+        this.bufferPool = this.createBufferPool();
+        this.journal = journal;
+    }
+
+    /**
+     * Initializes a new instance of the BlobOutputStream class for a part of a block staging session. The block IDs
+     * are taken from the session, and closing the stream completes the part rather than committing the blob.
+     * 
+     * @param parentBlob
+     *            A {@link CloudBlockBlob} object which represents the blob that this stream is associated with.
+     * @param stagingSession
+     *            A {@link BlockStagingSession} object which represents the session the part belongs to.
+     * @param partNumber
+     *            An <code>int</code> which represents the number of the part.
+     * @param accessCondition
+     *            An {@link AccessCondition} object which represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object which specifies any additional options for the request.
+     * @param opContext
+     *            An {@link OperationContext} object which is used to track the execution of the operation.
+     * 
+     * @throws StorageException
+     *             An exception representing any error which occurred during the operation.
+     */
+    BlobOutputStream(final CloudBlockBlob parentBlob, final BlockStagingSession stagingSession, final int partNumber,
+            final AccessCondition accessCondition, final BlobRequestOptions options, final OperationContext opContext)
+            throws StorageException {
+        this((CloudBlob) parentBlob, accessCondition, options, opContext);
+        this.blockList = new ArrayList<BlockEntry>();
+
         this.streamType = BlobType.BLOCK_BLOB;
         this.internalWriteThreshold = this.parentBlobRef.getStreamWriteSizeInBytes();
+        this.bufferPool = this.createBufferPool();
+        this.stagingSession = stagingSession;
+        this.stagingPartNumber = partNumber;
     }
 
     /**
@@ -231,9 +356,64 @@ public final class BlobOutputStream extends OutputStream {
     protected BlobOutputStream(final CloudPageBlob parentBlob, final long length,
             final AccessCondition accessCondition, final BlobRequestOptions options, final OperationContext opContext)
             throws StorageException {
+        this(parentBlob, length, false /* skipEmptyPages */, accessCondition, options, opContext);
+    }
+
+    /**
+     * Initializes a new instance of the BlobOutputStream class for a CloudPageBlob, which may skip the pages which
+     * hold only zeros.
+     * 
+     * @param parentBlob
+     *            A {@link CloudPageBlob} object which represents the blob that this stream is associated with.
+     * @param length
+     *            A <code>long</code> which represents the length of the page blob in bytes, which must be a multiple of
+     *            512.
+     * @param skipEmptyPages
+     *            <code>true</code> to skip the pages which hold only zeros, which the blob must already read as;
+     *            otherwise, <code>false</code>.
+     * @param accessCondition
+     *            An {@link AccessCondition} object which represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object which specifies any additional options for the request
+     * @param opContext
+     *            An {@link OperationContext} object which is used to track the execution of the operation
+     * 
+     * @throws StorageException
+     *             An exception representing any error which occurred during the operation.
+     */
+    @DoesServiceRequest
+    BlobOutputStream(final CloudPageBlob parentBlob, final long length, final boolean skipEmptyPages,
+            final AccessCondition accessCondition, final BlobRequestOptions options, final OperationContext opContext)
+            throws StorageException {
         this(parentBlob, accessCondition, options, opContext);
         this.streamType = BlobType.PAGE_BLOB;
         this.internalWriteThreshold = (int) Math.min(this.parentBlobRef.getStreamWriteSizeInBytes(), length);
+        this.bufferPool = this.createBufferPool();
+        this.skipEmptyPages = skipEmptyPages;
+    }
+
+    /**
+     * Creates the pool of write buffers. Up to twice the number of concurrent requests can be being written while
+     * another buffer is filled, and a write waits for a buffer once they are all in use.
+     */
+    private BlockBufferPool createBufferPool() {
+        return new BlockBufferPool(this.internalWriteThreshold, this.options.getConcurrentRequestCount() * 2 + 1);
+    }
+
+    /**
+     * Applies the block size and concurrency chosen by the tuner, if the block size is adaptive. Must be called between
+     * blocks, when no buffer is being filled.
+     */
+    private void applyTuning() {
+        if (this.tuner == null) {
+            return;
+        }
+
+        final int blockSize = this.tuner.getBlockSize(this.blockList.size(), this.currentBlockOffset);
+        final int concurrency = this.tuner.getConcurrency();
+        this.internalWriteThreshold = blockSize;
+        this.transferSession.setMaxConcurrency(concurrency);
+        this.bufferPool.resize(blockSize, concurrency * 2 + 1);
     }
 
     /**
@@ -251,6 +431,38 @@ public final class BlobOutputStream extends OutputStream {
         }
     }
 
+    /**
+     * Abandons the stream without committing the blob, for example because the source of the data failed. Writes
+     * which have not started are cancelled, and the writes in progress are waited for, so that the journal of a
+     * resumable upload records every block which was uploaded before it is closed.
+     * 
+     * @throws IOException
+     *             If the journal could not be closed.
+     */
+    void abort() throws IOException {
+        synchronized (this.lastErrorLock) {
+            this.streamFaulted = true;
+            this.lastError = new IOException(SR.STREAM_CLOSED);
+        }
+
+        this.transferSession.close();
+
+        try {
+            // cancelled writes complete immediately, the outcome of the others no longer matters
+            for (; this.outstandingRequests > 0; this.outstandingRequests--) {
+                this.completionService.take();
+            }
+        }
+        catch (final InterruptedException e) {
+            throw Utility.initIOException(e);
+        }
+        finally {
+            if (this.journal != null) {
+                this.journal.close();
+            }
+        }
+    }
+
     /**
      * Closes this output stream and releases any system resources associated with this stream. If any data remains in
      * the buffer it is committed to the service.
@@ -263,15 +475,12 @@ public final class BlobOutputStream extends OutputStream {
     public void close() throws IOException {
         try {
             // if the user has already closed the stream, this will throw a STREAM_CLOSED exception
-            // if an exception was thrown by any thread in the threadExecutor, realize it now
+            // if an exception was thrown by any of the writes, realize it now
             this.checkStreamState();
 
             // flush any remaining data
             this.flush();
 
-            // Shut down the ExecutorService. Executes previously submitted tasks, but accepts no new tasks.
-            this.threadExecutor.shutdown();
-
             // Waits for all submitted tasks to complete
             while (this.outstandingRequests > 0) {
                 this.waitForTaskToComplete();
@@ -280,6 +489,10 @@ public final class BlobOutputStream extends OutputStream {
             // if one of the tasks threw an exception, realize it now.
             this.checkStreamState();
 
+            if (this.contentDigest != null) {
+                this.parentBlobRef.getProperties().setContentMD5(this.contentDigest.getMd5());
+            }
+
             // try to commit the blob
             try {
                 this.commit();
@@ -287,6 +500,10 @@ public final class BlobOutputStream extends OutputStream {
             catch (final StorageException e) {
                 throw Utility.initIOException(e);
             }
+
+            if (this.journal != null) {
+                this.journal.complete();
+            }
         }
         finally {
             // if close() is called again, an exception will be thrown
@@ -295,27 +512,39 @@ public final class BlobOutputStream extends OutputStream {
                 this.lastError = new IOException(SR.STREAM_CLOSED);
             }
 
-            // if an exception was thrown and the executor was not yet closed, call shutDownNow() to cancel all tasks 
-            // and shutdown the ExecutorService
-            if (!this.threadExecutor.isShutdown()) {
-                this.threadExecutor.shutdownNow();
+            // cancel any writes which have not started, if an exception was thrown, and release the session
+            this.transferSession.close();
+            if (this.contentDigest != null) {
+                this.contentDigest.close();
+            }
+
+            // keep the journal of a resumable upload which failed, so that it can be resumed
+            if (this.journal != null) {
+                this.journal.close();
             }
         }
     }
 
     /**
-     * Commits the blob, for block blob this uploads the block list.
+     * Commits the blob, for block blob this uploads the block list, and for a part of a block staging session this
+     * completes the part.
      * 
      * @throws StorageException
      *             An exception representing any error which occurred during the operation.
      */
     @DoesServiceRequest
     private void commit() throws StorageException {
-        if (this.options.getStoreBlobContentMD5()) {
-            this.parentBlobRef.getProperties().setContentMD5(Base64.encode(this.md5Digest.digest()));
+        if (this.stagingSession != null) {
+            // the session commits the blocks of all the parts at once
+            try {
+                this.stagingSession.completePart(this.stagingPartNumber, this.blockList.size(), this.accessCondition,
+                        this.options, this.opContext);
+            }
+            catch (final IOException e) {
+                throw Utility.generateNewUnexpectedStorageException(e);
+            }
         }
-
-        if (this.streamType == BlobType.BLOCK_BLOB) {
+        else if (this.streamType == BlobType.BLOCK_BLOB) {
             // wait for all blocks to finish
             final CloudBlockBlob blobRef = (CloudBlockBlob) this.parentBlobRef;
             blobRef.commitBlockList(this.blockList, this.accessCondition, this.options, this.opContext);
@@ -344,23 +573,59 @@ public final class BlobOutputStream extends OutputStream {
 
         Callable<Void> worker = null;
 
-        if (this.outstandingRequests > this.options.getConcurrentRequestCount() * 2) {
-            this.waitForTaskToComplete();
-        }
+        // the buffer pool bounds the outstanding writes, so only collect those which have already completed
+        this.collectCompletedTasks();
+
+        final byte[] buffer = this.currentBuffer;
+        final ByteArrayInputStream bufferRef = new ByteArrayInputStream(buffer, 0, writeLength);
 
-        final ByteArrayInputStream bufferRef = new ByteArrayInputStream(this.outBuffer.toByteArray());
+        // the content is hashed in order, off this thread, while the buffer is written
+        final AtomicInteger bufferHolders = new AtomicInteger(this.contentDigest == null ? 1 : 2);
+        if (this.contentDigest != null) {
+            this.contentDigest.update(buffer, writeLength, this.bufferPool, bufferHolders);
+        }
 
         if (this.streamType == BlobType.BLOCK_BLOB) {
             final CloudBlockBlob blobRef = (CloudBlockBlob) this.parentBlobRef;
-            final String blockID = Base64.encode(Utility.getBytesFromLong(this.blockIdSequenceNumber++));
+            final long blockIndex = this.blockList.size();
+            final long blockOffset = this.currentBlockOffset;
+            final String blockID;
+            if (this.journal != null) {
+                blockID = this.journal.getBlockId(blockIndex);
+            }
+            else if (this.stagingSession != null) {
+                blockID = this.stagingSession.getBlockId(this.stagingPartNumber, blockIndex);
+            }
+            else {
+                blockID = Base64.encode(Utility.getBytesFromLong(this.blockIdSequenceNumber++));
+            }
+
             this.blockList.add(new BlockEntry(blockID, BlockSearchMode.LATEST));
+            this.currentBlockOffset += writeLength;
 
             worker = new Callable<Void>() {
                 @Override
                 public Void call() {
                     try {
+                        final String blockMD5 = BlobOutputStream.this.journal == null ? null : getMD5(buffer,
+                                writeLength);
+                        if (BlobOutputStream.this.journal != null
+                                && BlobOutputStream.this.journal.isStaged(blockIndex, writeLength, blockMD5)) {
+                            // the block was uploaded before the upload was interrupted
+                            return null;
+                        }
+
+                        final long startTime = System.nanoTime();
                         blobRef.uploadBlock(blockID, bufferRef, writeLength, BlobOutputStream.this.accessCondition,
                                 BlobOutputStream.this.options, BlobOutputStream.this.opContext);
+
+                        if (BlobOutputStream.this.tuner != null) {
+                            BlobOutputStream.this.tuner.recordBlock(writeLength, System.nanoTime() - startTime);
+                        }
+
+                        if (BlobOutputStream.this.journal != null) {
+                            BlobOutputStream.this.journal.recordStaged(blockIndex, blockOffset, writeLength, blockMD5);
+                        }
                     }
                     catch (final IOException e) {
                         synchronized (BlobOutputStream.this.lastErrorLock) {
@@ -374,6 +639,9 @@ public final class BlobOutputStream extends OutputStream {
                             BlobOutputStream.this.lastError = Utility.initIOException(e);
                         }
                     }
+                    finally {
+                        BlobOutputStream.this.bufferPool.release(buffer, bufferHolders);
+                    }
                     return null;
                 }
             };
@@ -391,7 +659,8 @@ public final class BlobOutputStream extends OutputStream {
                 @Override
                 public Void call() {
                     try {
-                        blobRef.uploadPages(bufferRef, opOffset, opWriteLength, BlobOutputStream.this.accessCondition,
+                        blobRef.uploadPagesFromBuffer(buffer, (int) opWriteLength, opOffset,
+                                BlobOutputStream.this.skipEmptyPages, BlobOutputStream.this.accessCondition,
                                 BlobOutputStream.this.options, BlobOutputStream.this.opContext);
                     }
                     catch (final IOException e) {
@@ -406,6 +675,9 @@ public final class BlobOutputStream extends OutputStream {
                             BlobOutputStream.this.lastError = Utility.initIOException(e);
                         }
                     }
+                    finally {
+                        BlobOutputStream.this.bufferPool.release(buffer, bufferHolders);
+                    }
                     return null;
                 }
             };
@@ -415,7 +687,11 @@ public final class BlobOutputStream extends OutputStream {
         this.completionService.submit(worker);
         this.outstandingRequests++;
         this.currentBufferedBytes = 0;
-        this.outBuffer = new ByteArrayOutputStream();
+        this.currentBuffer = null;
+
+        if (this.streamType == BlobType.BLOCK_BLOB) {
+            this.applyTuning();
+        }
     }
 
     /**
@@ -466,6 +742,55 @@ public final class BlobOutputStream extends OutputStream {
         this.outstandingRequests--;
     }
 
+    /**
+     * Computes the MD5 hash of a buffer.
+     * 
+     * @param buffer
+     *            A <code>byte</code> array which represents the buffer.
+     * @param length
+     *            An <code>int</code> which represents the number of bytes of the buffer to hash.
+     * 
+     * @return A <code>String</code> which represents the Base64-encoded MD5 hash.
+     * 
+     * @throws IOException
+     *             If the MD5 algorithm is not available.
+     */
+    private static String getMD5(final byte[] buffer, final int length) throws IOException {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("MD5");
+            digest.update(buffer, 0, length);
+            return Base64.encode(digest.digest());
+        }
+        catch (final NoSuchAlgorithmException e) {
+            // This wont happen, throw fatal.
+            throw Utility.initIOException(e);
+        }
+    }
+
+    /**
+     * Collects the tasks which have completed, without waiting for the others.
+     * 
+     * @throws IOException
+     *             If an I/O error occurs.
+     */
+    private void collectCompletedTasks() throws IOException {
+        Future<Void> future = this.completionService.poll();
+        while (future != null) {
+            try {
+                future.get();
+            }
+            catch (final InterruptedException e) {
+                throw Utility.initIOException(e);
+            }
+            catch (final ExecutionException e) {
+                throw Utility.initIOException(e);
+            }
+
+            this.outstandingRequests--;
+            future = this.completionService.poll();
+        }
+    }
+
     /**
      * Writes <code>b.length</code> bytes from the specified byte array to this output stream.
      * 
@@ -561,15 +886,20 @@ public final class BlobOutputStream extends OutputStream {
         while (length > 0) {
             this.checkStreamState();
 
+            if (this.currentBuffer == null) {
+                // waits for a write to complete if all the buffers are in use
+                try {
+                    this.currentBuffer = this.bufferPool.take();
+                }
+                catch (final InterruptedException e) {
+                    throw Utility.initIOException(e);
+                }
+            }
+
             final int availableBufferBytes = this.internalWriteThreshold - this.currentBufferedBytes;
             final int nextWrite = Math.min(availableBufferBytes, length);
 
-            // If we need to set MD5 then update the digest accordingly
-            if (this.options.getStoreBlobContentMD5()) {
-                this.md5Digest.update(data, offset, nextWrite);
-            }
-
-            this.outBuffer.write(data, offset, nextWrite);
+            System.arraycopy(data, offset, this.currentBuffer, this.currentBufferedBytes, nextWrite);
             this.currentBufferedBytes += nextWrite;
             offset += nextWrite;
             length -= nextWrite;
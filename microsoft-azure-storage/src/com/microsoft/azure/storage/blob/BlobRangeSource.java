@@ -0,0 +1,110 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.microsoft.azure.storage.core.ByteBufferInputStream;
+import com.microsoft.azure.storage.core.FileChannelInputStream;
+import com.microsoft.azure.storage.core.SR;
+
+/**
+ * RESERVED FOR INTERNAL USE. A class used to open streams over ranges of data which is uploaded in parallel, such as a
+ * file or a buffer, so that each block or range of pages is read from the data as it is sent rather than copied.
+ */
+abstract class BlobRangeSource {
+
+    /**
+     * Opens a stream over a range of the data. The stream supports mark and reset without a read limit, so that a
+     * request which is retried reads the range again.
+     *
+     * @param offset
+     *            A <code>long</code> which represents the offset, in bytes, of the range in the data.
+     * @param length
+     *            A <code>long</code> which represents the length, in bytes, of the range.
+     *
+     * @return An <code>InputStream</code> object which reads the range.
+     */
+    abstract InputStream openRange(long offset, long length);
+
+    /**
+     * Reads a range of the data into the start of a buffer.
+     *
+     * @param offset
+     *            A <code>long</code> which represents the offset, in bytes, of the range in the data.
+     * @param length
+     *            An <code>int</code> which represents the length, in bytes, of the range.
+     * @param buffer
+     *            A <code>byte</code> array of at least <code>length</code> bytes which receives the range.
+     *
+     * @throws IOException
+     *             If an I/O error occurred, or the data ended before the range.
+     */
+    void readRange(final long offset, final int length, final byte[] buffer) throws IOException {
+        final InputStream rangeStream = this.openRange(offset, length);
+        int count = 0;
+        while (count < length) {
+            final int read = rangeStream.read(buffer, count, length - count);
+            if (read < 0) {
+                throw new IOException(SR.UNEXPECTED_STREAM_READ_ERROR);
+            }
+
+            count += read;
+        }
+    }
+
+    /**
+     * Gets a source which reads the ranges from a file with positional reads.
+     *
+     * @param channel
+     *            A <code>java.nio.channels.FileChannel</code> object which represents the file.
+     *
+     * @return A {@link BlobRangeSource} object which reads the file.
+     */
+    static BlobRangeSource forFile(final FileChannel channel) {
+        return new BlobRangeSource() {
+            @Override
+            InputStream openRange(final long offset, final long length) {
+                return new FileChannelInputStream(channel, offset, length);
+            }
+        };
+    }
+
+    /**
+     * Gets a source which reads the ranges straight from the remaining bytes of a buffer. The position of the buffer
+     * is not changed.
+     *
+     * @param buffer
+     *            A <code>java.nio.ByteBuffer</code> object which holds the data between its position and its limit.
+     *
+     * @return A {@link BlobRangeSource} object which reads the buffer.
+     */
+    static BlobRangeSource forBuffer(final ByteBuffer buffer) {
+        final ByteBuffer data = buffer.duplicate();
+        final int start = data.position();
+        return new BlobRangeSource() {
+            @Override
+            InputStream openRange(final long offset, final long length) {
+                final ByteBuffer range = data.duplicate();
+                range.limit(start + (int) (offset + length));
+                range.position(start + (int) offset);
+                return new ByteBufferInputStream(range);
+            }
+        };
+    }
+}
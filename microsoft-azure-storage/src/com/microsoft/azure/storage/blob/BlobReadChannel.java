@@ -0,0 +1,63 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import com.microsoft.azure.storage.AccessCondition;
+import com.microsoft.azure.storage.OperationContext;
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.core.BlockCachingReadChannel;
+
+/**
+ * Provides a channel to read a given blob resource at any position, such as the footer of a file and then the data it
+ * points to. The blob is downloaded in blocks of the minimum read size of the blob, aligned on that size, and the most
+ * recently used blocks are cached, so that reads close to each other do not download the same data again. The reads
+ * are conditional on the ETag of the blob when the channel was opened.
+ */
+public final class BlobReadChannel extends BlockCachingReadChannel<BlobRequestOptions> {
+    /**
+     * Holds the reference to the blob this channel is associated with.
+     */
+    private final CloudBlob parentBlobRef;
+
+    /**
+     * Initializes a new instance of the BlobReadChannel class.
+     *
+     * @param parentBlob
+     *            A {@link CloudBlob} object which represents the blob that this channel is associated with, whose
+     *            attributes were downloaded.
+     * @param maxCachedBlocks
+     *            An <code>int</code> which represents the maximum number of blocks held in the cache.
+     * @param accessCondition
+     *            An {@link AccessCondition} object which represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object which specifies any additional options for the request.
+     * @param opContext
+     *            An {@link OperationContext} object which is used to track the execution of the operation.
+     */
+    BlobReadChannel(final CloudBlob parentBlob, final int maxCachedBlocks, final AccessCondition accessCondition,
+            final BlobRequestOptions options, final OperationContext opContext) {
+        super(parentBlob.getProperties().getLength(), parentBlob.getStreamMinimumReadSizeInBytes(), maxCachedBlocks,
+                parentBlob.getProperties().getEtag(), accessCondition, options, opContext);
+        this.parentBlobRef = parentBlob;
+    }
+
+    @Override
+    protected void downloadBlock(final long offset, final int length, final byte[] buffer,
+            final AccessCondition accessCondition, final BlobRequestOptions options, final OperationContext opContext)
+            throws StorageException {
+        // the blocks may be downloaded concurrently, so they leave the attributes captured at open as they were
+        this.parentBlobRef.downloadRangeDetached(offset, length, buffer, accessCondition, options, opContext);
+    }
+}
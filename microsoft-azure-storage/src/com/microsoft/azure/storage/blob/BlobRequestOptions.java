@@ -55,6 +55,20 @@ public final class BlobRequestOptions extends RequestOptions {
      */
     private Integer singleBlobPutThresholdInBytes = null;
 
+    /**
+     * Specifies whether block blob uploads choose the block size and the number of concurrent requests from the length
+     * of the data and the observed throughput, rather than using the fixed stream write size. The default value is
+     * <code>false</code>.
+     */
+    private Boolean useAdaptiveBlockSize = null;
+
+    /**
+     * Specifies whether page blob uploads which create the blob skip the pages which hold only zeros, since a new page
+     * blob already reads as zeros, and whether page blob downloads to files only fetch the valid page ranges. The
+     * default value is <code>false</code>.
+     */
+    private Boolean skipEmptyPages = null;
+
     /**
      * Creates an instance of the <code>BlobRequestOptions</code> class.
      */
@@ -77,6 +91,8 @@ public final class BlobRequestOptions extends RequestOptions {
             this.setStoreBlobContentMD5(other.getStoreBlobContentMD5());
             this.setDisableContentMD5Validation(other.getDisableContentMD5Validation());
             this.setSingleBlobPutThresholdInBytes(other.getSingleBlobPutThresholdInBytes());
+            this.setUseAdaptiveBlockSize(other.getUseAdaptiveBlockSize());
+            this.setSkipEmptyPages(other.getSkipEmptyPages());
         }
     }
 
@@ -146,6 +162,14 @@ public final class BlobRequestOptions extends RequestOptions {
             modifiedOptions.setDisableContentMD5Validation(false);
         }
 
+        if (modifiedOptions.getUseAdaptiveBlockSize() == null) {
+            modifiedOptions.setUseAdaptiveBlockSize(false);
+        }
+
+        if (modifiedOptions.getSkipEmptyPages() == null) {
+            modifiedOptions.setSkipEmptyPages(false);
+        }
+
         return modifiedOptions;
     }
 
@@ -175,6 +199,14 @@ public final class BlobRequestOptions extends RequestOptions {
             modifiedOptions.setDisableContentMD5Validation(clientOptions.getDisableContentMD5Validation());
         }
 
+        if (modifiedOptions.getUseAdaptiveBlockSize() == null) {
+            modifiedOptions.setUseAdaptiveBlockSize(clientOptions.getUseAdaptiveBlockSize());
+        }
+
+        if (modifiedOptions.getSkipEmptyPages() == null) {
+            modifiedOptions.setSkipEmptyPages(clientOptions.getSkipEmptyPages());
+        }
+
         return modifiedOptions;
     }
 
@@ -232,6 +264,27 @@ public final class BlobRequestOptions extends RequestOptions {
         return this.singleBlobPutThresholdInBytes;
     }
 
+    /**
+     * Gets whether block blob uploads choose the block size and the number of concurrent requests adaptively. For more
+     * information about adaptive block size defaults, see {@link #setUseAdaptiveBlockSize(Boolean)}.
+     * 
+     * @return the useAdaptiveBlockSize
+     */
+    public Boolean getUseAdaptiveBlockSize() {
+        return this.useAdaptiveBlockSize;
+    }
+
+    /**
+     * Gets whether page blob uploads which create the blob skip the pages which hold only zeros, and whether page blob
+     * downloads to files only fetch the valid page ranges. For more information about skip empty pages defaults, see
+     * {@link #setSkipEmptyPages(Boolean)}.
+     * 
+     * @return the skipEmptyPages
+     */
+    public Boolean getSkipEmptyPages() {
+        return this.skipEmptyPages;
+    }
+
     /**
      * Sets the concurrent number of simultaneous requests per operation.
      * <p>
@@ -318,4 +371,51 @@ public final class BlobRequestOptions extends RequestOptions {
 
         this.singleBlobPutThresholdInBytes = singleBlobPutThresholdInBytes;
     }
+
+    /**
+     * Sets whether block blob uploads choose the block size and the number of concurrent requests adaptively.
+     * <p>
+     * When set, the streams opened by {@link CloudBlockBlob#openOutputStream} and the block uploads of
+     * {@link CloudBlockBlob#upload} and {@link CloudBlockBlob#uploadFromFile} ignore the stream write size of the blob.
+     * The first block size is chosen from the length of the data, if known, so that the blob fits in the maximum
+     * number of blocks. Streams then change the block size as blocks upload faster or slower, and change the number of
+     * concurrent requests, starting from the concurrent request count, in the direction which improves the throughput.
+     * Resumable uploads and {@link CloudBlockBlob#syncFromFile} always use the stream write size.
+     * <p>
+     * The default useAdaptiveBlockSize value is set in the client and is by default <code>false</code>. You can change
+     * the useAdaptiveBlockSize value on this request by setting this property. You can also change the value on the
+     * {@link BlobServiceClient#getDefaultRequestOptions()} object so that all subsequent requests made via the service
+     * client will use that useAdaptiveBlockSize value.
+     * 
+     * @param useAdaptiveBlockSize
+     *            the useAdaptiveBlockSize to set
+     */
+    public void setUseAdaptiveBlockSize(final Boolean useAdaptiveBlockSize) {
+        this.useAdaptiveBlockSize = useAdaptiveBlockSize;
+    }
+
+    /**
+     * Sets whether page blob uploads which create the blob skip the pages which hold only zeros, and whether page blob
+     * downloads to files only fetch the valid page ranges.
+     * <p>
+     * When set, {@link CloudPageBlob#upload}, {@link CloudPageBlob#uploadFromFile} and the streams opened by
+     * {@link CloudPageBlob#openWriteNew} scan the data for pages of 512 zero bytes and only write the ranges of pages
+     * between them, since a new page blob already reads as zeros. Uploading a mostly empty disk image then costs about
+     * as much as the data it holds rather than its length. The streams opened by
+     * {@link CloudPageBlob#openWriteExisting} always write every page, since the blob may hold data in those pages.
+     * <p>
+     * When set, {@link CloudPageBlob#downloadToFile} lists the valid page ranges of the blob and only downloads those,
+     * leaving the rest of the file as holes which read as zeros.
+     * <p>
+     * The default skipEmptyPages value is set in the client and is by default <code>false</code>. You can change the
+     * skipEmptyPages value on this request by setting this property. You can also change the value on the
+     * {@link BlobServiceClient#getDefaultRequestOptions()} object so that all subsequent requests made via the service
+     * client will use that skipEmptyPages value.
+     * 
+     * @param skipEmptyPages
+     *            the skipEmptyPages to set
+     */
+    public void setSkipEmptyPages(final Boolean skipEmptyPages) {
+        this.skipEmptyPages = skipEmptyPages;
+    }
 }
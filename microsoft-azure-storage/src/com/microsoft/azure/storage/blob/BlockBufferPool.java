@@ -0,0 +1,137 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * RESERVED FOR INTERNAL USE. A class used to hand out a bounded number of fixed-size buffers for the blocks or pages a
+ * stream writes. Buffers are allocated on first use and reused once released; when every buffer is in use,
+ * {@link #take()} blocks until one is released. When the pool is resized, buffers of the former size are dropped as
+ * they are released.
+ */
+final class BlockBufferPool {
+
+    /**
+     * Holds the size, in bytes, of each buffer. Guarded by <code>this</code>.
+     */
+    private int bufferSize;
+
+    /**
+     * Holds the maximum number of buffers. Guarded by <code>this</code>.
+     */
+    private int maxBuffers;
+
+    /**
+     * Holds the buffers which have been released and not taken again. Guarded by <code>this</code>.
+     */
+    private final ArrayDeque<byte[]> freeBuffers = new ArrayDeque<byte[]>();
+
+    /**
+     * Holds the number of buffers allocated so far. Guarded by <code>this</code>.
+     */
+    private int allocatedBuffers;
+
+    /**
+     * Creates an instance of the <code>BlockBufferPool</code> class.
+     *
+     * @param bufferSize
+     *            An <code>int</code> which represents the size, in bytes, of each buffer.
+     * @param maxBuffers
+     *            An <code>int</code> which represents the maximum number of buffers.
+     */
+    BlockBufferPool(final int bufferSize, final int maxBuffers) {
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+    }
+
+    /**
+     * Takes a buffer, waiting for one to be released if every buffer is in use.
+     *
+     * @return A <code>byte</code> array of the size of the buffers. Its content is undefined.
+     *
+     * @throws InterruptedException
+     *             If the thread was interrupted while waiting.
+     */
+    synchronized byte[] take() throws InterruptedException {
+        while (this.freeBuffers.isEmpty() && this.allocatedBuffers >= this.maxBuffers) {
+            this.wait();
+        }
+
+        if (!this.freeBuffers.isEmpty()) {
+            return this.freeBuffers.pop();
+        }
+
+        this.allocatedBuffers++;
+        return new byte[this.bufferSize];
+    }
+
+    /**
+     * Returns a buffer taken from the pool, so that it can be reused.
+     *
+     * @param buffer
+     *            A <code>byte</code> array which represents the buffer.
+     */
+    synchronized void release(final byte[] buffer) {
+        if (buffer.length != this.bufferSize || this.allocatedBuffers > this.maxBuffers) {
+            this.allocatedBuffers--;
+        }
+        else {
+            this.freeBuffers.push(buffer);
+        }
+
+        this.notify();
+    }
+
+    /**
+     * Releases one hold on a buffer taken from the pool and shared by several holders, such as the upload of a block
+     * and the hash of the content, and returns it to the pool once every holder has released it.
+     *
+     * @param buffer
+     *            A <code>byte</code> array which represents the buffer.
+     * @param holders
+     *            An <code>AtomicInteger</code> which holds the number of holders which have not released the buffer.
+     */
+    void release(final byte[] buffer, final AtomicInteger holders) {
+        if (holders.decrementAndGet() == 0) {
+            this.release(buffer);
+        }
+    }
+
+    /**
+     * Changes the size of the buffers taken from now on and the maximum number of buffers.
+     *
+     * @param bufferSize
+     *            An <code>int</code> which represents the size, in bytes, of each buffer.
+     * @param maxBuffers
+     *            An <code>int</code> which represents the maximum number of buffers.
+     */
+    synchronized void resize(final int bufferSize, final int maxBuffers) {
+        if (bufferSize != this.bufferSize) {
+            this.allocatedBuffers -= this.freeBuffers.size();
+            this.freeBuffers.clear();
+        }
+
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+        while (this.allocatedBuffers > this.maxBuffers && !this.freeBuffers.isEmpty()) {
+            this.freeBuffers.pop();
+            this.allocatedBuffers--;
+        }
+
+        this.notifyAll();
+    }
+}
@@ -0,0 +1,396 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import com.microsoft.azure.storage.AccessCondition;
+import com.microsoft.azure.storage.DoesServiceRequest;
+import com.microsoft.azure.storage.OperationContext;
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.core.Base64;
+import com.microsoft.azure.storage.core.SR;
+import com.microsoft.azure.storage.core.Utility;
+
+/**
+ * Represents a session which composes a block blob from a fixed number of ordered parts, each of which can be written
+ * in parallel by a different thread or process, and which commits the parts in order once all of them are written.
+ * <p>
+ * Each part is written through a stream opened by {@link #openPart(int)}, which uploads the data as one or more
+ * blocks. Closing the stream completes the part by uploading a small marker block which records the number of blocks
+ * of the part; the marker is not part of the blob. Another process writes parts of the same session by creating the
+ * session from its token, see {@link #getToken()} and {@link CloudBlockBlob#getStagingSession(String)}. Once every part
+ * is completed, {@link #commit()} commits the blocks of all the parts in order, so that the blob holds the data of the
+ * parts one after the other.
+ * <p>
+ * A part may be written again, for example by a task which is retried, as long as each completed write of a part
+ * holds the same number of blocks. The block IDs of a session all have the same length, which must match that of any
+ * other uncommitted blocks of the blob, so a session should not be used on a blob which another upload is writing.
+ */
+public final class BlockStagingSession {
+
+    /**
+     * The number of hexadecimal digits of the random ID of a session.
+     */
+    private static final int SESSION_ID_LENGTH = 13;
+
+    /**
+     * The format of the block IDs, before they are Base64-encoded: the session ID, the part number, the block index or
+     * count, and the kind of block.
+     */
+    private static final String BLOCK_ID_FORMAT = "%s%05d%05d%c";
+
+    /**
+     * The kind of the blocks which hold the data of a part.
+     */
+    private static final char DATA_BLOCK = 'D';
+
+    /**
+     * The kind of the block which marks a part as completed, and records its number of data blocks.
+     */
+    private static final char MARKER_BLOCK = 'E';
+
+    /**
+     * Holds the random number generator used to create session IDs.
+     */
+    private static final SecureRandom sessionIdGenerator = new SecureRandom();
+
+    /**
+     * Holds the blob the session composes.
+     */
+    private final CloudBlockBlob blob;
+
+    /**
+     * Holds the ID of the session, which prefixes the IDs of its blocks.
+     */
+    private final String sessionId;
+
+    /**
+     * Holds the number of parts of the session.
+     */
+    private final int partCount;
+
+    /**
+     * Initializes a new instance of the BlockStagingSession class.
+     *
+     * @param blob
+     *            A {@link CloudBlockBlob} object which represents the blob the session composes.
+     * @param sessionId
+     *            A <code>String</code> which represents the ID of the session.
+     * @param partCount
+     *            An <code>int</code> which represents the number of parts of the session.
+     */
+    private BlockStagingSession(final CloudBlockBlob blob, final String sessionId, final int partCount) {
+        this.blob = blob;
+        this.sessionId = sessionId;
+        this.partCount = partCount;
+    }
+
+    /**
+     * Creates a new session with a random ID.
+     *
+     * @param blob
+     *            A {@link CloudBlockBlob} object which represents the blob the session composes.
+     * @param partCount
+     *            An <code>int</code> which represents the number of parts of the session.
+     *
+     * @return A {@link BlockStagingSession} object which represents the session.
+     */
+    static BlockStagingSession create(final CloudBlockBlob blob, final int partCount) {
+        Utility.assertInBounds("partCount", partCount, 1, BlobConstants.MAX_BLOCK_COUNT);
+
+        final StringBuilder sessionId = new StringBuilder(Long.toHexString(sessionIdGenerator.nextLong()));
+        while (sessionId.length() < 16) {
+            sessionId.insert(0, '0');
+        }
+
+        return new BlockStagingSession(blob, sessionId.substring(0, SESSION_ID_LENGTH), partCount);
+    }
+
+    /**
+     * Creates a session from the token of a session created before.
+     *
+     * @param blob
+     *            A {@link CloudBlockBlob} object which represents the blob the session composes.
+     * @param token
+     *            A <code>String</code> which represents the token of the session.
+     *
+     * @return A {@link BlockStagingSession} object which represents the session.
+     *
+     * @throws IllegalArgumentException
+     *             If the token is not that of a session.
+     */
+    static BlockStagingSession fromToken(final CloudBlockBlob blob, final String token) {
+        Utility.assertNotNullOrEmpty("token", token);
+
+        final int separator = token.indexOf(':');
+        if (separator != SESSION_ID_LENGTH || !token.substring(0, separator).matches("[0-9a-f]+")) {
+            throw new IllegalArgumentException(SR.INVALID_BLOCK_STAGING_TOKEN);
+        }
+
+        final int partCount;
+        try {
+            partCount = Integer.parseInt(token.substring(separator + 1));
+        }
+        catch (final NumberFormatException e) {
+            throw new IllegalArgumentException(SR.INVALID_BLOCK_STAGING_TOKEN, e);
+        }
+
+        Utility.assertInBounds("partCount", partCount, 1, BlobConstants.MAX_BLOCK_COUNT);
+        return new BlockStagingSession(blob, token.substring(0, separator), partCount);
+    }
+
+    /**
+     * Gets the token of the session, which another process passes to {@link CloudBlockBlob#getStagingSession(String)}
+     * to write parts of the same session.
+     *
+     * @return A <code>String</code> which represents the token of the session.
+     */
+    public String getToken() {
+        return this.sessionId + ":" + this.partCount;
+    }
+
+    /**
+     * Gets the number of parts of the session.
+     *
+     * @return An <code>int</code> which represents the number of parts.
+     */
+    public int getPartCount() {
+        return this.partCount;
+    }
+
+    /**
+     * Opens a stream to write a part of the blob. The data is uploaded in blocks of the stream write size of the blob,
+     * and the part is completed when the stream is closed.
+     *
+     * @param partNumber
+     *            An <code>int</code> which represents the number of the part, from 0 to the number of parts minus 1.
+     *
+     * @return A {@link BlobOutputStream} object used to write the data of the part.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    public BlobOutputStream openPart(final int partNumber) throws StorageException {
+        return this.openPart(partNumber, null /* accessCondition */, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Opens a stream to write a part of the blob, using the specified lease ID, request options, and operation context.
+     * The data is uploaded in blocks of the stream write size of the blob, and the part is completed when the stream is
+     * closed. The content MD5 of the blob is not stored, since no part holds all of its data.
+     *
+     * @param partNumber
+     *            An <code>int</code> which represents the number of the part, from 0 to the number of parts minus 1.
+     * @param accessCondition
+     *            An {@link AccessCondition} object which represents the access conditions for the blob. Only its lease
+     *            ID applies to the blocks of the part.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object which represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @return A {@link BlobOutputStream} object used to write the data of the part.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    public BlobOutputStream openPart(final int partNumber, final AccessCondition accessCondition,
+            BlobRequestOptions options, OperationContext opContext) throws StorageException {
+        Utility.assertInBounds("partNumber", partNumber, 0, this.partCount - 1);
+        this.blob.assertNoWriteOperationForSnapshot();
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        options = BlobRequestOptions.applyDefaults(options, BlobType.BLOCK_BLOB, this.blob.getServiceClient(), false);
+        options.setStoreBlobContentMD5(false);
+
+        // the blob may not exist until the parts are committed, so only the lease applies to the blocks
+        return new BlobOutputStream(this.blob, this, partNumber, accessCondition == null ? null
+                : AccessCondition.generateLeaseCondition(accessCondition.getLeaseID()), options, opContext);
+    }
+
+    /**
+     * Commits the blocks of all the parts, in order.
+     *
+     * @throws IllegalStateException
+     *             If a part has not been completed, or was completed with different numbers of blocks.
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public void commit() throws StorageException {
+        this.commit(null /* accessCondition */, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Commits the blocks of all the parts, in order, using the specified access condition, request options, and
+     * operation context. The access condition applies to the commit of the block list, so an {@link AccessCondition}
+     * on the ETag of the blob ensures that the blob was not changed by another client while the parts were written.
+     *
+     * @param accessCondition
+     *            An {@link AccessCondition} object which represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object which represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @throws IllegalStateException
+     *             If a part has not been completed, or was completed with different numbers of blocks.
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public void commit(final AccessCondition accessCondition, BlobRequestOptions options, OperationContext opContext)
+            throws StorageException {
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        opContext.initialize();
+        options = BlobRequestOptions.applyDefaults(options, BlobType.BLOCK_BLOB, this.blob.getServiceClient());
+
+        final AccessCondition leaseCondition = accessCondition == null ? null : AccessCondition
+                .generateLeaseCondition(accessCondition.getLeaseID());
+        final long[] blockCounts = new long[this.partCount];
+        Arrays.fill(blockCounts, -1);
+        final HashSet<String> dataBlocks = new HashSet<String>();
+        for (final BlockEntry block : this.blob.downloadBlockList(BlockListingFilter.UNCOMMITTED, leaseCondition,
+                options, opContext)) {
+            final String id = decodeBlockId(block.getId());
+            if (id == null || id.length() != SESSION_ID_LENGTH + 11 || !id.startsWith(this.sessionId)
+                    || !id.substring(SESSION_ID_LENGTH, SESSION_ID_LENGTH + 10).matches("[0-9]+")) {
+                continue;
+            }
+
+            final int partNumber = Integer.parseInt(id.substring(SESSION_ID_LENGTH, SESSION_ID_LENGTH + 5));
+            final long value = Long.parseLong(id.substring(SESSION_ID_LENGTH + 5, SESSION_ID_LENGTH + 10));
+            if (partNumber >= this.partCount) {
+                continue;
+            }
+
+            if (id.charAt(id.length() - 1) == MARKER_BLOCK) {
+                if (blockCounts[partNumber] >= 0 && blockCounts[partNumber] != value) {
+                    throw new IllegalStateException(String.format(SR.BLOCK_STAGING_PART_CONFLICT, partNumber));
+                }
+
+                blockCounts[partNumber] = value;
+            }
+            else {
+                dataBlocks.add(block.getId());
+            }
+        }
+
+        // blocks of a write of a part which was abandoned after more blocks than the completed one are left out
+        final ArrayList<BlockEntry> blockList = new ArrayList<BlockEntry>();
+        for (int partNumber = 0; partNumber < this.partCount; partNumber++) {
+            if (blockCounts[partNumber] < 0) {
+                throw new IllegalStateException(String.format(SR.BLOCK_STAGING_PART_INCOMPLETE, partNumber));
+            }
+
+            for (long blockIndex = 0; blockIndex < blockCounts[partNumber]; blockIndex++) {
+                final String blockId = this.getBlockId(partNumber, blockIndex);
+                if (!dataBlocks.contains(blockId)) {
+                    throw new IllegalStateException(String.format(SR.BLOCK_STAGING_PART_INCOMPLETE, partNumber));
+                }
+
+                blockList.add(new BlockEntry(blockId, BlockSearchMode.UNCOMMITTED));
+            }
+        }
+
+        this.blob.commitBlockList(blockList, accessCondition, options, opContext);
+    }
+
+    /**
+     * Gets the ID of a block of the data of a part.
+     *
+     * @param partNumber
+     *            An <code>int</code> which represents the number of the part.
+     * @param blockIndex
+     *            A <code>long</code> which represents the index of the block in the part.
+     *
+     * @return A <code>String</code> which represents the Base64-encoded block ID.
+     */
+    String getBlockId(final int partNumber, final long blockIndex) {
+        return this.encodeBlockId(partNumber, blockIndex, DATA_BLOCK);
+    }
+
+    /**
+     * Uploads the block which completes a part.
+     *
+     * @param partNumber
+     *            An <code>int</code> which represents the number of the part.
+     * @param blockCount
+     *            A <code>long</code> which represents the number of data blocks of the part.
+     * @param accessCondition
+     *            An {@link AccessCondition} object which represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request.
+     * @param opContext
+     *            An {@link OperationContext} object which is used to track the execution of the operation.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     *             If an I/O error occurred.
+     */
+    @DoesServiceRequest
+    void completePart(final int partNumber, final long blockCount, final AccessCondition accessCondition,
+            final BlobRequestOptions options, final OperationContext opContext) throws StorageException, IOException {
+        this.blob.uploadBlock(this.encodeBlockId(partNumber, blockCount, MARKER_BLOCK), new ByteArrayInputStream(
+                new byte[1]), 1, accessCondition, options, opContext);
+    }
+
+    private String encodeBlockId(final int partNumber, final long value, final char kind) {
+        final String id = String.format(Utility.LOCALE_US, BLOCK_ID_FORMAT, this.sessionId, partNumber, value, kind);
+
+        // the IDs only hold ASCII characters
+        final byte[] idBytes = new byte[id.length()];
+        for (int i = 0; i < idBytes.length; i++) {
+            idBytes[i] = (byte) id.charAt(i);
+        }
+
+        return Base64.encode(idBytes);
+    }
+
+    private static String decodeBlockId(final String blockId) {
+        if (!Base64.validateIsBase64String(blockId)) {
+            return null;
+        }
+
+        final byte[] idBytes = Base64.decode(blockId);
+        final char[] id = new char[idBytes.length];
+        for (int i = 0; i < idBytes.length; i++) {
+            id[i] = (char) (idBytes[i] & 0xFF);
+        }
+
+        return new String(id);
+    }
+}
@@ -0,0 +1,349 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Random;
+
+import com.microsoft.azure.storage.AccessCondition;
+import com.microsoft.azure.storage.Constants;
+import com.microsoft.azure.storage.OperationContext;
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.core.Base64;
+import com.microsoft.azure.storage.core.SR;
+import com.microsoft.azure.storage.core.Utility;
+
+/**
+ * Represents a local file which records the progress of a block blob upload, so that an upload which was interrupted,
+ * for example because the process stopped, can be resumed without sending again the blocks the service already holds.
+ * <p>
+ * The journal records the ID, offset, length and MD5 hash of each block once it has been uploaded. The block IDs of a
+ * journaled upload are derived from the block index and a sequence number kept in the journal, so an upload resumed
+ * with the same journal gives each block the same ID. When an upload is resumed, a block is skipped only if the
+ * journal recorded it with the same length and MD5 hash as the data being uploaded, and the service still holds it as
+ * an uncommitted block; any other block is uploaded again. The journal is deleted once the block list is committed.
+ * <p>
+ * A journal must be used by one upload at a time, and is only resumed by an upload to the same blob with the same
+ * length and block size.
+ */
+public final class BlockUploadJournal {
+
+    /**
+     * The first token of the header line of a journal, including the version of its format.
+     */
+    private static final String HEADER_PREFIX = "AzureBlockUploadJournal/1";
+
+    /**
+     * Holds the random number generator used to pick the first block sequence number of a new journal.
+     */
+    private static Random sequenceGenerator = new Random();
+
+    /**
+     * Holds the path to the journal file.
+     */
+    private final String path;
+
+    /**
+     * Holds the block sequence number of the first block. Guarded by <code>this</code>.
+     */
+    private long firstSequenceNumber;
+
+    /**
+     * Holds the blocks recorded in the journal which the service still holds, by block index. Guarded by
+     * <code>this</code>.
+     */
+    private final HashMap<Long, StagedBlock> stagedBlocks = new HashMap<Long, StagedBlock>();
+
+    /**
+     * Holds the stream entries are appended to while an upload is in progress. Guarded by <code>this</code>.
+     */
+    private FileOutputStream journalStream;
+
+    /**
+     * Creates an instance of the <code>BlockUploadJournal</code> class which keeps the journal in the specified file.
+     * The file is created when an upload starts, if it does not exist.
+     *
+     * @param path
+     *            A <code>String</code> which represents the path to the journal file.
+     */
+    public BlockUploadJournal(final String path) {
+        Utility.assertNotNullOrEmpty("path", path);
+        this.path = path;
+    }
+
+    /**
+     * Gets the path to the journal file.
+     *
+     * @return A <code>String</code> which represents the path to the journal file.
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * Opens the journal for an upload. If the journal records an earlier upload of the same blob with the same length
+     * and block size, its blocks which the service still holds as uncommitted blocks are kept; otherwise the journal is
+     * started again.
+     *
+     * @param blob
+     *            A {@link CloudBlockBlob} object which represents the blob being uploaded.
+     * @param length
+     *            A <code>long</code> which represents the length, in bytes, of the data, or -1 if unknown.
+     * @param blockSize
+     *            An <code>int</code> which represents the size, in bytes, of each block but the last.
+     * @param accessCondition
+     *            An {@link AccessCondition} object which represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request.
+     * @param opContext
+     *            An {@link OperationContext} object that is used to track the execution of the operation.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     *             If the journal could not be read or written.
+     */
+    synchronized void open(final CloudBlockBlob blob, final long length, final int blockSize,
+            final AccessCondition accessCondition, final BlobRequestOptions options, final OperationContext opContext)
+            throws StorageException, IOException {
+        this.close();
+        this.stagedBlocks.clear();
+
+        final String blobUri = blob.getUri().toString();
+        boolean resumed = false;
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(this.path), Constants.UTF8_CHARSET));
+            resumed = this.readJournal(reader, blobUri, length, blockSize);
+        }
+        catch (final FileNotFoundException e) {
+            // There is no journal to resume from
+        }
+        finally {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+
+        if (resumed && !this.stagedBlocks.isEmpty()) {
+            this.keepUncommittedBlocks(blob, accessCondition, options, opContext);
+        }
+
+        if (resumed) {
+            this.journalStream = new FileOutputStream(this.path, true /* append */);
+        }
+        else {
+            this.firstSequenceNumber = (long) (sequenceGenerator.nextInt(Integer.MAX_VALUE))
+                    + sequenceGenerator.nextInt(Integer.MAX_VALUE - 100000);
+            this.journalStream = new FileOutputStream(this.path, false /* append */);
+            this.writeLine(String.format(Utility.LOCALE_US, "%s %d %d %d %s", HEADER_PREFIX,
+                    this.firstSequenceNumber, length, blockSize, blobUri));
+        }
+    }
+
+    /**
+     * Gets the ID of a block of the upload.
+     *
+     * @param blockIndex
+     *            A <code>long</code> which represents the index of the block.
+     *
+     * @return A <code>String</code> which represents the Base64-encoded block ID.
+     */
+    synchronized String getBlockId(final long blockIndex) {
+        return Base64.encode(Utility.getBytesFromLong(this.firstSequenceNumber + blockIndex));
+    }
+
+    /**
+     * Gets whether a block of the upload is already held by the service with the same data.
+     *
+     * @param blockIndex
+     *            A <code>long</code> which represents the index of the block.
+     * @param length
+     *            A <code>long</code> which represents the length, in bytes, of the block.
+     * @param md5
+     *            A <code>String</code> which represents the Base64-encoded MD5 hash of the data of the block.
+     *
+     * @return <code>true</code> if the block need not be uploaded; otherwise, <code>false</code>.
+     */
+    synchronized boolean isStaged(final long blockIndex, final long length, final String md5) {
+        final StagedBlock block = this.stagedBlocks.get(blockIndex);
+        return block != null && block.length == length && block.md5.equals(md5);
+    }
+
+    /**
+     * Records that a block of the upload was uploaded.
+     *
+     * @param blockIndex
+     *            A <code>long</code> which represents the index of the block.
+     * @param offset
+     *            A <code>long</code> which represents the offset, in bytes, of the block in the data.
+     * @param length
+     *            A <code>long</code> which represents the length, in bytes, of the block.
+     * @param md5
+     *            A <code>String</code> which represents the Base64-encoded MD5 hash of the data of the block.
+     *
+     * @throws IOException
+     *             If the journal could not be written.
+     */
+    synchronized void recordStaged(final long blockIndex, final long offset, final long length, final String md5)
+            throws IOException {
+        if (this.journalStream == null) {
+            throw new IOException(SR.BLOCK_UPLOAD_JOURNAL_NOT_OPEN);
+        }
+
+        this.writeLine(String.format(Utility.LOCALE_US, "%d %s %d %d %s", blockIndex, this.getBlockId(blockIndex),
+                offset, length, md5));
+        this.stagedBlocks.put(blockIndex, new StagedBlock(length, md5));
+    }
+
+    /**
+     * Closes the journal once its upload is committed, and deletes the journal file.
+     *
+     * @throws IOException
+     *             If the journal could not be closed.
+     */
+    synchronized void complete() throws IOException {
+        this.close();
+        this.stagedBlocks.clear();
+        new File(this.path).delete();
+    }
+
+    /**
+     * Closes the journal, keeping the journal file so that the upload can be resumed.
+     *
+     * @throws IOException
+     *             If the journal could not be closed.
+     */
+    synchronized void close() throws IOException {
+        if (this.journalStream != null) {
+            try {
+                this.journalStream.close();
+            }
+            finally {
+                this.journalStream = null;
+            }
+        }
+    }
+
+    /**
+     * Reads the journal file, and returns whether it records an upload of the same blob with the same length and
+     * block size. Entries which cannot be parsed, such as the last one if the process stopped while writing it, are
+     * ignored.
+     */
+    private boolean readJournal(final BufferedReader reader, final String blobUri, final long length,
+            final int blockSize) throws IOException {
+        final String header = reader.readLine();
+        if (header == null) {
+            return false;
+        }
+
+        final String[] headerFields = header.split(" ", 5);
+        try {
+            if (headerFields.length != 5 || !HEADER_PREFIX.equals(headerFields[0])
+                    || Long.parseLong(headerFields[2]) != length || Integer.parseInt(headerFields[3]) != blockSize
+                    || !blobUri.equals(headerFields[4])) {
+                return false;
+            }
+
+            this.firstSequenceNumber = Long.parseLong(headerFields[1]);
+        }
+        catch (final NumberFormatException e) {
+            return false;
+        }
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            final String[] fields = line.split(" ");
+            if (fields.length != 5) {
+                continue;
+            }
+
+            try {
+                final long blockIndex = Long.parseLong(fields[0]);
+                if (fields[1].equals(this.getBlockId(blockIndex))) {
+                    this.stagedBlocks.put(blockIndex, new StagedBlock(Long.parseLong(fields[3]), fields[4]));
+                }
+            }
+            catch (final NumberFormatException e) {
+                // A partially written entry
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Drops the recorded blocks which the service no longer holds as uncommitted blocks with the same length, for
+     * example because they expired or the blob was committed by another upload.
+     */
+    private void keepUncommittedBlocks(final CloudBlockBlob blob, final AccessCondition accessCondition,
+            final BlobRequestOptions options, final OperationContext opContext) throws StorageException {
+        final HashMap<String, Long> uncommittedBlocks = new HashMap<String, Long>();
+        try {
+            // Only the lease applies, as the blob may not exist until the blocks are committed
+            final AccessCondition leaseCondition = accessCondition == null ? null : AccessCondition
+                    .generateLeaseCondition(accessCondition.getLeaseID());
+            for (final BlockEntry block : blob.downloadBlockList(BlockListingFilter.UNCOMMITTED, leaseCondition,
+                    options, opContext)) {
+                uncommittedBlocks.put(block.getId(), block.getSize());
+            }
+        }
+        catch (final StorageException e) {
+            if (e.getHttpStatusCode() != HttpURLConnection.HTTP_NOT_FOUND) {
+                throw e;
+            }
+        }
+
+        final HashMap<Long, StagedBlock> recordedBlocks = new HashMap<Long, StagedBlock>(this.stagedBlocks);
+        this.stagedBlocks.clear();
+        for (final Long blockIndex : recordedBlocks.keySet()) {
+            final StagedBlock block = recordedBlocks.get(blockIndex);
+            final Long uncommittedLength = uncommittedBlocks.get(this.getBlockId(blockIndex));
+            if (uncommittedLength != null && uncommittedLength == block.length) {
+                this.stagedBlocks.put(blockIndex, block);
+            }
+        }
+    }
+
+    /**
+     * Appends a line to the journal and forces it to the disk, so that it survives the process stopping.
+     */
+    private void writeLine(final String line) throws IOException {
+        this.journalStream.write((line + "\n").getBytes(Constants.UTF8_CHARSET));
+        this.journalStream.flush();
+        this.journalStream.getFD().sync();
+    }
+
+    /**
+     * Holds the length and MD5 hash of a block recorded in the journal.
+     */
+    private static final class StagedBlock {
+        private final long length;
+        private final String md5;
+
+        private StagedBlock(final long length, final String md5) {
+            this.length = length;
+            this.md5 = md5;
+        }
+    }
+}
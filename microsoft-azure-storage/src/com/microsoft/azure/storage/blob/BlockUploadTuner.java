@@ -0,0 +1,244 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import com.microsoft.azure.storage.Constants;
+import com.microsoft.azure.storage.core.SR;
+
+/**
+ * RESERVED FOR INTERNAL USE. A class used to choose the block size and the number of concurrent requests of a block
+ * blob upload when {@link BlobRequestOptions#getUseAdaptiveBlockSize()} is set.
+ * <p>
+ * The first block size is chosen from the length of the data, if known, so that every concurrent request has a block
+ * to upload and the blob fits in the maximum number of blocks. The block size is then doubled while blocks upload so
+ * fast that the cost of each request dominates, and halved while they upload so slowly that a retry would cost much.
+ * The number of concurrent requests is moved one step at a time in the direction which last improved the throughput.
+ */
+final class BlockUploadTuner {
+
+    /**
+     * The smallest block size, in bytes, chosen by the tuner.
+     */
+    static final int MIN_BLOCK_SIZE = 256 * Constants.KB;
+
+    /**
+     * The block size used for data of unknown length until blocks have been uploaded.
+     */
+    static final int INITIAL_BLOCK_SIZE = 1 * Constants.MB;
+
+    /**
+     * The multiple of which block sizes are chosen.
+     */
+    private static final int BLOCK_SIZE_ALIGNMENT = 64 * Constants.KB;
+
+    /**
+     * The average block latency, in nanoseconds, under which the block size is increased.
+     */
+    private static final long MIN_BLOCK_LATENCY_IN_NANOS = 500 * 1000000L;
+
+    /**
+     * The average block latency, in nanoseconds, above which the block size is decreased.
+     */
+    private static final long MAX_BLOCK_LATENCY_IN_NANOS = 8000 * 1000000L;
+
+    /**
+     * The most times longer than the data already dispatched the rest of data of unknown length is assumed to be.
+     */
+    private static final int UNKNOWN_LENGTH_GROWTH = 3;
+
+    /**
+     * The smallest number of concurrent requests up to which the tuner may increase the concurrency.
+     */
+    private static final int MIN_CONCURRENCY_LIMIT = 8;
+
+    /**
+     * The relative throughput gain under which a change of the concurrency is reverted.
+     */
+    private static final double MIN_THROUGHPUT_GAIN = 0.05;
+
+    /**
+     * Holds the length, in bytes, of the data, or -1 if unknown.
+     */
+    private final long length;
+
+    /**
+     * Holds the maximum number of concurrent requests.
+     */
+    private final int maxConcurrency;
+
+    /**
+     * Holds the current block size. Guarded by <code>this</code>.
+     */
+    private int blockSize;
+
+    /**
+     * Holds the current number of concurrent requests. Guarded by <code>this</code>.
+     */
+    private int concurrency;
+
+    /**
+     * Holds the number of blocks of the current size uploaded, and their total latency. Guarded by <code>this</code>.
+     */
+    private int sizeSampleCount;
+    private long sizeSampleLatency;
+
+    /**
+     * Holds the start, the number of blocks and the bytes of the current throughput window. Guarded by
+     * <code>this</code>.
+     */
+    private long windowStart;
+    private int windowBlocks;
+    private long windowBytes;
+
+    /**
+     * Holds the throughput, in bytes per nanosecond, of the previous window, and the step by which the concurrency was
+     * last changed. Guarded by <code>this</code>.
+     */
+    private double previousThroughput;
+    private int concurrencyStep = 1;
+
+    /**
+     * Creates an instance of the <code>BlockUploadTuner</code> class.
+     *
+     * @param length
+     *            A <code>long</code> which represents the length, in bytes, of the data, or -1 if unknown.
+     * @param concurrency
+     *            An <code>int</code> which represents the number of concurrent requests to start with.
+     */
+    BlockUploadTuner(final long length, final int concurrency) {
+        this.length = length;
+        this.concurrency = concurrency;
+        this.maxConcurrency = Math.max(2 * concurrency, MIN_CONCURRENCY_LIMIT);
+        this.blockSize = length < 0 ? INITIAL_BLOCK_SIZE : getInitialBlockSize(length, concurrency);
+        this.windowStart = System.nanoTime();
+    }
+
+    /**
+     * Chooses the block size of data of known length, so that each of the concurrent requests has a block to upload
+     * and the data fits in the maximum number of blocks.
+     *
+     * @param length
+     *            A <code>long</code> which represents the length, in bytes, of the data.
+     * @param concurrency
+     *            An <code>int</code> which represents the number of concurrent requests.
+     *
+     * @return An <code>int</code> which represents the block size, in bytes.
+     *
+     * @throws IllegalArgumentException
+     *             If the data does not fit in the maximum number of blocks of the maximum size.
+     */
+    static int getInitialBlockSize(final long length, final int concurrency) {
+        if (length > (long) BlobConstants.MAX_BLOCK_COUNT * Constants.MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException(SR.BLOB_TOO_LARGE_FOR_BLOCKS);
+        }
+
+        final long blockSize = Math.max(align(divideRoundingUp(length, concurrency)),
+                align(divideRoundingUp(length, BlobConstants.MAX_BLOCK_COUNT)));
+        return (int) Math.min(Math.max(blockSize, MIN_BLOCK_SIZE), Constants.MAX_BLOCK_SIZE);
+    }
+
+    /**
+     * Gets the size of the next block. The size is increased if needed, so that the rest of the data fits in the
+     * blocks left; when the length is unknown, the rest of the data is assumed to be at most three times as long as
+     * the data already dispatched.
+     *
+     * @param blockCount
+     *            A <code>long</code> which represents the number of blocks already dispatched.
+     * @param offset
+     *            A <code>long</code> which represents the number of bytes already dispatched.
+     *
+     * @return An <code>int</code> which represents the block size, in bytes.
+     */
+    synchronized int getBlockSize(final long blockCount, final long offset) {
+        final long remainingBytes = this.length < 0 ? UNKNOWN_LENGTH_GROWTH * offset : this.length - offset;
+        final long remainingBlocks = Math.max(BlobConstants.MAX_BLOCK_COUNT - blockCount, 1);
+        final long requiredSize = align(divideRoundingUp(remainingBytes, remainingBlocks));
+        if (requiredSize > this.blockSize) {
+            this.blockSize = (int) Math.min(requiredSize, Constants.MAX_BLOCK_SIZE);
+            this.sizeSampleCount = 0;
+            this.sizeSampleLatency = 0;
+        }
+
+        return this.blockSize;
+    }
+
+    /**
+     * Gets the number of concurrent requests.
+     *
+     * @return An <code>int</code> which represents the number of concurrent requests.
+     */
+    synchronized int getConcurrency() {
+        return this.concurrency;
+    }
+
+    /**
+     * Records that a block was uploaded, and adjusts the block size and the concurrency accordingly.
+     *
+     * @param size
+     *            An <code>int</code> which represents the size, in bytes, of the block.
+     * @param latency
+     *            A <code>long</code> which represents the time, in nanoseconds, taken to upload the block.
+     */
+    synchronized void recordBlock(final int size, final long latency) {
+        if (size == this.blockSize) {
+            this.sizeSampleCount++;
+            this.sizeSampleLatency += latency;
+            if (this.sizeSampleCount >= Math.max(this.concurrency, 2)) {
+                final long averageLatency = this.sizeSampleLatency / this.sizeSampleCount;
+                if (averageLatency < MIN_BLOCK_LATENCY_IN_NANOS) {
+                    this.blockSize = Math.min(this.blockSize * 2, Constants.MAX_BLOCK_SIZE);
+                }
+                else if (averageLatency > MAX_BLOCK_LATENCY_IN_NANOS) {
+                    this.blockSize = Math.max(this.blockSize / 2, MIN_BLOCK_SIZE);
+                }
+
+                this.sizeSampleCount = 0;
+                this.sizeSampleLatency = 0;
+            }
+        }
+
+        this.windowBlocks++;
+        this.windowBytes += size;
+        if (this.windowBlocks >= 2 * this.concurrency) {
+            final long now = System.nanoTime();
+            final double throughput = (double) this.windowBytes / Math.max(now - this.windowStart, 1);
+            if (throughput < this.previousThroughput * (1 + MIN_THROUGHPUT_GAIN)) {
+                // the last change did not help, so try the other direction
+                this.concurrencyStep = -this.concurrencyStep;
+            }
+
+            final int nextConcurrency = this.concurrency + this.concurrencyStep;
+            if (nextConcurrency < 1 || nextConcurrency > this.maxConcurrency) {
+                this.concurrencyStep = -this.concurrencyStep;
+            }
+            else {
+                this.concurrency = nextConcurrency;
+            }
+
+            this.previousThroughput = throughput;
+            this.windowStart = now;
+            this.windowBlocks = 0;
+            this.windowBytes = 0;
+        }
+    }
+
+    private static long divideRoundingUp(final long dividend, final long divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    private static long align(final long size) {
+        return divideRoundingUp(size, BLOCK_SIZE_ALIGNMENT) * BLOCK_SIZE_ALIGNMENT;
+    }
+}
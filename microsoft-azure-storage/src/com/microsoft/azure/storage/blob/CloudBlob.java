@@ -17,23 +17,38 @@ package com.microsoft.azure.storage.blob;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.microsoft.azure.storage.AccessCondition;
 import com.microsoft.azure.storage.Constants;
@@ -45,7 +60,10 @@ import com.microsoft.azure.storage.StorageErrorCodeStrings;
 import com.microsoft.azure.storage.StorageException;
 import com.microsoft.azure.storage.StorageLocation;
 import com.microsoft.azure.storage.StorageUri;
+import com.microsoft.azure.storage.TransferScheduler;
 import com.microsoft.azure.storage.core.Base64;
+import com.microsoft.azure.storage.core.ByteBufferInputStream;
+import com.microsoft.azure.storage.core.ByteBufferOutputStream;
 import com.microsoft.azure.storage.core.ExecutionEngine;
 import com.microsoft.azure.storage.core.Logger;
 import com.microsoft.azure.storage.core.NetworkInputStream;
@@ -1001,6 +1019,54 @@ public abstract class CloudBlob implements ListBlobItem {
                 opContext);
     }
 
+    /**
+     * Asynchronous version of {@link #delete()}.
+     *
+     * @return A <code>Future</code> which completes once the blob has been deleted.
+     */
+    @DoesServiceRequest
+    public final Future<Void> deleteAsync() {
+        return this.deleteAsync(DeleteSnapshotsOption.NONE, null /* accessCondition */, null /* options */,
+                null /* opContext */);
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link #delete(DeleteSnapshotsOption, AccessCondition, BlobRequestOptions, OperationContext)}.
+     *
+     * @param deleteSnapshotsOption
+     *            A {@link DeleteSnapshotsOption} object that indicates whether to delete only snapshots, or the blob
+     *            and its snapshots.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @return A <code>Future</code> which completes once the blob has been deleted.
+     */
+    @DoesServiceRequest
+    public final Future<Void> deleteAsync(final DeleteSnapshotsOption deleteSnapshotsOption,
+            final AccessCondition accessCondition, BlobRequestOptions options, OperationContext opContext) {
+        Utility.assertNotNull("deleteSnapshotsOption", deleteSnapshotsOption);
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        opContext.initialize();
+        options = BlobRequestOptions.applyDefaults(options, this.properties.getBlobType(), this.blobServiceClient);
+
+        return ExecutionEngine.executeWithRetryAsync(this.blobServiceClient, this,
+                this.deleteImpl(deleteSnapshotsOption, accessCondition, options), options.getRetryPolicyFactory(),
+                opContext);
+    }
+
     /**
      * Deletes the blob if it exists.
      * <p>
@@ -1125,6 +1191,11 @@ public abstract class CloudBlob implements ListBlobItem {
 
     /**
      * Downloads the contents of a blob to a stream using the specified request options and operation context.
+     * <p>
+     * If a content cache is set on the client, and the access condition is <code>null</code> or only holds a lease ID,
+     * the download is conditional on the blob having changed since the version the cache holds, which is then written
+     * to the stream instead, and the content downloaded is added to the cache. The properties of the blob are not
+     * refreshed when the content is read from the cache. See {@link CloudBlobClient#setContentCache(BlobContentCache)}.
      *
      * @param outStream
      *            An <code>OutputStream</code> object that represents the target stream.
@@ -1151,9 +1222,126 @@ public abstract class CloudBlob implements ListBlobItem {
         opContext.initialize();
         options = BlobRequestOptions.applyDefaults(options, this.properties.getBlobType(), this.blobServiceClient);
 
+        final BlobContentCache contentCache = this.blobServiceClient.getContentCache();
+        if (contentCache != null && BlobContentCache.isCacheable(accessCondition)) {
+            this.downloadThroughCache(contentCache, outStream, accessCondition, options, opContext);
+            return;
+        }
+
         ExecutionEngine.executeWithRetry(this.blobServiceClient, this, this.downloadToStreamImpl(
-                null /* blobOffset */, null /* length */, outStream, accessCondition, options, opContext), options
-                .getRetryPolicyFactory(), opContext);
+                null /* blobOffset */, null /* length */, outStream, accessCondition, false /* revalidating */,
+                options, opContext), options.getRetryPolicyFactory(), opContext);
+    }
+
+    /**
+     * Downloads the contents of a blob to a stream, reading the version held by a content cache if the blob has not
+     * changed since, and adding the version downloaded to the cache otherwise.
+     *
+     * @param contentCache
+     *            A {@link BlobContentCache} object which represents the cache.
+     * @param outStream
+     *            An <code>OutputStream</code> object that represents the target stream.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob, which may only
+     *            hold a lease ID.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request.
+     * @param opContext
+     *            An {@link OperationContext} object used to track the execution of the operation.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    private void downloadThroughCache(final BlobContentCache contentCache, final OutputStream outStream,
+            final AccessCondition accessCondition, final BlobRequestOptions options, final OperationContext opContext)
+            throws StorageException {
+        final String cacheKey = BlobContentCache.getKey(this);
+        while (true) {
+            final String cachedETag = contentCache.getETag(cacheKey);
+            AccessCondition downloadCondition = accessCondition;
+            if (cachedETag != null) {
+                downloadCondition = AccessCondition.generateIfNoneMatchCondition(cachedETag);
+                if (accessCondition != null) {
+                    downloadCondition.setLeaseID(accessCondition.getLeaseID());
+                }
+            }
+
+            final BlobContentCache.PendingBlob pendingBlob = contentCache.startAdding(cacheKey, outStream);
+            final Integer statusCode;
+            try {
+                statusCode = ExecutionEngine.executeWithRetry(this.blobServiceClient, this, this.downloadToStreamImpl(
+                        null /* blobOffset */, null /* length */, pendingBlob, downloadCondition,
+                        cachedETag != null /* revalidating */, options, opContext), options.getRetryPolicyFactory(),
+                        opContext);
+            }
+            catch (final StorageException e) {
+                pendingBlob.abort();
+                throw e;
+            }
+
+            if (statusCode == null) {
+                pendingBlob.commit(this.properties.getEtag());
+                return;
+            }
+
+            // the blob has not been modified since the version the cache holds
+            pendingBlob.abort();
+            try {
+                if (contentCache.copyTo(cacheKey, cachedETag, outStream)) {
+                    return;
+                }
+            }
+            catch (final IOException e) {
+                throw StorageException.translateException(null /* request */, e, opContext);
+            }
+
+            // the version was removed from the cache since it was checked, so the blob is downloaded again
+        }
+    }
+
+    /**
+     * Downloads the contents of a blob to a channel.
+     *
+     * @param targetChannel
+     *            A <code>java.nio.channels.WritableByteChannel</code> object that represents the target channel, which
+     *            must be in blocking mode.
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public final void download(final WritableByteChannel targetChannel) throws StorageException {
+        this.download(targetChannel, null /* accessCondition */, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Downloads the contents of a blob to a channel using the specified request options and operation context.
+     * <p>
+     * This is a convenience overload of
+     * {@link #download(OutputStream, AccessCondition, BlobRequestOptions, OperationContext)} which writes to the
+     * channel through <code>Channels.newOutputStream</code>; it does not avoid any copy of the data.
+     *
+     * @param targetChannel
+     *            A <code>java.nio.channels.WritableByteChannel</code> object that represents the target channel, which
+     *            must be in blocking mode.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public final void download(final WritableByteChannel targetChannel, final AccessCondition accessCondition,
+            BlobRequestOptions options, OperationContext opContext) throws StorageException {
+        Utility.assertNotNull("targetChannel", targetChannel);
+        this.download(Channels.newOutputStream(targetChannel), accessCondition, options, opContext);
     }
 
     /**
@@ -1216,7 +1404,8 @@ public abstract class CloudBlob implements ListBlobItem {
         }
 
         ExecutionEngine.executeWithRetry(this.blobServiceClient, this,
-                this.downloadToStreamImpl(offset, length, outStream, accessCondition, options, opContext),
+                this.downloadToStreamImpl(offset, length, outStream, accessCondition, false /* revalidating */,
+                        options, opContext),
                 options.getRetryPolicyFactory(), opContext);
     }
 
@@ -1269,6 +1458,45 @@ public abstract class CloudBlob implements ListBlobItem {
                 this.downloadAttributesImpl(accessCondition, options), options.getRetryPolicyFactory(), opContext);
     }
 
+    /**
+     * Asynchronous version of {@link #downloadAttributes()}.
+     *
+     * @return A <code>Future</code> which completes once the blob's properties and metadata have been populated.
+     */
+    @DoesServiceRequest
+    public final Future<Void> downloadAttributesAsync() {
+        return this.downloadAttributesAsync(null /* accessCondition */, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Asynchronous version of {@link #downloadAttributes(AccessCondition, BlobRequestOptions, OperationContext)}.
+     *
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @return A <code>Future</code> which completes once the blob's properties and metadata have been populated.
+     */
+    @DoesServiceRequest
+    public final Future<Void> downloadAttributesAsync(final AccessCondition accessCondition,
+            BlobRequestOptions options, OperationContext opContext) {
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        options = BlobRequestOptions.applyDefaults(options, this.properties.getBlobType(), this.blobServiceClient);
+
+        return ExecutionEngine.executeWithRetryAsync(this.blobServiceClient, this,
+                this.downloadAttributesImpl(accessCondition, options), options.getRetryPolicyFactory(), opContext);
+    }
+
     private StorageRequest<CloudBlobClient, CloudBlob, Void> downloadAttributesImpl(
             final AccessCondition accessCondition, final BlobRequestOptions options) {
         final StorageRequest<CloudBlobClient, CloudBlob, Void> getRequest = new StorageRequest<CloudBlobClient, CloudBlob, Void>(
@@ -1324,7 +1552,7 @@ public abstract class CloudBlob implements ListBlobItem {
     @DoesServiceRequest
     private final StorageRequest<CloudBlobClient, CloudBlob, Integer> downloadToStreamImpl(final Long blobOffset,
             final Long length, final OutputStream outStream, final AccessCondition accessCondition,
-            final BlobRequestOptions options, OperationContext opContext) {
+            final boolean revalidating, final BlobRequestOptions options, OperationContext opContext) {
 
         final long startingOffset = blobOffset == null ? 0 : blobOffset;
         final boolean isRangeGet = blobOffset != null;
@@ -1366,16 +1594,28 @@ public abstract class CloudBlob implements ListBlobItem {
             @Override
             public Integer preProcessResponse(CloudBlob blob, CloudBlobClient client, OperationContext context)
                     throws Exception {
-                return preProcessDownloadResponse(this, options, client, blob, context, isRangeGet);
+                // a copy of the content held by the caller is current, so there is no content to read
+                if (revalidating && this.getResult().getStatusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    return HttpURLConnection.HTTP_NOT_MODIFIED;
+                }
+
+                return preProcessDownloadResponse(this, options, client, blob, context, isRangeGet, true);
             }
 
             @Override
             public Integer postProcessResponse(HttpURLConnection connection, CloudBlob blob, CloudBlobClient client,
                     OperationContext context, Integer storageObject) throws Exception {
+                if (storageObject != null) {
+                    return storageObject;
+                }
+
                 final Boolean validateMD5 = !options.getDisableContentMD5Validation()
                         && !Utility.isNullOrEmpty(this.getContentMD5());
                 final String contentLength = connection.getHeaderField(Constants.HeaderConstants.CONTENT_LENGTH);
                 final long expectedLength = Long.parseLong(contentLength);
+                if (outStream instanceof BlobContentCache.PendingBlob) {
+                    ((BlobContentCache.PendingBlob) outStream).checkLength(expectedLength);
+                }
 
                 Logger.info(context, String.format(SR.CREATING_NETWORK_STREAM, expectedLength));
                 final NetworkInputStream streamRef = new NetworkInputStream(connection.getInputStream(), expectedLength);
@@ -1604,9 +1844,133 @@ public abstract class CloudBlob implements ListBlobItem {
                 options.getRetryPolicyFactory(), opContext);
     }
 
+    /**
+     * Downloads the contents of the blob to the given byte buffer, starting at its position.
+     *
+     * @param buffer
+     *            A <code>java.nio.ByteBuffer</code> object which represents the buffer to which the blob bytes are
+     *            downloaded. Its position is advanced past the downloaded bytes.
+     *
+     * @return An <code>int</code> which represents the number of bytes downloaded.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public final int downloadToByteBuffer(final ByteBuffer buffer) throws StorageException {
+        return this.downloadToByteBuffer(buffer, null /* accessCondition */, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Downloads the contents of the blob to the given byte buffer, starting at its position, using the specified
+     * request options and operation context. The data is written straight into the buffer, whether it is a heap or a
+     * direct buffer. If the blob is larger than the remaining bytes of the buffer, the download fails with a
+     * <code>java.nio.BufferOverflowException</code> as its cause, and the buffer holds the bytes downloaded until
+     * then.
+     *
+     * @param buffer
+     *            A <code>java.nio.ByteBuffer</code> object which represents the buffer to which the blob bytes are
+     *            downloaded. Its position is advanced past the downloaded bytes.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @return An <code>int</code> which represents the number of bytes downloaded.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public final int downloadToByteBuffer(final ByteBuffer buffer, final AccessCondition accessCondition,
+            BlobRequestOptions options, OperationContext opContext) throws StorageException {
+        Utility.assertNotNull("buffer", buffer);
+
+        final int startPosition = buffer.position();
+        this.download(new ByteBufferOutputStream(buffer), accessCondition, options, opContext);
+        return buffer.position() - startPosition;
+    }
+
+    /**
+     * Asynchronous version of {@link #downloadToByteArray(byte[], int)}. The buffer must not be used until the
+     * returned future has completed.
+     *
+     * @param buffer
+     *            A <code>byte</code> array which represents the buffer to which the blob bytes are downloaded.
+     * @param bufferOffset
+     *            An <code>int</code> which represents the byte offset to use as the starting point for the target.
+     *
+     * @return A <code>Future</code> which completes with the total number of bytes read into the buffer.
+     */
+    @DoesServiceRequest
+    public final Future<Integer> downloadToByteArrayAsync(final byte[] buffer, final int bufferOffset) {
+        return this.downloadToByteArrayAsync(buffer, bufferOffset, null /* accessCondition */, null /* options */,
+                null /* opContext */);
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link #downloadToByteArray(byte[], int, AccessCondition, BlobRequestOptions, OperationContext)}. The buffer must
+     * not be used until the returned future has completed.
+     *
+     * @param buffer
+     *            A <code>byte</code> array which represents the buffer to which the blob bytes are downloaded.
+     * @param bufferOffset
+     *            An <code>int</code> which represents the byte offset to use as the starting point for the target.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @return A <code>Future</code> which completes with the total number of bytes read into the buffer.
+     */
+    @DoesServiceRequest
+    public final Future<Integer> downloadToByteArrayAsync(final byte[] buffer, final int bufferOffset,
+            final AccessCondition accessCondition, BlobRequestOptions options, OperationContext opContext) {
+
+        Utility.assertNotNull("buffer", buffer);
+        if (bufferOffset < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (bufferOffset >= buffer.length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        opContext.initialize();
+        options = BlobRequestOptions.applyDefaults(options, this.properties.getBlobType(), this.blobServiceClient);
+
+        return ExecutionEngine.executeWithRetryAsync(this.blobServiceClient, this,
+                this.downloadToByteArrayImpl(null, null, buffer, bufferOffset, accessCondition, options, opContext),
+                options.getRetryPolicyFactory(), opContext);
+    }
+
     private StorageRequest<CloudBlobClient, CloudBlob, Integer> downloadToByteArrayImpl(final Long blobOffset,
             final Long length, final byte[] buffer, final int bufferOffset, final AccessCondition accessCondition,
             final BlobRequestOptions options, OperationContext opContext) {
+        return this.downloadToByteArrayImpl(blobOffset, length, buffer, bufferOffset, accessCondition, options,
+                opContext, true /* updateAttributes */);
+    }
+
+    private StorageRequest<CloudBlobClient, CloudBlob, Integer> downloadToByteArrayImpl(final Long blobOffset,
+            final Long length, final byte[] buffer, final int bufferOffset, final AccessCondition accessCondition,
+            final BlobRequestOptions options, OperationContext opContext, final boolean updateAttributes) {
         final long startingOffset = blobOffset == null ? 0 : blobOffset;
         final boolean isRangeGet = blobOffset != null;
         final StorageRequest<CloudBlobClient, CloudBlob, Integer> getRequest = new StorageRequest<CloudBlobClient, CloudBlob, Integer>(
@@ -1645,7 +2009,8 @@ public abstract class CloudBlob implements ListBlobItem {
             @Override
             public Integer preProcessResponse(CloudBlob blob, CloudBlobClient client, OperationContext context)
                     throws Exception {
-                return preProcessDownloadResponse(this, options, client, blob, context, isRangeGet);
+                return preProcessDownloadResponse(this, options, client, blob, context, isRangeGet,
+                        updateAttributes);
             }
 
             @Override
@@ -1733,165 +2098,812 @@ public abstract class CloudBlob implements ListBlobItem {
                     if (accessCondition != null) {
                         etagLockCondition.setLeaseID(accessCondition.getLeaseID());
                     }
-                    this.setETagLockCondition(etagLockCondition);
+                    this.setETagLockCondition(etagLockCondition);
+                }
+
+                if (this.getCurrentRequestByteCount() > 0) {
+                    this.setOffset(startingOffset + this.getCurrentRequestByteCount());
+                    if (length != null) {
+                        this.setLength(length - this.getCurrentRequestByteCount());
+                    }
+                }
+            }
+        };
+        return getRequest;
+    }
+
+    /**
+     * Uploads a blob from data in a byte array.
+     *
+     * @param buffer
+     *            A <code>byte</code> array which represents the data to write to the blob.
+     * @param offset
+     *            A <code>int</code> which represents the offset of the byte array from which to start the data upload.
+     * @param length
+     *            An <code>int</code> which represents the number of bytes to upload from the input buffer.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    public void uploadFromByteArray(final byte[] buffer, final int offset, final int length) throws StorageException,
+            IOException {
+        uploadFromByteArray(buffer, offset, length, null /* accessCondition */, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Uploads a blob from data in a byte array.
+     *
+     * @param buffer
+     *            A <code>byte</code> array which represents the data to write to the blob.
+     * @param offset
+     *            A <code>int</code> which represents the offset of the byte array from which to start the data upload.
+     * @param length
+     *            An <code>int</code> which represents the number of bytes to upload from the input buffer.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    public void uploadFromByteArray(final byte[] buffer, final int offset, final int length,
+            final AccessCondition accessCondition, BlobRequestOptions options, OperationContext opContext)
+            throws StorageException, IOException {
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(buffer, offset, length);
+        this.upload(inputStream, length, accessCondition, options, opContext);
+        inputStream.close();
+    }
+
+    /**
+     * Uploads a blob from the remaining bytes of a byte buffer.
+     *
+     * @param sourceBuffer
+     *            A <code>java.nio.ByteBuffer</code> object which holds the data to write to the blob between its
+     *            position and its limit. Its position is advanced to its limit once the data is uploaded.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    @DoesServiceRequest
+    public void upload(final ByteBuffer sourceBuffer) throws StorageException, IOException {
+        this.upload(sourceBuffer, null /* accessCondition */, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Uploads a blob from the remaining bytes of a byte buffer, using the specified lease ID, request options, and
+     * operation context. The data is read straight from the buffer, whether it is a heap or a direct buffer, rather
+     * than copied into an intermediate array.
+     *
+     * @param sourceBuffer
+     *            A <code>java.nio.ByteBuffer</code> object which holds the data to write to the blob between its
+     *            position and its limit. Its position is advanced to its limit once the data is uploaded.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    @DoesServiceRequest
+    public void upload(final ByteBuffer sourceBuffer, final AccessCondition accessCondition,
+            BlobRequestOptions options, OperationContext opContext) throws StorageException, IOException {
+        Utility.assertNotNull("sourceBuffer", sourceBuffer);
+
+        this.upload(new ByteBufferInputStream(sourceBuffer), sourceBuffer.remaining(), accessCondition, options,
+                opContext);
+        sourceBuffer.position(sourceBuffer.limit());
+    }
+
+    /**
+     * Uploads a blob from a channel.
+     *
+     * @param sourceChannel
+     *            A <code>java.nio.channels.ReadableByteChannel</code> object which represents the data to write to the
+     *            blob. It must be in blocking mode.
+     * @param length
+     *            A <code>long</code> which represents the length, in bytes, of the data, or -1 if unknown.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    @DoesServiceRequest
+    public void upload(final ReadableByteChannel sourceChannel, final long length) throws StorageException,
+            IOException {
+        this.upload(sourceChannel, length, null /* accessCondition */, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Uploads a blob from a channel, using the specified lease ID, request options, and operation context.
+     * <p>
+     * This is a convenience overload of
+     * {@link #upload(InputStream, long, AccessCondition, BlobRequestOptions, OperationContext)} which reads the channel
+     * through <code>Channels.newInputStream</code>, as a stream which does not support mark and reset, so the channel is
+     * read once. It does not avoid any copy of the data.
+     *
+     * @param sourceChannel
+     *            A <code>java.nio.channels.ReadableByteChannel</code> object which represents the data to write to the
+     *            blob. It must be in blocking mode.
+     * @param length
+     *            A <code>long</code> which represents the length, in bytes, of the data, or -1 if unknown.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    @DoesServiceRequest
+    public void upload(final ReadableByteChannel sourceChannel, final long length,
+            final AccessCondition accessCondition, BlobRequestOptions options, OperationContext opContext)
+            throws StorageException, IOException {
+        Utility.assertNotNull("sourceChannel", sourceChannel);
+        this.upload(Channels.newInputStream(sourceChannel), length, accessCondition, options, opContext);
+    }
+
+    /**
+     * Uploads a blob from a file.
+     *
+     * @param path
+     *            A <code>String</code> which represents the path to the file to be uploaded.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    public void uploadFromFile(final String path) throws StorageException, IOException {
+        uploadFromFile(path, null /* accessCondition */, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Uploads a blob from a file.
+     *
+     * @param path
+     *            A <code>String</code> which represents the path to the file to be uploaded.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    public void uploadFromFile(final String path, final AccessCondition accessCondition, BlobRequestOptions options,
+            OperationContext opContext) throws StorageException, IOException {
+        File file = new File(path);
+        long fileLength = file.length();
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
+        this.upload(inputStream, fileLength, accessCondition, options, opContext);
+        inputStream.close();
+    }
+
+    /**
+     * Waits for the specified number of requests submitted to a completion service to complete, and surfaces the
+     * exception of the first one which failed. If a request fails, the requests which have not started are cancelled
+     * and those in progress are waited for, so that none of them is left running once this method returns.
+     *
+     * @param transferSession
+     *            A {@link TransferScheduler.Session} object which represents the session the requests run in.
+     * @param completionService
+     *            A <code>java.util.concurrent.CompletionService</code> object to which the requests were submitted.
+     * @param count
+     *            An <code>int</code> which represents the number of requests to wait for.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     *             If an I/O error occurred, or the thread was interrupted.
+     */
+    static void waitForTransfers(final TransferScheduler.Session transferSession,
+            final CompletionService<Void> completionService, final int count) throws StorageException, IOException {
+        int remaining = count;
+        try {
+            while (remaining > 0) {
+                final Future<Void> transfer = completionService.take();
+                remaining--;
+                transfer.get();
+            }
+        }
+        catch (final InterruptedException e) {
+            throw Utility.initIOException(e);
+        }
+        catch (final ExecutionException e) {
+            abortTransfers(transferSession, completionService, remaining, e);
+        }
+    }
+
+    /**
+     * Collects the requests of a parallel transfer which have completed, without waiting for the others, so that a
+     * transfer which is still submitting requests stops at the first failure.
+     *
+     * @param transferSession
+     *            A {@link TransferScheduler.Session} object which represents the session the requests run in.
+     * @param completionService
+     *            A <code>java.util.concurrent.CompletionService</code> object to which the requests were submitted.
+     * @param count
+     *            An <code>int</code> which represents the number of requests submitted and not yet collected.
+     *
+     * @return An <code>int</code> which represents the number of requests collected.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     *             If an I/O error occurred, or the thread was interrupted.
+     */
+    static int collectCompletedTransfers(final TransferScheduler.Session transferSession,
+            final CompletionService<Void> completionService, final int count) throws StorageException, IOException {
+        int collected = 0;
+        Future<Void> transfer = completionService.poll();
+        while (transfer != null) {
+            collected++;
+            try {
+                transfer.get();
+            }
+            catch (final InterruptedException e) {
+                throw Utility.initIOException(e);
+            }
+            catch (final ExecutionException e) {
+                abortTransfers(transferSession, completionService, count - collected, e);
+            }
+
+            transfer = completionService.poll();
+        }
+
+        return collected;
+    }
+
+    /**
+     * Cancels the requests of a parallel transfer which have not started after one of them failed, waits for the
+     * others, and throws the failure.
+     */
+    private static void abortTransfers(final TransferScheduler.Session transferSession,
+            final CompletionService<Void> completionService, int remaining, final ExecutionException e)
+            throws StorageException, IOException {
+        transferSession.close();
+        try {
+            // cancelled requests complete immediately, the outcome of the others no longer matters
+            for (; remaining > 0; remaining--) {
+                completionService.take();
+            }
+        }
+        catch (final InterruptedException interruptedException) {
+            throw Utility.initIOException(interruptedException);
+        }
+
+        if (e.getCause() instanceof StorageException) {
+            throw (StorageException) e.getCause();
+        }
+        else if (e.getCause() instanceof IOException) {
+            throw (IOException) e.getCause();
+        }
+
+        throw Utility.initIOException(e);
+    }
+
+    /**
+     * Downloads a blob, storing the contents in a file.
+     *
+     * @param path
+     *            A <code>String</code> which represents the path to the file that will be created with the contents of
+     *            the blob.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    public void downloadToFile(final String path) throws StorageException, IOException {
+        downloadToFile(path, null /* accessCondition */, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Downloads a blob, storing the contents in a file.
+     * <p>
+     * If the concurrent request count of the options is more than 1, a blob longer than the minimum read size of the
+     * blob is downloaded as ranges of that size, or of 4 MB if transactional MD5 is used, which are fetched in parallel
+     * and written at their offsets in the file. The first range is fetched before the others, and its response gives the
+     * length and ETag of the blob. Each range is retried on its own, and the other ranges are conditional on that ETag,
+     * so that the file never mixes the data of two versions of the blob. The content MD5 of the blob, if it is known for
+     * that ETag and validated, is computed from the ranges in order as they complete.
+     * <p>
+     * If {@link BlobRequestOptions#getSkipEmptyPages()} is set, a page blob is downloaded in the same way, whatever the
+     * concurrent request count, but only its valid page ranges are fetched, and the rest of the file is left as holes
+     * which read as zeros. A mostly empty page blob such as a disk image then transfers only the pages which hold data.
+     * <p>
+     * If a content cache is set on the client, and the access condition is <code>null</code> or only holds a lease ID,
+     * the file is copied from the cache if it holds the current version of the blob, and the content downloaded is
+     * added to the cache otherwise. See {@link CloudBlobClient#setContentCache(BlobContentCache)}.
+     *
+     * @param path
+     *            A <code>String</code> which represents the path to the file that will be created with the contents of
+     *            the blob.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    public void downloadToFile(final String path, final AccessCondition accessCondition, BlobRequestOptions options,
+            OperationContext opContext) throws StorageException, IOException {
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        opContext.initialize();
+        options = BlobRequestOptions.applyDefaults(options, this.properties.getBlobType(), this.blobServiceClient);
+
+        final boolean skipEmptyPages = this instanceof CloudPageBlob && options.getSkipEmptyPages();
+        if (skipEmptyPages || options.getConcurrentRequestCount() > 1) {
+            final BlobContentCache contentCache = this.blobServiceClient.getContentCache();
+            final boolean useCache = contentCache != null && BlobContentCache.isCacheable(accessCondition);
+            if (skipEmptyPages || useCache) {
+                // the page ranges and the cache entry both depend on the version of the blob, so read it first
+                this.downloadAttributes(accessCondition, options, opContext);
+                if (skipEmptyPages || this.properties.getLength() > this.getRangeDownloadSize(options)) {
+                    if (useCache) {
+                        this.downloadRangesToFileThroughCache(contentCache, path, skipEmptyPages, accessCondition,
+                                options, opContext);
+                    }
+                    else {
+                        this.downloadRangesToFile(path, skipEmptyPages, true /* attributesDownloaded */,
+                                null /* pendingBlob */, accessCondition, options, opContext);
+                    }
+
+                    return;
+                }
+            }
+            else if (this.downloadRangesToFile(path, false /* skipEmptyPages */, false /* attributesDownloaded */,
+                    null /* pendingBlob */, accessCondition, options, opContext)) {
+                return;
+            }
+        }
+
+        OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(path));
+        try {
+            this.download(outputStream, accessCondition, options, opContext);
+            outputStream.close();
+        }
+        catch (StorageException e) {
+            deleteEmptyFileOnException(outputStream, path);
+            throw e;
+        }
+        catch (IOException e) {
+            deleteEmptyFileOnException(outputStream, path);
+            throw e;
+        }
+    }
+
+    /**
+     * Copies a blob whose attributes were downloaded to a file from a content cache, if the cache holds the version of
+     * the blob whose attributes were downloaded, or downloads it as ranges which are fetched in parallel and adds it to
+     * the cache otherwise.
+     *
+     * @param contentCache
+     *            A {@link BlobContentCache} object which represents the cache.
+     * @param path
+     *            A <code>String</code> which represents the path to the file that will be created with the contents of
+     *            the blob.
+     * @param skipEmptyPages
+     *            <code>true</code> to only fetch the valid page ranges of a page blob; otherwise, <code>false</code>.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob, which may only
+     *            hold a lease ID.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request.
+     * @param opContext
+     *            An {@link OperationContext} object used to track the execution of the operation.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    @DoesServiceRequest
+    private void downloadRangesToFileThroughCache(final BlobContentCache contentCache, final String path,
+            final boolean skipEmptyPages, final AccessCondition accessCondition, final BlobRequestOptions options,
+            final OperationContext opContext) throws StorageException, IOException {
+        final String cacheKey = BlobContentCache.getKey(this);
+        final String etag = this.properties.getEtag();
+
+        // the file is only opened once the cache is known to hold this version of the blob
+        final RandomAccessFile cachedContent = contentCache.open(cacheKey, etag);
+        if (cachedContent != null) {
+            try {
+                final FileOutputStream outputStream = new FileOutputStream(path);
+                try {
+                    final FileChannel sourceChannel = cachedContent.getChannel();
+                    final FileChannel targetChannel = outputStream.getChannel();
+                    final long length = sourceChannel.size();
+                    long position = 0;
+                    while (position < length) {
+                        position += sourceChannel.transferTo(position, length - position, targetChannel);
+                    }
+
+                    outputStream.close();
+                }
+                catch (IOException e) {
+                    deleteEmptyFileOnException(outputStream, path);
+                    throw e;
+                }
+            }
+            finally {
+                cachedContent.close();
+            }
+
+            return;
+        }
+
+        if (this.properties.getLength() > contentCache.getMaxSizeInBytes()) {
+            this.downloadRangesToFile(path, skipEmptyPages, true /* attributesDownloaded */, null /* pendingBlob */,
+                    accessCondition, options, opContext);
+            return;
+        }
+
+        // the ranges are written to the file and to the cache as they complete, so the content is only downloaded
+        // and written once, and the empty pages of the blob stay unallocated in both
+        final BlobContentCache.PendingBlob pendingBlob = contentCache.startAdding(cacheKey, null /* outStream */);
+        try {
+            this.downloadRangesToFile(path, skipEmptyPages, true /* attributesDownloaded */, pendingBlob,
+                    accessCondition, options, opContext);
+        }
+        catch (StorageException e) {
+            pendingBlob.abort();
+            throw e;
+        }
+        catch (IOException e) {
+            pendingBlob.abort();
+            throw e;
+        }
+
+        // the ranges are conditional on this ETag, so the content holds this version of the blob
+        pendingBlob.commit(etag);
+    }
+
+    /**
+     * Downloads a blob to a file, as ranges which are fetched in parallel.
+     * <p>
+     * If the attributes of the blob were not downloaded, the first range is fetched on this thread, and the version and
+     * length of the blob are taken from its response, so that the other ranges can be conditional on that version. The
+     * ranges are written at their offsets in the file, and hashed in order as they complete if the content MD5 of the
+     * blob is known and validated.
+     *
+     * @param path
+     *            A <code>String</code> which represents the path to the file that will be created with the contents of
+     *            the blob.
+     * @param skipEmptyPages
+     *            <code>true</code> to only fetch the valid page ranges of a page blob; otherwise, <code>false</code>.
+     * @param attributesDownloaded
+     *            <code>true</code> if the attributes of the blob were just downloaded; otherwise, <code>false</code>.
+     * @param pendingBlob
+     *            A {@link BlobContentCache.PendingBlob} object to which the ranges are also written, or
+     *            <code>null</code>.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request.
+     * @param opContext
+     *            An {@link OperationContext} object used to track the execution of the operation.
+     *
+     * @return <code>true</code> if the blob was downloaded, or <code>false</code> if the attributes of the blob were
+     *         not downloaded and the blob is empty, in which case the file is not created.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    @DoesServiceRequest
+    private boolean downloadRangesToFile(final String path, final boolean skipEmptyPages,
+            final boolean attributesDownloaded, final BlobContentCache.PendingBlob pendingBlob,
+            final AccessCondition accessCondition, final BlobRequestOptions options, final OperationContext opContext)
+            throws StorageException, IOException {
+        final int rangeSize = this.getRangeDownloadSize(options);
+        final BlockBufferPool bufferPool = new BlockBufferPool(rangeSize, options.getConcurrentRequestCount() * 2 + 1);
+
+        final byte[] firstBuffer;
+        if (!attributesDownloaded) {
+            final String knownETag = this.properties.getEtag();
+            firstBuffer = takeBuffer(bufferPool);
+            try {
+                // the response to the first range sets the properties of the blob, once
+                this.downloadRangeInternal(0, (long) rangeSize, firstBuffer, 0, accessCondition, options, opContext);
+            }
+            catch (final StorageException e) {
+                if (StorageErrorCodeStrings.INVALID_RANGE.equals(e.getErrorCode())) {
+                    // the blob is empty
+                    return false;
+                }
+
+                throw e;
+            }
+
+            if (knownETag == null || !knownETag.equals(this.properties.getEtag())) {
+                // a range does not return the content MD5 of the blob, and the one known is for another version
+                this.properties.setContentMD5(null);
+            }
+        }
+        else {
+            firstBuffer = null;
+        }
+
+        final long length = this.properties.getLength();
+        final String contentMD5 = this.properties.getContentMD5();
+
+        // lock the ranges to the version of the blob whose length was read
+        final AccessCondition rangeCondition = AccessCondition.generateIfMatchCondition(this.properties.getEtag());
+        if (accessCondition != null) {
+            rangeCondition.setLeaseID(accessCondition.getLeaseID());
+        }
+
+        final List<PageRange> dataRanges;
+        if (skipEmptyPages) {
+            dataRanges = ((CloudPageBlob) this).downloadPageRanges(rangeCondition, options, opContext);
+        }
+        else {
+            dataRanges = Collections.singletonList(new PageRange(0, length - 1));
+        }
+
+        // the ranges complete out of order, so they are held in their buffers until the ranges before them are hashed
+        final BlobContentDigest contentDigest = !options.getDisableContentMD5Validation()
+                && !Utility.isNullOrEmpty(contentMD5) ? new BlobContentDigest(this.blobServiceClient) : null;
+
+        final RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try {
+            // truncate the file first, so that the regions which are not written read as zeros
+            file.setLength(0);
+            file.setLength(length);
+            final FileChannel fileChannel = file.getChannel();
+            if (pendingBlob != null) {
+                pendingBlob.setLength(length);
+            }
+
+            long sequence = 0;
+            long nextOffset = 0;
+            if (firstBuffer != null) {
+                final int firstLength = (int) Math.min(rangeSize, length);
+                writeRange(fileChannel, firstBuffer, firstLength, 0);
+                if (pendingBlob != null) {
+                    pendingBlob.writeRange(firstBuffer, firstLength, 0);
+                }
+                if (contentDigest != null) {
+                    contentDigest.update(sequence, firstBuffer, firstLength, bufferPool, new AtomicInteger(1));
+                }
+                else {
+                    bufferPool.release(firstBuffer);
+                }
+
+                sequence++;
+                nextOffset = firstLength;
+            }
+
+            final TransferScheduler.Session transferSession = this.blobServiceClient.getTransferScheduler()
+                    .openSession(options.getConcurrentRequestCount());
+            try {
+                final ExecutorCompletionService<Void> completionService = new ExecutorCompletionService<Void>(
+                        transferSession);
+                int pendingRanges = 0;
+                for (final PageRange dataRange : dataRanges) {
+                    final long dataEnd = dataRange.getEndOffset() + 1;
+                    if (contentDigest != null && dataRange.getStartOffset() > nextOffset) {
+                        // the empty pages are not downloaded, but they are part of the content
+                        contentDigest.updateZeros(sequence++, dataRange.getStartOffset() - nextOffset);
+                    }
+
+                    final long dataStart = Math.max(dataRange.getStartOffset(), nextOffset);
+                    for (long offset = dataStart; offset < dataEnd; offset += rangeSize) {
+                        // stop downloading as soon as a range has failed
+                        pendingRanges -= collectCompletedTransfers(transferSession, completionService, pendingRanges);
+
+                        final long rangeOffset = offset;
+                        final int rangeLength = (int) Math.min(rangeSize, dataEnd - offset);
+                        final long rangeSequence = sequence++;
+
+                        // buffers are taken in the order of the ranges, which bounds the memory without ever holding
+                        // all of them for ranges which wait for an earlier range to be hashed
+                        final byte[] buffer = takeBuffer(bufferPool);
+                        final AtomicInteger bufferHolders = new AtomicInteger(contentDigest == null ? 1 : 2);
+                        completionService.submit(new Callable<Void>() {
+                            @Override
+                            public Void call() throws StorageException, IOException {
+                                boolean hashing = false;
+                                try {
+                                    final int count = CloudBlob.this.downloadRangeDetached(rangeOffset, rangeLength,
+                                            buffer, rangeCondition, options, opContext);
+                                    if (count != rangeLength) {
+                                        throw new StorageException(StorageErrorCodeStrings.OUT_OF_RANGE_INPUT,
+                                                SR.CONTENT_LENGTH_MISMATCH,
+                                                Constants.HeaderConstants.HTTP_UNUSED_306, null, null);
+                                    }
+
+                                    if (contentDigest != null) {
+                                        contentDigest.update(rangeSequence, buffer, rangeLength, bufferPool,
+                                                bufferHolders);
+                                        hashing = true;
+                                    }
+
+                                    writeRange(fileChannel, buffer, rangeLength, rangeOffset);
+                                    if (pendingBlob != null) {
+                                        pendingBlob.writeRange(buffer, rangeLength, rangeOffset);
+                                    }
+                                    return null;
+                                }
+                                finally {
+                                    if (contentDigest != null && !hashing) {
+                                        bufferPool.release(buffer, bufferHolders);
+                                    }
+
+                                    bufferPool.release(buffer, bufferHolders);
+                                }
+                            }
+                        });
+                        pendingRanges++;
+                    }
+
+                    nextOffset = Math.max(nextOffset, dataEnd);
                 }
 
-                if (this.getCurrentRequestByteCount() > 0) {
-                    this.setOffset(startingOffset + this.getCurrentRequestByteCount());
-                    if (length != null) {
-                        this.setLength(length - this.getCurrentRequestByteCount());
+                if (contentDigest != null && length > nextOffset) {
+                    contentDigest.updateZeros(sequence++, length - nextOffset);
+                }
+
+                waitForTransfers(transferSession, completionService, pendingRanges);
+
+                if (contentDigest != null) {
+                    final String calculatedMD5 = contentDigest.getMd5();
+                    if (!contentMD5.equals(calculatedMD5)) {
+                        throw new StorageException(StorageErrorCodeStrings.INVALID_MD5, String.format(
+                                SR.BLOB_HASH_MISMATCH, contentMD5, calculatedMD5),
+                                Constants.HeaderConstants.HTTP_UNUSED_306, null, null);
                     }
                 }
             }
-        };
-        return getRequest;
-    }
+            finally {
+                // cancel the ranges which have not started, if one of the ranges failed
+                transferSession.close();
+                if (contentDigest != null) {
+                    contentDigest.close();
+                }
+            }
 
-    /**
-     * Uploads a blob from data in a byte array.
-     *
-     * @param buffer
-     *            A <code>byte</code> array which represents the data to write to the blob.
-     * @param offset
-     *            A <code>int</code> which represents the offset of the byte array from which to start the data upload.
-     * @param length
-     *            An <code>int</code> which represents the number of bytes to upload from the input buffer.
-     *
-     * @throws StorageException
-     *             If a storage service error occurred.
-     * @throws IOException
-     */
-    public void uploadFromByteArray(final byte[] buffer, final int offset, final int length) throws StorageException,
-            IOException {
-        uploadFromByteArray(buffer, offset, length, null /* accessCondition */, null /* options */, null /* opContext */);
+            file.close();
+            return true;
+        }
+        catch (StorageException e) {
+            deleteEmptyFileOnException(file, path);
+            throw e;
+        }
+        catch (IOException e) {
+            deleteEmptyFileOnException(file, path);
+            throw e;
+        }
     }
 
     /**
-     * Uploads a blob from data in a byte array.
+     * Downloads a range of bytes from the blob to the given byte buffer, without updating the properties and metadata
+     * of the blob from the response, so that ranges can be downloaded in parallel. The options must already have their
+     * defaults applied.
      *
-     * @param buffer
-     *            A <code>byte</code> array which represents the data to write to the blob.
-     * @param offset
-     *            A <code>int</code> which represents the offset of the byte array from which to start the data upload.
+     * @param blobOffset
+     *            A <code>long</code> which represents the offset within the blob to begin downloading.
      * @param length
-     *            An <code>int</code> which represents the number of bytes to upload from the input buffer.
+     *            An <code>int</code> which represents the number of bytes to read.
+     * @param buffer
+     *            A <code>byte</code> array which represents the buffer to write to, from its start.
      * @param accessCondition
      *            An {@link AccessCondition} object that represents the access conditions for the blob.
      * @param options
-     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
-     *            <code>null</code> will use the default request options from the associated service client (
-     *            {@link CloudBlobClient}).
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request.
      * @param opContext
-     *            An {@link OperationContext} object that represents the context for the current operation. This object
-     *            is used to track requests to the storage service, and to provide additional runtime information about
-     *            the operation.
-     *
-     * @throws StorageException
-     *             If a storage service error occurred.
-     * @throws IOException
-     */
-    public void uploadFromByteArray(final byte[] buffer, final int offset, final int length,
-            final AccessCondition accessCondition, BlobRequestOptions options, OperationContext opContext)
-            throws StorageException, IOException {
-        ByteArrayInputStream inputStream = new ByteArrayInputStream(buffer, offset, length);
-        this.upload(inputStream, length, accessCondition, options, opContext);
-        inputStream.close();
-    }
-
-    /**
-     * Uploads a blob from a file.
+     *            An {@link OperationContext} object used to track the execution of the operation.
      *
-     * @param path
-     *            A <code>String</code> which represents the path to the file to be uploaded.
+     * @return An <code>int</code> which represents the number of bytes downloaded.
      *
      * @throws StorageException
      *             If a storage service error occurred.
-     * @throws IOException
      */
-    public void uploadFromFile(final String path) throws StorageException, IOException {
-        uploadFromFile(path, null /* accessCondition */, null /* options */, null /* opContext */);
+    @DoesServiceRequest
+    int downloadRangeDetached(final long blobOffset, final int length, final byte[] buffer,
+            final AccessCondition accessCondition, final BlobRequestOptions options, final OperationContext opContext)
+            throws StorageException {
+        return ExecutionEngine.executeWithRetry(this.blobServiceClient, this, this.downloadToByteArrayImpl(blobOffset,
+                (long) length, buffer, 0, accessCondition, options, opContext, false /* updateAttributes */),
+                options.getRetryPolicyFactory(), opContext);
     }
 
     /**
-     * Uploads a blob from a file.
+     * Writes a range of a blob at its offset in a file.
      *
-     * @param path
-     *            A <code>String</code> which represents the path to the file to be uploaded.
-     * @param accessCondition
-     *            An {@link AccessCondition} object that represents the access conditions for the blob.
-     * @param options
-     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
-     *            <code>null</code> will use the default request options from the associated service client (
-     *            {@link CloudBlobClient}).
-     * @param opContext
-     *            An {@link OperationContext} object that represents the context for the current operation. This object
-     *            is used to track requests to the storage service, and to provide additional runtime information about
-     *            the operation.
+     * @param fileChannel
+     *            A <code>java.nio.channels.FileChannel</code> object which represents the file.
+     * @param buffer
+     *            A <code>byte</code> array which holds the range, from its start.
+     * @param length
+     *            An <code>int</code> which represents the length, in bytes, of the range.
+     * @param offset
+     *            A <code>long</code> which represents the offset of the range in the blob.
      *
-     * @throws StorageException
-     *             If a storage service error occurred.
      * @throws IOException
+     *             If the file could not be written.
      */
-    public void uploadFromFile(final String path, final AccessCondition accessCondition, BlobRequestOptions options,
-            OperationContext opContext) throws StorageException, IOException {
-        File file = new File(path);
-        long fileLength = file.length();
-        InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
-        this.upload(inputStream, fileLength, accessCondition, options, opContext);
-        inputStream.close();
+    private static void writeRange(final FileChannel fileChannel, final byte[] buffer, final int length,
+            final long offset) throws IOException {
+        final ByteBuffer data = ByteBuffer.wrap(buffer, 0, length);
+        while (data.hasRemaining()) {
+            fileChannel.write(data, offset + data.position());
+        }
     }
 
     /**
-     * Downloads a blob, storing the contents in a file.
+     * Takes a buffer from a pool, waiting for one to be released if every buffer is in use.
      *
-     * @param path
-     *            A <code>String</code> which represents the path to the file that will be created with the contents of
-     *            the blob.
+     * @param bufferPool
+     *            A {@link BlockBufferPool} object which represents the pool.
+     *
+     * @return A <code>byte</code> array which represents the buffer.
      *
-     * @throws StorageException
-     *             If a storage service error occurred.
      * @throws IOException
+     *             If the thread was interrupted while waiting.
      */
-    public void downloadToFile(final String path) throws StorageException, IOException {
-        downloadToFile(path, null /* accessCondition */, null /* options */, null /* opContext */);
+    private static byte[] takeBuffer(final BlockBufferPool bufferPool) throws IOException {
+        try {
+            return bufferPool.take();
+        }
+        catch (final InterruptedException e) {
+            throw Utility.initIOException(e);
+        }
     }
 
     /**
-     * Downloads a blob, storing the contents in a file.
+     * Gets the size of the ranges a blob is downloaded in, when they are downloaded in parallel.
      *
-     * @param path
-     *            A <code>String</code> which represents the path to the file that will be created with the contents of
-     *            the blob.
-     * @param accessCondition
-     *            An {@link AccessCondition} object that represents the access conditions for the blob.
      * @param options
-     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
-     *            <code>null</code> will use the default request options from the associated service client (
-     *            {@link CloudBlobClient}).
-     * @param opContext
-     *            An {@link OperationContext} object that represents the context for the current operation. This object
-     *            is used to track requests to the storage service, and to provide additional runtime information about
-     *            the operation.
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request.
      *
-     * @throws StorageException
-     *             If a storage service error occurred.
-     * @throws IOException
+     * @return An <code>int</code> which represents the size, in bytes, of the ranges.
      */
-    public void downloadToFile(final String path, final AccessCondition accessCondition, BlobRequestOptions options,
-            OperationContext opContext) throws StorageException, IOException {
-        OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(path));
-        try {
-            this.download(outputStream, accessCondition, options, opContext);
-            outputStream.close();
-        }
-        catch (StorageException e) {
-            deleteEmptyFileOnException(outputStream, path);
-            throw e;
-        }
-        catch (IOException e) {
-            deleteEmptyFileOnException(outputStream, path);
-            throw e;
-        }
+    private int getRangeDownloadSize(final BlobRequestOptions options) {
+        // ranges with a transactional MD5 can be at most 4 MB
+        return options.getUseTransactionalContentMD5() ? Math.min(this.streamMinimumReadSizeInBytes,
+                4 * Constants.MB) : this.streamMinimumReadSizeInBytes;
     }
 
     /**
@@ -1901,7 +2913,7 @@ public abstract class CloudBlob implements ListBlobItem {
      * @param path
      * @throws IOException
      */
-    private void deleteEmptyFileOnException(OutputStream outputStream, String path) {
+    private void deleteEmptyFileOnException(Closeable outputStream, String path) {
         try {
             outputStream.close();
             File fileToDelete = new File(path);
@@ -1964,6 +2976,49 @@ public abstract class CloudBlob implements ListBlobItem {
                 this.existsImpl(primaryOnly, accessCondition, options), options.getRetryPolicyFactory(), opContext);
     }
 
+    /**
+     * Asynchronous version of {@link #exists()}.
+     *
+     * @return A <code>Future</code> which completes with <code>true</code> if the blob exists, otherwise
+     *         <code>false</code>.
+     */
+    @DoesServiceRequest
+    public final Future<Boolean> existsAsync() {
+        return this.existsAsync(null /* accessCondition */, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Asynchronous version of {@link #exists(AccessCondition, BlobRequestOptions, OperationContext)}.
+     *
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @return A <code>Future</code> which completes with <code>true</code> if the blob exists, otherwise
+     *         <code>false</code>.
+     */
+    @DoesServiceRequest
+    public final Future<Boolean> existsAsync(final AccessCondition accessCondition, BlobRequestOptions options,
+            OperationContext opContext) {
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        opContext.initialize();
+        options = BlobRequestOptions.applyDefaults(options, this.properties.getBlobType(), this.blobServiceClient);
+
+        return ExecutionEngine.executeWithRetryAsync(this.blobServiceClient, this,
+                this.existsImpl(false /* primaryOnly */, accessCondition, options), options.getRetryPolicyFactory(),
+                opContext);
+    }
+
     private StorageRequest<CloudBlobClient, CloudBlob, Boolean> existsImpl(final boolean primaryOnly,
             final AccessCondition accessCondition, final BlobRequestOptions options) {
         final StorageRequest<CloudBlobClient, CloudBlob, Boolean> getRequest = new StorageRequest<CloudBlobClient, CloudBlob, Boolean>(
@@ -2346,6 +3401,10 @@ public abstract class CloudBlob implements ListBlobItem {
      * Opens a blob input stream to download the blob using the specified request options and operation context.
      * <p>
      * Use {@link CloudBlobClient#setStreamMinimumReadSizeInBytes} to configure the read size.
+     * <p>
+     * If a content cache is set on the client and holds the version of the blob whose attributes the stream reads when
+     * it opens, the stream reads that version from the cache. See
+     * {@link CloudBlobClient#setContentCache(BlobContentCache)}.
      *
      * @param accessCondition
      *            An {@link AccessCondition} object that represents the access conditions for the blob.
@@ -2377,6 +3436,97 @@ public abstract class CloudBlob implements ListBlobItem {
         return new BlobInputStream(this, accessCondition, options, opContext);
     }
 
+    /**
+     * Opens a channel to read the blob at any position, through a cache of the most recently used blocks.
+     * <p>
+     * Use {@link CloudBlobClient#setStreamMinimumReadSizeInBytes} to configure the block size.
+     *
+     * @return A {@link BlobReadChannel} object that represents the channel to use for reading from the blob.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public final BlobReadChannel openReadChannel() throws StorageException {
+        return this.openReadChannel(null /* accessCondition */, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Opens a channel to read the blob at any position, through a cache of the most recently used blocks, using the
+     * specified request options and operation context. The attributes of the blob are downloaded, and the reads of
+     * the channel are conditional on its ETag, so that they fail rather than mix the data of two versions of the blob.
+     * <p>
+     * Use {@link CloudBlobClient#setStreamMinimumReadSizeInBytes} to configure the block size.
+     *
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @return A {@link BlobReadChannel} object that represents the channel to use for reading from the blob.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public final BlobReadChannel openReadChannel(final AccessCondition accessCondition, BlobRequestOptions options,
+            OperationContext opContext) throws StorageException {
+        return this.openReadChannel(Constants.DEFAULT_READ_CHANNEL_CACHED_BLOCKS, accessCondition, options,
+                opContext);
+    }
+
+    /**
+     * Opens a channel to read the blob at any position, through a cache of up to the specified number of the most
+     * recently used blocks, using the specified request options and operation context. The attributes of the blob
+     * are downloaded, and the reads of the channel are conditional on its ETag, so that they fail rather than mix the
+     * data of two versions of the blob.
+     * <p>
+     * Use {@link CloudBlobClient#setStreamMinimumReadSizeInBytes} to configure the block size.
+     *
+     * @param maxCachedBlocks
+     *            An <code>int</code> which represents the maximum number of blocks held in the cache, which bounds the
+     *            memory of the channel to this many times the block size.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @return A {@link BlobReadChannel} object that represents the channel to use for reading from the blob.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public final BlobReadChannel openReadChannel(final int maxCachedBlocks, final AccessCondition accessCondition,
+            BlobRequestOptions options, OperationContext opContext) throws StorageException {
+        Utility.assertGreaterThanOrEqual("maxCachedBlocks", maxCachedBlocks, 1);
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        options = BlobRequestOptions.applyDefaults(options, this.properties.getBlobType(), this.blobServiceClient);
+
+        if (options.getUseTransactionalContentMD5() && this.streamMinimumReadSizeInBytes > 4 * Constants.MB) {
+            throw new IllegalArgumentException(SR.INVALID_RANGE_CONTENT_MD5_HEADER);
+        }
+
+        this.downloadAttributes(accessCondition, options, opContext);
+
+        return new BlobReadChannel(this, maxCachedBlocks, accessCondition, options, opContext);
+    }
+
     /**
      * Parse Uri for SAS (Shared access signature) information.
      *
@@ -2435,6 +3585,7 @@ public abstract class CloudBlob implements ListBlobItem {
             this.blobServiceClient.setDefaultRequestOptions(new BlobRequestOptions(existingClient
                     .getDefaultRequestOptions()));
             this.blobServiceClient.setDirectoryDelimiter(existingClient.getDirectoryDelimiter());
+            this.blobServiceClient.setTransferScheduler(existingClient.getTransferScheduler());
         }
     }
 
@@ -3035,8 +4186,8 @@ public abstract class CloudBlob implements ListBlobItem {
 
     private Integer preProcessDownloadResponse(final StorageRequest<CloudBlobClient, CloudBlob, Integer> request,
             final BlobRequestOptions options, final CloudBlobClient client, final CloudBlob blob,
-            final OperationContext context, final boolean isRangeGet) throws StorageException, URISyntaxException,
-            ParseException {
+            final OperationContext context, final boolean isRangeGet, final boolean updateAttributes)
+            throws StorageException, URISyntaxException, ParseException {
         if (request.getResult().getStatusCode() != HttpURLConnection.HTTP_PARTIAL
                 && request.getResult().getStatusCode() != HttpURLConnection.HTTP_OK) {
             request.setNonExceptionedRetryableFailure(true);
@@ -3063,11 +4214,13 @@ public abstract class CloudBlob implements ListBlobItem {
                         Constants.HeaderConstants.HTTP_UNUSED_306, null, null);
             }
 
-            blob.properties = retrievedAttributes.getProperties();
-            blob.metadata = retrievedAttributes.getMetadata();
             request.setContentMD5(retrievedAttributes.getProperties().getContentMD5());
-            blob.properties.setContentMD5(originalContentMD5);
-            request.setLockedETag(blob.properties.getEtag());
+            request.setLockedETag(retrievedAttributes.getProperties().getEtag());
+            if (updateAttributes) {
+                blob.properties = retrievedAttributes.getProperties();
+                blob.metadata = retrievedAttributes.getMetadata();
+                blob.properties.setContentMD5(originalContentMD5);
+            }
             request.setArePropertiesPopulated(true);
         }
 
@@ -31,6 +31,7 @@ import com.microsoft.azure.storage.ServiceStats;
 import com.microsoft.azure.storage.StorageCredentials;
 import com.microsoft.azure.storage.StorageException;
 import com.microsoft.azure.storage.StorageUri;
+import com.microsoft.azure.storage.TransferScheduler;
 import com.microsoft.azure.storage.core.ExecutionEngine;
 import com.microsoft.azure.storage.core.LazySegmentedIterable;
 import com.microsoft.azure.storage.core.ListResponse;
@@ -58,6 +59,16 @@ public final class CloudBlobClient extends ServiceClient {
      */
     private BlobRequestOptions defaultRequestOptions;
 
+    /**
+     * Holds the scheduler which runs the parallel requests of transfers made via this Service Client.
+     */
+    private TransferScheduler transferScheduler;
+
+    /**
+     * Holds the local cache of the content of the blobs downloaded via this Service Client, or <code>null</code>.
+     */
+    private BlobContentCache contentCache;
+
     /**
      * Creates an instance of the <code>CloudBlobClient</code> class using the specified Blob service endpoint and
      * anonymous credentials.
@@ -154,6 +165,16 @@ public final class CloudBlobClient extends ServiceClient {
         return new CloudBlobContainer(containerName, this);
     }
 
+    /**
+     * Gets the local cache which the content of the blobs downloaded via this client is kept in.
+     * 
+     * @return A {@link BlobContentCache} object which represents the cache, or <code>null</code> if the content is not
+     *         cached.
+     */
+    public BlobContentCache getContentCache() {
+        return this.contentCache;
+    }
+
     /**
      * Returns the value for the default delimiter used for cloud blob directories. The default is '/'.
      * 
@@ -178,6 +199,17 @@ public final class CloudBlobClient extends ServiceClient {
         return this.getDefaultRequestOptions().getSingleBlobPutThresholdInBytes();
     }
 
+    /**
+     * Gets the scheduler which runs the parallel requests of blob uploads and downloads made via this client.
+     * 
+     * @return The {@link TransferScheduler} used by this client. Unless another scheduler was set, this is the scheduler
+     *         shared by all clients, as returned by {@link TransferScheduler#getDefault()}.
+     */
+    public TransferScheduler getTransferScheduler() {
+        final TransferScheduler scheduler = this.transferScheduler;
+        return scheduler == null ? TransferScheduler.getDefault() : scheduler;
+    }
+
     /**
      * Returns an enumerable collection of blob containers for this Blob service client.
      * 
@@ -644,6 +676,40 @@ public final class CloudBlobClient extends ServiceClient {
         this.defaultRequestOptions.setSingleBlobPutThresholdInBytes(singleBlobPutThresholdInBytes);
     }
 
+    /**
+     * Sets the local cache which the content of the blobs downloaded via this client is kept in. The content is not
+     * cached by default.
+     * <p>
+     * Once a cache is set, the whole blob downloads made via this client, such as
+     * {@link CloudBlob#download(java.io.OutputStream)} and {@link CloudBlob#downloadToFile(String)}, keep the content
+     * they download in the cache, and a later download of the same blob only gets the content again from the service
+     * if the blob has changed. The input streams opened via {@link CloudBlob#openInputStream()} read a blob from the
+     * cache if it holds the current version of the blob. Downloads with access conditions other than a lease bypass
+     * the cache.
+     * 
+     * @param contentCache
+     *            A {@link BlobContentCache} object which represents the cache to use, or <code>null</code> to not cache
+     *            the content. A cache may be shared by several clients.
+     */
+    public void setContentCache(final BlobContentCache contentCache) {
+        this.contentCache = contentCache;
+    }
+
+    /**
+     * Sets the scheduler which runs the parallel requests of blob uploads and downloads made via this client.
+     * <p>
+     * Every output stream and parallel transfer submits its requests to this scheduler, which bounds the number of
+     * requests running across all of them and shares that number fairly among them. Each transfer still runs at most
+     * its own concurrent request count of requests at a time.
+     * 
+     * @param transferScheduler
+     *            A {@link TransferScheduler} object which represents the scheduler to use, or <code>null</code> to use
+     *            the scheduler shared by all clients.
+     */
+    public void setTransferScheduler(final TransferScheduler transferScheduler) {
+        this.transferScheduler = transferScheduler;
+    }
+
     /**
      * Gets the {@link BlobRequestOptions} that is used for requests associated with this <code>CloudBlobClient</code>
      * 
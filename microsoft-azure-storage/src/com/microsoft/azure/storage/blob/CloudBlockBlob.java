@@ -18,9 +18,20 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -30,8 +41,10 @@ import com.microsoft.azure.storage.DoesServiceRequest;
 import com.microsoft.azure.storage.OperationContext;
 import com.microsoft.azure.storage.StorageException;
 import com.microsoft.azure.storage.StorageUri;
+import com.microsoft.azure.storage.TransferScheduler;
 import com.microsoft.azure.storage.core.Base64;
 import com.microsoft.azure.storage.core.ExecutionEngine;
+import com.microsoft.azure.storage.core.FileChannelInputStream;
 import com.microsoft.azure.storage.core.RequestLocationMode;
 import com.microsoft.azure.storage.core.SR;
 import com.microsoft.azure.storage.core.StorageRequest;
@@ -43,6 +56,16 @@ import com.microsoft.azure.storage.core.Utility;
  */
 public final class CloudBlockBlob extends CloudBlob {
 
+    /**
+     * Holds the random number generator used to pick the first block ID of an upload from a file.
+     */
+    private static Random blockSequenceGenerator = new Random();
+
+    /**
+     * The length of the block IDs of a synchronized blob, which are Base64-encoded MD5 hashes.
+     */
+    private static final int SYNC_BLOCK_ID_LENGTH = 24;
+
     /**
      * Creates an instance of the <code>CloudBlockBlob</code> class using the specified absolute URI.
      * 
@@ -477,6 +500,37 @@ public final class CloudBlockBlob extends CloudBlob {
         return new BlobOutputStream(this, accessCondition, options, opContext);
     }
 
+    /**
+     * Opens a session which composes the block blob from the specified number of ordered parts, which can be written in
+     * parallel by different threads, or by different processes which get the session from its token. See
+     * {@link BlockStagingSession}.
+     * 
+     * @param partCount
+     *            An <code>int</code> which represents the number of parts of the blob.
+     * 
+     * @return A {@link BlockStagingSession} object which represents the session.
+     */
+    public BlockStagingSession openStagingSession(final int partCount) {
+        assertNoWriteOperationForSnapshot();
+        return BlockStagingSession.create(this, partCount);
+    }
+
+    /**
+     * Gets a session opened by {@link #openStagingSession(int)}, possibly by another process, from its token.
+     * 
+     * @param token
+     *            A <code>String</code> which represents the token returned by {@link BlockStagingSession#getToken()}.
+     * 
+     * @return A {@link BlockStagingSession} object which represents the session.
+     * 
+     * @throws IllegalArgumentException
+     *             If the token is not that of a block staging session.
+     */
+    public BlockStagingSession getStagingSession(final String token) {
+        assertNoWriteOperationForSnapshot();
+        return BlockStagingSession.fromToken(this, token);
+    }
+
     /**
      * Uploads the source stream data to the block blob.
      * 
@@ -571,7 +625,8 @@ public final class CloudBlockBlob extends CloudBlob {
             this.uploadFullBlob(sourceStream, descriptor.getLength(), accessCondition, options, opContext);
         }
         else {
-            final BlobOutputStream writeStream = this.openOutputStream(accessCondition, options, opContext);
+            final BlobOutputStream writeStream = new BlobOutputStream(this, length, accessCondition, options,
+                    opContext);
             try {
                 writeStream.write(sourceStream, length);
             }
@@ -581,6 +636,603 @@ public final class CloudBlockBlob extends CloudBlob {
         }
     }
 
+    /**
+     * Uploads a blob from a file. If the file is larger than the single put threshold, its blocks are uploaded in
+     * parallel, each one read from the file as it is sent rather than buffered, and a block which is retried is read
+     * from the file again. When the content MD5 is stored, the blocks are instead read once, in order, into a bounded
+     * number of buffers, which are hashed while they are uploaded.
+     *
+     * @param path
+     *            A <code>String</code> which represents the path to the file to be uploaded.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    @Override
+    @DoesServiceRequest
+    public void uploadFromFile(final String path, final AccessCondition accessCondition, BlobRequestOptions options,
+            OperationContext opContext) throws StorageException, IOException {
+        assertNoWriteOperationForSnapshot();
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        options = BlobRequestOptions.applyDefaults(options, BlobType.BLOCK_BLOB, this.blobServiceClient);
+
+        final RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            final FileChannel channel = file.getChannel();
+            final long length = channel.size();
+            if (length <= options.getSingleBlobPutThresholdInBytes()) {
+                this.upload(new FileChannelInputStream(channel, 0, length), length, accessCondition, options,
+                        opContext);
+            }
+            else {
+                opContext.initialize();
+                this.uploadBlocksFromSource(BlobRangeSource.forFile(channel), length, null /* journal */,
+                        accessCondition, options, opContext);
+            }
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Uploads a blob from the remaining bytes of a byte buffer, using the specified lease ID, request options, and
+     * operation context. If the data is larger than the single put threshold, its blocks are uploaded in parallel, each
+     * one read straight from the buffer as it is sent rather than copied, and a block which is retried is read from
+     * the buffer again. When the content MD5 is stored, the blocks are instead copied once, in order, into a bounded
+     * number of buffers, which are hashed while they are uploaded.
+     *
+     * @param sourceBuffer
+     *            A <code>java.nio.ByteBuffer</code> object which holds the data to write to the blob between its
+     *            position and its limit. Its position is advanced to its limit once the data is uploaded.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    @Override
+    @DoesServiceRequest
+    public void upload(final ByteBuffer sourceBuffer, final AccessCondition accessCondition,
+            BlobRequestOptions options, OperationContext opContext) throws StorageException, IOException {
+        Utility.assertNotNull("sourceBuffer", sourceBuffer);
+        assertNoWriteOperationForSnapshot();
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        options = BlobRequestOptions.applyDefaults(options, BlobType.BLOCK_BLOB, this.blobServiceClient);
+
+        final int length = sourceBuffer.remaining();
+        if (length <= options.getSingleBlobPutThresholdInBytes()) {
+            super.upload(sourceBuffer, accessCondition, options, opContext);
+        }
+        else {
+            opContext.initialize();
+            this.uploadBlocksFromSource(BlobRangeSource.forBuffer(sourceBuffer), length, null /* journal */,
+                    accessCondition, options, opContext);
+            sourceBuffer.position(sourceBuffer.limit());
+        }
+    }
+
+    /**
+     * Uploads the source stream data to the block blob as a resumable upload, using the specified journal, lease ID,
+     * request options, and operation context. The data is always uploaded as blocks, and the progress of the upload is
+     * recorded in the journal. If the upload is interrupted, it can be resumed by uploading the same data again with
+     * the same journal: the blocks which the service still holds are read from the source stream but not sent again.
+     * 
+     * @param sourceStream
+     *            An {@link InputStream} object to read from.
+     * @param length
+     *            A <code>long</code> which represents the length, in bytes, of the stream data, or -1 if unknown.
+     * @param journal
+     *            A {@link BlockUploadJournal} object which records the progress of the upload.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * 
+     * @throws IOException
+     *             If an I/O exception occurred.
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public void upload(final InputStream sourceStream, final long length, final BlockUploadJournal journal,
+            final AccessCondition accessCondition, BlobRequestOptions options, OperationContext opContext)
+            throws StorageException, IOException {
+        if (length < -1) {
+            throw new IllegalArgumentException(SR.STREAM_LENGTH_NEGATIVE);
+        }
+
+        Utility.assertNotNull("journal", journal);
+        assertNoWriteOperationForSnapshot();
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        opContext.initialize();
+        options = BlobRequestOptions.applyDefaults(options, BlobType.BLOCK_BLOB, this.blobServiceClient);
+
+        journal.open(this, length, this.getStreamWriteSizeInBytes(), accessCondition, options, opContext);
+        final BlobOutputStream writeStream;
+        try {
+            writeStream = new BlobOutputStream(this, journal, accessCondition, options, opContext);
+        }
+        catch (final StorageException e) {
+            journal.close();
+            throw e;
+        }
+
+        // Unlike other uploads, the blob is not committed if the source stream fails, so that the upload can resume
+        boolean written = false;
+        try {
+            writeStream.write(sourceStream, length);
+            written = true;
+        }
+        finally {
+            if (written) {
+                writeStream.close();
+            }
+            else {
+                writeStream.abort();
+            }
+        }
+    }
+
+    /**
+     * Uploads a blob from a file as a resumable upload, using the specified journal. The file is always uploaded as
+     * blocks, in parallel, and the progress of the upload is recorded in the journal. If the upload is interrupted, it
+     * can be resumed by uploading the same file again with the same journal: the blocks which the service still holds
+     * are read from the file to check that they did not change, but not sent again.
+     *
+     * @param path
+     *            A <code>String</code> which represents the path to the file to be uploaded.
+     * @param journal
+     *            A {@link BlockUploadJournal} object which records the progress of the upload.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    @DoesServiceRequest
+    public void uploadFromFile(final String path, final BlockUploadJournal journal,
+            final AccessCondition accessCondition, BlobRequestOptions options, OperationContext opContext)
+            throws StorageException, IOException {
+        Utility.assertNotNull("journal", journal);
+        assertNoWriteOperationForSnapshot();
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        opContext.initialize();
+        options = BlobRequestOptions.applyDefaults(options, BlobType.BLOCK_BLOB, this.blobServiceClient);
+
+        final RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            final FileChannel channel = file.getChannel();
+            this.uploadBlocksFromSource(BlobRangeSource.forFile(channel), channel.size(), journal, accessCondition,
+                    options, opContext);
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Uploads the ranges of the data as blocks, in parallel, and commits them.
+     *
+     * @param source
+     *            A {@link BlobRangeSource} object which reads the ranges of the data.
+     * @param length
+     *            A <code>long</code> which represents the length, in bytes, of the data.
+     * @param journal
+     *            A {@link BlockUploadJournal} object which records the progress of the upload, or <code>null</code>.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request.
+     * @param opContext
+     *            An {@link OperationContext} object that is used to track the execution of the operation.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     *             If an I/O error occurred.
+     */
+    @DoesServiceRequest
+    private void uploadBlocksFromSource(final BlobRangeSource source, final long length,
+            final BlockUploadJournal journal, final AccessCondition accessCondition, final BlobRequestOptions options,
+            final OperationContext opContext) throws StorageException, IOException {
+        // the block IDs of a journaled upload depend on the block index, so the block size cannot change
+        final int blockSize = journal == null && options.getUseAdaptiveBlockSize() ? BlockUploadTuner
+                .getInitialBlockSize(length, options.getConcurrentRequestCount()) : this.getStreamWriteSizeInBytes();
+        long blockIdSequenceNumber = (long) (blockSequenceGenerator.nextInt(Integer.MAX_VALUE))
+                + blockSequenceGenerator.nextInt(Integer.MAX_VALUE - 100000);
+        final ArrayList<BlockEntry> blockList = new ArrayList<BlockEntry>();
+
+        if (journal != null) {
+            journal.open(this, length, blockSize, accessCondition, options, opContext);
+        }
+
+        // The content MD5 has to be computed in order, so the blocks are then read once, in order, into a bounded
+        // number of buffers, which are hashed off this thread while they are uploaded
+        final BlobContentDigest contentDigest = options.getStoreBlobContentMD5() ? new BlobContentDigest(
+                this.blobServiceClient) : null;
+        final BlockBufferPool bufferPool = contentDigest == null ? null : new BlockBufferPool(blockSize,
+                options.getConcurrentRequestCount() * 2 + 1);
+
+        try {
+            // Otherwise the blocks are only read from the file once they are sent, so all of them can be queued at once
+            final TransferScheduler.Session transferSession = this.blobServiceClient.getTransferScheduler()
+                    .openSession(options.getConcurrentRequestCount());
+            try {
+                final ExecutorCompletionService<Void> completionService = new ExecutorCompletionService<Void>(
+                        transferSession);
+                int pendingBlocks = 0;
+                for (long offset = 0; offset < length; offset += blockSize) {
+                    // stop reading the source as soon as a block has failed
+                    pendingBlocks -= collectCompletedTransfers(transferSession, completionService, pendingBlocks);
+
+                    final long blockIndex = blockList.size();
+                    final long blockOffset = offset;
+                    final String blockId = journal == null ? Base64.encode(Utility
+                            .getBytesFromLong(blockIdSequenceNumber++)) : journal.getBlockId(blockIndex);
+                    final long blockLength = Math.min(blockSize, length - offset);
+                    final byte[] buffer;
+                    final AtomicInteger bufferHolders = new AtomicInteger(2);
+                    final InputStream blockStream;
+                    if (contentDigest != null) {
+                        try {
+                            buffer = bufferPool.take();
+                        }
+                        catch (final InterruptedException e) {
+                            throw Utility.initIOException(e);
+                        }
+
+                        source.readRange(offset, (int) blockLength, buffer);
+                        contentDigest.update(buffer, (int) blockLength, bufferPool, bufferHolders);
+                        blockStream = new ByteArrayInputStream(buffer, 0, (int) blockLength);
+                    }
+                    else {
+                        buffer = null;
+                        blockStream = source.openRange(offset, blockLength);
+                    }
+
+                    blockList.add(new BlockEntry(blockId, BlockSearchMode.LATEST));
+
+                    completionService.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws StorageException, IOException {
+                            try {
+                                String blockMD5 = null;
+                                if (journal != null) {
+                                    blockMD5 = Utility.analyzeStream(blockStream, blockLength, -1L,
+                                            true /* rewindSourceStream */, true /* calculateMD5 */).getMd5();
+                                    if (journal.isStaged(blockIndex, blockLength, blockMD5)) {
+                                        // the block was uploaded before the upload was interrupted
+                                        return null;
+                                    }
+                                }
+
+                                CloudBlockBlob.this.uploadBlock(blockId, blockStream, blockLength, accessCondition,
+                                        options, opContext);
+
+                                if (journal != null) {
+                                    journal.recordStaged(blockIndex, blockOffset, blockLength, blockMD5);
+                                }
+                                return null;
+                            }
+                            finally {
+                                if (buffer != null) {
+                                    bufferPool.release(buffer, bufferHolders);
+                                }
+                            }
+                        }
+                    });
+                    pendingBlocks++;
+                }
+
+                waitForTransfers(transferSession, completionService, pendingBlocks);
+                if (contentDigest != null) {
+                    this.properties.setContentMD5(contentDigest.getMd5());
+                }
+            }
+            finally {
+                // cancel the blocks which have not started, if one of the blocks failed
+                transferSession.close();
+                if (contentDigest != null) {
+                    contentDigest.close();
+                }
+            }
+
+            this.commitBlockList(blockList, accessCondition, options, opContext);
+
+            if (journal != null) {
+                journal.complete();
+            }
+        }
+        finally {
+            // keep the journal of an upload which failed, so that it can be resumed
+            if (journal != null) {
+                journal.close();
+            }
+        }
+    }
+
+    /**
+     * Synchronizes the block blob with a file, uploading only the blocks of the file which the blob does not already
+     * hold.
+     * <p>
+     * The file is split into blocks of the stream write size (see {@link #setStreamWriteSizeInBytes(int)}), each
+     * identified by the Base64-encoded MD5 hash of its data. The blocks whose IDs the blob already holds with the same
+     * length are committed again from the blob, and only the other blocks are uploaded, in parallel. A blob last
+     * written by another method, or with another stream write size, has no blocks in common with the file, so all of
+     * its blocks are uploaded.
+     *
+     * @param path
+     *            A <code>String</code> which represents the path to the file to be synchronized.
+     *
+     * @return A <code>long</code> which represents the number of bytes uploaded.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    @DoesServiceRequest
+    public long syncFromFile(final String path) throws StorageException, IOException {
+        return this.syncFromFile(path, null /* accessCondition */, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Synchronizes the block blob with a file, using the specified lease ID, request options, and operation context,
+     * uploading only the blocks of the file which the blob does not already hold.
+     * <p>
+     * The file is split into blocks of the stream write size (see {@link #setStreamWriteSizeInBytes(int)}), each
+     * identified by the Base64-encoded MD5 hash of its data. The blocks whose IDs the blob already holds with the same
+     * length are committed again from the blob, and only the other blocks are uploaded, in parallel. A blob last
+     * written by another method, or with another stream write size, has no blocks in common with the file, so all of
+     * its blocks are uploaded. As the service requires the IDs of the blocks of a blob to have the same length, a blob
+     * holding uncommitted blocks whose IDs have another length cannot be synchronized until they are committed or
+     * discarded.
+     * <p>
+     * The access conditions apply to the commit of the block list, so an {@link AccessCondition} on the ETag of the
+     * blob ensures that the blob is not changed by another client while it is synchronized.
+     *
+     * @param path
+     *            A <code>String</code> which represents the path to the file to be synchronized.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @return A <code>long</code> which represents the number of bytes uploaded.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    @DoesServiceRequest
+    public long syncFromFile(final String path, final AccessCondition accessCondition, BlobRequestOptions options,
+            OperationContext opContext) throws StorageException, IOException {
+        assertNoWriteOperationForSnapshot();
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        opContext.initialize();
+        options = BlobRequestOptions.applyDefaults(options, BlobType.BLOCK_BLOB, this.blobServiceClient);
+
+        final RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            return this.syncBlocksFromChannel(file.getChannel(), accessCondition, options, opContext);
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Uploads the blocks of a file which the blob does not hold, in parallel, and commits the blocks of the file.
+     *
+     * @param channel
+     *            A <code>java.nio.channels.FileChannel</code> object which represents the file.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request.
+     * @param opContext
+     *            An {@link OperationContext} object that is used to track the execution of the operation.
+     *
+     * @return A <code>long</code> which represents the number of bytes uploaded.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     *             If an I/O error occurred.
+     */
+    @DoesServiceRequest
+    private long syncBlocksFromChannel(final FileChannel channel, final AccessCondition accessCondition,
+            final BlobRequestOptions options, final OperationContext opContext) throws StorageException, IOException {
+        final long length = channel.size();
+
+        // Both the committed blocks and those left uncommitted by a sync which failed can be reused
+        final HashMap<String, Long> committedBlocks = new HashMap<String, Long>();
+        final HashMap<String, Long> uncommittedBlocks = new HashMap<String, Long>();
+        try {
+            // Only the lease applies, as the blob may not exist until the blocks are committed
+            final AccessCondition leaseCondition = accessCondition == null ? null : AccessCondition
+                    .generateLeaseCondition(accessCondition.getLeaseID());
+            for (final BlockEntry block : this.downloadBlockList(BlockListingFilter.ALL, leaseCondition, options,
+                    opContext)) {
+                if (block.getSearchMode() == BlockSearchMode.COMMITTED) {
+                    committedBlocks.put(block.getId(), block.getSize());
+                }
+                else {
+                    uncommittedBlocks.put(block.getId(), block.getSize());
+                }
+            }
+        }
+        catch (final StorageException e) {
+            if (e.getHttpStatusCode() != HttpURLConnection.HTTP_NOT_FOUND) {
+                throw e;
+            }
+        }
+
+        // The service rejects a block whose ID differs in length from those of the uncommitted blocks of the blob, so
+        // fail before uploading anything rather than on the first block which is not already held
+        for (final String blockId : uncommittedBlocks.keySet()) {
+            if (blockId.length() != SYNC_BLOCK_ID_LENGTH) {
+                throw new IllegalStateException(String.format(SR.SYNC_BLOCK_ID_LENGTH_CONFLICT, SYNC_BLOCK_ID_LENGTH));
+            }
+        }
+
+        final int blockSize = this.getStreamWriteSizeInBytes();
+        final int blockCount = (int) ((length + blockSize - 1) / blockSize);
+        final BlockEntry[] blockList = new BlockEntry[blockCount];
+        final ConcurrentHashMap<String, Boolean> uploadedBlocks = new ConcurrentHashMap<String, Boolean>();
+        final AtomicLong uploadedBytes = new AtomicLong();
+
+        // As for uploads, the content MD5 is computed in order from buffers the blocks are read into once
+        final BlobContentDigest contentDigest = options.getStoreBlobContentMD5() ? new BlobContentDigest(
+                this.blobServiceClient) : null;
+        final BlockBufferPool bufferPool = contentDigest == null ? null : new BlockBufferPool(blockSize,
+                options.getConcurrentRequestCount() * 2 + 1);
+
+        final TransferScheduler.Session transferSession = this.blobServiceClient.getTransferScheduler().openSession(
+                options.getConcurrentRequestCount());
+        try {
+            final ExecutorCompletionService<Void> completionService = new ExecutorCompletionService<Void>(
+                    transferSession);
+            int pendingBlocks = 0;
+            for (int i = 0; i < blockCount; i++) {
+                // stop reading the file as soon as a block has failed
+                pendingBlocks -= collectCompletedTransfers(transferSession, completionService, pendingBlocks);
+
+                final int blockIndex = i;
+                final long blockLength = Math.min(blockSize, length - (long) i * blockSize);
+                final byte[] buffer;
+                final AtomicInteger bufferHolders = new AtomicInteger(2);
+                final InputStream blockStream;
+                if (contentDigest != null) {
+                    try {
+                        buffer = bufferPool.take();
+                    }
+                    catch (final InterruptedException e) {
+                        throw Utility.initIOException(e);
+                    }
+
+                    BlobRangeSource.forFile(channel).readRange((long) i * blockSize, (int) blockLength, buffer);
+                    contentDigest.update(buffer, (int) blockLength, bufferPool, bufferHolders);
+                    blockStream = new ByteArrayInputStream(buffer, 0, (int) blockLength);
+                }
+                else {
+                    buffer = null;
+                    blockStream = new FileChannelInputStream(channel, (long) i * blockSize, blockLength);
+                }
+
+                completionService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws StorageException, IOException {
+                        try {
+                            final String blockId = Utility.analyzeStream(blockStream, blockLength, -1L,
+                                    true /* rewindSourceStream */, true /* calculateMD5 */).getMd5();
+
+                            final Long committedLength = committedBlocks.get(blockId);
+                            if (committedLength != null && committedLength == blockLength) {
+                                blockList[blockIndex] = new BlockEntry(blockId, BlockSearchMode.COMMITTED);
+                                return null;
+                            }
+
+                            final Long uncommittedLength = uncommittedBlocks.get(blockId);
+                            if ((uncommittedLength == null || uncommittedLength != blockLength)
+                                    && uploadedBlocks.putIfAbsent(blockId, Boolean.TRUE) == null) {
+                                // the block ID is the MD5 hash of the block, which is also its transactional MD5 hash
+                                CloudBlockBlob.this.uploadBlockInternal(blockId, blockId, blockStream, blockLength,
+                                        accessCondition, options, opContext);
+                                uploadedBytes.addAndGet(blockLength);
+                            }
+
+                            blockList[blockIndex] = new BlockEntry(blockId, BlockSearchMode.LATEST);
+                            return null;
+                        }
+                        finally {
+                            if (buffer != null) {
+                                bufferPool.release(buffer, bufferHolders);
+                            }
+                        }
+                    }
+                });
+                pendingBlocks++;
+            }
+
+            waitForTransfers(transferSession, completionService, pendingBlocks);
+            if (contentDigest != null) {
+                this.properties.setContentMD5(contentDigest.getMd5());
+            }
+        }
+        finally {
+            // cancel the blocks which have not started, if one of the blocks failed
+            transferSession.close();
+            if (contentDigest != null) {
+                contentDigest.close();
+            }
+        }
+
+        this.commitBlockList(Arrays.asList(blockList), accessCondition, options, opContext);
+        return uploadedBytes.get();
+    }
+
     /**
      * Uploads a block to be committed as part of the block blob, using the specified block ID.
      * 
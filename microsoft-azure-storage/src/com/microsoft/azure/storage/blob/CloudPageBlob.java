@@ -17,11 +17,16 @@ package com.microsoft.azure.storage.blob;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorCompletionService;
 
 import com.microsoft.azure.storage.AccessCondition;
 import com.microsoft.azure.storage.Constants;
@@ -29,6 +34,7 @@ import com.microsoft.azure.storage.DoesServiceRequest;
 import com.microsoft.azure.storage.OperationContext;
 import com.microsoft.azure.storage.StorageException;
 import com.microsoft.azure.storage.StorageUri;
+import com.microsoft.azure.storage.TransferScheduler;
 import com.microsoft.azure.storage.core.Base64;
 import com.microsoft.azure.storage.core.ExecutionEngine;
 import com.microsoft.azure.storage.core.RequestLocationMode;
@@ -540,6 +546,68 @@ public final class CloudPageBlob extends CloudBlob {
         return openOutputStreamInternal(length, accessCondition, options, opContext);
     }
 
+    /**
+     * Opens a writer to write data at any offset of the existing page blob. For more information, see
+     * {@link PageBlobWriter}.
+     * 
+     * @return A {@link PageBlobWriter} object used to write data to the blob.
+     * 
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public PageBlobWriter openWriter() throws StorageException {
+        return this.openWriter(null /* accessCondition */, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Opens a writer to write data at any offset of the existing page blob, using the specified lease ID, request
+     * options and operation context. The writer holds dirty pages of up to twice the stream write size for each
+     * concurrent request before writing them to the blob. For more information, see {@link PageBlobWriter}.
+     * 
+     * @param accessCondition
+     *            An {@link AccessCondition} object which represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object which represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * 
+     * @return A {@link PageBlobWriter} object used to write data to the blob.
+     * 
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public PageBlobWriter openWriter(AccessCondition accessCondition, BlobRequestOptions options,
+            OperationContext opContext) throws StorageException {
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        assertNoWriteOperationForSnapshot();
+
+        options = BlobRequestOptions.applyDefaults(options, BlobType.PAGE_BLOB, this.blobServiceClient, false);
+
+        if (options.getStoreBlobContentMD5()) {
+            throw new IllegalArgumentException(SR.BLOB_MD5_NOT_SUPPORTED_FOR_PAGE_BLOBS);
+        }
+
+        this.downloadAttributes(accessCondition, options, opContext);
+
+        // the writes change the ETag of the blob, so only the lease applies to them
+        if (accessCondition != null) {
+            accessCondition = AccessCondition.generateLeaseCondition(accessCondition.getLeaseID());
+        }
+
+        final long maxDirtyBytes = 2L * options.getConcurrentRequestCount() * this.getStreamWriteSizeInBytes();
+        return new PageBlobWriter(this, this.getProperties().getLength(), maxDirtyBytes, accessCondition, options,
+                opContext);
+    }
+
     /**
      * Opens an output stream object to write data to the page blob, using the specified lease ID, request options and
      * operation context. If the length is specified, a new page blob will be created with the length specified.
@@ -579,7 +647,8 @@ public final class CloudPageBlob extends CloudBlob {
             throw new IllegalArgumentException(SR.BLOB_MD5_NOT_SUPPORTED_FOR_PAGE_BLOBS);
         }
 
-        if (length != null) {
+        final boolean createNew = length != null;
+        if (createNew) {
             if (length % Constants.PAGE_SIZE != 0) {
                 throw new IllegalArgumentException(SR.INVALID_PAGE_BLOB_LENGTH);
             }
@@ -595,7 +664,9 @@ public final class CloudPageBlob extends CloudBlob {
             accessCondition = AccessCondition.generateLeaseCondition(accessCondition.getLeaseID());
         }
 
-        return new BlobOutputStream(this, length, accessCondition, options, opContext);
+        // only a blob which was just created is known to read as zeros where pages are skipped
+        return new BlobOutputStream(this, length, createNew && options.getSkipEmptyPages(), accessCondition, options,
+                opContext);
     }
 
     /**
@@ -605,8 +676,9 @@ public final class CloudPageBlob extends CloudBlob {
      *            A {@link PageRange} object that specifies the page range.
      * @param operationType
      *            A {@link PageOperationType} enumeration value that specifies the page operation type.
-     * @param data
-     *            A <code>byte</code> array which represents the data to write.
+     * @param sourceStream
+     *            An {@link InputStream} object which represents the data to write, or <code>null</code> when clearing
+     *            pages. It must support mark and reset.
      * @param length
      *            A <code>long</code> which represents the number of bytes to write.
      * @param md5
@@ -626,16 +698,21 @@ public final class CloudPageBlob extends CloudBlob {
      *             If a storage service error occurred.
      */
     @DoesServiceRequest
-    private void putPagesInternal(final PageRange pageRange, final PageOperationType operationType, final byte[] data,
-            final long length, final String md5, final AccessCondition accessCondition,
+    private void putPagesInternal(final PageRange pageRange, final PageOperationType operationType,
+            final InputStream sourceStream, final long length, final String md5, final AccessCondition accessCondition,
             final BlobRequestOptions options, final OperationContext opContext) throws StorageException {
+        if (sourceStream != null) {
+            // Mark sourceStream for current position.
+            sourceStream.mark(Constants.MAX_MARK_LENGTH);
+        }
+
         ExecutionEngine.executeWithRetry(this.blobServiceClient, this,
-                putPagesImpl(pageRange, operationType, data, length, md5, accessCondition, options, opContext),
+                putPagesImpl(pageRange, operationType, sourceStream, length, md5, accessCondition, options, opContext),
                 options.getRetryPolicyFactory(), opContext);
     }
 
     private StorageRequest<CloudBlobClient, CloudBlob, Void> putPagesImpl(final PageRange pageRange,
-            final PageOperationType operationType, final byte[] data, final long length, final String md5,
+            final PageOperationType operationType, final InputStream sourceStream, final long length, final String md5,
             final AccessCondition accessCondition, final BlobRequestOptions options, final OperationContext opContext) {
         final StorageRequest<CloudBlobClient, CloudBlob, Void> putRequest = new StorageRequest<CloudBlobClient, CloudBlob, Void>(
                 options, this.getStorageUri()) {
@@ -644,7 +721,7 @@ public final class CloudPageBlob extends CloudBlob {
             public HttpURLConnection buildRequest(CloudBlobClient client, CloudBlob blob, OperationContext context)
                     throws Exception {
                 if (operationType == PageOperationType.UPDATE) {
-                    this.setSendStream(new ByteArrayInputStream(data));
+                    this.setSendStream(sourceStream);
                     this.setLength(length);
                 }
 
@@ -683,6 +760,14 @@ public final class CloudPageBlob extends CloudBlob {
                 blob.updateEtagAndLastModifiedFromResponse(this.getConnection());
                 return null;
             }
+
+            @Override
+            public void recoveryAction(OperationContext context) throws IOException {
+                if (operationType == PageOperationType.UPDATE) {
+                    sourceStream.reset();
+                    sourceStream.mark(Constants.MAX_MARK_LENGTH);
+                }
+            }
         };
 
         return putRequest;
@@ -958,8 +1043,278 @@ public final class CloudPageBlob extends CloudBlob {
             }
         }
 
-        this.putPagesInternal(pageRange, PageOperationType.UPDATE, data, length, md5, accessCondition, options,
-                opContext);
+        this.putPagesInternal(pageRange, PageOperationType.UPDATE, new ByteArrayInputStream(data), length, md5,
+                accessCondition, options, opContext);
+    }
+
+    /**
+     * Uploads a blob from a file, whose length must be a multiple of 512. The ranges of pages of the file are uploaded
+     * in parallel, each one read from the file as it is sent rather than buffered, and a range which is retried is
+     * read from the file again.
+     *
+     * @param path
+     *            A <code>String</code> which represents the path to the file to be uploaded.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    @Override
+    @DoesServiceRequest
+    public void uploadFromFile(final String path, final AccessCondition accessCondition, BlobRequestOptions options,
+            OperationContext opContext) throws StorageException, IOException {
+        assertNoWriteOperationForSnapshot();
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        opContext.initialize();
+        options = BlobRequestOptions.applyDefaults(options, BlobType.PAGE_BLOB, this.blobServiceClient);
+
+        if (options.getStoreBlobContentMD5()) {
+            throw new IllegalArgumentException(SR.BLOB_MD5_NOT_SUPPORTED_FOR_PAGE_BLOBS);
+        }
+
+        final RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            final FileChannel channel = file.getChannel();
+            this.uploadPagesFromSource(BlobRangeSource.forFile(channel), channel.size(), accessCondition, options,
+                    opContext);
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Uploads a blob from the remaining bytes of a byte buffer, whose number must be a multiple of 512, using the
+     * specified lease ID, request options, and operation context. The ranges of pages are uploaded in parallel, each
+     * one read straight from the buffer as it is sent rather than copied, and a range which is retried is read from
+     * the buffer again.
+     *
+     * @param sourceBuffer
+     *            A <code>java.nio.ByteBuffer</code> object which holds the data to write to the blob between its
+     *            position and its limit. Its position is advanced to its limit once the data is uploaded.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudBlobClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    @Override
+    @DoesServiceRequest
+    public void upload(final ByteBuffer sourceBuffer, final AccessCondition accessCondition,
+            BlobRequestOptions options, OperationContext opContext) throws StorageException, IOException {
+        Utility.assertNotNull("sourceBuffer", sourceBuffer);
+        assertNoWriteOperationForSnapshot();
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        opContext.initialize();
+        options = BlobRequestOptions.applyDefaults(options, BlobType.PAGE_BLOB, this.blobServiceClient);
+
+        if (options.getStoreBlobContentMD5()) {
+            throw new IllegalArgumentException(SR.BLOB_MD5_NOT_SUPPORTED_FOR_PAGE_BLOBS);
+        }
+
+        this.uploadPagesFromSource(BlobRangeSource.forBuffer(sourceBuffer), sourceBuffer.remaining(),
+                accessCondition, options, opContext);
+        sourceBuffer.position(sourceBuffer.limit());
+    }
+
+    /**
+     * Creates the blob and uploads the ranges of pages of the data in parallel.
+     *
+     * @param source
+     *            A {@link BlobRangeSource} object which reads the ranges of the data.
+     * @param length
+     *            A <code>long</code> which represents the length, in bytes, of the data, which must be a multiple of
+     *            512.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request.
+     * @param opContext
+     *            An {@link OperationContext} object that is used to track the execution of the operation.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     *             If an I/O error occurred.
+     */
+    @DoesServiceRequest
+    private void uploadPagesFromSource(final BlobRangeSource source, final long length,
+            final AccessCondition accessCondition, final BlobRequestOptions options, final OperationContext opContext)
+            throws StorageException, IOException {
+        if (length <= 0 || length % Constants.PAGE_SIZE != 0) {
+            throw new IllegalArgumentException(SR.INVALID_PAGE_BLOB_LENGTH);
+        }
+
+        this.create(length, accessCondition, options, opContext);
+
+        // Creating the blob changed its ETag, so only the lease applies to the writes which follow
+        final AccessCondition writeAccessCondition = accessCondition == null ? null : AccessCondition
+                .generateLeaseCondition(accessCondition.getLeaseID());
+
+        final int rangeSize = this.getStreamWriteSizeInBytes();
+        final TransferScheduler.Session transferSession = this.blobServiceClient.getTransferScheduler().openSession(
+                options.getConcurrentRequestCount());
+        int rangeCount = 0;
+        try {
+            final ExecutorCompletionService<Void> completionService = new ExecutorCompletionService<Void>(
+                    transferSession);
+            for (long offset = 0; offset < length; offset += rangeSize) {
+                final long rangeOffset = offset;
+                final long rangeLength = Math.min(rangeSize, length - offset);
+
+                completionService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws StorageException, IOException {
+                        if (options.getSkipEmptyPages()) {
+                            // the range has to be read to find its empty pages, so write the rest from the copy
+                            final byte[] buffer = new byte[(int) rangeLength];
+                            source.readRange(rangeOffset, (int) rangeLength, buffer);
+                            CloudPageBlob.this.uploadPagesFromBuffer(buffer, (int) rangeLength, rangeOffset,
+                                    true /* skipEmptyPages */, writeAccessCondition, options, opContext);
+                        }
+                        else {
+                            CloudPageBlob.this.uploadPagesFromStream(source.openRange(rangeOffset, rangeLength),
+                                    rangeOffset, rangeLength, writeAccessCondition, options, opContext);
+                        }
+                        return null;
+                    }
+                });
+                rangeCount++;
+            }
+
+            waitForTransfers(transferSession, completionService, rangeCount);
+        }
+        finally {
+            // cancel the ranges which have not started, if one of the ranges failed
+            transferSession.close();
+        }
+
+        // the properties were sent when the blob was created, and the callers reject storing a content MD5 for page
+        // blobs, so there is nothing left to upload once the pages are written
+    }
+
+    /**
+     * Uploads a range of contiguous pages from a stream which supports mark and reset, without copying the stream.
+     * The offset and length must be multiples of 512, and the length at most 4 MB.
+     *
+     * @param sourceStream
+     *            An {@link InputStream} object which represents the data to write. It must support mark and reset.
+     * @param offset
+     *            A <code>long</code> which represents the offset, in bytes, at which to begin writing the data.
+     * @param length
+     *            A <code>long</code> which represents the length, in bytes, of the range.
+     * @param accessCondition
+     *            An {@link AccessCondition} object which represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request.
+     * @param opContext
+     *            An {@link OperationContext} object that is used to track the execution of the operation.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     *             If an I/O error occurred.
+     */
+    @DoesServiceRequest
+    void uploadPagesFromStream(final InputStream sourceStream, final long offset, final long length,
+            final AccessCondition accessCondition, final BlobRequestOptions options, final OperationContext opContext)
+            throws StorageException, IOException {
+        String md5 = null;
+        if (options.getUseTransactionalContentMD5()) {
+            md5 = Utility.analyzeStream(sourceStream, length, -1L, true /* rewindSourceStream */,
+                    true /* calculateMD5 */).getMd5();
+        }
+
+        this.putPagesInternal(new PageRange(offset, offset + length - 1), PageOperationType.UPDATE, sourceStream,
+                length, md5, accessCondition, options, opContext);
+    }
+
+    /**
+     * Uploads the pages held in a buffer, whose length must be a multiple of 512, at the specified offset in the page
+     * blob. When empty pages are skipped, only the runs of pages which hold a non-zero byte are written, each with its
+     * own request, so the pages which are skipped must already read as zeros.
+     *
+     * @param buffer
+     *            A <code>byte</code> array which holds the pages, from its start.
+     * @param length
+     *            An <code>int</code> which represents the number of bytes of the buffer to write, at most 4 MB.
+     * @param offset
+     *            A <code>long</code> which represents the offset, in bytes, at which to begin writing the data.
+     * @param skipEmptyPages
+     *            <code>true</code> to skip the pages which hold only zeros; otherwise, <code>false</code>.
+     * @param accessCondition
+     *            An {@link AccessCondition} object which represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object that specifies any additional options for the request.
+     * @param opContext
+     *            An {@link OperationContext} object that is used to track the execution of the operation.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     *             If an I/O error occurred.
+     */
+    @DoesServiceRequest
+    void uploadPagesFromBuffer(final byte[] buffer, final int length, final long offset,
+            final boolean skipEmptyPages, final AccessCondition accessCondition, final BlobRequestOptions options,
+            final OperationContext opContext) throws StorageException, IOException {
+        if (!skipEmptyPages) {
+            this.uploadPagesFromStream(new ByteArrayInputStream(buffer, 0, length), offset, length, accessCondition,
+                    options, opContext);
+            return;
+        }
+
+        int runStart = -1;
+        for (int pageOffset = 0; pageOffset <= length; pageOffset += Constants.PAGE_SIZE) {
+            final boolean empty = pageOffset == length || isEmptyPage(buffer, pageOffset);
+            if (!empty && runStart < 0) {
+                runStart = pageOffset;
+            }
+            else if (empty && runStart >= 0) {
+                this.uploadPagesFromStream(new ByteArrayInputStream(buffer, runStart, pageOffset - runStart), offset
+                        + runStart, pageOffset - runStart, accessCondition, options, opContext);
+                runStart = -1;
+            }
+        }
+    }
+
+    /**
+     * Determines whether the page at the specified offset of a buffer holds only zeros.
+     */
+    private static boolean isEmptyPage(final byte[] buffer, final int pageOffset) {
+        int bits = 0;
+        for (int i = pageOffset; i < pageOffset + Constants.PAGE_SIZE; i++) {
+            bits |= buffer[i];
+        }
+
+        return bits == 0;
     }
 
     /**
@@ -0,0 +1,355 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.blob;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorCompletionService;
+
+import com.microsoft.azure.storage.AccessCondition;
+import com.microsoft.azure.storage.Constants;
+import com.microsoft.azure.storage.DoesServiceRequest;
+import com.microsoft.azure.storage.OperationContext;
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.TransferScheduler;
+import com.microsoft.azure.storage.core.SR;
+import com.microsoft.azure.storage.core.Utility;
+
+/**
+ * Provides a writer which writes data at any offset of an existing page blob, such as a disk image used as a block
+ * device.
+ * <p>
+ * Writes are held in a cache of dirty pages, so that writes to the same pages are overwritten in memory and writes to
+ * adjacent pages are combined. The cache is written to the blob when it holds the maximum number of dirty bytes, and
+ * when the writer is flushed or closed, as runs of contiguous pages of up to the stream write size of the blob which
+ * are uploaded in parallel. A write which covers a page only in part reads the rest of the page from the blob, unless
+ * the page is already in the cache; the page is read before the write takes the lock of the writer, so that it does not
+ * hold up other writes. Reads from the blob do not see the data held in the cache until it is flushed.
+ */
+public final class PageBlobWriter {
+    /**
+     * Holds the reference to the blob this writer is associated with.
+     */
+    private final CloudPageBlob parentBlobRef;
+
+    /**
+     * Holds the {@link AccessCondition} object that represents the access conditions for the blob.
+     */
+    private final AccessCondition accessCondition;
+
+    /**
+     * Holds the options for the current writer.
+     */
+    private final BlobRequestOptions options;
+
+    /**
+     * Holds the OperationContext for the current writer.
+     */
+    private final OperationContext opContext;
+
+    /**
+     * Holds the length, in bytes, of the blob.
+     */
+    private final long length;
+
+    /**
+     * Holds the maximum number of bytes of dirty pages held before they are written to the blob.
+     */
+    private final long maxDirtyBytes;
+
+    /**
+     * Holds the dirty pages, keyed by their index in the blob.
+     */
+    private final TreeMap<Long, byte[]> dirtyPages = new TreeMap<Long, byte[]>();
+
+    /**
+     * Holds the number of flushes which have written pages to the blob, so that a page read from the blob without
+     * holding the lock of the writer can be known not to have been written since.
+     */
+    private long flushCount;
+
+    /**
+     * A flag to determine if the writer is closed.
+     */
+    private boolean closed;
+
+    /**
+     * Initializes a new instance of the PageBlobWriter class.
+     *
+     * @param parentBlob
+     *            A {@link CloudPageBlob} object which represents the blob that this writer is associated with.
+     * @param length
+     *            A <code>long</code> which represents the length of the page blob in bytes.
+     * @param maxDirtyBytes
+     *            A <code>long</code> which represents the maximum number of bytes of dirty pages held before they are
+     *            written to the blob.
+     * @param accessCondition
+     *            An {@link AccessCondition} object which represents the access conditions for the blob.
+     * @param options
+     *            A {@link BlobRequestOptions} object which specifies any additional options for the request.
+     * @param opContext
+     *            An {@link OperationContext} object which is used to track the execution of the operation.
+     */
+    PageBlobWriter(final CloudPageBlob parentBlob, final long length, final long maxDirtyBytes,
+            final AccessCondition accessCondition, final BlobRequestOptions options, final OperationContext opContext) {
+        this.parentBlobRef = parentBlob;
+        this.length = length;
+        this.maxDirtyBytes = maxDirtyBytes;
+        this.accessCondition = accessCondition;
+        this.options = options;
+        this.opContext = opContext;
+    }
+
+    /**
+     * Gets the length, in bytes, of the page blob this writer writes to.
+     *
+     * @return A <code>long</code> which represents the length, in bytes, of the blob.
+     */
+    public long getLength() {
+        return this.length;
+    }
+
+    /**
+     * Writes the specified bytes at the specified offset of the blob.
+     *
+     * @param offset
+     *            A <code>long</code> which represents the offset, in bytes, in the blob at which to write the data.
+     * @param data
+     *            A <code>byte</code> array which represents the data to write.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     *             If an I/O error occurred, or the writer is closed.
+     */
+    @DoesServiceRequest
+    public void write(final long offset, final byte[] data) throws StorageException, IOException {
+        this.write(offset, data, 0, data.length);
+    }
+
+    /**
+     * Writes the specified number of bytes from the specified byte array at the specified offset of the blob. The
+     * data is held in the cache of dirty pages, and the dirty pages are written to the blob if the cache is full.
+     *
+     * @param offset
+     *            A <code>long</code> which represents the offset, in bytes, in the blob at which to write the data.
+     * @param data
+     *            A <code>byte</code> array which represents the data to write.
+     * @param dataOffset
+     *            An <code>int</code> which represents the start offset in the data.
+     * @param dataLength
+     *            An <code>int</code> which represents the number of bytes to write.
+     *
+     * @throws IllegalArgumentException
+     *             If the range to write does not lie within the blob.
+     * @throws IndexOutOfBoundsException
+     *             If the range does not lie within the data.
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     *             If an I/O error occurred, or the writer is closed.
+     */
+    @DoesServiceRequest
+    public void write(final long offset, final byte[] data, final int dataOffset, final int dataLength)
+            throws StorageException, IOException {
+        if (dataOffset < 0 || dataLength < 0 || dataLength > data.length - dataOffset) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (offset < 0 || offset > this.length - dataLength) {
+            throw new IllegalArgumentException(String.format(Utility.LOCALE_US, SR.ARGUMENT_OUT_OF_RANGE_ERROR,
+                    "offset", offset));
+        }
+
+        // Only the first and last pages of a write can be covered in part
+        final long end = offset + dataLength;
+        final long firstPage = offset / Constants.PAGE_SIZE;
+        final long lastPage = (end - 1) / Constants.PAGE_SIZE;
+        final boolean firstPartial = dataLength > 0
+                && (offset % Constants.PAGE_SIZE != 0 || end < (firstPage + 1) * Constants.PAGE_SIZE);
+        final boolean lastPartial = dataLength > 0 && lastPage != firstPage && end % Constants.PAGE_SIZE != 0;
+
+        final boolean readFirst;
+        final boolean readLast;
+        final long readFlushCount;
+        synchronized (this) {
+            if (this.closed) {
+                throw new IOException(SR.STREAM_CLOSED);
+            }
+
+            readFirst = firstPartial && !this.dirtyPages.containsKey(firstPage);
+            readLast = lastPartial && !this.dirtyPages.containsKey(lastPage);
+            readFlushCount = this.flushCount;
+        }
+
+        final byte[] firstPageData = readFirst ? this.readPage(firstPage) : null;
+        final byte[] lastPageData = readLast ? this.readPage(lastPage) : null;
+
+        synchronized (this) {
+            if (this.closed) {
+                throw new IOException(SR.STREAM_CLOSED);
+            }
+
+            // A page which is not cached can only have been written since it was read if a flush has run since
+            final boolean pagesCurrent = this.flushCount == readFlushCount;
+
+            long position = offset;
+            int written = 0;
+            while (written < dataLength) {
+                final long pageIndex = position / Constants.PAGE_SIZE;
+                final int pageOffset = (int) (position % Constants.PAGE_SIZE);
+                final int count = Math.min(Constants.PAGE_SIZE - pageOffset, dataLength - written);
+
+                byte[] page = this.dirtyPages.get(pageIndex);
+                if (page == null) {
+                    if (count == Constants.PAGE_SIZE) {
+                        page = new byte[Constants.PAGE_SIZE];
+                    }
+                    else if (pagesCurrent && pageIndex == firstPage && firstPageData != null) {
+                        page = firstPageData;
+                    }
+                    else if (pagesCurrent && pageIndex == lastPage && lastPageData != null) {
+                        page = lastPageData;
+                    }
+                    else {
+                        // the rest of the page has to be written back as it is
+                        page = this.readPage(pageIndex);
+                    }
+
+                    this.dirtyPages.put(pageIndex, page);
+                }
+
+                System.arraycopy(data, dataOffset + written, page, pageOffset, count);
+                position += count;
+                written += count;
+            }
+
+            if ((long) this.dirtyPages.size() * Constants.PAGE_SIZE >= this.maxDirtyBytes) {
+                this.flush();
+            }
+        }
+    }
+
+    /**
+     * Reads a page from the blob.
+     */
+    @DoesServiceRequest
+    private byte[] readPage(final long pageIndex) throws StorageException {
+        final byte[] page = new byte[Constants.PAGE_SIZE];
+        this.parentBlobRef.downloadRangeToByteArray(pageIndex * Constants.PAGE_SIZE, (long) Constants.PAGE_SIZE, page,
+                0, this.accessCondition, this.options, this.opContext);
+        return page;
+    }
+
+    /**
+     * Writes the dirty pages to the blob, combining contiguous pages into ranges of up to the stream write size of the
+     * blob which are uploaded in parallel. Each range is removed from the cache once it has been written, so if a range
+     * fails the pages which could not be written are kept in the cache and the others are not written again.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     *             If an I/O error occurred, or the writer is closed.
+     */
+    @DoesServiceRequest
+    public synchronized void flush() throws StorageException, IOException {
+        if (this.closed) {
+            throw new IOException(SR.STREAM_CLOSED);
+        }
+
+        if (this.dirtyPages.isEmpty()) {
+            return;
+        }
+
+        this.flushCount++;
+        final int maxRangePages = this.parentBlobRef.getStreamWriteSizeInBytes() / Constants.PAGE_SIZE;
+        final ConcurrentLinkedQueue<long[]> writtenRanges = new ConcurrentLinkedQueue<long[]>();
+        final TransferScheduler.Session transferSession = this.parentBlobRef.getServiceClient()
+                .getTransferScheduler().openSession(this.options.getConcurrentRequestCount());
+        int rangeCount = 0;
+        try {
+            final ExecutorCompletionService<Void> completionService = new ExecutorCompletionService<Void>(
+                    transferSession);
+            final Iterator<Map.Entry<Long, byte[]>> pages = this.dirtyPages.entrySet().iterator();
+            final ArrayList<byte[]> run = new ArrayList<byte[]>();
+            Map.Entry<Long, byte[]> page = pages.next();
+            while (page != null) {
+                final long startPage = page.getKey();
+                run.clear();
+                do {
+                    run.add(page.getValue());
+                    page = pages.hasNext() ? pages.next() : null;
+                }
+                while (page != null && page.getKey() == startPage + run.size() && run.size() < maxRangePages);
+
+                final int rangePages = run.size();
+                final int rangeLength = rangePages * Constants.PAGE_SIZE;
+                final byte[] buffer = new byte[rangeLength];
+                for (int i = 0; i < run.size(); i++) {
+                    System.arraycopy(run.get(i), 0, buffer, i * Constants.PAGE_SIZE, Constants.PAGE_SIZE);
+                }
+
+                completionService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws StorageException, IOException {
+                        PageBlobWriter.this.parentBlobRef.uploadPagesFromBuffer(buffer, rangeLength, startPage
+                                * Constants.PAGE_SIZE, false /* skipEmptyPages */,
+                                PageBlobWriter.this.accessCondition, PageBlobWriter.this.options,
+                                PageBlobWriter.this.opContext);
+                        writtenRanges.add(new long[] { startPage, rangePages });
+                        return null;
+                    }
+                });
+                rangeCount++;
+            }
+
+            CloudBlob.waitForTransfers(transferSession, completionService, rangeCount);
+        }
+        finally {
+            // cancel the ranges which have not started, if one of the ranges failed
+            transferSession.close();
+
+            // a range which is still running after an interrupt stays in the cache and is written again
+            for (final long[] range : writtenRanges) {
+                for (long i = range[0]; i < range[0] + range[1]; i++) {
+                    this.dirtyPages.remove(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the dirty pages to the blob and closes the writer.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     *             If an I/O error occurred.
+     */
+    @DoesServiceRequest
+    public synchronized void close() throws StorageException, IOException {
+        if (this.closed) {
+            return;
+        }
+
+        this.flush();
+        this.closed = true;
+    }
+}
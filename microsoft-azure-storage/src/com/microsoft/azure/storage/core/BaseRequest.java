@@ -433,14 +433,10 @@ public final class BaseRequest {
         request.setRequestProperty(Constants.HeaderConstants.DATE, Utility.getGMTTime());
         final Canonicalizer canonicalizer = CanonicalizerFactory.getBlobQueueFullCanonicalizer(request);
 
-        final String stringToSign = canonicalizer.canonicalize(request, credentials.getAccountName(), contentLength);
+        final String computedBase64Signature = computeSignature(canonicalizer, request, credentials, contentLength);
 
-        final String computedBase64Signature = StorageKey.computeMacSha256(credentials.getKey(), stringToSign);
-
-        // V2 add logging
-        // System.out.println(String.format("Signing %s\r\n%s\r\n", stringToSign, computedBase64Signature));
         request.setRequestProperty(Constants.HeaderConstants.AUTHORIZATION,
-                String.format("%s %s:%s", "SharedKey", credentials.getAccountName(), computedBase64Signature));
+                "SharedKey " + credentials.getAccountName() + ":" + computedBase64Signature);
     }
 
     /**
@@ -466,15 +462,10 @@ public final class BaseRequest {
 
         final Canonicalizer canonicalizer = CanonicalizerFactory.getBlobQueueLiteCanonicalizer(request);
 
-        final String stringToSign = canonicalizer.canonicalize(request, credentials.getAccountName(), contentLength);
-
-        final String computedBase64Signature = StorageKey.computeMacSha256(credentials.getKey(), stringToSign);
+        final String computedBase64Signature = computeSignature(canonicalizer, request, credentials, contentLength);
 
-        // VNext add logging
-        // System.out.println(String.format("Signing %s\r\n%s\r\n",
-        // stringToSign, computedBase64Signature));
         request.setRequestProperty(Constants.HeaderConstants.AUTHORIZATION,
-                String.format("%s %s:%s", "SharedKeyLite", credentials.getAccountName(), computedBase64Signature));
+                "SharedKeyLite " + credentials.getAccountName() + ":" + computedBase64Signature);
     }
 
     /**
@@ -499,12 +490,10 @@ public final class BaseRequest {
 
         final Canonicalizer canonicalizer = CanonicalizerFactory.getTableFullCanonicalizer(request);
 
-        final String stringToSign = canonicalizer.canonicalize(request, credentials.getAccountName(), contentLength);
-
-        final String computedBase64Signature = StorageKey.computeMacSha256(credentials.getKey(), stringToSign);
+        final String computedBase64Signature = computeSignature(canonicalizer, request, credentials, contentLength);
 
         request.setRequestProperty(Constants.HeaderConstants.AUTHORIZATION,
-                String.format("%s %s:%s", "SharedKey", credentials.getAccountName(), computedBase64Signature));
+                "SharedKey " + credentials.getAccountName() + ":" + computedBase64Signature);
     }
 
     /**
@@ -529,12 +518,26 @@ public final class BaseRequest {
 
         final Canonicalizer canonicalizer = CanonicalizerFactory.getTableLiteCanonicalizer(request);
 
-        final String stringToSign = canonicalizer.canonicalize(request, credentials.getAccountName(), contentLength);
-
-        final String computedBase64Signature = StorageKey.computeMacSha256(credentials.getKey(), stringToSign);
+        final String computedBase64Signature = computeSignature(canonicalizer, request, credentials, contentLength);
 
         request.setRequestProperty(Constants.HeaderConstants.AUTHORIZATION,
-                String.format("%s %s:%s", "SharedKeyLite", credentials.getAccountName(), computedBase64Signature));
+                "SharedKeyLite " + credentials.getAccountName() + ":" + computedBase64Signature);
+    }
+
+    /**
+     * Canonicalizes the request into the calling thread's writer and signs the resulting bytes, so that no intermediate
+     * string-to-sign is built or re-encoded.
+     */
+    private static String computeSignature(final Canonicalizer canonicalizer, final HttpURLConnection request,
+            final Credentials credentials, final Long contentLength) throws InvalidKeyException, StorageException {
+        final CanonicalizedStringWriter writer = CanonicalizedStringWriter.getThreadInstance();
+        try {
+            canonicalizer.canonicalize(request, credentials.getAccountName(), contentLength, writer);
+            return StorageKey.computeMacSha256(credentials.getKey(), writer.getBuffer(), 0, writer.length());
+        }
+        finally {
+            writer.reset();
+        }
     }
 
     /**
@@ -27,7 +27,7 @@ import com.microsoft.azure.storage.StorageException;
 final class BlobQueueLiteCanonicalizer extends Canonicalizer {
 
     /**
-     * Constructs a canonicalized string for signing a request.
+     * Writes a canonicalized string for signing a request.
      * 
      * @param conn
      *            the HttpURLConnection to canonicalize
@@ -35,17 +35,19 @@ final class BlobQueueLiteCanonicalizer extends Canonicalizer {
      *            the account name associated with the request
      * @param contentLength
      *            the length of the content written to the outputstream in bytes, -1 if unknown
-     * @return a canonicalized string.
+     * @param writer
+     *            the writer to write the canonicalized string to.
      * @throws StorageException
      */
     @Override
-    protected String canonicalize(final HttpURLConnection conn, final String accountName, final Long contentLength) throws StorageException {
+    protected void canonicalize(final HttpURLConnection conn, final String accountName, final Long contentLength,
+            final CanonicalizedStringWriter writer) throws StorageException {
         if (contentLength < -1) {
             throw new InvalidParameterException(SR.INVALID_CONTENT_LENGTH);
         }
 
-        return canonicalizeHttpRequestLite(conn.getURL(), accountName, conn.getRequestMethod(),
+        canonicalizeHttpRequestLite(conn.getURL(), accountName, conn.getRequestMethod(),
                 Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.CONTENT_TYPE), contentLength, null,
-                conn);
+                conn, writer);
     }
 }
@@ -0,0 +1,366 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import com.microsoft.azure.storage.AccessCondition;
+import com.microsoft.azure.storage.OperationContext;
+import com.microsoft.azure.storage.RequestOptions;
+import com.microsoft.azure.storage.StorageException;
+
+/**
+ * RESERVED FOR INTERNAL USE. Represents a channel which reads a blob or file at any position, through a cache of the
+ * most recently used blocks of the data. Blocks are aligned on the block size, so that reads which are close to each
+ * other, such as the footer of a file and then the index it points to, share the blocks they download.
+ * <p>
+ * The channel has a position, used by {@link #read(ByteBuffer)}, and supports positional reads, which do not change
+ * the position and can be called by several threads at once. A block read by several threads at once is downloaded
+ * once. The blocks are downloaded with the request options and operation context the channel was opened with, and
+ * are conditional on the ETag of the data when the channel was opened.
+ *
+ * @param <T>
+ *            The type of the request options of the blocks.
+ */
+public abstract class BlockCachingReadChannel<T extends RequestOptions> implements ReadableByteChannel {
+
+    /**
+     * Holds the length, in bytes, of the data.
+     */
+    private final long size;
+
+    /**
+     * Holds the size, in bytes, of the blocks the data is downloaded in.
+     */
+    private final int blockSize;
+
+    /**
+     * Holds the downloads of the cached blocks, keyed by their index, from the least to the most recently used.
+     * Guarded by itself.
+     */
+    private final LinkedHashMap<Long, FutureTask<byte[]>> cachedBlocks;
+
+    /**
+     * Holds the {@link AccessCondition} object which locks the downloads of the blocks to the ETag of the data.
+     */
+    private final AccessCondition accessCondition;
+
+    /**
+     * Holds the request options of the downloads of the blocks.
+     */
+    private final T options;
+
+    /**
+     * Holds the {@link OperationContext} object of the downloads of the blocks.
+     */
+    private final OperationContext opContext;
+
+    /**
+     * Holds the lock which guards the position.
+     */
+    private final Object positionLock = new Object();
+
+    /**
+     * Holds the position of the next read of {@link #read(ByteBuffer)}. Guarded by <code>positionLock</code>.
+     */
+    private long position;
+
+    /**
+     * A flag to determine if the channel is open.
+     */
+    private volatile boolean open = true;
+
+    /**
+     * Initializes a new instance of the BlockCachingReadChannel class.
+     *
+     * @param size
+     *            A <code>long</code> which represents the length, in bytes, of the data.
+     * @param blockSize
+     *            An <code>int</code> which represents the size, in bytes, of the blocks the data is downloaded in.
+     * @param maxCachedBlocks
+     *            An <code>int</code> which represents the maximum number of blocks held in the cache.
+     * @param etag
+     *            A <code>String</code> which represents the ETag of the data when the channel was opened.
+     * @param accessCondition
+     *            An {@link AccessCondition} object which represents the access conditions the channel was opened with,
+     *            whose lease ID is kept, or <code>null</code>.
+     * @param options
+     *            The request options of the downloads of the blocks.
+     * @param opContext
+     *            An {@link OperationContext} object which is used to track the downloads of the blocks.
+     */
+    protected BlockCachingReadChannel(final long size, final int blockSize, final int maxCachedBlocks,
+            final String etag, final AccessCondition accessCondition, final T options,
+            final OperationContext opContext) {
+        Utility.assertGreaterThanOrEqual("blockSize", blockSize, 1);
+        Utility.assertGreaterThanOrEqual("maxCachedBlocks", maxCachedBlocks, 1);
+
+        this.size = size;
+        this.blockSize = blockSize;
+        this.accessCondition = AccessCondition.generateIfMatchCondition(etag);
+        if (accessCondition != null) {
+            this.accessCondition.setLeaseID(accessCondition.getLeaseID());
+        }
+
+        this.options = options;
+        this.opContext = opContext;
+        this.cachedBlocks = new LinkedHashMap<Long, FutureTask<byte[]>>(16, 0.75f, true /* accessOrder */) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, FutureTask<byte[]>> eldest) {
+                // a block being downloaded is still returned to the reads which wait for it
+                return this.size() > maxCachedBlocks;
+            }
+        };
+    }
+
+    /**
+     * Downloads a range of the data.
+     *
+     * @param offset
+     *            A <code>long</code> which represents the offset, in bytes, of the range in the data.
+     * @param length
+     *            An <code>int</code> which represents the length, in bytes, of the range.
+     * @param buffer
+     *            A <code>byte</code> array of <code>length</code> bytes which receives the range.
+     * @param accessCondition
+     *            An {@link AccessCondition} object which locks the download to the ETag of the data.
+     * @param options
+     *            The request options of the download.
+     * @param opContext
+     *            An {@link OperationContext} object which is used to track the download.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    protected abstract void downloadBlock(long offset, int length, byte[] buffer, AccessCondition accessCondition,
+            T options, OperationContext opContext) throws StorageException;
+
+    /**
+     * Gets the length of the data.
+     *
+     * @return A <code>long</code> which represents the length, in bytes, of the data.
+     */
+    public long size() {
+        return this.size;
+    }
+
+    /**
+     * Gets the position of the channel.
+     *
+     * @return A <code>long</code> which represents the position, in bytes, of the next read of
+     *         {@link #read(ByteBuffer)}.
+     *
+     * @throws ClosedChannelException
+     *             If the channel is closed.
+     */
+    public long position() throws ClosedChannelException {
+        this.assertOpen();
+        synchronized (this.positionLock) {
+            return this.position;
+        }
+    }
+
+    /**
+     * Sets the position of the channel. A position at or after the end of the data is allowed, and reads from it
+     * return -1.
+     *
+     * @param newPosition
+     *            A <code>long</code> which represents the position, in bytes, of the next read of
+     *            {@link #read(ByteBuffer)}.
+     *
+     * @return This channel.
+     *
+     * @throws IllegalArgumentException
+     *             If the position is negative.
+     * @throws ClosedChannelException
+     *             If the channel is closed.
+     */
+    public BlockCachingReadChannel<T> position(final long newPosition) throws ClosedChannelException {
+        Utility.assertGreaterThanOrEqual("newPosition", newPosition, 0);
+        this.assertOpen();
+        synchronized (this.positionLock) {
+            this.position = newPosition;
+        }
+
+        return this;
+    }
+
+    /**
+     * Reads bytes from the position of the channel into a buffer, and advances the position by the number of bytes
+     * read. As many bytes are read as the buffer has room for, unless the end of the data is reached.
+     *
+     * @param dst
+     *            A <code>java.nio.ByteBuffer</code> object which receives the bytes from its position.
+     *
+     * @return An <code>int</code> which represents the number of bytes read, or -1 if the position is at or after the
+     *         end of the data.
+     *
+     * @throws IOException
+     *             If the channel is closed, or the data could not be downloaded.
+     */
+    @Override
+    public int read(final ByteBuffer dst) throws IOException {
+        synchronized (this.positionLock) {
+            final int count = this.read(dst, this.position);
+            if (count > 0) {
+                this.position += count;
+            }
+
+            return count;
+        }
+    }
+
+    /**
+     * Reads bytes from the specified position of the data into a buffer, without changing the position of the channel.
+     * As many bytes are read as the buffer has room for, unless the end of the data is reached. Several threads may
+     * read at once.
+     *
+     * @param dst
+     *            A <code>java.nio.ByteBuffer</code> object which receives the bytes from its position.
+     * @param position
+     *            A <code>long</code> which represents the position, in bytes, in the data at which to start reading.
+     *
+     * @return An <code>int</code> which represents the number of bytes read, or -1 if the position is at or after the
+     *         end of the data.
+     *
+     * @throws IllegalArgumentException
+     *             If the position is negative.
+     * @throws IOException
+     *             If the channel is closed, or the data could not be downloaded.
+     */
+    public int read(final ByteBuffer dst, final long position) throws IOException {
+        Utility.assertNotNull("dst", dst);
+        Utility.assertGreaterThanOrEqual("position", position, 0);
+        this.assertOpen();
+
+        if (position >= this.size) {
+            return -1;
+        }
+
+        long readPosition = position;
+        while (dst.hasRemaining() && readPosition < this.size) {
+            final long blockIndex = readPosition / this.blockSize;
+            final byte[] block = this.getBlock(blockIndex);
+            final int blockOffset = (int) (readPosition - blockIndex * this.blockSize);
+            final int count = Math.min(dst.remaining(), block.length - blockOffset);
+            dst.put(block, blockOffset, count);
+            readPosition += count;
+        }
+
+        return (int) (readPosition - position);
+    }
+
+    /**
+     * Gets whether the channel is open.
+     *
+     * @return <code>true</code> if the channel is open; otherwise, <code>false</code>.
+     */
+    @Override
+    public boolean isOpen() {
+        return this.open;
+    }
+
+    /**
+     * Closes the channel and drops the cached blocks.
+     */
+    @Override
+    public void close() {
+        this.open = false;
+        synchronized (this.cachedBlocks) {
+            this.cachedBlocks.clear();
+        }
+    }
+
+    /**
+     * Gets a block of the data from the cache, downloading it if it is not cached. A read which finds the block being
+     * downloaded by another read waits for that download.
+     *
+     * @param blockIndex
+     *            A <code>long</code> which represents the index of the block.
+     *
+     * @return A <code>byte</code> array which holds the block. It must not be modified.
+     *
+     * @throws IOException
+     *             If the block could not be downloaded.
+     */
+    private byte[] getBlock(final long blockIndex) throws IOException {
+        FutureTask<byte[]> download;
+        boolean downloadHere = false;
+        synchronized (this.cachedBlocks) {
+            download = this.cachedBlocks.get(blockIndex);
+            if (download == null) {
+                final long offset = blockIndex * this.blockSize;
+                final int length = (int) Math.min(this.blockSize, this.size - offset);
+                download = new FutureTask<byte[]>(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws StorageException {
+                        final byte[] block = new byte[length];
+                        BlockCachingReadChannel.this.downloadBlock(offset, length, block,
+                                BlockCachingReadChannel.this.accessCondition, BlockCachingReadChannel.this.options,
+                                BlockCachingReadChannel.this.opContext);
+                        return block;
+                    }
+                });
+
+                this.cachedBlocks.put(blockIndex, download);
+                downloadHere = true;
+            }
+        }
+
+        if (downloadHere) {
+            download.run();
+        }
+
+        try {
+            return download.get();
+        }
+        catch (final InterruptedException e) {
+            throw Utility.initIOException(e);
+        }
+        catch (final ExecutionException e) {
+            // drop the failed download, so that the next read of the block tries again
+            synchronized (this.cachedBlocks) {
+                if (this.cachedBlocks.get(blockIndex) == download) {
+                    this.cachedBlocks.remove(blockIndex);
+                }
+            }
+
+            throw Utility.initIOException(e.getCause() instanceof StorageException ? (StorageException) e.getCause()
+                    : e);
+        }
+    }
+
+    /**
+     * Throws if the channel is closed.
+     *
+     * @throws ClosedChannelException
+     *             If the channel is closed.
+     */
+    private void assertOpen() throws ClosedChannelException {
+        if (!this.open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.core;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * RESERVED FOR INTERNAL USE. Represents a stream over the remaining bytes of a <code>ByteBuffer</code>, which reads
+ * them straight from the buffer, whether it is a heap or a direct buffer, without copying them first. The stream
+ * supports mark and reset without a read limit. Reading the stream does not change the position of the buffer.
+ */
+public final class ByteBufferInputStream extends InputStream {
+
+    /**
+     * Holds the view of the buffer the stream reads from.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Holds the position in the buffer the stream returns to when reset.
+     */
+    private int markPosition;
+
+    /**
+     * Creates an instance of the <code>ByteBufferInputStream</code> class over the remaining bytes of the specified
+     * buffer.
+     *
+     * @param buffer
+     *            A <code>java.nio.ByteBuffer</code> object whose bytes between its position and its limit are read.
+     */
+    public ByteBufferInputStream(final ByteBuffer buffer) {
+        Utility.assertNotNull("buffer", buffer);
+
+        this.buffer = buffer.duplicate();
+        this.markPosition = this.buffer.position();
+    }
+
+    @Override
+    public synchronized int available() {
+        return this.buffer.remaining();
+    }
+
+    @Override
+    public synchronized void mark(final int readlimit) {
+        this.markPosition = this.buffer.position();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized int read() {
+        return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public synchronized int read(final byte[] b, final int off, final int len) {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (!this.buffer.hasRemaining()) {
+            return -1;
+        }
+
+        final int count = Math.min(len, this.buffer.remaining());
+        this.buffer.get(b, off, count);
+        return count;
+    }
+
+    @Override
+    public synchronized void reset() {
+        this.buffer.position(this.markPosition);
+    }
+
+    @Override
+    public synchronized long skip(final long n) {
+        final int skipped = (int) Math.max(0, Math.min(n, this.buffer.remaining()));
+        this.buffer.position(this.buffer.position() + skipped);
+        return skipped;
+    }
+}
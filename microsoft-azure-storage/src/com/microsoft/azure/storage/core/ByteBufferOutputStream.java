@@ -0,0 +1,53 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.core;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * RESERVED FOR INTERNAL USE. Represents a stream which writes straight into a <code>ByteBuffer</code>, whether it is a
+ * heap or a direct buffer, starting at its position and advancing it. A write of more bytes than the buffer has
+ * remaining throws a <code>java.nio.BufferOverflowException</code> without writing any of them, so that a download
+ * into a buffer which is too small fails rather than being retried.
+ */
+public final class ByteBufferOutputStream extends OutputStream {
+
+    /**
+     * Holds the buffer the stream writes to.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates an instance of the <code>ByteBufferOutputStream</code> class which writes into the specified buffer.
+     *
+     * @param buffer
+     *            A <code>java.nio.ByteBuffer</code> object which is written from its position up to its limit.
+     */
+    public ByteBufferOutputStream(final ByteBuffer buffer) {
+        Utility.assertNotNull("buffer", buffer);
+        this.buffer = buffer;
+    }
+
+    @Override
+    public void write(final int b) {
+        this.write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(final byte[] b, final int off, final int len) {
+        this.buffer.put(b, off, len);
+    }
+}
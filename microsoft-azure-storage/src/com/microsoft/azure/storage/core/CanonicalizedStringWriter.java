@@ -0,0 +1,346 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.core;
+
+import java.io.UnsupportedEncodingException;
+
+import com.microsoft.azure.storage.Constants;
+
+/**
+ * RESERVED FOR INTERNAL USE. Accumulates a canonicalized string directly as UTF-8 bytes so that it can be passed to the
+ * MAC without first building and re-encoding a <code>String</code>.
+ * <p>
+ * Each thread owns one writer, obtained via {@link #getThreadInstance()}, whose byte buffer and key/value scratch
+ * arrays are reused from one request to the next. A writer must not be shared between threads.
+ */
+final class CanonicalizedStringWriter {
+
+    /**
+     * The initial size of the byte buffer, large enough for a typical string-to-sign.
+     */
+    private static final int INITIAL_CAPACITY = 512;
+
+    /**
+     * The largest byte buffer kept for reuse. A buffer that grew beyond this is released once the request is signed.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 16 * Constants.KB;
+
+    /**
+     * The initial number of key/value pairs the scratch arrays can hold.
+     */
+    private static final int INITIAL_PAIR_CAPACITY = 16;
+
+    /**
+     * Holds the writer of each thread.
+     */
+    private static final ThreadLocal<CanonicalizedStringWriter> THREAD_INSTANCE =
+            new ThreadLocal<CanonicalizedStringWriter>() {
+                @Override
+                protected CanonicalizedStringWriter initialValue() {
+                    return new CanonicalizedStringWriter();
+                }
+            };
+
+    /**
+     * Holds the UTF-8 bytes written so far.
+     */
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+
+    /**
+     * Holds the number of bytes written.
+     */
+    private int length;
+
+    /**
+     * Holds the keys of the scratch key/value pairs.
+     */
+    private String[] pairKeys = new String[INITIAL_PAIR_CAPACITY];
+
+    /**
+     * Holds the values of the scratch key/value pairs.
+     */
+    private String[] pairValues = new String[INITIAL_PAIR_CAPACITY];
+
+    /**
+     * Holds the number of scratch key/value pairs.
+     */
+    private int pairCount;
+
+    /**
+     * Gets the writer of the calling thread, emptied and ready for a new canonicalized string.
+     *
+     * @return the writer of the calling thread.
+     */
+    static CanonicalizedStringWriter getThreadInstance() {
+        final CanonicalizedStringWriter writer = THREAD_INSTANCE.get();
+        writer.reset();
+        return writer;
+    }
+
+    /**
+     * Empties the writer, releasing the byte buffer if it grew unusually large.
+     */
+    void reset() {
+        if (this.buffer.length > MAX_RETAINED_CAPACITY) {
+            this.buffer = new byte[INITIAL_CAPACITY];
+        }
+
+        this.length = 0;
+        this.clearPairs();
+    }
+
+    /**
+     * Gets the buffer holding the UTF-8 bytes written so far. Only the first {@link #length()} bytes are valid.
+     *
+     * @return the byte buffer.
+     */
+    byte[] getBuffer() {
+        return this.buffer;
+    }
+
+    /**
+     * Gets the number of bytes written.
+     *
+     * @return the number of valid bytes in the buffer.
+     */
+    int length() {
+        return this.length;
+    }
+
+    /**
+     * Appends a character.
+     *
+     * @param c
+     *            the character to append.
+     * @return this writer.
+     */
+    CanonicalizedStringWriter append(final char c) {
+        this.ensureCapacity(3);
+        this.encode(c);
+        return this;
+    }
+
+    /**
+     * Appends the decimal representation of a number.
+     *
+     * @param value
+     *            the number to append.
+     * @return this writer.
+     */
+    CanonicalizedStringWriter append(final long value) {
+        return this.append(String.valueOf(value));
+    }
+
+    /**
+     * Appends a string. A <code>null</code> string is written as "null", as a <code>StringBuilder</code> would.
+     *
+     * @param value
+     *            the string to append.
+     * @return this writer.
+     */
+    CanonicalizedStringWriter append(final String value) {
+        final String s = value == null ? "null" : value;
+        return this.append(s, 0, s.length());
+    }
+
+    /**
+     * Appends part of a string.
+     *
+     * @param value
+     *            the string to append.
+     * @param start
+     *            the index of the first character to append.
+     * @param end
+     *            the index after the last character to append.
+     * @return this writer.
+     */
+    CanonicalizedStringWriter append(final String value, final int start, final int end) {
+        // Three bytes per char is the worst case; a surrogate pair takes four bytes for two chars
+        this.ensureCapacity((end - start) * 3);
+
+        for (int i = start; i < end; i++) {
+            final char c = value.charAt(i);
+            if (c < 0x80) {
+                this.buffer[this.length++] = (byte) c;
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(value.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                this.buffer[this.length++] = (byte) (0xF0 | (codePoint >> 18));
+                this.buffer[this.length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                this.buffer[this.length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                this.buffer[this.length++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+            else {
+                this.encode(c);
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Appends a newline followed by a string, as a new element of the canonicalized string.
+     *
+     * @param element
+     *            the element to append.
+     * @return this writer.
+     */
+    CanonicalizedStringWriter appendElement(final String element) {
+        return this.append('\n').append(element);
+    }
+
+    /**
+     * Removes all scratch key/value pairs.
+     */
+    void clearPairs() {
+        for (int i = 0; i < this.pairCount; i++) {
+            this.pairKeys[i] = null;
+            this.pairValues[i] = null;
+        }
+
+        this.pairCount = 0;
+    }
+
+    /**
+     * Adds a scratch key/value pair.
+     *
+     * @param key
+     *            the key.
+     * @param value
+     *            the value.
+     */
+    void addPair(final String key, final String value) {
+        if (this.pairCount == this.pairKeys.length) {
+            final String[] newKeys = new String[this.pairCount * 2];
+            final String[] newValues = new String[this.pairCount * 2];
+            System.arraycopy(this.pairKeys, 0, newKeys, 0, this.pairCount);
+            System.arraycopy(this.pairValues, 0, newValues, 0, this.pairCount);
+            this.pairKeys = newKeys;
+            this.pairValues = newValues;
+        }
+
+        this.pairKeys[this.pairCount] = key;
+        this.pairValues[this.pairCount] = value;
+        this.pairCount++;
+    }
+
+    /**
+     * Sorts the scratch key/value pairs by key, then by value. There are only ever a handful of pairs, so an insertion
+     * sort is used.
+     */
+    void sortPairs() {
+        for (int i = 1; i < this.pairCount; i++) {
+            final String key = this.pairKeys[i];
+            final String value = this.pairValues[i];
+            int j = i - 1;
+            while (j >= 0 && comparePairs(this.pairKeys[j], this.pairValues[j], key, value) > 0) {
+                this.pairKeys[j + 1] = this.pairKeys[j];
+                this.pairValues[j + 1] = this.pairValues[j];
+                j--;
+            }
+
+            this.pairKeys[j + 1] = key;
+            this.pairValues[j + 1] = value;
+        }
+    }
+
+    /**
+     * Gets the number of scratch key/value pairs.
+     *
+     * @return the number of pairs.
+     */
+    int getPairCount() {
+        return this.pairCount;
+    }
+
+    /**
+     * Gets the key of a scratch key/value pair.
+     *
+     * @param index
+     *            the index of the pair.
+     * @return the key.
+     */
+    String getPairKey(final int index) {
+        return this.pairKeys[index];
+    }
+
+    /**
+     * Gets the value of a scratch key/value pair.
+     *
+     * @param index
+     *            the index of the pair.
+     * @return the value.
+     */
+    String getPairValue(final int index) {
+        return this.pairValues[index];
+    }
+
+    /**
+     * Decodes the bytes written so far. This allocates and is intended for logging and tests only.
+     *
+     * @return the canonicalized string.
+     */
+    @Override
+    public String toString() {
+        try {
+            return new String(this.buffer, 0, this.length, Constants.UTF8_CHARSET);
+        }
+        catch (final UnsupportedEncodingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Compares two key/value pairs by key, then by value.
+     */
+    private static int comparePairs(final String key1, final String value1, final String key2, final String value2) {
+        final int result = key1.compareTo(key2);
+        return result != 0 ? result : value1.compareTo(value2);
+    }
+
+    /**
+     * Encodes a character which is not part of a surrogate pair. Capacity must already have been ensured.
+     */
+    private void encode(final char c) {
+        if (c < 0x80) {
+            this.buffer[this.length++] = (byte) c;
+        }
+        else if (c < 0x800) {
+            this.buffer[this.length++] = (byte) (0xC0 | (c >> 6));
+            this.buffer[this.length++] = (byte) (0x80 | (c & 0x3F));
+        }
+        else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+            // An unpaired surrogate is replaced, as String.getBytes does
+            this.buffer[this.length++] = (byte) '?';
+        }
+        else {
+            this.buffer[this.length++] = (byte) (0xE0 | (c >> 12));
+            this.buffer[this.length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            this.buffer[this.length++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    /**
+     * Grows the buffer, if needed, so that the specified number of bytes can be written.
+     */
+    private void ensureCapacity(final int additional) {
+        final int required = this.length + additional;
+        if (required > this.buffer.length) {
+            final byte[] newBuffer = new byte[Math.max(required, this.buffer.length * 2)];
+            System.arraycopy(this.buffer, 0, newBuffer, 0, this.length);
+            this.buffer = newBuffer;
+        }
+    }
+}
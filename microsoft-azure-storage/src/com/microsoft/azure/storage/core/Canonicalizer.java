@@ -18,10 +18,6 @@
 package com.microsoft.azure.storage.core;
 
 import java.net.HttpURLConnection;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -32,95 +28,104 @@ import com.microsoft.azure.storage.StorageException;
 /**
  * RESERVED FOR INTERNAL USE. This is a Version 2 Canonicalization strategy conforming to the PDC 2009-09-19
  * specification
+ * <p>
+ * The canonicalized string is written as UTF-8 bytes into a {@link CanonicalizedStringWriter}, which is then passed
+ * to the MAC as is. Headers and query parameters are sorted in the writer's reusable scratch space, so canonicalizing a
+ * request does not build intermediate strings, lists or maps.
  */
 abstract class Canonicalizer {
 
-    /**
-     * The expected length for the canonicalized string when SharedKeyFull is used to sign requests.
-     */
-    private static final int ExpectedBlobQueueCanonicalizedStringLength = 300;
-
-    /**
-     * The expected length for the canonicalized string when SharedKeyLite is used to sign requests.
-     */
-    private static final int ExpectedBlobQueueLiteCanonicalizedStringLength = 250;
-
-    /**
-     * The expected length for the canonicalized string when SharedKeyFull is used to sign table requests.
-     */
-    private static final int ExpectedTableCanonicalizedStringLength = 200;
-
     /**
      * Add x-ms- prefixed headers in a fixed order.
      * 
      * @param conn
      *            the HttpURLConnection for the operation
-     * @param canonicalizedString
-     *            the canonicalized string to add the canonicalized headerst to.
+     * @param writer
+     *            the writer to add the canonicalized headers to.
      */
-    private static void addCanonicalizedHeaders(final HttpURLConnection conn, final StringBuilder canonicalizedString) {
+    private static void addCanonicalizedHeaders(final HttpURLConnection conn, final CanonicalizedStringWriter writer) {
         // Look for header names that start with
         // HeaderNames.PrefixForStorageHeader
         // Then sort them in case-insensitive manner.
 
         final Map<String, List<String>> headers = conn.getRequestProperties();
-        final ArrayList<String> httpStorageHeaderNameArray = new ArrayList<String>();
 
-        for (final String key : headers.keySet()) {
-            if (key.toLowerCase(Utility.LOCALE_US).startsWith(Constants.PREFIX_FOR_STORAGE_HEADER)) {
-                httpStorageHeaderNameArray.add(key.toLowerCase(Utility.LOCALE_US));
+        writer.clearPairs();
+        for (final Entry<String, List<String>> entry : headers.entrySet()) {
+            final String key = entry.getKey();
+            if (key != null
+                    && key.regionMatches(true /* ignoreCase */, 0, Constants.PREFIX_FOR_STORAGE_HEADER, 0,
+                            Constants.PREFIX_FOR_STORAGE_HEADER.length())) {
+                writer.addPair(key.toLowerCase(Utility.LOCALE_US), key);
             }
         }
 
-        Collections.sort(httpStorageHeaderNameArray);
+        writer.sortPairs();
 
         // Now go through each header's values in the sorted order and append
         // them to the canonicalized string.
-        for (final String key : httpStorageHeaderNameArray) {
-            final StringBuilder canonicalizedElement = new StringBuilder(key);
-            String delimiter = ":";
-            final ArrayList<String> values = getHeaderValues(headers, key);
+        for (int i = 0; i < writer.getPairCount(); i++) {
+            final List<String> values = headers.get(writer.getPairValue(i));
 
+            // The element is only added if at least one value is not empty once trimmed.
             boolean appendCanonicalizedElement = false;
-            // Go through values, unfold them, and then append them to the
-            // canonicalized element string.
             for (final String value : values) {
-                if (!Utility.isNullOrEmpty(value)) {
+                if (trimStartIndex(value) < value.length()) {
                     appendCanonicalizedElement = true;
+                    break;
                 }
-
-                // Unfolding is simply removal of CRLF.
-                final String unfoldedValue = value.replace("\r\n", Constants.EMPTY_STRING);
-
-                // Append it to the canonicalized element string.
-                canonicalizedElement.append(delimiter);
-                canonicalizedElement.append(unfoldedValue);
-                delimiter = ",";
             }
 
-            // Now, add this canonicalized element to the canonicalized header
-            // string.
             if (appendCanonicalizedElement) {
-                appendCanonicalizedElement(canonicalizedString, canonicalizedElement.toString());
+                writer.append('\n').append(writer.getPairKey(i));
+
+                char delimiter = ':';
+                for (final String value : values) {
+                    writer.append(delimiter);
+                    appendUnfoldedValue(writer, value);
+                    delimiter = ',';
+                }
             }
         }
+
+        writer.clearPairs();
     }
 
     /**
-     * Append a string to a string builder with a newline constant
+     * Appends a header value with leading spaces trimmed and unfolded, that is with each CRLF removed.
      * 
-     * @param builder
-     *            the StringBuilder object
-     * @param element
-     *            the string to append.
+     * @param writer
+     *            the writer to append the value to.
+     * @param value
+     *            the header value.
      */
-    protected static void appendCanonicalizedElement(final StringBuilder builder, final String element) {
-        builder.append("\n");
-        builder.append(element);
+    private static void appendUnfoldedValue(final CanonicalizedStringWriter writer, final String value) {
+        int start = trimStartIndex(value);
+        int crlf = value.indexOf("\r\n", start);
+        while (crlf >= 0) {
+            writer.append(value, start, crlf);
+            start = crlf + 2;
+            crlf = value.indexOf("\r\n", start);
+        }
+
+        writer.append(value, start, value.length());
     }
 
     /**
-     * Constructs a canonicalized string from the request's headers that will be used to construct the signature string
+     * Gets the index of the first character that is not a space, as the canonicalization formula requires values to be
+     * left trimmed.
+     */
+    private static int trimStartIndex(final String value) {
+        int spaceDex = 0;
+        while (spaceDex < value.length() && value.charAt(spaceDex) == ' ') {
+            spaceDex++;
+        }
+
+        return spaceDex;
+    }
+
+    /**
+     * Writes a canonicalized string from the request's headers that will be used to construct the signature string
      * for signing a Blob or Queue service request under the Shared Key Full authentication scheme.
      * 
      * @param address
@@ -137,55 +142,47 @@ abstract class Canonicalizer {
      *            the date/time specification for the HTTP request
      * @param conn
      *            the HttpURLConnection for the operation.
-     * @return A canonicalized string.
+     * @param writer
+     *            the writer to write the canonicalized string to.
      * @throws StorageException
      */
-    protected static String canonicalizeHttpRequest(final java.net.URL address, final String accountName,
+    protected static void canonicalizeHttpRequest(final java.net.URL address, final String accountName,
             final String method, final String contentType, final long contentLength, final String date,
-            final HttpURLConnection conn) throws StorageException {
+            final HttpURLConnection conn, final CanonicalizedStringWriter writer) throws StorageException {
 
         // The first element should be the Method of the request.
         // I.e. GET, POST, PUT, or HEAD.
-        final StringBuilder canonicalizedString = new StringBuilder(ExpectedBlobQueueCanonicalizedStringLength);
-        canonicalizedString.append(conn.getRequestMethod());
+        writer.append(conn.getRequestMethod());
 
         // The next elements are
         // If any element is missing it may be empty.
-        appendCanonicalizedElement(canonicalizedString,
-                Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.CONTENT_ENCODING));
-        appendCanonicalizedElement(canonicalizedString,
-                Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.CONTENT_LANGUAGE));
-        appendCanonicalizedElement(canonicalizedString,
-                contentLength == -1 ? Constants.EMPTY_STRING : String.valueOf(contentLength));
-        appendCanonicalizedElement(canonicalizedString,
-                Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.CONTENT_MD5));
-        appendCanonicalizedElement(canonicalizedString, contentType != null ? contentType : Constants.EMPTY_STRING);
+        writer.appendElement(Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.CONTENT_ENCODING));
+        writer.appendElement(Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.CONTENT_LANGUAGE));
+        writer.append('\n');
+        if (contentLength != -1) {
+            writer.append(contentLength);
+        }
+        writer.appendElement(Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.CONTENT_MD5));
+        writer.appendElement(contentType != null ? contentType : Constants.EMPTY_STRING);
 
         final String dateString = Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.DATE);
         // If x-ms-date header exists, Date should be empty string
-        appendCanonicalizedElement(canonicalizedString, dateString.equals(Constants.EMPTY_STRING) ? date
-                : Constants.EMPTY_STRING);
+        writer.appendElement(dateString.equals(Constants.EMPTY_STRING) ? date : Constants.EMPTY_STRING);
 
-        appendCanonicalizedElement(canonicalizedString,
-                Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.IF_MODIFIED_SINCE));
-        appendCanonicalizedElement(canonicalizedString,
-                Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.IF_MATCH));
-        appendCanonicalizedElement(canonicalizedString,
-                Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.IF_NONE_MATCH));
-        appendCanonicalizedElement(canonicalizedString,
-                Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.IF_UNMODIFIED_SINCE));
-        appendCanonicalizedElement(canonicalizedString,
-                Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.RANGE));
+        writer.appendElement(Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.IF_MODIFIED_SINCE));
+        writer.appendElement(Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.IF_MATCH));
+        writer.appendElement(Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.IF_NONE_MATCH));
+        writer.appendElement(Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.IF_UNMODIFIED_SINCE));
+        writer.appendElement(Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.RANGE));
 
-        addCanonicalizedHeaders(conn, canonicalizedString);
+        addCanonicalizedHeaders(conn, writer);
 
-        appendCanonicalizedElement(canonicalizedString, getCanonicalizedResource(address, accountName));
-
-        return canonicalizedString.toString();
+        writer.append('\n');
+        appendCanonicalizedResource(address, accountName, writer);
     }
 
     /**
-     * Constructs a canonicalized string from the request's headers that will be used to construct the signature string
+     * Writes a canonicalized string from the request's headers that will be used to construct the signature string
      * for signing a Blob or Queue service request under the Shared Key Lite authentication scheme.
      * 
      * @param address
@@ -202,25 +199,23 @@ abstract class Canonicalizer {
      *            the date/time specification for the HTTP request
      * @param conn
      *            the HttpURLConnection for the operation.
-     * @return A canonicalized string.
+     * @param writer
+     *            the writer to write the canonicalized string to.
      * @throws StorageException
      */
-    protected static String canonicalizeHttpRequestLite(final java.net.URL address, final String accountName,
+    protected static void canonicalizeHttpRequestLite(final java.net.URL address, final String accountName,
             final String method, final String contentType, final long contentLength, final String date,
-            final HttpURLConnection conn) throws StorageException {
+            final HttpURLConnection conn, final CanonicalizedStringWriter writer) throws StorageException {
         // The first element should be the Method of the request.
         // I.e. GET, POST, PUT, or HEAD.
-        // 
-        final StringBuilder canonicalizedString = new StringBuilder(ExpectedBlobQueueLiteCanonicalizedStringLength);
-        canonicalizedString.append(conn.getRequestMethod());
+        writer.append(conn.getRequestMethod());
 
         // The second element should be the MD5 value.
         // This is optional and may be empty.
-        final String httpContentMD5Value = Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.CONTENT_MD5);
-        appendCanonicalizedElement(canonicalizedString, httpContentMD5Value);
+        writer.appendElement(Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.CONTENT_MD5));
 
         // The third element should be the content type.
-        appendCanonicalizedElement(canonicalizedString, contentType);
+        writer.appendElement(contentType);
 
         // The fourth element should be the request date.
         // See if there's an storage date header.
@@ -228,18 +223,16 @@ abstract class Canonicalizer {
 
         final String dateString = Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.DATE);
         // If x-ms-date header exists, Date should be empty string
-        appendCanonicalizedElement(canonicalizedString, dateString.equals(Constants.EMPTY_STRING) ? date
-                : Constants.EMPTY_STRING);
-
-        addCanonicalizedHeaders(conn, canonicalizedString);
+        writer.appendElement(dateString.equals(Constants.EMPTY_STRING) ? date : Constants.EMPTY_STRING);
 
-        appendCanonicalizedElement(canonicalizedString, getCanonicalizedResourceLite(address, accountName));
+        addCanonicalizedHeaders(conn, writer);
 
-        return canonicalizedString.toString();
+        writer.append('\n');
+        appendCanonicalizedResourceLite(address, accountName, writer);
     }
 
     /**
-     * Constructs a canonicalized string that will be used to construct the signature string
+     * Writes a canonicalized string that will be used to construct the signature string
      * for signing a Table service request under the Shared Key authentication scheme.
      * 
      * @param address
@@ -256,24 +249,23 @@ abstract class Canonicalizer {
      *            the date/time specification for the HTTP request
      * @param conn
      *            the HttpURLConnection for the operation.
-     * @return A canonicalized string.
+     * @param writer
+     *            the writer to write the canonicalized string to.
      * @throws StorageException
      */
-    protected static String canonicalizeTableHttpRequest(final java.net.URL address, final String accountName,
+    protected static void canonicalizeTableHttpRequest(final java.net.URL address, final String accountName,
             final String method, final String contentType, final long contentLength, final String date,
-            final HttpURLConnection conn) throws StorageException {
+            final HttpURLConnection conn, final CanonicalizedStringWriter writer) throws StorageException {
         // The first element should be the Method of the request.
         // I.e. GET, POST, PUT, or HEAD.
-        final StringBuilder canonicalizedString = new StringBuilder(ExpectedTableCanonicalizedStringLength);
-        canonicalizedString.append(conn.getRequestMethod());
+        writer.append(conn.getRequestMethod());
 
         // The second element should be the MD5 value.
         // This is optional and may be empty.
-        final String httpContentMD5Value = Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.CONTENT_MD5);
-        appendCanonicalizedElement(canonicalizedString, httpContentMD5Value);
+        writer.appendElement(Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.CONTENT_MD5));
 
         // The third element should be the content type.
-        appendCanonicalizedElement(canonicalizedString, contentType);
+        writer.appendElement(contentType);
 
         // The fourth element should be the request date.
         // See if there's an storage date header.
@@ -281,156 +273,156 @@ abstract class Canonicalizer {
 
         final String dateString = Utility.getStandardHeaderValue(conn, Constants.HeaderConstants.DATE);
         // If x-ms-date header exists, Date should be that value.
-        appendCanonicalizedElement(canonicalizedString, dateString.equals(Constants.EMPTY_STRING) ? date : dateString);
+        writer.appendElement(dateString.equals(Constants.EMPTY_STRING) ? date : dateString);
 
-        appendCanonicalizedElement(canonicalizedString, getCanonicalizedResourceLite(address, accountName));
-
-        return canonicalizedString.toString();
+        writer.append('\n');
+        appendCanonicalizedResourceLite(address, accountName, writer);
     }
 
     /**
-     * Gets the canonicalized resource string for a Blob or Queue service request under the Shared Key Lite
-     * authentication scheme.
+     * Writes the canonicalized resource string for a Blob or Queue service request under the Shared Key authentication
+     * scheme.
      * 
      * @param address
      *            the resource URI.
      * @param accountName
      *            the account name for the request.
-     * @return the canonicalized resource string.
+     * @param writer
+     *            the writer to write the canonicalized resource to.
      * @throws StorageException
      */
-    protected static String getCanonicalizedResource(final java.net.URL address, final String accountName)
-            throws StorageException {
+    protected static void appendCanonicalizedResource(final java.net.URL address, final String accountName,
+            final CanonicalizedStringWriter writer) throws StorageException {
         // Resource path
-        final StringBuilder resourcepath = new StringBuilder("/");
-        resourcepath.append(accountName);
-
         // Note that AbsolutePath starts with a '/'.
-        resourcepath.append(address.getPath());
-        final StringBuilder canonicalizedResource = new StringBuilder(resourcepath.toString());
-
-        // query parameters
-        final Map<String, String[]> queryVariables = PathUtility.parseQueryString(address.getQuery());
-
-        final Map<String, String> lowercasedKeyNameValue = new HashMap<String, String>();
-
-        for (final Entry<String, String[]> entry : queryVariables.entrySet()) {
-            // sort the value and organize it as comma separated values
-            final List<String> sortedValues = Arrays.asList(entry.getValue());
-            Collections.sort(sortedValues);
-
-            final StringBuilder stringValue = new StringBuilder();
-
-            for (final String value : sortedValues) {
-                if (stringValue.length() > 0) {
-                    stringValue.append(",");
-                }
-
-                stringValue.append(value);
+        writer.append('/').append(accountName).append(address.getPath());
+
+        // query parameters, sorted by lower cased name and then by value
+        writer.clearPairs();
+        parseQueryString(address.getQuery(), true /* lowerCaseKeys */, writer);
+        writer.sortPairs();
+
+        for (int i = 0; i < writer.getPairCount(); i++) {
+            final String key = writer.getPairKey(i);
+            if (i > 0 && key.equals(writer.getPairKey(i - 1))) {
+                // Multiple values for the same parameter are comma separated
+                writer.append(',');
+            }
+            else {
+                writer.append('\n').append(key).append(':');
             }
 
-            // key turns out to be null for ?a&b&c&d
-            lowercasedKeyNameValue.put(entry.getKey() == null ? null : entry.getKey().toLowerCase(Utility.LOCALE_US),
-                    stringValue.toString());
-        }
-
-        final ArrayList<String> sortedKeys = new ArrayList<String>(lowercasedKeyNameValue.keySet());
-
-        Collections.sort(sortedKeys);
-
-        for (final String key : sortedKeys) {
-            final StringBuilder queryParamString = new StringBuilder();
-
-            queryParamString.append(key);
-            queryParamString.append(":");
-            queryParamString.append(lowercasedKeyNameValue.get(key));
-
-            appendCanonicalizedElement(canonicalizedResource, queryParamString.toString());
+            writer.append(writer.getPairValue(i));
         }
 
-        return canonicalizedResource.toString();
+        writer.clearPairs();
     }
 
     /**
-     * Gets the canonicalized resource string for a Blob or Queue service request under the Shared Key Lite
+     * Writes the canonicalized resource string for a Blob or Queue service request under the Shared Key Lite
      * authentication scheme.
      * 
      * @param address
      *            the resource URI.
      * @param accountName
      *            the account name for the request.
-     * @return the canonicalized resource string.
+     * @param writer
+     *            the writer to write the canonicalized resource to.
      * @throws StorageException
      */
-    protected static String getCanonicalizedResourceLite(final java.net.URL address, final String accountName)
-            throws StorageException {
+    protected static void appendCanonicalizedResourceLite(final java.net.URL address, final String accountName,
+            final CanonicalizedStringWriter writer) throws StorageException {
         // Resource path
-        final StringBuilder resourcepath = new StringBuilder("/");
-        resourcepath.append(accountName);
-
         // Note that AbsolutePath starts with a '/'.
-        resourcepath.append(address.getPath());
-        final StringBuilder canonicalizedResource = new StringBuilder(resourcepath.toString());
+        writer.append('/').append(accountName).append(address.getPath());
+
+        // query parameters, of which only the comp values are included
+        writer.clearPairs();
+        parseQueryString(address.getQuery(), false /* lowerCaseKeys */, writer);
+        writer.sortPairs();
+
+        boolean first = true;
+        for (int i = 0; i < writer.getPairCount(); i++) {
+            if ("comp".equals(writer.getPairKey(i))) {
+                writer.append(first ? "?comp=" : ",");
+                writer.append(writer.getPairValue(i));
+                first = false;
+            }
+        }
 
-        // query parameters
-        final Map<String, String[]> queryVariables = PathUtility.parseQueryString(address.getQuery());
+        writer.clearPairs();
+    }
 
-        final String[] compVals = queryVariables.get("comp");
+    /**
+     * Parses the query of a request into the writer's scratch pairs, splitting it as
+     * {@link PathUtility#parseQueryString(String)} does. Parameters without a value are skipped.
+     * 
+     * @param query
+     *            the query of the request, or <code>null</code>.
+     * @param lowerCaseKeys
+     *            <code>true</code> to lower case the parameter names; otherwise, <code>false</code>.
+     * @param writer
+     *            the writer whose scratch pairs receive the parameters.
+     * @throws StorageException
+     */
+    private static void parseQueryString(String query, final boolean lowerCaseKeys,
+            final CanonicalizedStringWriter writer) throws StorageException {
+        if (Utility.isNullOrEmpty(query)) {
+            return;
+        }
 
-        if (compVals != null) {
+        // 1. Remove ? if present
+        final int queryDex = query.indexOf('?');
+        if (queryDex >= 0) {
+            query = query.substring(queryDex + 1);
+        }
 
-            final List<String> sortedValues = Arrays.asList(compVals);
-            Collections.sort(sortedValues);
+        // 2. split name value pairs on '&', or on ';' if there is no '&'
+        final char separator = query.indexOf('&') >= 0 ? '&' : ';';
 
-            canonicalizedResource.append("?comp=");
+        int start = 0;
+        while (start <= query.length()) {
+            int end = query.indexOf(separator, start);
+            if (end < 0) {
+                end = query.length();
+            }
 
-            final StringBuilder stringValue = new StringBuilder();
-            for (final String value : sortedValues) {
-                if (stringValue.length() > 0) {
-                    stringValue.append(",");
+            // 3. add each pair which has a non-empty value
+            final int equalDex = query.indexOf('=', start);
+            if (equalDex >= start && equalDex < end - 1) {
+                final String value = Utility.safeDecode(query.substring(equalDex + 1, end));
+                if (value.length() > 0) {
+                    final String key = Utility.safeDecode(query.substring(start, equalDex));
+                    writer.addPair(lowerCaseKeys ? key.toLowerCase(Utility.LOCALE_US) : key, value);
                 }
-                stringValue.append(value);
             }
 
-            canonicalizedResource.append(stringValue);
+            start = end + 1;
         }
-
-        return canonicalizedResource.toString();
     }
 
     /**
-     * Gets all the values for the given header in the one to many map, performs a trimStart() on each return value
+     * Constructs a canonicalized string for signing a request. This allocates a new writer and is intended for logging
+     * and tests; requests are signed via
+     * {@link #canonicalize(HttpURLConnection, String, Long, CanonicalizedStringWriter)}.
      * 
-     * @param headers
-     *            a one to many map of key / values representing the header values for the connection.
-     * @param headerName
-     *            the name of the header to lookup
-     * @return an ArrayList<String> of all trimmed values cooresponding to the requested headerName. This may be empty
-     *         if the header is not found.
+     * @param conn
+     *            the HttpURLConnection to canonicalize
+     * @param accountName
+     *            the account name associated with the request
+     * @param contentLength
+     *            the length of the content written to the outputstream in bytes, -1 if unknown
+     * @return a canonicalized string.
      */
-    private static ArrayList<String> getHeaderValues(final Map<String, List<String>> headers, final String headerName) {
-
-        final ArrayList<String> arrayOfValues = new ArrayList<String>();
-        List<String> values = null;
-
-        for (final Entry<String, List<String>> entry : headers.entrySet()) {
-            if (entry.getKey().toLowerCase(Utility.LOCALE_US).equals(headerName)) {
-                values = entry.getValue();
-                break;
-            }
-        }
-        if (values != null) {
-            for (final String value : values) {
-                // canonicalization formula requires the string to be left
-                // trimmed.
-                arrayOfValues.add(Utility.trimStart(value));
-            }
-        }
-        return arrayOfValues;
+    protected String canonicalize(final HttpURLConnection conn, final String accountName, final Long contentLength)
+            throws StorageException {
+        final CanonicalizedStringWriter writer = new CanonicalizedStringWriter();
+        this.canonicalize(conn, accountName, contentLength, writer);
+        return writer.toString();
     }
 
     /**
-     * Constructs a canonicalized string for signing a request.
+     * Writes a canonicalized string for signing a request.
      * 
      * @param conn
      *            the HttpURLConnection to canonicalize
@@ -438,8 +430,9 @@ abstract class Canonicalizer {
      *            the account name associated with the request
      * @param contentLength
      *            the length of the content written to the outputstream in bytes, -1 if unknown
-     * @return a canonicalized string.
+     * @param writer
+     *            the writer to write the canonicalized string to.
      */
-    protected abstract String canonicalize(HttpURLConnection conn, String accountName, Long contentLength)
-            throws StorageException;
+    protected abstract void canonicalize(HttpURLConnection conn, String accountName, Long contentLength,
+            CanonicalizedStringWriter writer) throws StorageException;
 }
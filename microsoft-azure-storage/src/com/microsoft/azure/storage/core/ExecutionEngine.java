@@ -24,12 +24,35 @@ import java.net.URISyntaxException;
 import java.security.InvalidKeyException;
 import java.util.Date;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.stream.XMLStreamException;
 
+import com.microsoft.azure.storage.AdaptiveConcurrencyLimiter;
+import com.microsoft.azure.storage.ClientMetrics;
 import com.microsoft.azure.storage.Constants;
+import com.microsoft.azure.storage.DefaultHttpTransport;
+import com.microsoft.azure.storage.HedgedReadPolicy;
+import com.microsoft.azure.storage.HttpTransport;
 import com.microsoft.azure.storage.LocationMode;
+import com.microsoft.azure.storage.LocationRouter;
 import com.microsoft.azure.storage.OperationContext;
 import com.microsoft.azure.storage.RequestCompletedEvent;
 import com.microsoft.azure.storage.RequestResult;
@@ -41,6 +64,7 @@ import com.microsoft.azure.storage.RetryPolicy;
 import com.microsoft.azure.storage.RetryPolicyFactory;
 import com.microsoft.azure.storage.RetryingEvent;
 import com.microsoft.azure.storage.SendingRequestEvent;
+import com.microsoft.azure.storage.ServiceClient;
 import com.microsoft.azure.storage.StorageErrorCodeStrings;
 import com.microsoft.azure.storage.StorageException;
 import com.microsoft.azure.storage.StorageLocation;
@@ -50,6 +74,39 @@ import com.microsoft.azure.storage.table.TableServiceException;
  * RESERVED FOR INTERNAL USE. A class that handles execution of StorageOperations and enforces retry policies.
  */
 public final class ExecutionEngine {
+    /**
+     * The shared pool of daemon threads that runs the attempts of asynchronous operations made via clients which do
+     * not have their own executor. It has a fixed number of threads; attempts submitted while all of them are busy are
+     * queued, and idle threads exit.
+     */
+    private static final ThreadPoolExecutor ASYNC_EXECUTOR = new ThreadPoolExecutor(
+            Constants.DEFAULT_ASYNC_THREAD_COUNT, Constants.DEFAULT_ASYNC_THREAD_COUNT, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("azure-storage-async-"));
+
+    /**
+     * The pool of daemon threads that waits for the responses of hedged reads. It is separate from the async pool
+     * because the thread waiting on a hedged read may itself be an async worker, and is bounded by the number of
+     * threads sending hedged reads.
+     */
+    private static final ExecutorService HEDGE_EXECUTOR = Executors.newCachedThreadPool(new DaemonThreadFactory(
+            "azure-storage-hedge-"));
+
+    static {
+        ASYNC_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * The shared timer that waits out the retry interval of asynchronous operations without holding a worker thread.
+     */
+    private static final ScheduledExecutorService RETRY_TIMER = Executors
+            .newSingleThreadScheduledExecutor(new DaemonThreadFactory("azure-storage-retry-timer-"));
+
+    /**
+     * The interval at which an asynchronous attempt waiting for a permit of the concurrency limiter checks again, on
+     * the retry timer, for one to become available.
+     */
+    private static final int PERMIT_POLL_INTERVAL_IN_MS = 10;
+
     /**
      * Executes an operation and enforces a retrypolicy to handle any potential errors
      * 
@@ -77,6 +134,76 @@ public final class ExecutionEngine {
             final PARENT_TYPE parentObject, final StorageRequest<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> task,
             final RetryPolicyFactory policyFactory, final OperationContext opContext) throws StorageException {
 
+        final ExecutionState<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> state = new ExecutionState<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE>(
+                client, parentObject, task, createRetryPolicy(policyFactory, opContext), opContext);
+
+        while (true) {
+            if (executeAttempt(state)) {
+                return state.result;
+            }
+
+            final int retryInterval = evaluateRetry(state);
+            try {
+                Thread.sleep(retryInterval);
+            }
+            catch (final InterruptedException e) {
+                // Restore the interrupted status
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Executes an operation asynchronously and enforces a retrypolicy to handle any potential errors.
+     * <p>
+     * This is the threading model of every asynchronous operation of the library. Each attempt runs on the executor
+     * of the service client, see {@link ServiceClient#setAsyncExecutor}, and holds one of its threads for the whole
+     * request and response, including reading the response body. The delay between attempts is scheduled on a shared
+     * timer, so no thread is held while the operation waits to be retried. Likewise, if the client has a concurrency
+     * limiter, each attempt takes its permit before it is handed to the executor, and waits for one on the timer. If
+     * the operation fails, or the executor rejects an attempt, {@link Future#get()} throws an
+     * <code>ExecutionException</code> whose cause is the {@link StorageException} or the rejection.
+     * <p>
+     * Cancelling the returned future prevents any further attempts from starting; an attempt that is already in
+     * progress runs to completion and its result is discarded.
+     * 
+     * @param <CLIENT_TYPE>
+     *            The type of the service client
+     * @param <PARENT_TYPE>
+     *            The type of the parent object, i.e. CloudBlobContainer for downloadAttributes etc.
+     * @param <RESULT_TYPE>
+     *            The type of the expected result
+     * @param client
+     *            the service client associated with the request
+     * @param parentObject
+     *            the parent object
+     * @param task
+     *            the StorageRequest to execute
+     * @param policyFactory
+     *            the factory used to generate a new retry policy instance
+     * @param opContext
+     *            an object used to track the execution of the operation
+     * @return a future which completes with the result of the operation, or fails with a {@link StorageException}
+     *         representing any error which occurred during the operation.
+     */
+    public static <CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> Future<RESULT_TYPE> executeWithRetryAsync(
+            final CLIENT_TYPE client, final PARENT_TYPE parentObject,
+            final StorageRequest<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> task, final RetryPolicyFactory policyFactory,
+            final OperationContext opContext) {
+
+        final ExecutionState<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> state = new ExecutionState<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE>(
+                client, parentObject, task, createRetryPolicy(policyFactory, opContext), opContext);
+        final AsyncResult<RESULT_TYPE> future = new AsyncResult<RESULT_TYPE>();
+
+        new AsyncAttempt<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE>(state, future).submit();
+        return future;
+    }
+
+    /**
+     * Creates the retry policy for an operation, falling back to no retries if the factory does not provide one.
+     */
+    private static RetryPolicy createRetryPolicy(final RetryPolicyFactory policyFactory,
+            final OperationContext opContext) {
         RetryPolicy policy = null;
 
         if (policyFactory == null) {
@@ -91,257 +218,398 @@ public final class ExecutionEngine {
             }
         }
 
-        int currentRetryCount = 0;
+        return policy;
+    }
+
+    /**
+     * Sends a single attempt of an operation.
+     * 
+     * @return <code>true</code> if the operation succeeded, in which case the result is stored on the state;
+     *         <code>false</code> if the attempt failed with a retryable error, in which case the error is stored on
+     *         the state.
+     * @throws StorageException
+     *             if the attempt failed with an error which must not be retried.
+     */
+    private static <CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> boolean executeAttempt(
+            final ExecutionState<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> state) throws StorageException {
+        final CLIENT_TYPE client = state.client;
+        final PARENT_TYPE parentObject = state.parentObject;
+        final StorageRequest<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> task = state.task;
+        final OperationContext opContext = state.opContext;
+
         StorageException translatedException = null;
-        HttpURLConnection request = null;
-        final long startTime = new Date().getTime();
+        HttpURLConnection request = state.request;
 
-        while (true) {
-            try {
-                // 1-4: setup the request
-                request = setupStorageRequest(client, parentObject, task, currentRetryCount, opContext);
+        final long startNanoTime = System.nanoTime();
 
-                Logger.info(opContext, LogConstants.START_REQUEST, request.getURL(),
-                        request.getRequestProperty(Constants.HeaderConstants.DATE));
+        // Wait for the number of requests in flight to drop below the limit before building this one
+        final AdaptiveConcurrencyLimiter.Permit permit = acquirePermit(state, true /* wait */);
 
-                // 5. Potentially upload data
-                if (task.getSendStream() != null) {
-                    Logger.info(opContext, LogConstants.UPLOAD);
-                    final StreamMd5AndLength descriptor = Utility.writeToOutputStream(task.getSendStream(),
-                            request.getOutputStream(), task.getLength(), false /* rewindStream */,
-                            false /* calculate MD5 */, opContext, task.getRequestOptions());
+        boolean connectionAcquired = false;
+        boolean responseReceived = false;
+        boolean responseConsumed = false;
+        long responseLatencyInMs = -1;
+        long bytesSent = 0;
+        long bytesReceived = 0;
+        final long startByteCount = task.getCurrentRequestByteCount();
+        try {
+            // 1-4: setup the request
+            request = setupStorageRequest(client, parentObject, task, state.currentRetryCount, state.router,
+                    opContext);
+            state.request = request;
+            task.getResult().setStartNanoTime(startNanoTime);
 
-                    task.validateStreamWrite(descriptor);
-                    Logger.info(opContext, LogConstants.UPLOADDONE);
-                }
+            Logger.info(opContext, LogConstants.START_REQUEST, request.getURL(),
+                    request.getRequestProperty(Constants.HeaderConstants.DATE));
 
-                // 6. Process the request - Get response
-                RequestResult currResult = task.getResult();
-                currResult.setStartDate(new Date());
-
-                Logger.info(opContext, LogConstants.GET_RESPONSE);
-
-                currResult.setStatusCode(request.getResponseCode());
-                currResult.setStatusMessage(request.getResponseMessage());
-
-                currResult.setStopDate(new Date());
-                currResult.setServiceRequestID(BaseResponse.getRequestId(request));
-                currResult.setEtag(BaseResponse.getEtag(request));
-                currResult.setRequestDate(BaseResponse.getDate(request));
-                currResult.setContentMD5(BaseResponse.getContentMD5(request));
-
-                // 7. Fire ResponseReceived Event
-                ExecutionEngine.fireResponseReceivedEvent(opContext, request, task.getResult());
-
-                Logger.info(opContext, LogConstants.RESPONSE_RECEIVED, currResult.getStatusCode(),
-                        currResult.getServiceRequestID(), currResult.getContentMD5(), currResult.getEtag());
-
-                // 8. Pre-process response to check if there was an exception. Do Response parsing (headers etc).
-                Logger.info(opContext, LogConstants.PRE_PROCESS);
-                RESULT_TYPE result = task.preProcessResponse(parentObject, client, opContext);
-                Logger.info(opContext, LogConstants.PRE_PROCESS_DONE);
-
-                if (!task.isNonExceptionedRetryableFailure()) {
-
-                    // 9. Post-process response. Read stream from server.
-                    Logger.info(opContext, LogConstants.POST_PROCESS);
-                    result = task.postProcessResponse(request, parentObject, client, opContext, result);
-                    Logger.info(opContext, LogConstants.POST_PROCESS_DONE);
-
-                    // Success return result and drain the input stream.
-                    if ((task.getResult().getStatusCode() >= 200) && (task.getResult().getStatusCode() < 300)) {
-                        if (request != null) {
-                            InputStream inStream = request.getInputStream();
-                            // At this point, we already have a result / exception to return to the user.
-                            // This is just an optimization to improve socket reuse.
-                            try {
-                                Utility.writeToOutputStream(inStream, null, -1, false, false, null,
-                                        task.getRequestOptions());
-                            }
-                            catch (final IOException ex) {
-                            }
-                            catch (StorageException e) {
-                            }
-                            finally {
-                                inStream.close();
-                            }
-                        }
-                    }
-                    Logger.info(opContext, LogConstants.COMPLETE);
+            // Acquire a connection from the transport before any data is sent
+            state.transport.beforeSend(request, opContext);
+            connectionAcquired = true;
 
-                    return result;
-                }
-                else {
-                    Logger.warn(opContext, LogConstants.UNEXPECTED_RESULT_OR_EXCEPTION);
-                    // The task may have already parsed an exception.
-                    translatedException = task.materializeException(task.getConnection(), opContext);
-                    task.getResult().setException(translatedException);
-
-                    // throw on non retryable status codes: 501, 505, blob type mismatch
-                    if (task.getResult().getStatusCode() == HttpURLConnection.HTTP_NOT_IMPLEMENTED
-                            || task.getResult().getStatusCode() == HttpURLConnection.HTTP_VERSION
-                            || translatedException.getErrorCode().equals(StorageErrorCodeStrings.INVALID_BLOB_TYPE)) {
-                        throw translatedException;
-                    }
-                }
-            }
-            catch (final TimeoutException e) {
-                // Retryable
-                Logger.warn(opContext, LogConstants.RETRYABLE_EXCEPTION, e.getClass().getName(), e.getMessage());
-                translatedException = StorageException.translateException(task.getConnection(), e, opContext);
-                task.getResult().setException(translatedException);
-            }
-            catch (final SocketTimeoutException e) {
-                // Retryable
-                Logger.warn(opContext, LogConstants.RETRYABLE_EXCEPTION, e.getClass().getName(), e.getMessage());
-                translatedException = new StorageException(StorageErrorCodeStrings.OPERATION_TIMED_OUT,
-                        "The operation did not complete in the specified time.", -1, null, e);
-                task.getResult().setException(translatedException);
+            // Connect explicitly so that connecting is timed apart from sending the request
+            task.getResult().setConnectStartNanoTime(System.nanoTime());
+            request.connect();
+            task.getResult().setConnectEndNanoTime(System.nanoTime());
+
+            // 5. Potentially upload data
+            if (task.getSendStream() != null) {
+                Logger.info(opContext, LogConstants.UPLOAD);
+                final StreamMd5AndLength descriptor = Utility.writeToOutputStream(task.getSendStream(),
+                        request.getOutputStream(), task.getLength(), false /* rewindStream */,
+                        false /* calculate MD5 */, opContext, task.getRequestOptions());
+
+                task.validateStreamWrite(descriptor);
+                bytesSent = descriptor.getLength();
+                Logger.info(opContext, LogConstants.UPLOADDONE);
             }
-            catch (final IOException e) {
-                // Non Retryable if the inner exception is actually an TimeoutException, otherwise Retryable
-                if (e.getCause() instanceof TimeoutException) {
-                    translatedException = new StorageException(StorageErrorCodeStrings.OPERATION_TIMED_OUT,
-                            SR.MAXIMUM_EXECUTION_TIMEOUT_EXCEPTION, Constants.HeaderConstants.HTTP_UNUSED_306, null,
-                            (Exception) e.getCause());
-                    task.getResult().setException(translatedException);
-                    Logger.error(opContext, LogConstants.UNRETRYABLE_EXCEPTION, e.getCause().getClass().getName(), e
-                            .getCause().getMessage());
-                    throw translatedException;
-                }
-                else {
-                    Logger.warn(opContext, LogConstants.RETRYABLE_EXCEPTION, e.getClass().getName(), e.getMessage());
-                    translatedException = StorageException.translateException(task.getConnection(), e, opContext);
-                    task.getResult().setException(translatedException);
-                }
+
+            // 6. Process the request - Get response
+            RequestResult currResult = task.getResult();
+            currResult.setRequestSentNanoTime(System.nanoTime());
+            currResult.setStartDate(new Date());
+
+            Logger.info(opContext, LogConstants.GET_RESPONSE);
+
+            // Race a slow read against a duplicate request to the secondary location
+            if (isHedgeable(state, request)) {
+                request = sendHedged(state, request);
+                state.request = request;
             }
-            catch (final XMLStreamException e) {
-                // Non Retryable except when the inner exception is actually an IOException
-                if (e.getCause() instanceof SocketException) {
-                    translatedException = StorageException.translateException(task.getConnection(),
-                            (Exception) e.getCause(), opContext);
-                }
-                else {
-                    translatedException = StorageException.translateException(task.getConnection(), e, opContext);
+
+            currResult.setStatusCode(request.getResponseCode());
+            responseReceived = true;
+            currResult.setStatusMessage(request.getResponseMessage());
+            currResult.setResponseReceivedNanoTime(System.nanoTime());
+            // the latency of the location excludes connecting and sending the request body, which depend on the client
+            responseLatencyInMs = TimeUnit.NANOSECONDS.toMillis(currResult.getResponseReceivedNanoTime()
+                    - currResult.getRequestSentNanoTime());
+
+            currResult.setStopDate(new Date());
+            currResult.setServiceRequestID(BaseResponse.getRequestId(request));
+            currResult.setEtag(BaseResponse.getEtag(request));
+            currResult.setRequestDate(BaseResponse.getDate(request));
+            currResult.setContentMD5(BaseResponse.getContentMD5(request));
+
+            // 7. Fire ResponseReceived Event
+            ExecutionEngine.fireResponseReceivedEvent(opContext, request, task.getResult());
+
+            Logger.info(opContext, LogConstants.RESPONSE_RECEIVED, currResult.getStatusCode(),
+                    currResult.getServiceRequestID(), currResult.getContentMD5(), currResult.getEtag());
+
+            // 8. Pre-process response to check if there was an exception. Do Response parsing (headers etc).
+            Logger.info(opContext, LogConstants.PRE_PROCESS);
+            RESULT_TYPE result = task.preProcessResponse(parentObject, client, opContext);
+            Logger.info(opContext, LogConstants.PRE_PROCESS_DONE);
+
+            if (!task.isNonExceptionedRetryableFailure()) {
+
+                // 9. Post-process response. Read stream from server.
+                Logger.info(opContext, LogConstants.POST_PROCESS);
+                result = task.postProcessResponse(request, parentObject, client, opContext, result);
+                task.getResult().setResponseProcessedNanoTime(System.nanoTime());
+                Logger.info(opContext, LogConstants.POST_PROCESS_DONE);
+
+                // Success return result and drain the input stream.
+                if ((task.getResult().getStatusCode() >= 200) && (task.getResult().getStatusCode() < 300)) {
+                    if (request != null) {
+                        InputStream inStream = request.getInputStream();
+                        // At this point, we already have a result / exception to return to the user.
+                        // This is just an optimization to improve socket reuse.
+                        try {
+                            final StreamMd5AndLength drained = Utility.writeToOutputStream(inStream, null, -1, false,
+                                    false, null, task.getRequestOptions());
+                            bytesReceived = drained.getLength();
+                            responseConsumed = true;
+                        }
+                        catch (final IOException ex) {
+                        }
+                        catch (StorageException e) {
+                        }
+                        finally {
+                            inStream.close();
+                        }
+                    }
                 }
+                Logger.info(opContext, LogConstants.COMPLETE);
 
+                state.result = result;
+                return true;
+            }
+            else {
+                Logger.warn(opContext, LogConstants.UNEXPECTED_RESULT_OR_EXCEPTION);
+                // The task may have already parsed an exception.
+                translatedException = task.materializeException(task.getConnection(), opContext);
                 task.getResult().setException(translatedException);
 
-                if (!(e.getCause() instanceof IOException)) {
-                    Logger.error(opContext, LogConstants.UNRETRYABLE_EXCEPTION, e.getClass().getName(), e.getMessage());
+                // throw on non retryable status codes: 501, 505, blob type mismatch
+                if (task.getResult().getStatusCode() == HttpURLConnection.HTTP_NOT_IMPLEMENTED
+                        || task.getResult().getStatusCode() == HttpURLConnection.HTTP_VERSION
+                        || translatedException.getErrorCode().equals(StorageErrorCodeStrings.INVALID_BLOB_TYPE)) {
                     throw translatedException;
                 }
-                Logger.warn(opContext, LogConstants.RETRYABLE_EXCEPTION, e.getClass().getName(), e.getMessage());
             }
-            catch (final InvalidKeyException e) {
-                // Non Retryable, just throw
-                translatedException = StorageException.translateException(task.getConnection(), e, opContext);
+        }
+        catch (final TimeoutException e) {
+            // Retryable
+            Logger.warn(opContext, LogConstants.RETRYABLE_EXCEPTION, e.getClass().getName(), e.getMessage());
+            translatedException = StorageException.translateException(task.getConnection(), e, opContext);
+            task.getResult().setException(translatedException);
+        }
+        catch (final SocketTimeoutException e) {
+            // Retryable
+            Logger.warn(opContext, LogConstants.RETRYABLE_EXCEPTION, e.getClass().getName(), e.getMessage());
+            translatedException = new StorageException(StorageErrorCodeStrings.OPERATION_TIMED_OUT,
+                    "The operation did not complete in the specified time.", -1, null, e);
+            task.getResult().setException(translatedException);
+        }
+        catch (final IOException e) {
+            // Non Retryable if the inner exception is actually an TimeoutException, otherwise Retryable
+            if (e.getCause() instanceof TimeoutException) {
+                translatedException = new StorageException(StorageErrorCodeStrings.OPERATION_TIMED_OUT,
+                        SR.MAXIMUM_EXECUTION_TIMEOUT_EXCEPTION, Constants.HeaderConstants.HTTP_UNUSED_306, null,
+                        (Exception) e.getCause());
                 task.getResult().setException(translatedException);
-                Logger.error(opContext, LogConstants.UNRETRYABLE_EXCEPTION, e.getClass().getName(), e.getMessage());
+                Logger.error(opContext, LogConstants.UNRETRYABLE_EXCEPTION, e.getCause().getClass().getName(), e
+                        .getCause().getMessage());
                 throw translatedException;
             }
-            catch (final URISyntaxException e) {
-                // Non Retryable, just throw
+            else {
+                Logger.warn(opContext, LogConstants.RETRYABLE_EXCEPTION, e.getClass().getName(), e.getMessage());
                 translatedException = StorageException.translateException(task.getConnection(), e, opContext);
                 task.getResult().setException(translatedException);
+            }
+        }
+        catch (final XMLStreamException e) {
+            // Non Retryable except when the inner exception is actually an IOException
+            if (e.getCause() instanceof SocketException) {
+                translatedException = StorageException.translateException(task.getConnection(),
+                        (Exception) e.getCause(), opContext);
+            }
+            else {
+                translatedException = StorageException.translateException(task.getConnection(), e, opContext);
+            }
+
+            task.getResult().setException(translatedException);
+
+            if (!(e.getCause() instanceof IOException)) {
                 Logger.error(opContext, LogConstants.UNRETRYABLE_EXCEPTION, e.getClass().getName(), e.getMessage());
                 throw translatedException;
             }
-            catch (final TableServiceException e) {
-                task.getResult().setStatusCode(e.getHttpStatusCode());
-                task.getResult().setStatusMessage(e.getMessage());
-                task.getResult().setException(e);
+            Logger.warn(opContext, LogConstants.RETRYABLE_EXCEPTION, e.getClass().getName(), e.getMessage());
+        }
+        catch (final InvalidKeyException e) {
+            // Non Retryable, just throw
+            translatedException = StorageException.translateException(task.getConnection(), e, opContext);
+            task.getResult().setException(translatedException);
+            Logger.error(opContext, LogConstants.UNRETRYABLE_EXCEPTION, e.getClass().getName(), e.getMessage());
+            throw translatedException;
+        }
+        catch (final URISyntaxException e) {
+            // Non Retryable, just throw
+            translatedException = StorageException.translateException(task.getConnection(), e, opContext);
+            task.getResult().setException(translatedException);
+            Logger.error(opContext, LogConstants.UNRETRYABLE_EXCEPTION, e.getClass().getName(), e.getMessage());
+            throw translatedException;
+        }
+        catch (final TableServiceException e) {
+            task.getResult().setStatusCode(e.getHttpStatusCode());
+            task.getResult().setStatusMessage(e.getMessage());
+            task.getResult().setException(e);
 
-                if (!e.isRetryable()) {
-                    Logger.error(opContext, LogConstants.UNRETRYABLE_EXCEPTION, e.getClass().getName(), e.getMessage());
-                    throw e;
-                }
-                else {
-                    Logger.warn(opContext, LogConstants.RETRYABLE_EXCEPTION, e.getClass().getName(), e.getMessage());
-                    translatedException = e;
-                }
-            }
-            catch (final StorageException e) {
-                // Non Retryable, just throw
-                // do not translate StorageException
-                task.getResult().setException(e);
+            if (!e.isRetryable()) {
                 Logger.error(opContext, LogConstants.UNRETRYABLE_EXCEPTION, e.getClass().getName(), e.getMessage());
                 throw e;
             }
-            catch (final Exception e) {
-                // Non Retryable, just throw
-                translatedException = StorageException.translateException(task.getConnection(), e, opContext);
-                task.getResult().setException(translatedException);
-                Logger.error(opContext, LogConstants.UNRETRYABLE_EXCEPTION, e.getClass().getName(), e.getMessage());
-                throw translatedException;
+            else {
+                Logger.warn(opContext, LogConstants.RETRYABLE_EXCEPTION, e.getClass().getName(), e.getMessage());
+                translatedException = e;
             }
-            finally {
-                opContext.setClientTimeInMs(new Date().getTime() - startTime);
-
-                // 10. Fire RequestCompleted Event
-                if (task.isSent()) {
-                    ExecutionEngine.fireRequestCompletedEvent(opContext, request, task.getResult());
-                }
+        }
+        catch (final StorageException e) {
+            // Non Retryable, just throw
+            // do not translate StorageException
+            task.getResult().setException(e);
+            Logger.error(opContext, LogConstants.UNRETRYABLE_EXCEPTION, e.getClass().getName(), e.getMessage());
+            throw e;
+        }
+        catch (final Exception e) {
+            // Non Retryable, just throw
+            translatedException = StorageException.translateException(task.getConnection(), e, opContext);
+            task.getResult().setException(translatedException);
+            Logger.error(opContext, LogConstants.UNRETRYABLE_EXCEPTION, e.getClass().getName(), e.getMessage());
+            throw translatedException;
+        }
+        finally {
+            if (connectionAcquired) {
+                state.transport.afterResponse(request, responseReceived, responseConsumed);
             }
 
-            // Evaluate Retry Policy
-            Logger.info(opContext, LogConstants.RETRY_CHECK, currentRetryCount, task.getResult().getStatusCode(),
-                    translatedException == null ? null : translatedException.getMessage());
+            if (permit != null) {
+                permit.release(task.getResult());
+            }
 
-            task.setCurrentLocation(getNextLocation(task.getCurrentLocation(), task.getLocationMode()));
-            Logger.info(opContext, LogConstants.NEXT_LOCATION, task.getCurrentLocation(), task.getLocationMode());
+            if (state.router != null && connectionAcquired) {
+                recordLocationOutcome(state.router, request, task, responseLatencyInMs);
+            }
 
-            RetryContext retryContext = new RetryContext(currentRetryCount++, task.getResult(),
-                    task.getCurrentLocation(), task.getLocationMode());
+            task.getResult().setStopNanoTime(System.nanoTime());
+            opContext.setClientTimeInMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - state.startTime));
 
-            RetryInfo retryInfo = policy.evaluate(retryContext, opContext);
+            if (state.metrics != null && connectionAcquired) {
+                bytesReceived = getBytesReceived(request, task, startByteCount, bytesReceived, responseConsumed);
+                state.metrics.record((ServiceClient) client, request, task.getResult(), state.currentRetryCount > 0,
+                        bytesSent, bytesReceived);
+            }
 
-            if (retryInfo == null) {
-                // policy does not allow for retry
-                Logger.error(opContext, LogConstants.DO_NOT_RETRY_POLICY, translatedException == null ? null
-                        : translatedException.getMessage());
-                throw translatedException;
+            // 10. Fire RequestCompleted Event
+            if (task.isSent()) {
+                ExecutionEngine.fireRequestCompletedEvent(opContext, request, task.getResult());
             }
-            else if (Utility.validateMaxExecutionTimeout(task.getRequestOptions().getOperationExpiryTimeInMs(),
-                    retryInfo.getRetryInterval())) {
-                // maximum execution time would be exceeded by current time plus retry interval delay
-                TimeoutException timeoutException = new TimeoutException(SR.MAXIMUM_EXECUTION_TIMEOUT_EXCEPTION);
+        }
+
+        state.translatedException = translatedException;
+        return false;
+    }
+
+    /**
+     * Takes a permit from the concurrency limiter of the service client, if it has one, unless one was already taken
+     * for this attempt before it was handed to the executor. When waiting, it waits no longer than the maximum
+     * execution time of the operation allows.
+     * 
+     * @param wait
+     *            <code>true</code> to wait for a permit; <code>false</code> to return <code>null</code> at once if
+     *            none is available, which asynchronous attempts use so that they do not hold a thread of the executor.
+     * @return the permit, or <code>null</code> if the client does not limit the number of requests in flight or no
+     *         permit is available without waiting.
+     * @throws StorageException
+     *             if no permit became available before the operation expired or the thread was interrupted.
+     */
+    private static <CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> AdaptiveConcurrencyLimiter.Permit acquirePermit(
+            final ExecutionState<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> state, final boolean wait)
+            throws StorageException {
+        if (state.limiter == null) {
+            return null;
+        }
+
+        AdaptiveConcurrencyLimiter.Permit permit = state.reservedPermit;
+        if (permit != null) {
+            state.reservedPermit = null;
+            return permit;
+        }
+
+        final Long operationExpiryTime = state.task.getRequestOptions().getOperationExpiryTimeInMs();
+        final long timeoutInMs = operationExpiryTime == null ? Long.MAX_VALUE : operationExpiryTime
+                - new Date().getTime();
+
+        StorageException translatedException = null;
+        try {
+            permit = state.limiter.acquire(wait ? timeoutInMs : 0);
+            if (permit == null && (wait || timeoutInMs <= 0)) {
                 translatedException = new StorageException(StorageErrorCodeStrings.OPERATION_TIMED_OUT,
                         SR.MAXIMUM_EXECUTION_TIMEOUT_EXCEPTION, Constants.HeaderConstants.HTTP_UNUSED_306, null,
-                        timeoutException);
+                        new TimeoutException(SR.MAXIMUM_EXECUTION_TIMEOUT_EXCEPTION));
+            }
+        }
+        catch (final InterruptedException e) {
+            // Restore the interrupted status
+            Thread.currentThread().interrupt();
+            translatedException = StorageException.translateException(null, e, state.opContext);
+        }
 
-                task.initialize(opContext);
-                task.getResult().setException(translatedException);
+        if (translatedException != null) {
+            state.task.getResult().setException(translatedException);
+            Logger.error(state.opContext, LogConstants.UNRETRYABLE_EXCEPTION, translatedException.getClass()
+                    .getName(), translatedException.getMessage());
+            throw translatedException;
+        }
 
-                Logger.error(opContext, LogConstants.DO_NOT_RETRY_TIMEOUT, translatedException == null ? null
-                        : translatedException.getMessage());
+        return permit;
+    }
 
-                throw translatedException;
-            }
-            else {
-                // attempt to retry
-                task.setCurrentLocation(retryInfo.getTargetLocation());
-                task.setLocationMode(retryInfo.getUpdatedLocationMode());
-                Logger.info(opContext, LogConstants.RETRY_INFO, task.getCurrentLocation(), task.getLocationMode());
+    /**
+     * Evaluates the retry policy after a failed attempt and prepares the task for the next one.
+     * 
+     * @return the interval, in milliseconds, to wait before the next attempt.
+     * @throws StorageException
+     *             if the operation must not be retried.
+     */
+    private static <CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> int evaluateRetry(
+            final ExecutionState<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> state) throws StorageException {
+        final StorageRequest<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> task = state.task;
+        final OperationContext opContext = state.opContext;
+        StorageException translatedException = state.translatedException;
 
-                try {
-                    ExecutionEngine.fireRetryingEvent(opContext, task.getConnection(), task.getResult(), retryContext);
+        // Evaluate Retry Policy
+        Logger.info(opContext, LogConstants.RETRY_CHECK, state.currentRetryCount, task.getResult().getStatusCode(),
+                translatedException == null ? null : translatedException.getMessage());
 
-                    Logger.info(opContext, LogConstants.RETRY_DELAY, retryInfo.getRetryInterval());
-                    Thread.sleep(retryInfo.getRetryInterval());
-                }
-                catch (final InterruptedException e) {
-                    // Restore the interrupted status
-                    Thread.currentThread().interrupt();
-                }
-            }
+        task.setCurrentLocation(getNextLocation(task.getCurrentLocation(), task.getLocationMode()));
+        Logger.info(opContext, LogConstants.NEXT_LOCATION, task.getCurrentLocation(), task.getLocationMode());
+
+        RetryContext retryContext = new RetryContext(state.currentRetryCount++, task.getResult(),
+                task.getCurrentLocation(), task.getLocationMode());
+
+        RetryInfo retryInfo = state.policy.evaluate(retryContext, opContext);
+
+        if (retryInfo == null) {
+            // policy does not allow for retry
+            Logger.error(opContext, LogConstants.DO_NOT_RETRY_POLICY, translatedException == null ? null
+                    : translatedException.getMessage());
+            throw translatedException;
+        }
+        else if (Utility.validateMaxExecutionTimeout(task.getRequestOptions().getOperationExpiryTimeInMs(),
+                retryInfo.getRetryInterval())) {
+            // maximum execution time would be exceeded by current time plus retry interval delay
+            TimeoutException timeoutException = new TimeoutException(SR.MAXIMUM_EXECUTION_TIMEOUT_EXCEPTION);
+            translatedException = new StorageException(StorageErrorCodeStrings.OPERATION_TIMED_OUT,
+                    SR.MAXIMUM_EXECUTION_TIMEOUT_EXCEPTION, Constants.HeaderConstants.HTTP_UNUSED_306, null,
+                    timeoutException);
+
+            task.initialize(opContext);
+            task.getResult().setException(translatedException);
+
+            Logger.error(opContext, LogConstants.DO_NOT_RETRY_TIMEOUT, translatedException == null ? null
+                    : translatedException.getMessage());
+
+            throw translatedException;
+        }
+        else {
+            // attempt to retry
+            task.setCurrentLocation(retryInfo.getTargetLocation());
+            task.setLocationMode(retryInfo.getUpdatedLocationMode());
+            Logger.info(opContext, LogConstants.RETRY_INFO, task.getCurrentLocation(), task.getLocationMode());
+
+            ExecutionEngine.fireRetryingEvent(opContext, task.getConnection(), task.getResult(), retryContext);
+
+            Logger.info(opContext, LogConstants.RETRY_DELAY, retryInfo.getRetryInterval());
+            return retryInfo.getRetryInterval();
         }
     }
 
     private static <CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> HttpURLConnection setupStorageRequest(
             final CLIENT_TYPE client, final PARENT_TYPE parentObject,
             final StorageRequest<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> task, int currentRetryCount,
-            final OperationContext opContext) throws StorageException {
+            final LocationRouter router, final OperationContext opContext) throws StorageException {
         try {
 
             // reset result flags
@@ -373,20 +641,17 @@ public final class ExecutionEngine {
             // that location no matter what the retry policy says.
             task.validateLocation();
 
-            Logger.info(opContext, LogConstants.INIT_LOCATION, task.getCurrentLocation(), task.getLocationMode());
-
-            // 1. Build the request
-            HttpURLConnection request = task.buildRequest(client, parentObject, opContext);
+            // Route a read which may be served by either location to the location which currently serves it best
+            if (router != null && isRoutable(task)) {
+                task.setCurrentLocation(router.selectLocation(task.getLocationMode(), task.getCurrentLocation(),
+                        currentRetryCount > 0));
+                task.getResult().setTargetLocation(task.getCurrentLocation());
+            }
 
-            // 2. Add headers
-            task.setHeaders(request, parentObject, opContext);
+            Logger.info(opContext, LogConstants.INIT_LOCATION, task.getCurrentLocation(), task.getLocationMode());
 
-            // Add any other custom headers that users have set on the opContext
-            if (opContext.getUserHeaders() != null) {
-                for (final Entry<String, String> entry : opContext.getUserHeaders().entrySet()) {
-                    request.setRequestProperty(entry.getKey(), entry.getValue());
-                }
-            }
+            // 1-2. Build the request and add headers
+            HttpURLConnection request = buildRequestWithHeaders(client, parentObject, task, opContext);
 
             // 3. Fire sending request event
             ExecutionEngine.fireSendingRequestEvent(opContext, request, task.getResult());
@@ -408,6 +673,335 @@ public final class ExecutionEngine {
         }
     }
 
+    /**
+     * Builds the request for the current location of the task and adds its headers, including any custom headers that
+     * users have set on the opContext.
+     */
+    private static <CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> HttpURLConnection buildRequestWithHeaders(
+            final CLIENT_TYPE client, final PARENT_TYPE parentObject,
+            final StorageRequest<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> task, final OperationContext opContext)
+            throws Exception {
+        // 1. Build the request
+        HttpURLConnection request = task.buildRequest(client, parentObject, opContext);
+
+        // 2. Add headers
+        task.setHeaders(request, parentObject, opContext);
+
+        // Add any other custom headers that users have set on the opContext
+        if (opContext.getUserHeaders() != null) {
+            for (final Entry<String, String> entry : opContext.getUserHeaders().entrySet()) {
+                request.setRequestProperty(entry.getKey(), entry.getValue());
+            }
+        }
+
+        return request;
+    }
+
+    /**
+     * Gets whether the location of a request may be chosen by the location router: the request is a read which may be
+     * served by either location and its location mode allows both locations.
+     */
+    private static <CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> boolean isRoutable(
+            final StorageRequest<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> task) {
+        return task.getRequestLocationMode() == RequestLocationMode.PRIMARY_OR_SECONDARY
+                && (task.getLocationMode() == LocationMode.PRIMARY_THEN_SECONDARY
+                || task.getLocationMode() == LocationMode.SECONDARY_THEN_PRIMARY) && task.getStorageUri() != null
+                && task.getStorageUri().getPrimaryUri() != null && task.getStorageUri().getSecondaryUri() != null;
+    }
+
+    /**
+     * Records the outcome of a read against the location it was sent to. Writes are not recorded, as the time they
+     * take depends on the data they send. An attempt which failed for a reason other than a network error, such as a
+     * client timeout, says nothing about the location and is not recorded.
+     */
+    private static <CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> void recordLocationOutcome(final LocationRouter router,
+            final HttpURLConnection request, final StorageRequest<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> task,
+            final long responseLatencyInMs) {
+        final StorageLocation location = task.getCurrentLocation();
+        if (location == null || request == null || !isIdempotentRead(request)) {
+            return;
+        }
+
+        if (responseLatencyInMs >= 0) {
+            router.recordResponse(location, task.getResult().getStatusCode(), responseLatencyInMs);
+        }
+        else {
+            final Exception exception = task.getResult().getException();
+            if (exception != null && exception.getCause() instanceof IOException
+                    && !(exception.getCause().getCause() instanceof TimeoutException)) {
+                router.recordFailure(location);
+            }
+        }
+    }
+
+    /**
+     * Gets whether a request may be hedged: the client has a hedged read policy and the request is a read sent to the
+     * primary location that may also be served by the secondary location.
+     */
+    private static <CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> boolean isHedgeable(
+            final ExecutionState<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> state, final HttpURLConnection request) {
+        final StorageRequest<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> task = state.task;
+        if (state.hedgedReadPolicy == null || task.getSendStream() != null
+                || task.getRequestLocationMode() != RequestLocationMode.PRIMARY_OR_SECONDARY
+                || task.getLocationMode() != LocationMode.PRIMARY_THEN_SECONDARY
+                || task.getCurrentLocation() != StorageLocation.PRIMARY || task.getStorageUri() == null
+                || task.getStorageUri().getSecondaryUri() == null) {
+            return false;
+        }
+
+        return isIdempotentRead(request);
+    }
+
+    /**
+     * Gets whether a request is a read which may be sent again without side effects.
+     */
+    private static boolean isIdempotentRead(final HttpURLConnection request) {
+        final String method = request.getRequestMethod();
+        return Constants.HTTP_GET.equals(method) || Constants.HTTP_HEAD.equals(method);
+    }
+
+    /**
+     * Waits for the response headers of a read sent to the primary location. If they do not arrive within the hedge
+     * delay, the read is also sent to the secondary location and the first request to receive a response is used. The
+     * other request is disconnected and its connection released.
+     * 
+     * @return the request whose response should be processed.
+     * @throws Exception
+     *             if neither request received a response, or the thread was interrupted.
+     */
+    private static <CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> HttpURLConnection sendHedged(
+            final ExecutionState<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> state, final HttpURLConnection primary)
+            throws Exception {
+        final HedgedReadPolicy policy = state.hedgedReadPolicy;
+        final long startTime = System.nanoTime();
+        final CompletionService<HedgedResponse> responses = new ExecutorCompletionService<HedgedResponse>(
+                HEDGE_EXECUTOR);
+
+        final HedgedResponse primaryResponse = new HedgedResponse(primary, StorageLocation.PRIMARY, state.transport,
+                null);
+        responses.submit(primaryResponse);
+
+        HedgedResponse secondaryResponse = null;
+        HedgedResponse winner = null;
+        try {
+            final long hedgeDelayInMs = policy.getHedgeDelayInMs();
+            Future<HedgedResponse> first = responses.poll(hedgeDelayInMs, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                Logger.info(state.opContext, LogConstants.HEDGE_START, hedgeDelayInMs);
+                secondaryResponse = startHedge(state);
+                if (secondaryResponse != null) {
+                    responses.submit(secondaryResponse);
+                }
+
+                first = responses.take();
+            }
+
+            winner = first.get();
+            if (secondaryResponse != null) {
+                if (winner.failure != null) {
+                    // The first request to complete failed; fall back to the other one, and report the failure of
+                    // the primary location if both failed
+                    final HedgedResponse other = responses.take().get();
+                    winner = other.failure == null ? other : primaryResponse;
+                }
+
+                (winner == primaryResponse ? secondaryResponse : primaryResponse).abandon();
+                policy.recordHedge(winner == secondaryResponse);
+                Logger.info(state.opContext, LogConstants.HEDGE_RESPONSE, winner.location);
+            }
+        }
+        catch (final InterruptedException e) {
+            primary.disconnect();
+            if (secondaryResponse != null) {
+                secondaryResponse.abandon();
+            }
+
+            throw e;
+        }
+        catch (final ExecutionException e) {
+            // HedgedResponse captures the IOException of the request, so only an unexpected error gets here
+            if (secondaryResponse != null) {
+                secondaryResponse.abandon();
+            }
+
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+
+            throw (Exception) e.getCause();
+        }
+
+        if (winner.failure != null) {
+            throw winner.failure;
+        }
+
+        if (winner == primaryResponse) {
+            // the hedge delay tracks the primary location, so a response from the secondary is no sample of it
+            policy.recordPrimaryLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        }
+        else {
+            // The request to the secondary location now stands for the attempt
+            secondaryResponse.releasePermit();
+            state.task.setCurrentLocation(StorageLocation.SECONDARY);
+            state.task.getResult().setTargetLocation(StorageLocation.SECONDARY);
+            state.task.setConnection(secondaryResponse.connection);
+        }
+
+        return winner.connection;
+    }
+
+    /**
+     * Builds, signs and starts sending a duplicate of the current read to the secondary location.
+     * 
+     * @return the duplicate request, or <code>null</code> if it could not be sent, in which case the read is not
+     *         hedged.
+     */
+    private static <CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> HedgedResponse startHedge(
+            final ExecutionState<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> state) throws InterruptedException {
+        final StorageRequest<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> task = state.task;
+        final OperationContext opContext = state.opContext;
+
+        // A hedge adds load, so it is only sent when the concurrency limit allows another request
+        AdaptiveConcurrencyLimiter.Permit permit = null;
+        if (state.limiter != null) {
+            permit = state.limiter.acquire(0);
+            if (permit == null) {
+                return null;
+            }
+        }
+
+        try {
+            HttpURLConnection secondary = null;
+            task.setCurrentLocation(StorageLocation.SECONDARY);
+            try {
+                secondary = buildRequestWithHeaders(state.client, state.parentObject, task, opContext);
+                ExecutionEngine.fireSendingRequestEvent(opContext, secondary, task.getResult());
+                task.signRequest(secondary, state.client, opContext);
+            }
+            finally {
+                task.setCurrentLocation(StorageLocation.PRIMARY);
+            }
+
+            state.transport.beforeSend(secondary, opContext);
+            return new HedgedResponse(secondary, StorageLocation.SECONDARY, state.transport, permit);
+        }
+        catch (final Exception e) {
+            Logger.warn(opContext, LogConstants.HEDGE_FAILED, e.getClass().getName(), e.getMessage());
+            if (permit != null) {
+                permit.release(null);
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Gets the concurrency limiter configured on the service client, or <code>null</code> if the client does not have
+     * one.
+     */
+    private static <CLIENT_TYPE> AdaptiveConcurrencyLimiter getConcurrencyLimiter(final CLIENT_TYPE client) {
+        if (client instanceof ServiceClient) {
+            return ((ServiceClient) client).getConcurrencyLimiter();
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the hedged read policy configured on the service client, or <code>null</code> if the client does not have
+     * one.
+     */
+    private static <CLIENT_TYPE> HedgedReadPolicy getHedgedReadPolicy(final CLIENT_TYPE client) {
+        if (client instanceof ServiceClient) {
+            return ((ServiceClient) client).getHedgedReadPolicy();
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the metrics registry configured on the service client, or <code>null</code> if the client does not have one.
+     */
+    private static <CLIENT_TYPE> ClientMetrics getClientMetrics(final CLIENT_TYPE client) {
+        if (client instanceof ServiceClient) {
+            return ((ServiceClient) client).getClientMetrics();
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the number of response body bytes read by an attempt. Downloads count the bytes they read; a response which
+     * was read to its end, including by a parser, was read in full. Otherwise only the bytes counted by the download
+     * and by draining the response are known to have been read.
+     */
+    private static <CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> long getBytesReceived(final HttpURLConnection request,
+            final StorageRequest<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> task, final long startByteCount,
+            final long bytesDrained, final boolean responseConsumed) {
+        final long bytesRead = Math.max(0, task.getCurrentRequestByteCount() - startByteCount) + bytesDrained;
+        if (responseConsumed) {
+            return Math.max(bytesRead, getResponseContentLength(request));
+        }
+
+        return bytesRead;
+    }
+
+    /**
+     * Gets the number of body bytes declared by a response, or 0 if the response has no body or does not declare its
+     * length.
+     */
+    private static long getResponseContentLength(final HttpURLConnection request) {
+        if (Constants.HTTP_HEAD.equals(request.getRequestMethod())) {
+            // The Content-Length of a HEAD response describes the resource, not the response
+            return 0;
+        }
+
+        final String contentLength = request.getHeaderField(Constants.HeaderConstants.CONTENT_LENGTH);
+        try {
+            return contentLength == null ? 0 : Long.parseLong(contentLength);
+        }
+        catch (final NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Gets the location router configured on the service client, or <code>null</code> if the client does not have
+     * one.
+     */
+    private static <CLIENT_TYPE> LocationRouter getLocationRouter(final CLIENT_TYPE client) {
+        if (client instanceof ServiceClient) {
+            return ((ServiceClient) client).getLocationRouter();
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the executor configured on the service client, or the shared async pool if the client does not have one.
+     */
+    private static <CLIENT_TYPE> Executor getAsyncExecutor(final CLIENT_TYPE client) {
+        if (client instanceof ServiceClient) {
+            final Executor executor = ((ServiceClient) client).getAsyncExecutor();
+            if (executor != null) {
+                return executor;
+            }
+        }
+
+        return ASYNC_EXECUTOR;
+    }
+
+    /**
+     * Gets the transport configured on the service client, or the default transport if the client does not have one.
+     */
+    private static <CLIENT_TYPE> HttpTransport getHttpTransport(final CLIENT_TYPE client) {
+        if (client instanceof ServiceClient) {
+            return ((ServiceClient) client).getHttpTransport();
+        }
+
+        return DefaultHttpTransport.INSTANCE;
+    }
+
     private static StorageLocation getNextLocation(StorageLocation lastLocation, LocationMode locationMode) {
         switch (locationMode) {
             case PRIMARY_ONLY:
@@ -476,4 +1070,239 @@ public final class ExecutionEngine {
             OperationContext.getGlobalRetryingEventHandler().fireEvent(event);
         }
     }
+
+    /**
+     * Holds the state of an operation that is carried from one attempt to the next.
+     */
+    private static final class ExecutionState<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> {
+        private final CLIENT_TYPE client;
+        private final PARENT_TYPE parentObject;
+        private final StorageRequest<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> task;
+        private final RetryPolicy policy;
+        private final OperationContext opContext;
+        private final HttpTransport transport;
+        private final AdaptiveConcurrencyLimiter limiter;
+        private final HedgedReadPolicy hedgedReadPolicy;
+        private final LocationRouter router;
+        private final ClientMetrics metrics;
+        private final Executor executor;
+        private final long startTime = System.nanoTime();
+        private int currentRetryCount = 0;
+        private StorageException translatedException = null;
+        private HttpURLConnection request = null;
+        private RESULT_TYPE result = null;
+        private AdaptiveConcurrencyLimiter.Permit reservedPermit = null;
+
+        private ExecutionState(final CLIENT_TYPE client, final PARENT_TYPE parentObject,
+                final StorageRequest<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> task, final RetryPolicy policy,
+                final OperationContext opContext) {
+            this.client = client;
+            this.parentObject = parentObject;
+            this.task = task;
+            this.policy = policy;
+            this.opContext = opContext;
+            this.transport = getHttpTransport(client);
+            this.limiter = getConcurrencyLimiter(client);
+            this.hedgedReadPolicy = getHedgedReadPolicy(client);
+            this.router = getLocationRouter(client);
+            this.metrics = getClientMetrics(client);
+            this.executor = getAsyncExecutor(client);
+        }
+    }
+
+    /**
+     * Waits for the response headers of one of the requests of a hedged read. Whichever of the request completing and
+     * the request being abandoned happens last releases its connection, so that an abandoned request is cleaned up
+     * without waiting for it.
+     */
+    private static final class HedgedResponse implements Callable<HedgedResponse> {
+        private final HttpURLConnection connection;
+        private final StorageLocation location;
+        private final HttpTransport transport;
+        private AdaptiveConcurrencyLimiter.Permit permit;
+        private final AtomicBoolean completedOrAbandoned = new AtomicBoolean();
+        private volatile IOException failure;
+        private volatile boolean responseReceived;
+
+        private HedgedResponse(final HttpURLConnection connection, final StorageLocation location,
+                final HttpTransport transport, final AdaptiveConcurrencyLimiter.Permit permit) {
+            this.connection = connection;
+            this.location = location;
+            this.transport = transport;
+            this.permit = permit;
+        }
+
+        @Override
+        public HedgedResponse call() {
+            try {
+                this.connection.getResponseCode();
+                this.responseReceived = true;
+            }
+            catch (final IOException e) {
+                this.failure = e;
+            }
+            finally {
+                if (!this.completedOrAbandoned.compareAndSet(false, true)) {
+                    this.release();
+                }
+            }
+
+            return this;
+        }
+
+        /**
+         * Cancels the request and releases its connection once it is no longer in use.
+         */
+        private void abandon() {
+            this.connection.disconnect();
+            if (!this.completedOrAbandoned.compareAndSet(false, true)) {
+                this.release();
+            }
+        }
+
+        private void release() {
+            this.transport.afterResponse(this.connection, this.responseReceived, false /* responseConsumed */);
+            this.releasePermit();
+        }
+
+        private synchronized void releasePermit() {
+            if (this.permit != null) {
+                this.permit.release(null);
+                this.permit = null;
+            }
+        }
+    }
+
+    /**
+     * Runs one attempt of an asynchronous operation and either completes the future or schedules the next attempt.
+     */
+    private static final class AsyncAttempt<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> implements Runnable {
+        private final ExecutionState<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> state;
+        private final AsyncResult<RESULT_TYPE> future;
+
+        private AsyncAttempt(final ExecutionState<CLIENT_TYPE, PARENT_TYPE, RESULT_TYPE> state,
+                final AsyncResult<RESULT_TYPE> future) {
+            this.state = state;
+            this.future = future;
+        }
+
+        /**
+         * Submits the attempt to the executor of the operation, failing the future if the executor rejects it. If the
+         * client limits the number of requests in flight, the permit is taken first, and while none is available the
+         * attempt waits on the retry timer rather than on a thread of the executor.
+         */
+        private void submit() {
+            if (this.future.isCancelled()) {
+                return;
+            }
+
+            try {
+                this.state.reservedPermit = acquirePermit(this.state, false /* wait */);
+            }
+            catch (final StorageException e) {
+                this.future.fail(e);
+                return;
+            }
+
+            if (this.state.limiter != null && this.state.reservedPermit == null) {
+                RETRY_TIMER.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        AsyncAttempt.this.submit();
+                    }
+                }, PERMIT_POLL_INTERVAL_IN_MS, TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            try {
+                this.state.executor.execute(this);
+            }
+            catch (final RejectedExecutionException e) {
+                this.releaseReservedPermit();
+                this.future.fail(e);
+            }
+        }
+
+        private void releaseReservedPermit() {
+            if (this.state.reservedPermit != null) {
+                this.state.reservedPermit.release(null);
+                this.state.reservedPermit = null;
+            }
+        }
+
+        @Override
+        public void run() {
+            if (this.future.isCancelled()) {
+                this.releaseReservedPermit();
+                return;
+            }
+
+            try {
+                if (executeAttempt(this.state)) {
+                    this.future.complete(this.state.result);
+                    return;
+                }
+
+                final int retryInterval = evaluateRetry(this.state);
+                RETRY_TIMER.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        AsyncAttempt.this.submit();
+                    }
+                }, retryInterval, TimeUnit.MILLISECONDS);
+            }
+            catch (final Throwable t) {
+                this.future.fail(t);
+            }
+        }
+    }
+
+    /**
+     * A future which is completed by the attempts of an asynchronous operation rather than by running a task itself.
+     */
+    private static final class AsyncResult<RESULT_TYPE> extends FutureTask<RESULT_TYPE> {
+        private AsyncResult() {
+            super(new Callable<RESULT_TYPE>() {
+                @Override
+                public RESULT_TYPE call() {
+                    throw new UnsupportedOperationException();
+                }
+            });
+        }
+
+        private void complete(final RESULT_TYPE result) {
+            this.set(result);
+        }
+
+        private void fail(final Throwable t) {
+            this.setException(t);
+        }
+
+        /**
+         * Does nothing; the future is completed by {@link AsyncAttempt}.
+         */
+        @Override
+        public void run() {
+            // no-op
+        }
+    }
+
+    /**
+     * Creates named daemon threads so that the shared async pool never keeps the JVM alive.
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final String namePrefix;
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        private DaemonThreadFactory(final String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, this.namePrefix + this.threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
@@ -0,0 +1,132 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * RESERVED FOR INTERNAL USE. Represents a stream over a range of a file which reads the file with positional reads of
+ * a shared <code>FileChannel</code>, so that several ranges of one file can be read at once without buffering them.
+ * The stream supports mark and reset without a read limit; resetting it reads the range from the file again.
+ * Closing the stream does not close the channel.
+ */
+public final class FileChannelInputStream extends InputStream {
+
+    /**
+     * Holds the channel the range is read from.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Holds the position in the file after the end of the range.
+     */
+    private final long endPosition;
+
+    /**
+     * Holds the position in the file of the next byte to read.
+     */
+    private long position;
+
+    /**
+     * Holds the position in the file the stream returns to when reset.
+     */
+    private long markPosition;
+
+    /**
+     * Creates an instance of the <code>FileChannelInputStream</code> class over the specified range of a file.
+     *
+     * @param channel
+     *            A <code>java.nio.channels.FileChannel</code> object which represents the file to read.
+     * @param offset
+     *            A <code>long</code> which represents the position in the file at which the range starts.
+     * @param length
+     *            A <code>long</code> which represents the length, in bytes, of the range.
+     */
+    public FileChannelInputStream(final FileChannel channel, final long offset, final long length) {
+        Utility.assertNotNull("channel", channel);
+        Utility.assertGreaterThanOrEqual("offset", offset, 0);
+        Utility.assertGreaterThanOrEqual("length", length, 0);
+
+        this.channel = channel;
+        this.position = offset;
+        this.markPosition = offset;
+        this.endPosition = offset + length;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(this.endPosition - this.position, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized void mark(final int readlimit) {
+        this.markPosition = this.position;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] data = new byte[1];
+        return this.read(data, 0, 1) == -1 ? -1 : data[0] & 0xFF;
+    }
+
+    @Override
+    public synchronized int read(final byte[] b, final int off, final int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (this.position >= this.endPosition) {
+            return -1;
+        }
+
+        if (len == 0) {
+            return 0;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(b, off, (int) Math.min(len, this.endPosition - this.position));
+        while (buffer.hasRemaining()) {
+            final int count = this.channel.read(buffer, this.position);
+            if (count < 0) {
+                // The file was truncated while it was being read
+                break;
+            }
+
+            this.position += count;
+        }
+
+        final int total = buffer.position() - off;
+        return total == 0 ? -1 : total;
+    }
+
+    @Override
+    public synchronized void reset() {
+        this.position = this.markPosition;
+    }
+
+    @Override
+    public synchronized long skip(final long n) {
+        final long skipped = Math.max(0, Math.min(n, this.endPosition - this.position));
+        this.position += skipped;
+        return skipped;
+    }
+}
@@ -23,6 +23,9 @@ public class LogConstants {
     public static final String DO_NOT_RETRY_POLICY = "Retry policy did not allow for a retry. Failing. Error Message = '%s'.";
     public static final String DO_NOT_RETRY_TIMEOUT = "Operation cannot be retried because maximum execution timeout has been reached. Failing. Inner error Message = '%s'.";
     public static final String GET_RESPONSE = "Waiting for response.";
+    public static final String HEDGE_FAILED = "The read could not be hedged against the secondary location. Class = '%s', Message = '%s'.";
+    public static final String HEDGE_RESPONSE = "The response from location '%s' was used after the read was hedged.";
+    public static final String HEDGE_START = "No response from the primary location after '%d'ms. Sending the read to the secondary location.";
     public static final String INIT_LOCATION = "Starting operation with location '%s' per location mode '%s'.";
     public static final String NEXT_LOCATION = "The next location has been set to '%s', per location mode '%s'.";
     public static final String POST_PROCESS = "Processing response body.";
@@ -28,11 +28,17 @@ public class SR {
     public static final String BLOB_ENDPOINT_NOT_CONFIGURED = "No blob endpoint configured.";
     public static final String BLOB_HASH_MISMATCH = "Blob hash mismatch (integrity check failed), Expected value is %s, retrieved %s.";
     public static final String BLOB_MD5_NOT_SUPPORTED_FOR_PAGE_BLOBS = "Blob level MD5 is not supported for page blobs.";
+    public static final String BLOB_TOO_LARGE_FOR_BLOCKS = "The data is larger than the maximum number of blocks of the maximum block size.";
     public static final String BLOB_TYPE_NOT_DEFINED = "The blob type is not defined.  Allowed types are BlobType.BLOCK_BLOB and BlobType.Page_BLOB.";
+    public static final String BLOCK_STAGING_PART_CONFLICT = "Part %s of the block staging session was completed more than once with a different number of blocks.";
+    public static final String BLOCK_STAGING_PART_INCOMPLETE = "Part %s of the block staging session has not been completed.";
+    public static final String BLOCK_UPLOAD_JOURNAL_NOT_OPEN = "The block upload journal is not open.";
     public static final String CANNOT_CREATE_SAS_FOR_GIVEN_CREDENTIALS = "Cannot create Shared Access Signature as the credentials does not have account name information. Please check that the credentials provided support creating Shared Access Signature.";
     public static final String CANNOT_CREATE_SAS_FOR_SNAPSHOTS = "Cannot create Shared Access Signature via references to blob snapshots. Please perform the given operation on the root blob instead.";
     public static final String CANNOT_CREATE_SAS_WITHOUT_ACCOUNT_KEY = "Cannot create Shared Access Signature unless the Account Key credentials are used by the ServiceClient.";
+    public static final String CONNECTION_POOL_EXHAUSTED = "No connection to '%s' became available within %d ms. All %d connections to this endpoint are in use.";
     public static final String CONTAINER = "container";
+    public static final String CONTENT_CACHE_DIRECTORY_INVALID = "The content cache directory %s does not exist and could not be created, or could not be read.";
     public static final String CONTENT_LENGTH_MISMATCH = "An incorrect number of bytes was read from the connection. The connection may have been closed.";
     public static final String CREATING_NETWORK_STREAM = "Creating a NetworkInputStream and expecting to read %s bytes.";
     public static final String CREDENTIALS_CANNOT_SIGN_REQUEST = "CloudBlobClient, CloudQueueClient and CloudTableClient require credentials that can sign a request.";
@@ -67,6 +73,7 @@ public class SR {
     public static final String INVALID_ACL_ACCESS_TYPE = "Invalid acl public access type returned '%s'. Expected blob or container.";
     public static final String INVALID_BLOB_TYPE = "Incorrect Blob type, please use the correct Blob type to access a blob on the server. Expected %s, actual %s.";
     public static final String INVALID_BLOCK_ID = "Invalid blockID, blockID must be a valid Base64 String.";
+    public static final String INVALID_BLOCK_STAGING_TOKEN = "The block staging session token is invalid.";
     public static final String INVALID_CONDITIONAL_HEADERS = "The conditionals specified for this operation did not match server.";
     public static final String INVALID_CONNECTION_STRING = "Invalid connection string.";
     public static final String INVALID_CONNECTION_STRING_DEV_STORE_NOT_TRUE = "Invalid connection string, the UseDevelopmentStorage key must always be paired with 'true'.  Remove the flag entirely otherwise.";
@@ -151,6 +158,7 @@ public class SR {
     public static final String STREAM_LENGTH_GREATER_THAN_4MB = "Invalid stream length, length must be less than or equal to 4 MB in size.";
     public static final String STREAM_LENGTH_NEGATIVE = "Invalid stream length, specify -1 for unknown length stream, or a positive number of bytes.";
     public static final String STRING_NOT_VALID = "The String is not a valid Base64-encoded string.";
+    public static final String SYNC_BLOCK_ID_LENGTH_CONFLICT = "The blob has uncommitted blocks whose IDs are not %s characters long. Blocks cannot be synchronized to the blob until its uncommitted blocks are committed or discarded.";
     public static final String TABLE = "table";
     public static final String TABLE_ENDPOINT_NOT_CONFIGURED = "No table endpoint configured.";
     public static final String TABLE_OBJECT_RELATIVE_URIS_NOT_SUPPORTED = "Table Object relative URIs not supported.";
@@ -30,12 +30,7 @@ import com.microsoft.azure.storage.StorageException;
 class TableLiteCanonicalizer extends Canonicalizer {
 
     /**
-     * The expected length for the canonicalized string when SharedKeyLite is used to sign table requests.
-     */
-    private static final int ExpectedTableLiteCanonicalizedStringLength = 150;
-
-    /**
-     * Constructs a canonicalized string for signing a request.
+     * Writes a canonicalized string for signing a request.
      * 
      * @param conn
      *            the HttpURLConnection to canonicalize
@@ -43,11 +38,13 @@ class TableLiteCanonicalizer extends Canonicalizer {
      *            the account name associated with the request
      * @param contentLength
      *            the length of the content written to the outputstream in bytes, -1 if unknown
-     * @return a canonicalized string.
+     * @param writer
+     *            the writer to write the canonicalized string to.
      * @throws StorageException
      */
     @Override
-    protected String canonicalize(final HttpURLConnection conn, final String accountName, final Long contentLength) throws StorageException {
+    protected void canonicalize(final HttpURLConnection conn, final String accountName, final Long contentLength,
+            final CanonicalizedStringWriter writer) throws StorageException {
         if (contentLength < -1) {
             throw new InvalidParameterException(SR.INVALID_CONTENT_LENGTH);
         }
@@ -56,10 +53,8 @@ class TableLiteCanonicalizer extends Canonicalizer {
         if (Utility.isNullOrEmpty(dateString)) {
             throw new IllegalArgumentException(SR.MISSING_MANDATORY_DATE_HEADER);
         }
-        final StringBuilder canonicalizedString = new StringBuilder(ExpectedTableLiteCanonicalizedStringLength);
-        canonicalizedString.append(dateString);
-        appendCanonicalizedElement(canonicalizedString, getCanonicalizedResourceLite(conn.getURL(), accountName));
 
-        return canonicalizedString.toString();
+        writer.append(dateString).append('\n');
+        appendCanonicalizedResourceLite(conn.getURL(), accountName, writer);
     }
 }
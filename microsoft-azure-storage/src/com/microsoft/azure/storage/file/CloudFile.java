@@ -25,6 +25,10 @@ import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
@@ -43,6 +47,8 @@ import com.microsoft.azure.storage.StorageException;
 import com.microsoft.azure.storage.StorageLocation;
 import com.microsoft.azure.storage.StorageUri;
 import com.microsoft.azure.storage.core.Base64;
+import com.microsoft.azure.storage.core.ByteBufferInputStream;
+import com.microsoft.azure.storage.core.ByteBufferOutputStream;
 import com.microsoft.azure.storage.core.ExecutionEngine;
 import com.microsoft.azure.storage.core.Logger;
 import com.microsoft.azure.storage.core.NetworkInputStream;
@@ -540,6 +546,50 @@ public class CloudFile implements ListFileItem {
                 .getRetryPolicyFactory(), opContext);
     }
 
+    /**
+     * Downloads the contents of a file to a channel.
+     *
+     * @param targetChannel
+     *            A <code>java.nio.channels.WritableByteChannel</code> object that represents the target channel, which
+     *            must be in blocking mode.
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public final void download(final WritableByteChannel targetChannel) throws StorageException {
+        this.download(targetChannel, null /* accessCondition */, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Downloads the contents of a file to a channel using the specified request options and operation context.
+     * <p>
+     * This is a convenience overload of
+     * {@link #download(OutputStream, AccessCondition, FileRequestOptions, OperationContext)} which writes to the
+     * channel through <code>Channels.newOutputStream</code>; it does not avoid any copy of the data.
+     *
+     * @param targetChannel
+     *            A <code>java.nio.channels.WritableByteChannel</code> object that represents the target channel, which
+     *            must be in blocking mode.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the file.
+     * @param options
+     *            A {@link FileRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudFileClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public final void download(final WritableByteChannel targetChannel, final AccessCondition accessCondition,
+            FileRequestOptions options, OperationContext opContext) throws StorageException {
+        Utility.assertNotNull("targetChannel", targetChannel);
+        this.download(Channels.newOutputStream(targetChannel), accessCondition, options, opContext);
+    }
+
     /**
      * Downloads the contents of a file to a stream.
      * 
@@ -640,6 +690,38 @@ public class CloudFile implements ListFileItem {
                 opContext);
     }
 
+    /**
+     * Downloads a range of bytes from the file to the given byte buffer, without updating the properties and metadata
+     * of the file from the response, so that ranges can be downloaded in parallel. The options must already have their
+     * defaults applied.
+     * 
+     * @param fileOffset
+     *            A <code>long</code> which represents the offset within the file to begin downloading.
+     * @param length
+     *            An <code>int</code> which represents the number of bytes to read.
+     * @param buffer
+     *            A <code>byte</code> array which represents the buffer to write to, from its start.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the file.
+     * @param options
+     *            A {@link FileRequestOptions} object that specifies any additional options for the request.
+     * @param opContext
+     *            An {@link OperationContext} object used to track the execution of the operation.
+     * 
+     * @return An <code>int</code> which represents the number of bytes downloaded.
+     * 
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    int downloadRangeDetached(final long fileOffset, final int length, final byte[] buffer,
+            final AccessCondition accessCondition, final FileRequestOptions options, final OperationContext opContext)
+            throws StorageException {
+        return ExecutionEngine.executeWithRetry(this.fileServiceClient, this, this.downloadToByteArrayImpl(fileOffset,
+                (long) length, buffer, 0, accessCondition, options, opContext, false /* updateAttributes */),
+                options.getRetryPolicyFactory(), opContext);
+    }
+
     /**
      * Downloads a range of bytes from the file to the given byte buffer.
      * 
@@ -774,6 +856,59 @@ public class CloudFile implements ListFileItem {
                 options.getRetryPolicyFactory(), opContext);
     }
 
+    /**
+     * Downloads the contents of the file to the given byte buffer, starting at its position.
+     *
+     * @param buffer
+     *            A <code>java.nio.ByteBuffer</code> object which represents the buffer to which the file bytes are
+     *            downloaded. Its position is advanced past the downloaded bytes.
+     *
+     * @return An <code>int</code> which represents the number of bytes downloaded.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public final int downloadToByteBuffer(final ByteBuffer buffer) throws StorageException {
+        return this.downloadToByteBuffer(buffer, null /* accessCondition */, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Downloads the contents of the file to the given byte buffer, starting at its position, using the specified
+     * request options and operation context. The data is written straight into the buffer, whether it is a heap or a
+     * direct buffer. If the file is larger than the remaining bytes of the buffer, the download fails with a
+     * <code>java.nio.BufferOverflowException</code> as its cause, and the buffer holds the bytes downloaded until
+     * then.
+     *
+     * @param buffer
+     *            A <code>java.nio.ByteBuffer</code> object which represents the buffer to which the file bytes are
+     *            downloaded. Its position is advanced past the downloaded bytes.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the file.
+     * @param options
+     *            A {@link FileRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudFileClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @return An <code>int</code> which represents the number of bytes downloaded.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public final int downloadToByteBuffer(final ByteBuffer buffer, final AccessCondition accessCondition,
+            FileRequestOptions options, OperationContext opContext) throws StorageException {
+        Utility.assertNotNull("buffer", buffer);
+
+        final int startPosition = buffer.position();
+        this.download(new ByteBufferOutputStream(buffer), accessCondition, options, opContext);
+        return buffer.position() - startPosition;
+    }
+
     /**
      * Downloads a file.
      * 
@@ -989,6 +1124,13 @@ public class CloudFile implements ListFileItem {
     private StorageRequest<CloudFileClient, CloudFile, Integer> downloadToByteArrayImpl(final Long fileOffset,
             final Long length, final byte[] buffer, final int bufferOffset, final AccessCondition accessCondition,
             final FileRequestOptions options, OperationContext opContext) {
+        return this.downloadToByteArrayImpl(fileOffset, length, buffer, bufferOffset, accessCondition, options,
+                opContext, true /* updateAttributes */);
+    }
+
+    private StorageRequest<CloudFileClient, CloudFile, Integer> downloadToByteArrayImpl(final Long fileOffset,
+            final Long length, final byte[] buffer, final int bufferOffset, final AccessCondition accessCondition,
+            final FileRequestOptions options, OperationContext opContext, final boolean updateAttributes) {
         final long startingOffset = fileOffset == null ? 0 : fileOffset;
         final boolean isRangeGet = fileOffset != null;
         final StorageRequest<CloudFileClient, CloudFile, Integer> getRequest = new StorageRequest<CloudFileClient, CloudFile, Integer>(
@@ -1028,7 +1170,8 @@ public class CloudFile implements ListFileItem {
             @Override
             public Integer preProcessResponse(CloudFile file, CloudFileClient client, OperationContext context)
                     throws Exception {
-                return preProcessDownloadResponse(this, options, client, file, context, isRangeGet);
+                return preProcessDownloadResponse(this, options, client, file, context, isRangeGet,
+                        updateAttributes);
             }
 
             @Override
@@ -1176,7 +1319,7 @@ public class CloudFile implements ListFileItem {
             @Override
             public Integer preProcessResponse(CloudFile file, CloudFileClient client, OperationContext context)
                     throws Exception {
-                return preProcessDownloadResponse(this, options, client, file, context, isRangeGet);
+                return preProcessDownloadResponse(this, options, client, file, context, isRangeGet, true);
             }
 
             @Override
@@ -1238,7 +1381,8 @@ public class CloudFile implements ListFileItem {
 
     private Integer preProcessDownloadResponse(final StorageRequest<CloudFileClient, CloudFile, Integer> request,
             final FileRequestOptions options, final CloudFileClient client, final CloudFile file,
-            final OperationContext context, final boolean isRangeGet) throws StorageException {
+            final OperationContext context, final boolean isRangeGet, final boolean updateAttributes)
+            throws StorageException {
         if (request.getResult().getStatusCode() != HttpURLConnection.HTTP_PARTIAL
                 && request.getResult().getStatusCode() != HttpURLConnection.HTTP_OK) {
             request.setNonExceptionedRetryableFailure(true);
@@ -1265,14 +1409,16 @@ public class CloudFile implements ListFileItem {
                         Constants.HeaderConstants.HTTP_UNUSED_306, null, null);
             }
 
-            file.properties = retrievedAttributes.getProperties();
-            file.metadata = retrievedAttributes.getMetadata();
             request.setContentMD5(retrievedAttributes.getProperties().getContentMD5());
-            file.properties.setContentMD5(originalContentMD5);
-            request.setLockedETag(file.properties.getEtag());
+            request.setLockedETag(retrievedAttributes.getProperties().getEtag());
+            if (updateAttributes) {
+                file.properties = retrievedAttributes.getProperties();
+                file.metadata = retrievedAttributes.getMetadata();
+                file.properties.setContentMD5(originalContentMD5);
+            }
             request.setArePropertiesPopulated(true);
         }
-        else {
+        else if (updateAttributes) {
             if (request.getLockedETag() != null) {
                 if (!request.getLockedETag().equals(file.properties.getEtag())) {
                     throw new StorageException(StorageErrorCode.CONDITION_FAILED.toString(),
@@ -1531,6 +1677,97 @@ public class CloudFile implements ListFileItem {
         return new FileInputStream(this, accessCondition, options, opContext);
     }
 
+    /**
+     * Opens a channel to read the file at any position, through a cache of the most recently used blocks.
+     * <p>
+     * Use {@link CloudFileClient#setStreamMinimumReadSizeInBytes} to configure the block size.
+     *
+     * @return A {@link FileReadChannel} object that represents the channel to use for reading from the file.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public final FileReadChannel openReadChannel() throws StorageException {
+        return this.openReadChannel(null /* accessCondition */, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Opens a channel to read the file at any position, through a cache of the most recently used blocks, using the
+     * specified request options and operation context. The attributes of the file are downloaded, and the reads of
+     * the channel are conditional on its ETag, so that they fail rather than mix the data of two versions of the file.
+     * <p>
+     * Use {@link CloudFileClient#setStreamMinimumReadSizeInBytes} to configure the block size.
+     *
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the file.
+     * @param options
+     *            A {@link FileRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudFileClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @return A {@link FileReadChannel} object that represents the channel to use for reading from the file.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public final FileReadChannel openReadChannel(final AccessCondition accessCondition, FileRequestOptions options,
+            OperationContext opContext) throws StorageException {
+        return this.openReadChannel(Constants.DEFAULT_READ_CHANNEL_CACHED_BLOCKS, accessCondition, options,
+                opContext);
+    }
+
+    /**
+     * Opens a channel to read the file at any position, through a cache of up to the specified number of the most
+     * recently used blocks, using the specified request options and operation context. The attributes of the file
+     * are downloaded, and the reads of the channel are conditional on its ETag, so that they fail rather than mix the
+     * data of two versions of the file.
+     * <p>
+     * Use {@link CloudFileClient#setStreamMinimumReadSizeInBytes} to configure the block size.
+     *
+     * @param maxCachedBlocks
+     *            An <code>int</code> which represents the maximum number of blocks held in the cache, which bounds the
+     *            memory of the channel to this many times the block size.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the file.
+     * @param options
+     *            A {@link FileRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudFileClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @return A {@link FileReadChannel} object that represents the channel to use for reading from the file.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     */
+    @DoesServiceRequest
+    public final FileReadChannel openReadChannel(final int maxCachedBlocks, final AccessCondition accessCondition,
+            FileRequestOptions options, OperationContext opContext) throws StorageException {
+        Utility.assertGreaterThanOrEqual("maxCachedBlocks", maxCachedBlocks, 1);
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        options = FileRequestOptions.applyDefaults(options, this.fileServiceClient);
+
+        if (options.getUseTransactionalContentMD5() && this.streamMinimumReadSizeInBytes > 4 * Constants.MB) {
+            throw new IllegalArgumentException(SR.INVALID_RANGE_CONTENT_MD5_HEADER);
+        }
+
+        this.downloadAttributes(accessCondition, options, opContext);
+
+        return new FileReadChannel(this, maxCachedBlocks, accessCondition, options, opContext);
+    }
+
     /**
      * Opens an output stream object to write data to the file. The file must already exist.
      * 
@@ -1719,6 +1956,113 @@ public class CloudFile implements ListFileItem {
         inputStream.close();
     }
 
+    /**
+     * Uploads a file from the remaining bytes of a byte buffer.
+     *
+     * @param sourceBuffer
+     *            A <code>java.nio.ByteBuffer</code> object which holds the data to write to the file between its
+     *            position and its limit. Its position is advanced to its limit once the data is uploaded.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    @DoesServiceRequest
+    public void upload(final ByteBuffer sourceBuffer) throws StorageException, IOException {
+        this.upload(sourceBuffer, null /* accessCondition */, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Uploads a file from the remaining bytes of a byte buffer, using the specified lease ID, request options, and
+     * operation context.
+     * <p>
+     * Unlike the byte buffer uploads of block and page blobs, this is a convenience overload of
+     * {@link #upload(InputStream, long, AccessCondition, FileRequestOptions, OperationContext)}, which reads the buffer
+     * through a stream and copies it into the ranges it writes.
+     *
+     * @param sourceBuffer
+     *            A <code>java.nio.ByteBuffer</code> object which holds the data to write to the file between its
+     *            position and its limit. Its position is advanced to its limit once the data is uploaded.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the file.
+     * @param options
+     *            A {@link FileRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudFileClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    @DoesServiceRequest
+    public void upload(final ByteBuffer sourceBuffer, final AccessCondition accessCondition,
+            FileRequestOptions options, OperationContext opContext) throws StorageException, IOException {
+        Utility.assertNotNull("sourceBuffer", sourceBuffer);
+
+        this.upload(new ByteBufferInputStream(sourceBuffer), sourceBuffer.remaining(), accessCondition, options,
+                opContext);
+        sourceBuffer.position(sourceBuffer.limit());
+    }
+
+    /**
+     * Uploads a file from a channel.
+     *
+     * @param sourceChannel
+     *            A <code>java.nio.channels.ReadableByteChannel</code> object which represents the data to write to the
+     *            file. It must be in blocking mode.
+     * @param length
+     *            A <code>long</code> which represents the length, in bytes, of the data, or -1 if unknown.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    @DoesServiceRequest
+    public void upload(final ReadableByteChannel sourceChannel, final long length) throws StorageException,
+            IOException {
+        this.upload(sourceChannel, length, null /* accessCondition */, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Uploads a file from a channel, using the specified lease ID, request options, and operation context.
+     * <p>
+     * This is a convenience overload of
+     * {@link #upload(InputStream, long, AccessCondition, FileRequestOptions, OperationContext)} which reads the channel
+     * through <code>Channels.newInputStream</code>, as a stream which does not support mark and reset, so the channel is
+     * read once. It does not avoid any copy of the data.
+     *
+     * @param sourceChannel
+     *            A <code>java.nio.channels.ReadableByteChannel</code> object which represents the data to write to the
+     *            file. It must be in blocking mode.
+     * @param length
+     *            A <code>long</code> which represents the length, in bytes, of the data, or -1 if unknown.
+     * @param accessCondition
+     *            An {@link AccessCondition} object that represents the access conditions for the file.
+     * @param options
+     *            A {@link FileRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudFileClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     *
+     * @throws StorageException
+     *             If a storage service error occurred.
+     * @throws IOException
+     */
+    @DoesServiceRequest
+    public void upload(final ReadableByteChannel sourceChannel, final long length,
+            final AccessCondition accessCondition, FileRequestOptions options, OperationContext opContext)
+            throws StorageException, IOException {
+        Utility.assertNotNull("sourceChannel", sourceChannel);
+        this.upload(Channels.newInputStream(sourceChannel), length, accessCondition, options, opContext);
+    }
+
     /**
      * Uploads a file.
      * 
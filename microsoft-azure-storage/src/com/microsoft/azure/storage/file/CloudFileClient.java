@@ -29,6 +29,7 @@ import com.microsoft.azure.storage.ServiceClient;
 import com.microsoft.azure.storage.StorageCredentials;
 import com.microsoft.azure.storage.StorageException;
 import com.microsoft.azure.storage.StorageUri;
+import com.microsoft.azure.storage.TransferScheduler;
 import com.microsoft.azure.storage.core.ExecutionEngine;
 import com.microsoft.azure.storage.core.LazySegmentedIterable;
 import com.microsoft.azure.storage.core.ListResponse;
@@ -50,6 +51,11 @@ public final class CloudFileClient extends ServiceClient {
      */
     private FileRequestOptions defaultRequestOptions;
 
+    /**
+     * Holds the scheduler which runs the parallel requests of transfers made via this Service Client.
+     */
+    private TransferScheduler transferScheduler;
+
     /**
      * Creates an instance of the <code>CloudFileClient</code> class using the specified File service endpoint and
      * account credentials.
@@ -390,6 +396,17 @@ public final class CloudFileClient extends ServiceClient {
         return this.defaultRequestOptions;
     }
 
+    /**
+     * Gets the scheduler which runs the parallel requests of file uploads and downloads made via this client.
+     * 
+     * @return The {@link TransferScheduler} used by this client. Unless another scheduler was set, this is the scheduler
+     *         shared by all clients, as returned by {@link TransferScheduler#getDefault()}.
+     */
+    public TransferScheduler getTransferScheduler() {
+        final TransferScheduler scheduler = this.transferScheduler;
+        return scheduler == null ? TransferScheduler.getDefault() : scheduler;
+    }
+
     /**
      * Sets the {@link FileRequestOptions} that is used for any requests associated with this
      * <code>CloudFileClient</code> object.
@@ -402,6 +419,21 @@ public final class CloudFileClient extends ServiceClient {
         this.defaultRequestOptions = defaultRequestOptions;
     }
 
+    /**
+     * Sets the scheduler which runs the parallel requests of file uploads and downloads made via this client.
+     * <p>
+     * Every output stream and parallel transfer submits its requests to this scheduler, which bounds the number of
+     * requests running across all of them and shares that number fairly among them. Each transfer still runs at most
+     * its own concurrent request count of requests at a time.
+     * 
+     * @param transferScheduler
+     *            A {@link TransferScheduler} object which represents the scheduler to use, or <code>null</code> to use
+     *            the scheduler shared by all clients.
+     */
+    public void setTransferScheduler(final TransferScheduler transferScheduler) {
+        this.transferScheduler = transferScheduler;
+    }
+
     /**
      * Indicates whether path-style URIs are being used.
      * 
@@ -24,14 +24,13 @@ import java.security.NoSuchAlgorithmException;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import com.microsoft.azure.storage.AccessCondition;
 import com.microsoft.azure.storage.DoesServiceRequest;
 import com.microsoft.azure.storage.OperationContext;
 import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.TransferScheduler;
 import com.microsoft.azure.storage.core.Base64;
 import com.microsoft.azure.storage.core.SR;
 import com.microsoft.azure.storage.core.Utility;
@@ -102,9 +101,9 @@ public class FileOutputStream extends OutputStream {
     private volatile int outstandingRequests;
 
     /**
-     * The ExecutorService used to schedule tasks for this stream.
+     * The session of the client's transfer scheduler used to schedule tasks for this stream.
      */
-    private final ExecutorService threadExecutor;
+    private final TransferScheduler.Session transferSession;
 
     /**
      * The CompletionService used to await task completion for this stream.
@@ -157,9 +156,10 @@ public class FileOutputStream extends OutputStream {
             }
         }
 
-        // V2 cachedThreadPool for perf.
-        this.threadExecutor = Executors.newFixedThreadPool(this.options.getConcurrentRequestCount());
-        this.completionService = new ExecutorCompletionService<Void>(this.threadExecutor);
+        // Run the writes on the threads shared by all transfers of the client rather than on threads of our own
+        this.transferSession = this.parentFileRef.getServiceClient().getTransferScheduler().openSession(
+                this.options.getConcurrentRequestCount());
+        this.completionService = new ExecutorCompletionService<Void>(this.transferSession);
         this.internalWriteThreshold = (int) Math.min(this.parentFileRef.getStreamWriteSizeInBytes(), length);
     }
 
@@ -190,15 +190,12 @@ public class FileOutputStream extends OutputStream {
     public void close() throws IOException {
         try {
             // if the user has already closed the stream, this will throw a STREAM_CLOSED exception
-            // if an exception was thrown by any thread in the threadExecutor, realize it now
+            // if an exception was thrown by any of the writes, realize it now
             this.checkStreamState();
 
             // flush any remaining data
             this.flush();
 
-            // Shut down the ExecutorService. Executes previously submitted tasks, but accepts no new tasks.
-            this.threadExecutor.shutdown();
-
             // Waits for all submitted tasks to complete
             while (this.outstandingRequests > 0) {
                 this.waitForTaskToComplete();
@@ -222,11 +219,8 @@ public class FileOutputStream extends OutputStream {
                 this.lastError = new IOException(SR.STREAM_CLOSED);
             }
 
-            // if an exception was thrown and the executor was not yet closed, call shutDownNow() to cancel all tasks 
-            // and shutdown the ExecutorService
-            if (!this.threadExecutor.isShutdown()) {
-                this.threadExecutor.shutdownNow();
-            }
+            // cancel any writes which have not started, if an exception was thrown, and release the session
+            this.transferSession.close();
         }
     }
 
@@ -0,0 +1,63 @@
+/**
+ * Copyright Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoft.azure.storage.file;
+
+import com.microsoft.azure.storage.AccessCondition;
+import com.microsoft.azure.storage.OperationContext;
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.core.BlockCachingReadChannel;
+
+/**
+ * Provides a channel to read a given file resource at any position, such as the footer of a file and then the data it
+ * points to. The file is downloaded in blocks of the minimum read size of the file, aligned on that size, and the most
+ * recently used blocks are cached, so that reads close to each other do not download the same data again. The reads
+ * are conditional on the ETag of the file when the channel was opened.
+ */
+public final class FileReadChannel extends BlockCachingReadChannel<FileRequestOptions> {
+    /**
+     * Holds the reference to the file this channel is associated with.
+     */
+    private final CloudFile parentFileRef;
+
+    /**
+     * Initializes a new instance of the FileReadChannel class.
+     *
+     * @param parentFile
+     *            A {@link CloudFile} object which represents the file that this channel is associated with, whose
+     *            attributes were downloaded.
+     * @param maxCachedBlocks
+     *            An <code>int</code> which represents the maximum number of blocks held in the cache.
+     * @param accessCondition
+     *            An {@link AccessCondition} object which represents the access conditions for the file.
+     * @param options
+     *            A {@link FileRequestOptions} object which specifies any additional options for the request.
+     * @param opContext
+     *            An {@link OperationContext} object which is used to track the execution of the operation.
+     */
+    FileReadChannel(final CloudFile parentFile, final int maxCachedBlocks, final AccessCondition accessCondition,
+            final FileRequestOptions options, final OperationContext opContext) {
+        super(parentFile.getProperties().getLength(), parentFile.getStreamMinimumReadSizeInBytes(), maxCachedBlocks,
+                parentFile.getProperties().getEtag(), accessCondition, options, opContext);
+        this.parentFileRef = parentFile;
+    }
+
+    @Override
+    protected void downloadBlock(final long offset, final int length, final byte[] buffer,
+            final AccessCondition accessCondition, final FileRequestOptions options, final OperationContext opContext)
+            throws StorageException {
+        // the blocks may be downloaded concurrently, so they leave the attributes captured at open as they were
+        this.parentFileRef.downloadRangeDetached(offset, length, buffer, accessCondition, options, opContext);
+    }
+}
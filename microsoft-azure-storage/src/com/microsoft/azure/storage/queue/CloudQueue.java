@@ -25,6 +25,7 @@ import java.security.InvalidKeyException;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.concurrent.Future;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -284,6 +285,78 @@ public final class CloudQueue {
                 options.getRetryPolicyFactory(), opContext);
     }
 
+    /**
+     * Asynchronous version of {@link #addMessage(CloudQueueMessage)}.
+     * 
+     * @param message
+     *            A {@link CloudQueueMessage} object that specifies the message to add.
+     * 
+     * @return A <code>Future</code> which completes once the message has been added.
+     * 
+     * @throws StorageException
+     *             If the message could not be prepared for sending.
+     */
+    @DoesServiceRequest
+    public Future<Void> addMessageAsync(final CloudQueueMessage message) throws StorageException {
+        return this.addMessageAsync(message, 0, 0, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Asynchronous version of {@link #addMessage(CloudQueueMessage, int, int, QueueRequestOptions, OperationContext)}.
+     * 
+     * @param message
+     *            A {@link CloudQueueMessage} object that specifies the message to add.
+     * 
+     * @param timeToLiveInSeconds
+     *            The maximum time to allow the message to be in the queue. A value of zero will set the time-to-live to
+     *            the service default value of seven days.
+     * 
+     * @param initialVisibilityDelayInSeconds
+     *            The length of time during which the message will be invisible, starting when it is added to the queue,
+     *            or 0 to make the message visible immediately. This value must be greater than or equal to zero and
+     *            less than or equal to the time-to-live value.
+     * 
+     * @param options
+     *            A {@link QueueRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudQueueClient}).
+     * 
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * 
+     * @return A <code>Future</code> which completes once the message has been added.
+     * 
+     * @throws StorageException
+     *             If the message could not be prepared for sending.
+     */
+    @DoesServiceRequest
+    public Future<Void> addMessageAsync(final CloudQueueMessage message, final int timeToLiveInSeconds,
+            final int initialVisibilityDelayInSeconds, QueueRequestOptions options, OperationContext opContext)
+            throws StorageException {
+        Utility.assertNotNull("message", message);
+        Utility.assertNotNull("messageContent", message.getMessageContentAsByte());
+        Utility.assertInBounds("timeToLiveInSeconds", timeToLiveInSeconds, 0,
+                QueueConstants.MAX_TIME_TO_LIVE_IN_SECONDS);
+
+        final int realTimeToLiveInSeconds = timeToLiveInSeconds == 0 ? QueueConstants.MAX_TIME_TO_LIVE_IN_SECONDS
+                : timeToLiveInSeconds;
+        Utility.assertInBounds("initialVisibilityDelayInSeconds", initialVisibilityDelayInSeconds, 0,
+                realTimeToLiveInSeconds - 1);
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        opContext.initialize();
+        options = QueueRequestOptions.applyDefaults(options, this.queueServiceClient);
+
+        return ExecutionEngine.executeWithRetryAsync(this.queueServiceClient, this,
+                this.addMessageImpl(message, realTimeToLiveInSeconds, initialVisibilityDelayInSeconds, options),
+                options.getRetryPolicyFactory(), opContext);
+    }
+
     private StorageRequest<CloudQueueClient, CloudQueue, Void> addMessageImpl(final CloudQueueMessage message,
             final int timeToLiveInSeconds, final int initialVisibilityDelayInSeconds, final QueueRequestOptions options)
             throws StorageException {
@@ -715,6 +788,55 @@ public final class CloudQueue {
                 options.getRetryPolicyFactory(), opContext);
     }
 
+    /**
+     * Asynchronous version of {@link #deleteMessage(CloudQueueMessage)}.
+     * 
+     * @param message
+     *            A {@link CloudQueueMessage} object that specifies the message to delete.
+     * 
+     * @return A <code>Future</code> which completes once the message has been deleted.
+     */
+    @DoesServiceRequest
+    public Future<Void> deleteMessageAsync(final CloudQueueMessage message) {
+        return this.deleteMessageAsync(message, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Asynchronous version of {@link #deleteMessage(CloudQueueMessage, QueueRequestOptions, OperationContext)}.
+     * 
+     * @param message
+     *            A {@link CloudQueueMessage} object that specifies the message to delete.
+     * 
+     * @param options
+     *            A {@link QueueRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudQueueClient}).
+     * 
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * 
+     * @return A <code>Future</code> which completes once the message has been deleted.
+     */
+    @DoesServiceRequest
+    public Future<Void> deleteMessageAsync(final CloudQueueMessage message, QueueRequestOptions options,
+            OperationContext opContext) {
+        Utility.assertNotNull("message", message);
+        Utility.assertNotNullOrEmpty("messageId", message.getId());
+        Utility.assertNotNullOrEmpty("popReceipt", message.getPopReceipt());
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        opContext.initialize();
+        options = QueueRequestOptions.applyDefaults(options, this.queueServiceClient);
+
+        return ExecutionEngine.executeWithRetryAsync(this.queueServiceClient, this,
+                this.deleteMessageImpl(message, options), options.getRetryPolicyFactory(), opContext);
+    }
+
     private StorageRequest<CloudQueueClient, CloudQueue, Void> deleteMessageImpl(final CloudQueueMessage message,
             final QueueRequestOptions options) {
         final String messageId = message.getId();
@@ -1266,6 +1388,61 @@ public final class CloudQueue {
                 options.getRetryPolicyFactory(), opContext);
     }
 
+    /**
+     * Asynchronous version of {@link #retrieveMessages(int)}.
+     * 
+     * @param numberOfMessages
+     *            The number of messages to retrieve.
+     * 
+     * @return A <code>Future</code> which completes with the {@link CloudQueueMessage} objects that represent the
+     *         messages retrieved from the queue.
+     */
+    @DoesServiceRequest
+    public Future<ArrayList<CloudQueueMessage>> retrieveMessagesAsync(final int numberOfMessages) {
+        return this.retrieveMessagesAsync(numberOfMessages,
+                QueueConstants.DEFAULT_VISIBILITY_MESSAGE_TIMEOUT_IN_SECONDS, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Asynchronous version of {@link #retrieveMessages(int, int, QueueRequestOptions, OperationContext)}.
+     * 
+     * @param numberOfMessages
+     *            The number of messages to retrieve.
+     * 
+     * @param visibilityTimeoutInSeconds
+     *            Specifies the visibility timeout for the retrieved messages, in seconds.
+     * 
+     * @param options
+     *            A {@link QueueRequestOptions} object that specifies any additional options for the request. Specifying
+     *            <code>null</code> will use the default request options from the associated service client (
+     *            {@link CloudQueueClient}).
+     * @param opContext
+     *            An {@link OperationContext} object that represents the context for the current operation. This object
+     *            is used to track requests to the storage service, and to provide additional runtime information about
+     *            the operation.
+     * 
+     * @return A <code>Future</code> which completes with the {@link CloudQueueMessage} objects that represent the
+     *         messages retrieved from the queue.
+     */
+    @DoesServiceRequest
+    public Future<ArrayList<CloudQueueMessage>> retrieveMessagesAsync(final int numberOfMessages,
+            final int visibilityTimeoutInSeconds, QueueRequestOptions options, OperationContext opContext) {
+        Utility.assertInBounds("numberOfMessages", numberOfMessages, 1, QueueConstants.MAX_NUMBER_OF_MESSAGES_TO_PEEK);
+        Utility.assertInBounds("visibilityTimeoutInSeconds", visibilityTimeoutInSeconds, 0,
+                QueueConstants.MAX_TIME_TO_LIVE_IN_SECONDS);
+
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        opContext.initialize();
+        options = QueueRequestOptions.applyDefaults(options, this.queueServiceClient);
+
+        return ExecutionEngine.executeWithRetryAsync(this.queueServiceClient, this,
+                this.retrieveMessagesImpl(numberOfMessages, visibilityTimeoutInSeconds, options),
+                options.getRetryPolicyFactory(), opContext);
+    }
+
     private StorageRequest<CloudQueueClient, CloudQueue, ArrayList<CloudQueueMessage>> retrieveMessagesImpl(
             final int numberOfMessages, final int visibilityTimeoutInSeconds, final QueueRequestOptions options) {
         final StorageRequest<CloudQueueClient, CloudQueue, ArrayList<CloudQueueMessage>> getRequest = new StorageRequest<CloudQueueClient, CloudQueue, ArrayList<CloudQueueMessage>>(
@@ -24,6 +24,7 @@ import java.security.InvalidKeyException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Locale;
+import java.util.concurrent.Future;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -549,6 +550,102 @@ public final class CloudTable {
         return operation.execute(this.getServiceClient(), this.getName(), options, opContext);
     }
 
+    /**
+     * Asynchronous version of {@link #execute(TableBatchOperation)}.
+     *
+     * @param batch
+     *            The {@link TableBatchOperation} object representing the operations to execute on the table.
+     *
+     * @return
+     *         A <code>Future</code> which completes with a <code>java.util.ArrayList</code> of {@link TableResult}
+     *         that contains the results, in order, of each {@link TableOperation} in the {@link TableBatchOperation}.
+     *
+     * @throws StorageException
+     *             if the request could not be prepared.
+     */
+    @DoesServiceRequest
+    public Future<ArrayList<TableResult>> executeAsync(final TableBatchOperation batch) throws StorageException {
+        return this.executeAsync(batch, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Asynchronous version of {@link #execute(TableBatchOperation, TableRequestOptions, OperationContext)}.
+     *
+     * @param batch
+     *            The {@link TableBatchOperation} object representing the operations to execute on the table.
+     * @param options
+     *            A {@link TableRequestOptions} object that specifies execution options such as retry policy and timeout
+     *            settings for the operation. Specify <code>null</code> to use the request options specified on the
+     *            {@link CloudTableClient}.
+     * @param opContext
+     *            An {@link OperationContext} object for tracking the current operation. Specify <code>null</code> to
+     *            safely ignore operation context.
+     *
+     * @return
+     *         A <code>Future</code> which completes with a <code>java.util.ArrayList</code> of {@link TableResult}
+     *         that contains the results, in order, of each {@link TableOperation} in the {@link TableBatchOperation}.
+     *
+     * @throws StorageException
+     *             if the request could not be prepared.
+     */
+    @DoesServiceRequest
+    public Future<ArrayList<TableResult>> executeAsync(final TableBatchOperation batch, TableRequestOptions options,
+            OperationContext opContext) throws StorageException {
+        Utility.assertNotNull("batch", batch);
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        opContext.initialize();
+        options = TableRequestOptions.applyDefaults(options, this.getServiceClient());
+        return batch.executeAsync(this.getServiceClient(), this.getName(), options, opContext);
+    }
+
+    /**
+     * Asynchronous version of {@link #execute(TableOperation)}.
+     *
+     * @param operation
+     *            The {@link TableOperation} object representing the operation to execute on the table.
+     *
+     * @return
+     *         A <code>Future</code> which completes with the {@link TableResult} of executing the
+     *         {@link TableOperation} on the table.
+     *
+     * @throws StorageException
+     *             if the request could not be prepared.
+     */
+    @DoesServiceRequest
+    public Future<TableResult> executeAsync(final TableOperation operation) throws StorageException {
+        return this.executeAsync(operation, null /* options */, null /* opContext */);
+    }
+
+    /**
+     * Asynchronous version of {@link #execute(TableOperation, TableRequestOptions, OperationContext)}.
+     *
+     * @param operation
+     *            The {@link TableOperation} object representing the operation to execute on the table.
+     * @param options
+     *            A {@link TableRequestOptions} object that specifies execution options such as retry policy and timeout
+     *            settings for the operation. Specify <code>null</code> to use the request options specified on the
+     *            {@link CloudTableClient}.
+     * @param opContext
+     *            An {@link OperationContext} object for tracking the current operation. Specify <code>null</code> to
+     *            safely ignore operation context.
+     *
+     * @return
+     *         A <code>Future</code> which completes with the {@link TableResult} of executing the
+     *         {@link TableOperation} on the table.
+     *
+     * @throws StorageException
+     *             if the request could not be prepared.
+     */
+    @DoesServiceRequest
+    public Future<TableResult> executeAsync(final TableOperation operation, final TableRequestOptions options,
+            final OperationContext opContext) throws StorageException {
+        Utility.assertNotNull("operation", operation);
+        return operation.executeAsync(this.getServiceClient(), this.getName(), options, opContext);
+    }
+
     /**
      * Executes a query, applying the specified {@link EntityResolver} to the result.
      * <p>
@@ -18,6 +18,7 @@ package com.microsoft.azure.storage.table;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.util.concurrent.Future;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -180,6 +181,31 @@ public class QueryTableOperation extends TableOperation {
                 options.getRetryPolicyFactory(), opContext);
     }
 
+    /**
+     * Reserved for internal use. Performs a retrieve operation asynchronously on the specified table, using the
+     * specified {@link TableRequestOptions} and {@link OperationContext}.
+     * 
+     * @param client
+     *            A {@link CloudTableClient} instance specifying the Table service endpoint and storage account
+     *            credentials to use.
+     * @param tableName
+     *            A <code>String</code> containing the name of the table to query.
+     * @param options
+     *            A {@link TableRequestOptions} object that specifies execution options such as retry policy and timeout
+     *            settings for the operation.
+     * @param opContext
+     *            An {@link OperationContext} object for tracking the current operation.
+     * 
+     * @return
+     *         A <code>Future</code> which completes with the {@link TableResult} of executing the query operation.
+     */
+    protected Future<TableResult> performRetrieveAsync(final CloudTableClient client, final String tableName,
+            final TableRequestOptions options, final OperationContext opContext) {
+
+        return ExecutionEngine.executeWithRetryAsync(client, this, this.retrieveImpl(client, tableName, options),
+                options.getRetryPolicyFactory(), opContext);
+    }
+
     private StorageRequest<CloudTableClient, QueryTableOperation, TableResult> retrieveImpl(
             final CloudTableClient client, final String tableName, final TableRequestOptions options) {
         final boolean isTableEntry = TableConstants.TABLES_SERVICE_TABLES_NAME.equals(tableName);
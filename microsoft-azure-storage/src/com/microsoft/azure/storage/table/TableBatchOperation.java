@@ -24,6 +24,7 @@ import java.net.HttpURLConnection;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.UUID;
+import java.util.concurrent.Future;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -410,14 +411,54 @@ public class TableBatchOperation extends ArrayList<TableOperation> {
     protected ArrayList<TableResult> execute(final CloudTableClient client, final String tableName,
             final TableRequestOptions options, final OperationContext opContext) throws StorageException {
 
+        this.validateExecution(tableName);
+        return ExecutionEngine.executeWithRetry(client, this, this.executeImpl(client, tableName, options, opContext),
+                options.getRetryPolicyFactory(), opContext);
+    }
+
+    /**
+     * Checks the arguments shared by the synchronous and asynchronous executions of this batch, before any request is
+     * built.
+     * 
+     * @param tableName
+     *            A <code>String</code> containing the name of the table.
+     */
+    private void validateExecution(final String tableName) {
         Utility.assertNotNullOrEmpty(TableConstants.TABLE_NAME, tableName);
 
         if (this.size() == 0) {
             throw new IllegalArgumentException(SR.EMPTY_BATCH_NOT_ALLOWED);
         }
+    }
 
-        return ExecutionEngine.executeWithRetry(client, this, this.executeImpl(client, tableName, options, opContext),
-                options.getRetryPolicyFactory(), opContext);
+    /**
+     * Reserved for internal use. Executes this batch operation asynchronously on the specified table, using the
+     * specified {@link TableRequestOptions} and {@link OperationContext}.
+     * 
+     * @param client
+     *            A {@link CloudTableClient} instance specifying the Table service endpoint and storage account
+     *            credentials to use.
+     * @param tableName
+     *            A <code>String</code> containing the name of the table.
+     * @param options
+     *            A {@link TableRequestOptions} object that specifies execution options such as retry policy and timeout
+     *            settings for the operation.
+     * @param opContext
+     *            An {@link OperationContext} object for tracking the current operation.
+     * 
+     * @return
+     *         A <code>Future</code> which completes with an <code>ArrayList</code> of {@link TableResult} containing
+     *         the results of executing the operation.
+     * 
+     * @throws StorageException
+     *             if the request could not be prepared.
+     */
+    protected Future<ArrayList<TableResult>> executeAsync(final CloudTableClient client, final String tableName,
+            final TableRequestOptions options, final OperationContext opContext) throws StorageException {
+
+        this.validateExecution(tableName);
+        return ExecutionEngine.executeWithRetryAsync(client, this,
+                this.executeImpl(client, tableName, options, opContext), options.getRetryPolicyFactory(), opContext);
     }
 
     private StorageRequest<CloudTableClient, TableBatchOperation, ArrayList<TableResult>> executeImpl(
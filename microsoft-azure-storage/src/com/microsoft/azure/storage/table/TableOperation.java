@@ -20,6 +20,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.util.concurrent.Future;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -727,7 +728,7 @@ public class TableOperation {
 
         opContext.initialize();
         options = TableRequestOptions.applyDefaults(options, client);
-        Utility.assertNotNullOrEmpty(TableConstants.TABLE_NAME, tableName);
+        this.validateExecution(tableName);
 
         if (this.getOperationType() == TableOperationType.INSERT
                 || this.getOperationType() == TableOperationType.INSERT_OR_MERGE
@@ -751,6 +752,80 @@ public class TableOperation {
         }
     }
 
+    /**
+     * Checks the arguments shared by the synchronous and asynchronous executions of this operation, before any request
+     * is built.
+     * 
+     * @param tableName
+     *            A <code>String</code> which specifies the name of the table.
+     */
+    private void validateExecution(final String tableName) {
+        Utility.assertNotNullOrEmpty(TableConstants.TABLE_NAME, tableName);
+    }
+
+    /**
+     * Reserved for internal use. Execute this table operation asynchronously on the specified table, using the
+     * specified {@link TableRequestOptions} and {@link OperationContext}.
+     * <p>
+     * This method will invoke the Storage Service REST API to execute this table operation, using the Table service
+     * endpoint and storage account credentials in the {@link CloudTableClient} object. Each attempt runs on the async
+     * executor of the client, set with
+     * {@link com.microsoft.azure.storage.ServiceClient#setAsyncExecutor(java.util.concurrent.Executor)}, and any
+     * retries are scheduled without holding a thread while waiting.
+     * 
+     * @param client
+     *            A {@link CloudTableClient} instance specifying the Table service endpoint, storage account
+     *            credentials, and any additional query parameters.
+     * @param tableName
+     *            A <code>String</code> which specifies the name of the table.
+     * @param options
+     *            A {@link TableRequestOptions} object that specifies execution options such as retry policy and timeout
+     *            settings for the operation.
+     * @param opContext
+     *            An {@link OperationContext} object for tracking the current operation.
+     * 
+     * @return
+     *         A <code>Future</code> which completes with the {@link TableResult} of executing the operation.
+     * 
+     * @throws StorageException
+     *             if the request could not be prepared.
+     */
+    protected Future<TableResult> executeAsync(final CloudTableClient client, final String tableName,
+            TableRequestOptions options, OperationContext opContext) throws StorageException {
+        if (opContext == null) {
+            opContext = new OperationContext();
+        }
+
+        opContext.initialize();
+        options = TableRequestOptions.applyDefaults(options, client);
+        this.validateExecution(tableName);
+
+        if (this.getOperationType() == TableOperationType.INSERT
+                || this.getOperationType() == TableOperationType.INSERT_OR_MERGE
+                || this.getOperationType() == TableOperationType.INSERT_OR_REPLACE) {
+            return ExecutionEngine.executeWithRetryAsync(client, this,
+                    this.insertImpl(client, tableName, options, opContext), options.getRetryPolicyFactory(), opContext);
+        }
+        else if (this.getOperationType() == TableOperationType.DELETE) {
+            return ExecutionEngine.executeWithRetryAsync(client, this,
+                    this.deleteImpl(client, tableName, options, opContext), options.getRetryPolicyFactory(), opContext);
+        }
+        else if (this.getOperationType() == TableOperationType.MERGE) {
+            return ExecutionEngine.executeWithRetryAsync(client, this,
+                    this.mergeImpl(client, tableName, options, opContext), options.getRetryPolicyFactory(), opContext);
+        }
+        else if (this.getOperationType() == TableOperationType.REPLACE) {
+            return ExecutionEngine.executeWithRetryAsync(client, this,
+                    this.updateImpl(client, tableName, options, opContext), options.getRetryPolicyFactory(), opContext);
+        }
+        else if (this.getOperationType() == TableOperationType.RETRIEVE) {
+            return ((QueryTableOperation) this).performRetrieveAsync(client, tableName, options, opContext);
+        }
+        else {
+            throw new IllegalArgumentException(SR.UNKNOWN_TABLE_OPERATION);
+        }
+    }
+
     /**
      * Reserved for internal use. Generates the request identity, consisting of the specified entry name, or the
      * PartitionKey and RowKey pair from the operation, to identify the operation target.